@@ -39,17 +39,15 @@ public class AddFeelDialog extends ModifyFeelDialog {
     }
 
     /**
-     * Return the position of the {@code Feel} within FeelsBook {@code FeelTreeSet}.
+     * Return whether this dialog edits a {@code Feel} already within FeelsBook.
      * <p>
-     * Since this is adding a new {@code Feel} to FeelsBook it is not within {@code FeelTreeSet}.
-     * Thus, return the position as {@code null} to indicate this.
+     * Since this is adding a new {@code Feel} to FeelsBook it is not.
      *
-     * @param args {@code Bundle}
-     * @return {@code null}
+     * @return {@code false}
      */
     @Override
-    protected Integer getDefaultPosition(@Nullable Bundle args) {
-        return null;
+    protected boolean isEditingFeel() {
+        return false;
     }
 }
 
@@ -4,7 +4,6 @@ import android.os.Bundle;
 import android.support.annotation.Nullable;
 import android.util.Log;
 
-import java.text.ParseException;
 import java.util.Date;
 
 import static ca.klapstein.nklapste_feelsbook.Feel.dateFormat;
@@ -21,7 +20,7 @@ public class EditFeelDialog extends ModifyFeelDialog {
     public static final String FEELING_ARG_TAG = "feeling";
     public static final String DATE_ARG_TAG = "date";
     public static final String COMMENT_ARG_TAG = "comment";
-    public static final String POSITION_ARG_TAG = "position";
+    public static final String ID_ARG_TAG = "id";
 
     @Override
     protected CharSequence getDialogTitle() {
@@ -45,31 +44,27 @@ public class EditFeelDialog extends ModifyFeelDialog {
     protected Feel getDefaultFeel(@Nullable Bundle args) {
         assert args != null;
         Feeling feeling = Feeling.valueOf(args.getString(FEELING_ARG_TAG));
-        Date date;
-        try {
-            date = dateFormat.parse(args.getString(DATE_ARG_TAG));
-        } catch (ParseException e) {
-            Log.e(TAG, "Failed to parse date string", e);
+        String dateString = args.getString(DATE_ARG_TAG);
+        Date date = dateFormat.parseDate(dateString);
+        if (date == null) {
+            Log.e(TAG, "Failed to parse date string: " + dateString);
             // Throw a RuntimeException because if we use this invalid date data we can potentially
             // corrupt the FeelTreeSet and state of FeelsBook
-            throw new RuntimeException(e);
+            throw new RuntimeException("Unparseable date: " + dateString);
         }
         String comment = args.getString(COMMENT_ARG_TAG);
-        return new Feel(feeling, comment, date);
+        return new Feel(args.getLong(ID_ARG_TAG), feeling, comment, date);
     }
 
     /**
-     * Return the position of the {@code Feel} being modified within the FeelsBook {@code FeelTreeSet}.
+     * Return whether this dialog edits a {@code Feel} already within FeelsBook.
      * <p>
-     * Since this is editing an existing {@code Feel} within FeelsBook it **must** have a position
-     * within FeelsBook's {@code FeelTreeSet}.
+     * Since this is editing an existing {@code Feel} within FeelsBook it always is.
      *
-     * @param args {@code Bundle}
-     * @return {@code Integer} the position of the Feel within FeelsBook {@code FeelTreeSet}.
+     * @return {@code true}
      */
     @Override
-    protected Integer getDefaultPosition(@Nullable Bundle args) {
-        assert args != null;
-        return args.getInt(POSITION_ARG_TAG);
+    protected boolean isEditingFeel() {
+        return true;
     }
 }
@@ -1,5 +1,7 @@
 package ca.klapstein.nklapste_feelsbook;
 
+import android.os.Handler;
+import android.os.Looper;
 import android.support.annotation.NonNull;
 import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
@@ -7,21 +9,54 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
 
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
 import static ca.klapstein.nklapste_feelsbook.Feel.dateFormat;
 
 
 /**
- * RecyclerView adapter for integrating a {@code FeelTreeSet}.
+ * RecyclerView adapter for integrating a {@code PagedFeelList}.
+ * <p>
+ * Rows whose page is not loaded yet are bound as empty placeholders, binding them requests their
+ * page, and they are rebound once it was loaded.
+ * <p>
+ * Modifications are passed in as {@code FeelChange}s and turned into precise item
+ * inserted/removed/moved/changed notifications so that RecyclerView only rebinds and animates
+ * the rows that actually changed.
+ * <p>
+ * For bulk modifications of a history that fits within the window of the {@code PagedFeelList}
+ * the difference between the old and new contents is computed off the main thread. While it is
+ * being computed the adapter keeps displaying a snapshot of the old contents. Larger histories
+ * are simply rebound.
+ * <p>
+ * While search results are set they are displayed instead of the {@code PagedFeelList}.
  *
  * @see FeelTab for the implentation of this adapter with {@code mFeelAdapter}.
  */
 public class FeelAdapter extends RecyclerView.Adapter<FeelAdapter.FeelViewHolder> {
     private static final String TAG = "FeelAdapter";
 
-    private final FeelTreeSet feelTreeSet;
+    private static final Executor diffExecutor = Executors.newSingleThreadExecutor();
+    private static final LatencyHistogram BIND_LATENCY = FeelMetrics.histogram("FeelAdapter.onBindViewHolder");
+    private static final FeelMetrics.Counter UNLOADED_BINDS = FeelMetrics.counter("FeelAdapter.unloadedBinds");
+
+    private final PagedFeelList pagedFeels;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * The contents being displayed while a bulk difference is computed, otherwise {@code null}.
+     */
+    private List<Feel> displayedSnapshot;
+    private int diffGeneration;
+    /**
+     * The {@code Feel}s matching the current search, or {@code null} if not searching.
+     */
+    private List<Feel> searchResults;
 
-    FeelAdapter(FeelTreeSet feelTreeSet) {
-        this.feelTreeSet = feelTreeSet;
+    FeelAdapter(PagedFeelList pagedFeels) {
+        this.pagedFeels = pagedFeels;
     }
 
     @NonNull
@@ -40,20 +75,205 @@ public class FeelAdapter extends RecyclerView.Adapter<FeelAdapter.FeelViewHolder
      */
     @Override
     public void onBindViewHolder(@NonNull FeelViewHolder holder, final int position) {
-        Feel feel = (Feel) feelTreeSet.toArray()[position];
-        holder.date.setText(dateFormat.format(feel.getDate()));
-        holder.feeling.setText(feel.getFeeling().toString());
-        holder.comment.setText(feel.getComment());
+        long start = FeelTrace.begin(BIND_LATENCY);
+        try {
+            Feel feel = getFeel(position);
+            if (feel == null) {
+                UNLOADED_BINDS.increment();
+                holder.date.setText("");
+                holder.feeling.setText("");
+                holder.comment.setText("");
+                return;
+            }
+            holder.date.setText(dateFormat.format(feel.getDate()));
+            holder.feeling.setText(feel.getFeeling().toString());
+            holder.comment.setText(feel.getComment());
+        } finally {
+            FeelTrace.end(BIND_LATENCY, start);
+        }
     }
 
     /**
-     * Get the total number of items within the {@code FeelTreeSet}.
+     * Get the total number of items within the {@code PagedFeelList}, loaded or not.
      *
-     * @return {@code int} the total number of items within the {@code FeelTreeSet}.
+     * @return {@code int} the total number of items within the {@code PagedFeelList}.
      */
     @Override
     public int getItemCount() {
-        return feelTreeSet.size();
+        if (searchResults != null) {
+            return searchResults.size();
+        }
+        return displayedSnapshot != null ? displayedSnapshot.size() : pagedFeels.size();
+    }
+
+    /**
+     * Get the {@code Feel} currently displayed at a position.
+     *
+     * @param position {@code int} position of the entity within the RecyclerView.
+     * @return {@code Feel} or {@code null} if its page is not loaded yet.
+     */
+    Feel getFeel(int position) {
+        if (searchResults != null) {
+            return searchResults.get(position);
+        }
+        return displayedSnapshot != null ? displayedSnapshot.get(position) : pagedFeels.get(position);
+    }
+
+    /**
+     * Display the {@code Feel}s matching a search instead of the {@code PagedFeelList}.
+     * <p>
+     * {@code FeelChange}s are not applied while search results are displayed, the caller searches
+     * again instead.
+     *
+     * @param searchResults {@code List<Feel>} sorted {@code Feel}s, or {@code null} to display the
+     *                      {@code PagedFeelList} again.
+     */
+    void setSearchResults(List<Feel> searchResults) {
+        if (searchResults == null && this.searchResults == null) {
+            return;
+        }
+        // any bulk difference was computed against the displayed contents being replaced
+        diffGeneration++;
+        displayedSnapshot = null;
+        this.searchResults = searchResults;
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Notify the RecyclerView of a modification of the {@code PagedFeelList}.
+     * <p>
+     * An edit moving a {@code Feel} to a new position results in one move and one change, and a
+     * loaded page rebinds its placeholder rows.
+     *
+     * @param change {@code FeelChange}
+     */
+    void onFeelsChanged(FeelChange change) {
+        if (searchResults != null) {
+            return;
+        }
+        if (displayedSnapshot != null) {
+            // a bulk difference is still being computed against the displayed snapshot,
+            // restart it so it also includes this modification
+            if (pagedFeels.isComplete()) {
+                dispatchDiff(displayedSnapshot);
+            } else {
+                diffGeneration++;
+                displayedSnapshot = null;
+                notifyDataSetChanged();
+            }
+            return;
+        }
+        switch (change.type) {
+            case FeelChange.INSERTED:
+                notifyItemInserted(change.toPosition);
+                break;
+            case FeelChange.REMOVED:
+                notifyItemRemoved(change.fromPosition);
+                break;
+            case FeelChange.MOVED:
+                if (change.fromPosition != change.toPosition) {
+                    notifyItemMoved(change.fromPosition, change.toPosition);
+                }
+                notifyItemChanged(change.toPosition);
+                break;
+            case FeelChange.LOADED:
+                notifyItemRangeChanged(change.fromPosition, change.itemCount);
+                break;
+            case FeelChange.RESET:
+                if (change.previousFeels != null && pagedFeels.isComplete()) {
+                    displayedSnapshot = change.previousFeels;
+                    dispatchDiff(displayedSnapshot);
+                } else {
+                    notifyDataSetChanged();
+                }
+                break;
+            default:
+                notifyDataSetChanged();
+                break;
+        }
+    }
+
+    /**
+     * Compute the difference between the displayed snapshot and the current contents of the
+     * {@code PagedFeelList} off the main thread, then dispatch it to the RecyclerView.
+     *
+     * @param oldFeels {@code List<Feel>} the displayed snapshot.
+     */
+    private void dispatchDiff(final List<Feel> oldFeels) {
+        final List<Feel> newFeels = pagedFeels.getLoadedFeels();
+        final int generation = ++diffGeneration;
+        diffExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final int[] operations = diffSorted(oldFeels, newFeels);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != diffGeneration) {
+                            // a newer difference superseded this one
+                            return;
+                        }
+                        displayedSnapshot = null;
+                        dispatchOperations(operations);
+                    }
+                });
+            }
+        });
+    }
+
+    private void dispatchOperations(int[] operations) {
+        for (int i = 0; i < operations.length; i += 3) {
+            int position = operations[i + 1];
+            int count = operations[i + 2];
+            if (operations[i] == FeelChange.INSERTED) {
+                notifyItemRangeInserted(position, count);
+            } else {
+                notifyItemRangeRemoved(position, count);
+            }
+        }
+    }
+
+    /**
+     * Compute the item range insertions and removals turning one sorted list of {@code Feel}s into
+     * another.
+     * <p>
+     * Since both lists are sorted by {@code Feel.compareTo} this is a single O(n + m) merge
+     * instead of a general purpose diff.
+     *
+     * @param oldFeels {@code List<Feel>} sorted list of {@code Feel}s currently displayed.
+     * @param newFeels {@code List<Feel>} sorted list of {@code Feel}s to display.
+     * @return {@code int[]} flattened (type, position, count) triples to be applied in order, where
+     * type is either {@code FeelChange.INSERTED} or {@code FeelChange.REMOVED}.
+     */
+    static int[] diffSorted(List<Feel> oldFeels, List<Feel> newFeels) {
+        IntArrayBuilder operations = new IntArrayBuilder();
+        int oldIndex = 0;
+        int newIndex = 0;
+        // position within the RecyclerView after all previous operations were applied
+        int position = 0;
+        while (oldIndex < oldFeels.size() || newIndex < newFeels.size()) {
+            int comparison;
+            if (oldIndex == oldFeels.size()) {
+                comparison = 1;
+            } else if (newIndex == newFeels.size()) {
+                comparison = -1;
+            } else {
+                comparison = oldFeels.get(oldIndex).compareTo(newFeels.get(newIndex));
+            }
+            if (comparison == 0) {
+                oldIndex++;
+                newIndex++;
+                position++;
+            } else if (comparison < 0) {
+                operations.addRange(FeelChange.REMOVED, position);
+                oldIndex++;
+            } else {
+                operations.addRange(FeelChange.INSERTED, position);
+                newIndex++;
+                position++;
+            }
+        }
+        return operations.toArray();
     }
 
     /**
@@ -73,4 +293,40 @@ public class FeelAdapter extends RecyclerView.Adapter<FeelAdapter.FeelViewHolder
             comment = view.findViewById(R.id.feel_comment);
         }
     }
+
+    /**
+     * Growable {@code int[]} of (type, position, count) triples that merges consecutive
+     * operations of the same type into one range.
+     */
+    private static final class IntArrayBuilder {
+        private int[] values = new int[48];
+        private int size;
+
+        void addRange(int type, int position) {
+            if (size > 0 && values[size - 3] == type) {
+                int lastPosition = values[size - 2];
+                int lastCount = values[size - 1];
+                // removals repeat at the same position, insertions continue after the last one
+                if ((type == FeelChange.REMOVED && lastPosition == position)
+                        || (type == FeelChange.INSERTED && lastPosition + lastCount == position)) {
+                    values[size - 1]++;
+                    return;
+                }
+            }
+            if (size + 3 > values.length) {
+                int[] grown = new int[values.length * 2];
+                System.arraycopy(values, 0, grown, 0, size);
+                values = grown;
+            }
+            values[size++] = type;
+            values[size++] = position;
+            values[size++] = 1;
+        }
+
+        int[] toArray() {
+            int[] array = new int[size];
+            System.arraycopy(values, 0, array, 0, size);
+            return array;
+        }
+    }
 }
\ No newline at end of file
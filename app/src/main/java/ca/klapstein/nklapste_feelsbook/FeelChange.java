@@ -0,0 +1,74 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import java.util.List;
+
+
+/**
+ * Immutable description of a single modification made to the FeelsBook {@code FeelTreeSet}.
+ * <p>
+ * The positions are those within the sorted order of the {@code FeelTreeSet}, which allows the
+ * {@code FeelAdapter} to issue precise RecyclerView item updates instead of rebinding everything.
+ *
+ * @see FeelRepository.OnFeelsChangedListener
+ */
+final class FeelChange {
+    private static final String TAG = "FeelChange";
+
+    /**
+     * The {@code Feel} at {@code toPosition} was inserted.
+     */
+    static final int INSERTED = 0;
+    /**
+     * The {@code Feel} at {@code fromPosition} was removed.
+     */
+    static final int REMOVED = 1;
+    /**
+     * The {@code Feel} at {@code fromPosition} was replaced by the {@code Feel} now at
+     * {@code toPosition}.
+     */
+    static final int MOVED = 2;
+    /**
+     * Many {@code Feel}s were modified at once, {@code previousFeels} holds the contents of the
+     * {@code FeelTreeSet} before the modification, or is {@code null} if they are not known.
+     */
+    static final int RESET = 3;
+    /**
+     * The {@code itemCount} {@code Feel}s starting at {@code fromPosition} were loaded from the
+     * {@code FeelStore}, nothing was modified.
+     */
+    static final int LOADED = 4;
+
+    final int type;
+    final int fromPosition;
+    final int toPosition;
+    final int itemCount;
+    final List<Feel> previousFeels;
+
+    private FeelChange(int type, int fromPosition, int toPosition, int itemCount, List<Feel> previousFeels) {
+        this.type = type;
+        this.fromPosition = fromPosition;
+        this.toPosition = toPosition;
+        this.itemCount = itemCount;
+        this.previousFeels = previousFeels;
+    }
+
+    static FeelChange inserted(int position) {
+        return new FeelChange(INSERTED, -1, position, 1, null);
+    }
+
+    static FeelChange removed(int position) {
+        return new FeelChange(REMOVED, position, -1, 1, null);
+    }
+
+    static FeelChange moved(int fromPosition, int toPosition) {
+        return new FeelChange(MOVED, fromPosition, toPosition, 1, null);
+    }
+
+    static FeelChange reset(List<Feel> previousFeels) {
+        return new FeelChange(RESET, -1, -1, 0, previousFeels);
+    }
+
+    static FeelChange loaded(int position, int itemCount) {
+        return new FeelChange(LOADED, position, -1, itemCount, null);
+    }
+}
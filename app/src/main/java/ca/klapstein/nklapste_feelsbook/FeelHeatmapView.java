@@ -0,0 +1,116 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.View;
+
+
+/**
+ * {@code View} drawing a {@code FeelHeatmap} as one grid of day of the week by hour of the day
+ * per {@code Feeling}.
+ * <p>
+ * All {@code Feeling.values().length * FeelHeatmap.DAYS * FeelHeatmap.HOURS} cells are drawn by
+ * this single {@code View} onto its {@code Canvas}, rather than inflating a {@code View} per
+ * cell, and drawing does not allocate. Each cell is shaded by its count relative to the highest
+ * count of its {@code Feeling}, so drawing costs the same no matter how many {@code Feel}s exist.
+ *
+ * @see StatsTab
+ */
+public class FeelHeatmapView extends View {
+    private static final String TAG = "FeelHeatmapView";
+
+    private static final String[] DAY_LABELS = {"M", "T", "W", "T", "F", "S", "S"};
+    private static final int EMPTY_CELL_COLOR = 0xFFEEEEEE;
+
+    private final Paint cellPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint labelPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint titlePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final RectF cellRect = new RectF();
+    private final int[] maxCounts = new int[Feeling.values().length];
+    private final int cellColor;
+    private final float cellGap;
+    private final float labelWidth;
+    private final float titleHeight;
+    private FeelHeatmap feelHeatmap;
+    private float cellSize;
+
+    public FeelHeatmapView(Context context) {
+        this(context, null);
+    }
+
+    public FeelHeatmapView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        cellColor = context.getResources().getColor(R.color.colorPrimary, context.getTheme());
+        cellGap = dp(1);
+        labelWidth = dp(16);
+        titleHeight = dp(28);
+        labelPaint.setColor(Color.GRAY);
+        labelPaint.setTextSize(dp(10));
+        titlePaint.setColor(Color.DKGRAY);
+        titlePaint.setTextSize(dp(14));
+    }
+
+    private float dp(float value) {
+        return TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, value, getResources().getDisplayMetrics());
+    }
+
+    /**
+     * Display a {@code FeelHeatmap}, which should be set again whenever it changed.
+     *
+     * @param feelHeatmap {@code FeelHeatmap}
+     */
+    public void setFeelHeatmap(FeelHeatmap feelHeatmap) {
+        this.feelHeatmap = feelHeatmap;
+        for (Feeling feeling : Feeling.values()) {
+            maxCounts[feeling.ordinal()] = feelHeatmap.getMaxCount(feeling);
+        }
+        invalidate();
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int width = MeasureSpec.getSize(widthMeasureSpec);
+        cellSize = Math.max(0, (width - getPaddingLeft() - getPaddingRight() - labelWidth) / FeelHeatmap.HOURS);
+        float gridHeight = titleHeight + FeelHeatmap.DAYS * cellSize;
+        int height = (int) Math.ceil(getPaddingTop() + getPaddingBottom() + Feeling.values().length * gridHeight);
+        setMeasuredDimension(width, resolveSize(height, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (feelHeatmap == null) {
+            return;
+        }
+        float top = getPaddingTop();
+        float left = getPaddingLeft() + labelWidth;
+        for (Feeling feeling : Feeling.values()) {
+            canvas.drawText(feeling.toString(), getPaddingLeft(), top + titleHeight - titlePaint.descent() - cellGap,
+                    titlePaint);
+            top += titleHeight;
+            int maxCount = maxCounts[feeling.ordinal()];
+            for (int day = 0; day < FeelHeatmap.DAYS; day++) {
+                float cellTop = top + day * cellSize;
+                canvas.drawText(DAY_LABELS[day], getPaddingLeft(), cellTop + cellSize - labelPaint.descent(), labelPaint);
+                for (int hour = 0; hour < FeelHeatmap.HOURS; hour++) {
+                    int count = feelHeatmap.getCount(feeling, day, hour);
+                    if (count == 0) {
+                        cellPaint.setColor(EMPTY_CELL_COLOR);
+                    } else {
+                        // keep the least common non empty cells visible
+                        cellPaint.setColor(cellColor);
+                        cellPaint.setAlpha(48 + 207 * count / maxCount);
+                    }
+                    float cellLeft = left + hour * cellSize;
+                    cellRect.set(cellLeft, cellTop, cellLeft + cellSize - cellGap, cellTop + cellSize - cellGap);
+                    canvas.drawRect(cellRect, cellPaint);
+                }
+            }
+            top += FeelHeatmap.DAYS * cellSize;
+        }
+    }
+}
@@ -0,0 +1,1164 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Process wide owner of the FeelsBook {@code Feel} history.
+ * <p>
+ * The history is displayed through a {@code PagedFeelList} which reads only the pages around what
+ * is being displayed from the {@code FeelStore}, so opening FeelsBook costs the same for ten
+ * {@code Feel}s as for a million. All modifications go through this repository which updates the
+ * {@code PagedFeelList}, notifies all registered {@code OnFeelsChangedListener}s, and records the
+ * modification within the {@code FeelStore} on the background {@code PersistenceExecutor} thread.
+ * Pages are read on the same thread, after the writes queued before them.
+ * <p>
+ * Batches of {@code Feel}s added with {@code addFeels} or deleted with {@code deleteFeels} are
+ * recorded within the {@code FeelStore} by one {@code addAll} or {@code removeAll}, and notified as
+ * one {@code FeelChange.RESET}, instead of one write and one notification per {@code Feel}.
+ * <p>
+ * The {@code StatsTab} tallies and {@code FeelHeatmap} are read from the {@code FeelStore} if it
+ * is a {@code FeelTallySource}, otherwise they are counted from the complete {@code FeelTreeSet}.
+ * Either is read once on the {@code PersistenceExecutor} thread and kept up to date from then on.
+ * Thus, switching between {@code FeelTab} and {@code StatsTab} never touches the disk more than
+ * once, nor on the main thread.
+ * <p>
+ * Every modification is numbered in the order it is made. Reads made on the
+ * {@code PersistenceExecutor} thread note the number of the last modification written before
+ * them, so the modifications made after it, while the read was in flight, are replayed onto what
+ * was read once it is back on the main thread.
+ * <p>
+ * The {@code FeelTrends} need the complete {@code FeelTreeSet}, which is loaded on the
+ * {@code PersistenceExecutor} thread on first use and held within a {@code ConcurrentFeelTreeSet}.
+ * The main thread modifies it under its write lock, while the trends are computed on a
+ * background read thread, and only their {@code TrendSnapshot} is handed to the main thread. Stale
+ * runs of the trends are rebuilt from a copy taken under the read lock, so the main thread only
+ * waits for the copy, never for the rebuild.
+ * <p>
+ * Searching the comments of the {@code Feel}s loads the complete {@code FeelTreeSet} as well, and
+ * is answered by its {@code FeelCommentIndex} on the same background read thread. The index is
+ * built there on first use, outside of the lock of the {@code ConcurrentFeelTreeSet}, so
+ * modifications made on the main thread meanwhile do not wait for it.
+ * <p>
+ * Imports and exports run one at a time on a background transfer thread. {@code importFeels}
+ * waits for the complete {@code FeelTreeSet} to be loaded, then parses a file and hands it to
+ * {@code addFeels} one batch at a time, waiting for each batch to be applied before parsing the
+ * next, so only about one batch of the file is held in memory at a time. {@code exportFeels}
+ * loads a snapshot of the {@code FeelStore} on the {@code PersistenceExecutor} thread, and writes
+ * it into a file page by page on the transfer thread, so writes are not held up by the file.
+ * Their progress goes to the one attached {@code OnTransferListener}, which is detached while its
+ * {@code Activity} is recreated, the transfers finished meanwhile are notified once one is
+ * attached again.
+ * <p>
+ * A {@code FeelRepository} is not thread safe, it should only be used from the main thread.
+ *
+ * @see FeelStore
+ * @see PersistenceExecutor
+ * @see PagedFeelList
+ */
+class FeelRepository {
+    private static final String TAG = "FeelRepository";
+
+    /**
+     * Writes made within this window of each other are persisted together in one batch.
+     */
+    private static final long PERSISTENCE_DEBOUNCE_MILLIS = 250;
+    /**
+     * The number of {@code Feel}s read from the {@code FeelStore} at once.
+     */
+    static final int PAGE_SIZE = 64;
+    /**
+     * The maximum number of pages of {@code Feel}s held in memory for display.
+     */
+    static final int WINDOW_PAGES = 8;
+    /**
+     * The number of imported batches after which their writes are flushed to the
+     * {@code FeelStore} before importing more, bounding the writes queued by an import.
+     */
+    static final int IMPORT_FLUSH_BATCHES = 32;
+
+    private static final LatencyHistogram LOAD_LATENCY = FeelMetrics.histogram("FeelStore.load");
+    private static final LatencyHistogram FLUSH_LATENCY = FeelMetrics.histogram("FeelStore.flush");
+    private static final LatencyHistogram MIGRATE_LATENCY = FeelMetrics.histogram("FeelStore.migrate");
+    private static final LatencyHistogram COMPACT_LATENCY = FeelMetrics.histogram("FeelStore.compactIfNeeded");
+    private static final FeelMetrics.Counter LOADED_FEELS = FeelMetrics.counter("FeelStore.loadedFeels");
+
+    private static FeelRepository instance;
+
+    private final FeelStore feelStore;
+    private final PersistenceExecutor persistenceExecutor;
+    private final Executor mainExecutor;
+    /**
+     * Runs the imports and exports.
+     */
+    private ExecutorService transferExecutor;
+    /**
+     * Runs the {@code ConcurrentFeelTreeSet.Reader}s of {@code readFeelTreeSet}.
+     */
+    private ExecutorService readExecutor;
+    private final ArrayList<OnFeelsChangedListener> listeners = new ArrayList<>();
+    private final PagedFeelList pagedFeels;
+    private boolean pagedFeelsRequested;
+    /**
+     * The complete {@code FeelTreeSet}, or {@code null} if not loaded.
+     */
+    private ConcurrentFeelTreeSet feelTreeSet;
+    /**
+     * Tasks waiting for the {@code FeelTreeSet} to be loaded, or {@code null} if it is not being
+     * loaded.
+     */
+    private ArrayList<Runnable> feelTreeSetListeners;
+    /**
+     * Tallies of all {@code Feel}s, or {@code null} if not read.
+     */
+    private int[] feelingTallies;
+    private TallySnapshot tallySnapshot;
+    /**
+     * {@code FeelHeatmap} of all {@code Feel}s, or {@code null} if not read.
+     */
+    private FeelHeatmap feelHeatmap;
+    /**
+     * Tasks waiting for the tallies and {@code FeelHeatmap} to be read, or {@code null} if they
+     * are not being read.
+     */
+    private ArrayList<Runnable> statsListeners;
+    /**
+     * Whether the tallies and {@code FeelHeatmap} being read are already off, and must be read
+     * again.
+     */
+    private boolean statsStale;
+    /**
+     * The number of modifications made so far.
+     */
+    private long modificationCount;
+    /**
+     * The number of modifications written to the {@code FeelStore}, only used on the
+     * {@code PersistenceExecutor} thread.
+     */
+    private long writtenModificationCount;
+    /**
+     * The modifications made while reads of the {@code FeelStore} are in flight, or {@code null}
+     * if none is.
+     */
+    private ArrayList<Modification> unreadModifications;
+    private int readsInFlight;
+    /**
+     * The {@code OnTransferListener} notified of the transfers, or {@code null} if detached.
+     */
+    private OnTransferListener transferListener;
+    private int transfersInFlight;
+    private long transferProgress;
+    private long transferMax = -1;
+    /**
+     * The transfers that finished while no {@code OnTransferListener} was attached.
+     */
+    private final ArrayList<TransferFinished> unnotifiedTransfers = new ArrayList<>();
+
+    /**
+     * Construct a {@code FeelRepository}.
+     *
+     * @param feelStore           {@code FeelStore}
+     * @param persistenceExecutor {@code PersistenceExecutor} writing to and reading from the
+     *                            {@code feelStore}.
+     * @param mainExecutor        {@code Executor} running loaded pages on the main thread.
+     * @param pageSize            {@code int} the number of {@code Feel}s read at once.
+     * @param windowPages         {@code int} the maximum number of pages held in memory.
+     */
+    FeelRepository(FeelStore feelStore, final PersistenceExecutor persistenceExecutor, Executor mainExecutor,
+                   int pageSize, int windowPages) {
+        this.feelStore = feelStore;
+        this.persistenceExecutor = persistenceExecutor;
+        this.mainExecutor = mainExecutor;
+        this.pagedFeels = new PagedFeelList(feelStore, pageSize, windowPages, new Executor() {
+            @Override
+            public void execute(Runnable read) {
+                persistenceExecutor.executeRead(read);
+            }
+        }, mainExecutor, new PagedFeelList.Listener() {
+            @Override
+            public void onRangeLoaded(int position, int count) {
+                notifyFeelsChanged(FeelChange.loaded(position, count));
+            }
+
+            @Override
+            public void onCountChanged(int count) {
+                // the tallies are off by the same modifications the count was
+                feelingTallies = null;
+                tallySnapshot = null;
+                feelHeatmap = null;
+                statsStale = statsListeners != null;
+                notifyFeelsChanged(FeelChange.reset(null));
+            }
+        });
+    }
+
+    /**
+     * Get the process wide {@code FeelRepository}.
+     * <p>
+     * Nothing is read from the disk on the calling thread. The {@code FeelStore} is migrated on
+     * the {@code PersistenceExecutor} thread, and the first page read after it is handed to the
+     * {@code OnFeelsChangedListener}s as usual.
+     *
+     * @param context {@code Context}
+     * @return {@code FeelRepository}
+     */
+    static synchronized FeelRepository getInstance(Context context) {
+        if (instance == null) {
+            final Context applicationContext = context.getApplicationContext();
+            final FeelStore feelStore = FeelsBookPreferencesManager.getFeelStore(applicationContext);
+            final Handler mainHandler = new Handler(Looper.getMainLooper());
+            PersistenceExecutor persistenceExecutor = new PersistenceExecutor(PERSISTENCE_DEBOUNCE_MILLIS, new Runnable() {
+                @Override
+                public void run() {
+                    long start = FeelTrace.begin(FLUSH_LATENCY);
+                    try {
+                        feelStore.flush();
+                    } finally {
+                        FeelTrace.end(FLUSH_LATENCY, start);
+                    }
+                }
+            }, new Runnable() {
+                @Override
+                public void run() {
+                    long start = FeelTrace.begin(COMPACT_LATENCY);
+                    try {
+                        feelStore.compactIfNeeded();
+                    } finally {
+                        FeelTrace.end(COMPACT_LATENCY, start);
+                    }
+                }
+            });
+            // the first task of the writer thread, so every read and write of the FeelStore,
+            // such as loading the first page, follows the migration
+            persistenceExecutor.executeRead(new Runnable() {
+                @Override
+                public void run() {
+                    long start = FeelTrace.begin(MIGRATE_LATENCY);
+                    try {
+                        FeelsBookPreferencesManager.migrateFeelStore(applicationContext);
+                    } finally {
+                        FeelTrace.end(MIGRATE_LATENCY, start);
+                    }
+                }
+            });
+            instance = new FeelRepository(feelStore, persistenceExecutor, new Executor() {
+                @Override
+                public void execute(Runnable runnable) {
+                    mainHandler.post(runnable);
+                }
+            }, PAGE_SIZE, WINDOW_PAGES);
+        }
+        return instance;
+    }
+
+    /**
+     * Get the {@code PagedFeelList} of all {@code Feel}s, starting to load its first page on
+     * first use.
+     * <p>
+     * The returned {@code PagedFeelList} should not be modified directly, instead use
+     * {@code addFeel}, {@code deleteFeel}, and {@code editFeel}.
+     *
+     * @return {@code PagedFeelList}
+     */
+    PagedFeelList getPagedFeels() {
+        if (!pagedFeelsRequested) {
+            pagedFeelsRequested = true;
+            pagedFeels.refresh();
+        }
+        return pagedFeels;
+    }
+
+    /**
+     * Get the total number of {@code Feel}s, which is {@code 0} until the first page was loaded.
+     *
+     * @return {@code int}
+     */
+    int getFeelCount() {
+        return getPagedFeels().size();
+    }
+
+    /**
+     * Load the complete {@code FeelTreeSet} on first use, it is kept up to date by later
+     * modifications.
+     *
+     * @param onLoaded {@code Runnable} run on the main thread once {@code getFeelTreeSet} is
+     *                 available, right away if it already is.
+     */
+    void loadFeelTreeSet(Runnable onLoaded) {
+        if (feelTreeSet != null) {
+            onLoaded.run();
+            return;
+        }
+        if (feelTreeSetListeners == null) {
+            feelTreeSetListeners = new ArrayList<>();
+            readFeelStore(new FeelStoreRead<FeelTreeSet>() {
+                @Override
+                public FeelTreeSet read() {
+                    return loadFromFeelStore();
+                }
+
+                @Override
+                public void onRead(FeelTreeSet loaded, List<Modification> unreadModifications) {
+                    for (Modification modification : unreadModifications) {
+                        loaded.removeAll(modification.removed);
+                        loaded.addAll(modification.added);
+                    }
+                    feelTreeSet = new ConcurrentFeelTreeSet(loaded);
+                    ArrayList<Runnable> listeners = feelTreeSetListeners;
+                    feelTreeSetListeners = null;
+                    for (Runnable listener : listeners) {
+                        listener.run();
+                    }
+                }
+            });
+        }
+        feelTreeSetListeners.add(onLoaded);
+    }
+
+    /**
+     * Get the complete {@code FeelTreeSet}.
+     * <p>
+     * The returned {@code ConcurrentFeelTreeSet} should not be modified directly, instead use
+     * {@code addFeel}, {@code deleteFeel}, and {@code editFeel}.
+     *
+     * @return {@code ConcurrentFeelTreeSet} or {@code null} until loaded by
+     * {@code loadFeelTreeSet}.
+     */
+    ConcurrentFeelTreeSet getFeelTreeSet() {
+        return feelTreeSet;
+    }
+
+    /**
+     * Run a {@code FeelTreeSetRead} against the complete {@code FeelTreeSet} on the background
+     * read thread, loading it on first use.
+     * <p>
+     * Parts of the {@code FeelTreeSet} built on first read, such as the runs of its
+     * {@code FeelTrends} and its {@code FeelCommentIndex}, are built outside of the lock of the
+     * {@code ConcurrentFeelTreeSet}, so the main thread never waits for them. As all
+     * {@code FeelTreeSetRead}s run on the one read thread, the {@code FeelCommentIndex} is never
+     * searched by two threads at once.
+     *
+     * @param read     {@code FeelTreeSetRead<T>} whose result must not be modified by later
+     *                 modifications of the {@code FeelTreeSet}.
+     * @param listener {@code OnLoadedListener<T>} called on the main thread with the result.
+     * @param <T>      the type of the result.
+     */
+    private <T> void readFeelTreeSet(final FeelTreeSetRead<T> read, final OnLoadedListener<T> listener) {
+        loadFeelTreeSet(new Runnable() {
+            @Override
+            public void run() {
+                final ConcurrentFeelTreeSet loaded = feelTreeSet;
+                if (readExecutor == null) {
+                    readExecutor = Executors.newSingleThreadExecutor();
+                }
+                readExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        final T result = read.read(loaded);
+                        mainExecutor.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                listener.onLoaded(result);
+                            }
+                        });
+                    }
+                });
+            }
+        });
+    }
+
+    private FeelTreeSet loadFromFeelStore() {
+        FeelTreeSet loaded;
+        long start = FeelTrace.begin(LOAD_LATENCY);
+        try {
+            loaded = feelStore.load();
+        } finally {
+            FeelTrace.end(LOAD_LATENCY, start);
+        }
+        LOADED_FEELS.add(loaded.size());
+        return loaded;
+    }
+
+    /**
+     * Read from the {@code FeelStore} on the {@code PersistenceExecutor} thread, after all
+     * modifications made so far were written, and hand what was read back to the main thread along
+     * with the modifications made since.
+     *
+     * @param read {@code FeelStoreRead<T>}
+     * @param <T>  the type of what is read.
+     */
+    private <T> void readFeelStore(final FeelStoreRead<T> read) {
+        if (readsInFlight++ == 0) {
+            unreadModifications = new ArrayList<>();
+        }
+        persistenceExecutor.executeRead(new Runnable() {
+            @Override
+            public void run() {
+                final T result = read.read();
+                final long writtenCount = writtenModificationCount;
+                mainExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        List<Modification> unread = new ArrayList<>();
+                        for (Modification modification : unreadModifications) {
+                            if (modification.number > writtenCount) {
+                                unread.add(modification);
+                            }
+                        }
+                        if (--readsInFlight == 0) {
+                            unreadModifications = null;
+                        }
+                        read.onRead(result, unread);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Number a modification, and queue its write to the {@code FeelStore}.
+     *
+     * @param removed {@code Collection<Feel>} the {@code Feel}s removed by the modification.
+     * @param added   {@code Collection<Feel>} the {@code Feel}s added by the modification.
+     * @param write   {@code Runnable} writing the modification to the {@code FeelStore}.
+     */
+    private void write(Collection<Feel> removed, Collection<Feel> added, final Runnable write) {
+        final long number = ++modificationCount;
+        if (unreadModifications != null) {
+            unreadModifications.add(new Modification(number, removed, added));
+        }
+        persistenceExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                write.run();
+                writtenModificationCount = number;
+            }
+        });
+    }
+
+    /**
+     * Read the tallies and {@code FeelHeatmap} of all {@code Feel}s on first use, they are kept up
+     * to date by later modifications.
+     * <p>
+     * If the {@code FeelStore} is a {@code FeelTallySource} its tallies and heatmap are read,
+     * otherwise they are counted from the complete {@code FeelTreeSet} loaded on the
+     * {@code PersistenceExecutor} thread.
+     *
+     * @param onLoaded {@code Runnable} run on the main thread once {@code getTallySnapshot} and
+     *                 {@code getFeelHeatmap} are available, right away if they already are.
+     */
+    void loadStats(Runnable onLoaded) {
+        if (feelingTallies != null) {
+            onLoaded.run();
+            return;
+        }
+        if (statsListeners == null) {
+            statsListeners = new ArrayList<>();
+            readStats();
+        }
+        statsListeners.add(onLoaded);
+    }
+
+    private void readStats() {
+        readFeelStore(new FeelStoreRead<TallySnapshot>() {
+            private FeelHeatmap loadedHeatmap;
+
+            @Override
+            public TallySnapshot read() {
+                if (feelStore instanceof FeelTallySource) {
+                    loadedHeatmap = ((FeelTallySource) feelStore).loadFeelHeatmap();
+                    return ((FeelTallySource) feelStore).loadTallySnapshot();
+                }
+                FeelTreeSet loaded = loadFromFeelStore();
+                loadedHeatmap = loaded.getFeelHeatmap();
+                return loaded.getTallySnapshot();
+            }
+
+            @Override
+            public void onRead(TallySnapshot loadedTallies, List<Modification> unreadModifications) {
+                if (statsStale) {
+                    statsStale = false;
+                    readStats();
+                    return;
+                }
+                feelingTallies = new int[Feeling.values().length];
+                for (Feeling feeling : Feeling.values()) {
+                    feelingTallies[feeling.ordinal()] = loadedTallies.get(feeling);
+                }
+                feelHeatmap = loadedHeatmap;
+                for (Modification modification : unreadModifications) {
+                    for (Feel feel : modification.removed) {
+                        updateTally(feel, -1);
+                    }
+                    for (Feel feel : modification.added) {
+                        updateTally(feel, 1);
+                    }
+                }
+                ArrayList<Runnable> listeners = statsListeners;
+                statsListeners = null;
+                for (Runnable listener : listeners) {
+                    listener.run();
+                }
+            }
+        });
+    }
+
+    /**
+     * Get the tally of each {@code Feeling} over all {@code Feel}s.
+     *
+     * @return {@code TallySnapshot} or {@code null} until read by {@code loadStats}.
+     */
+    TallySnapshot getTallySnapshot() {
+        if (feelingTallies == null) {
+            return null;
+        }
+        if (tallySnapshot == null) {
+            tallySnapshot = new TallySnapshot(feelingTallies);
+        }
+        return tallySnapshot;
+    }
+
+    /**
+     * Get the {@code FeelHeatmap} of all {@code Feel}s, which is kept up to date by later
+     * modifications.
+     *
+     * @return {@code FeelHeatmap} or {@code null} until read by {@code loadStats}.
+     */
+    FeelHeatmap getFeelHeatmap() {
+        return feelHeatmap;
+    }
+
+    /**
+     * Compute the {@code FeelTrends} of all {@code Feel}s as of a day on the background read
+     * thread, loading the complete {@code FeelTreeSet} on first use.
+     *
+     * @param nowMillis {@code long} epoch milliseconds of the day.
+     * @param listener  {@code OnLoadedListener<TrendSnapshot>} called on the main thread.
+     */
+    void loadTrendSnapshot(final long nowMillis, OnLoadedListener<TrendSnapshot> listener) {
+        readFeelTreeSet(new FeelTreeSetRead<TrendSnapshot>() {
+            @Override
+            public TrendSnapshot read(ConcurrentFeelTreeSet feelTreeSet) {
+                return feelTreeSet.getTrendSnapshot(nowMillis);
+            }
+        }, listener);
+    }
+
+    /**
+     * Search the comments of all {@code Feel}s on the background read thread, loading the
+     * complete {@code FeelTreeSet} on first use.
+     *
+     * @param query    {@code String} words that each must start a word of a matching comment.
+     * @param limit    {@code int} the maximum number of {@code Feel}s to return.
+     * @param listener {@code OnLoadedListener<List<Feel>>} called on the main thread with the
+     *                 matching {@code Feel}s in {@code Feel.compareTo} order.
+     * @see FeelCommentIndex#search(String, int)
+     */
+    void searchFeels(final String query, final int limit, OnLoadedListener<List<Feel>> listener) {
+        readFeelTreeSet(new FeelTreeSetRead<List<Feel>>() {
+            @Override
+            public List<Feel> read(ConcurrentFeelTreeSet feelTreeSet) {
+                return feelTreeSet.searchComments(query, limit);
+            }
+        }, listener);
+    }
+
+    /**
+     * Immediately start writing out all modifications still waiting within the current debounce
+     * window, without waiting for them to be written.
+     * <p>
+     * This should be called when FeelsBook is paused so no modifications are lost if the process
+     * is killed.
+     */
+    void flush() {
+        persistenceExecutor.flush();
+    }
+
+    /**
+     * Wait for all modifications made so far to be written to the {@code FeelStore}.
+     *
+     * @param timeout {@code long}
+     * @param unit    {@code TimeUnit}
+     * @return {@code boolean} {@code true} if all modifications were written before the timeout.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    boolean awaitPendingWrites(long timeout, TimeUnit unit) throws InterruptedException {
+        return persistenceExecutor.awaitPendingWrites(timeout, unit);
+    }
+
+    void addOnFeelsChangedListener(OnFeelsChangedListener listener) {
+        listeners.add(listener);
+    }
+
+    void removeOnFeelsChangedListener(OnFeelsChangedListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Attach the {@code OnTransferListener} notified of the imports and exports, replacing the
+     * one attached before. It is notified right away of the progress of the transfer in flight,
+     * and of the transfers that finished while none was attached.
+     *
+     * @param listener {@code OnTransferListener}
+     */
+    void attachTransferListener(OnTransferListener listener) {
+        transferListener = listener;
+        if (transfersInFlight > 0) {
+            listener.onTransferProgress(transferProgress, transferMax);
+        }
+        ArrayList<TransferFinished> finished = new ArrayList<>(unnotifiedTransfers);
+        unnotifiedTransfers.clear();
+        for (TransferFinished transfer : finished) {
+            listener.onTransferFinished(transfer.count, transfer.error);
+        }
+    }
+
+    /**
+     * Detach an {@code OnTransferListener}, unless another was attached since.
+     *
+     * @param listener {@code OnTransferListener}
+     */
+    void detachTransferListener(OnTransferListener listener) {
+        if (transferListener == listener) {
+            transferListener = null;
+        }
+    }
+
+    /**
+     * Whether an import or export is in flight, or finished without being notified.
+     *
+     * @return {@code boolean}
+     */
+    boolean isTransferring() {
+        return transfersInFlight > 0 || !unnotifiedTransfers.isEmpty();
+    }
+
+    /**
+     * Add a {@code Feel} into FeelsBook.
+     *
+     * @param feel {@code Feel}
+     * @return {@code boolean} {@code true} if the {@code Feel} was added.
+     */
+    boolean addFeel(final Feel feel) {
+        if (feelTreeSet != null && feelTreeSet.contains(feel)) {
+            return false;
+        }
+        int position = getPagedFeels().insert(feel);
+        if (position < 0) {
+            return false;
+        }
+        if (feelTreeSet != null) {
+            feelTreeSet.add(feel);
+        }
+        updateTally(feel, 1);
+        write(Collections.<Feel>emptyList(), Collections.singletonList(feel), new Runnable() {
+            @Override
+            public void run() {
+                feelStore.add(feel);
+            }
+        });
+        notifyFeelsChanged(FeelChange.inserted(position));
+        return true;
+    }
+
+    /**
+     * Add a batch of {@code Feel}s into FeelsBook, persisted in one write and notified as one
+     * {@code FeelChange}.
+     *
+     * @param feels {@code Collection<Feel>}
+     * @return {@code int} the number of {@code Feel}s that were added.
+     */
+    int addFeels(Collection<Feel> feels) {
+        List<Feel> previousFeels = getPagedFeels().isComplete() ? pagedFeels.getLoadedFeels() : null;
+        final List<Feel> added = new ArrayList<>(feels.size());
+        HashSet<Long> addedIds = new HashSet<>();
+        for (Feel feel : feels) {
+            if (!addedIds.add(feel.getId()) || (feelTreeSet != null && feelTreeSet.getById(feel.getId()) != null)) {
+                continue;
+            }
+            if (pagedFeels.insert(feel) >= 0) {
+                added.add(feel);
+                updateTally(feel, 1);
+            }
+        }
+        if (added.isEmpty()) {
+            return 0;
+        }
+        if (feelTreeSet != null) {
+            feelTreeSet.addAll(added);
+        }
+        write(Collections.<Feel>emptyList(), added, new Runnable() {
+            @Override
+            public void run() {
+                feelStore.addAll(added);
+            }
+        });
+        notifyFeelsChanged(FeelChange.reset(previousFeels));
+        return added.size();
+    }
+
+    /**
+     * Delete a batch of displayed or searched {@code Feel}s from FeelsBook, persisted in one
+     * write and notified as one {@code FeelChange}.
+     *
+     * @param ids {@code Collection<Long>} the ids of the {@code Feel}s.
+     * @return {@code int} the number of {@code Feel}s that were deleted.
+     */
+    int deleteFeels(Collection<Long> ids) {
+        List<Feel> previousFeels = getPagedFeels().isComplete() ? pagedFeels.getLoadedFeels() : null;
+        final List<Feel> deleted = new ArrayList<>(ids.size());
+        for (long id : new HashSet<>(ids)) {
+            Feel feel = findFeel(id);
+            if (feel != null && pagedFeels.remove(feel) >= 0) {
+                deleted.add(feel);
+                updateTally(feel, -1);
+            }
+        }
+        if (deleted.isEmpty()) {
+            return 0;
+        }
+        if (feelTreeSet != null) {
+            feelTreeSet.removeAll(deleted);
+        }
+        write(deleted, Collections.<Feel>emptyList(), new Runnable() {
+            @Override
+            public void run() {
+                feelStore.removeAll(deleted);
+            }
+        });
+        notifyFeelsChanged(FeelChange.reset(previousFeels));
+        return deleted.size();
+    }
+
+    /**
+     * Import the {@code Feel}s of a CSV or JSON file into FeelsBook on a background thread.
+     * <p>
+     * The {@code Feel}s keep the ids they were exported with, so the import waits for the
+     * complete {@code FeelTreeSet} to be loaded first for {@code addFeels} to skip those already
+     * within FeelsBook, which makes importing the same file twice harmless. The stream is closed
+     * once the import finished, any failure is reported as an {@code IOException}.
+     *
+     * @param in         {@code InputStream}
+     * @param totalBytes {@code long} the size of the file for progress, or {@code -1} if unknown.
+     * @see FeelImporter
+     * @see #attachTransferListener(OnTransferListener)
+     */
+    void importFeels(final InputStream in, final long totalBytes) {
+        startTransfer();
+        final CountDownLatch feelTreeSetLoaded = new CountDownLatch(1);
+        loadFeelTreeSet(new Runnable() {
+            @Override
+            public void run() {
+                feelTreeSetLoaded.countDown();
+            }
+        });
+        getTransferExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                final AtomicInteger imported = new AtomicInteger();
+                IOException error = null;
+                try {
+                    try {
+                        feelTreeSetLoaded.await();
+                    } catch (InterruptedException e) {
+                        throw new InterruptedIOException("Import interrupted");
+                    }
+                    FeelImporter.importFeels(in, totalBytes, FeelImporter.BATCH_SIZE, new FeelImporter.Listener() {
+                        private int batches;
+
+                        @Override
+                        public void onBatch(final List<Feel> feels) throws IOException {
+                            FutureTask<Integer> add = new FutureTask<>(new Callable<Integer>() {
+                                @Override
+                                public Integer call() {
+                                    return addFeels(feels);
+                                }
+                            });
+                            mainExecutor.execute(add);
+                            try {
+                                imported.addAndGet(add.get());
+                            } catch (InterruptedException e) {
+                                throw new InterruptedIOException("Import interrupted");
+                            } catch (ExecutionException e) {
+                                throw new IOException(e.getCause());
+                            }
+                            if (++batches % IMPORT_FLUSH_BATCHES == 0) {
+                                persistenceExecutor.flushAndWait();
+                            }
+                        }
+
+                        @Override
+                        public void onProgress(long bytesRead, long totalBytes) {
+                            postTransferProgress(bytesRead, totalBytes);
+                        }
+                    });
+                } catch (IOException e) {
+                    error = e;
+                } catch (RuntimeException e) {
+                    error = new IOException(e);
+                } finally {
+                    postTransferFinished(imported.get(), closeTransferStream(in, error));
+                }
+            }
+        });
+    }
+
+    /**
+     * Export all {@code Feel}s of FeelsBook into a file, newest first.
+     * <p>
+     * A snapshot of the {@code FeelStore} is loaded on the {@code PersistenceExecutor} thread
+     * after all modifications made so far, and written into the file on the transfer thread, so
+     * modifications made during the export reach the {@code FeelStore} but not the file. The
+     * stream is closed once the export finished, any failure is reported as an
+     * {@code IOException}.
+     *
+     * @param format {@code FeelFileFormat}
+     * @param out    {@code OutputStream}
+     * @see FeelExporter
+     * @see #attachTransferListener(OnTransferListener)
+     */
+    void exportFeels(final FeelFileFormat format, final OutputStream out) {
+        startTransfer();
+        final FutureTask<FeelTreeSet> snapshot = new FutureTask<>(new Callable<FeelTreeSet>() {
+            @Override
+            public FeelTreeSet call() {
+                return loadFromFeelStore();
+            }
+        });
+        persistenceExecutor.executeRead(snapshot);
+        getTransferExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                int exported = 0;
+                IOException error = null;
+                try {
+                    FeelTreeSet feels;
+                    try {
+                        feels = snapshot.get();
+                    } catch (InterruptedException e) {
+                        throw new InterruptedIOException("Export interrupted");
+                    } catch (ExecutionException e) {
+                        throw new IOException(e.getCause());
+                    }
+                    exported = FeelExporter.exportFeels(feels, format, out, new FeelExporter.Listener() {
+                        @Override
+                        public void onProgress(int written, int total) {
+                            postTransferProgress(written, total);
+                        }
+                    });
+                } catch (IOException e) {
+                    error = e;
+                } catch (RuntimeException e) {
+                    error = new IOException(e);
+                } finally {
+                    postTransferFinished(exported, closeTransferStream(out, error));
+                }
+            }
+        });
+    }
+
+    private void startTransfer() {
+        transfersInFlight++;
+        transferProgress = 0;
+        transferMax = -1;
+    }
+
+    private ExecutorService getTransferExecutor() {
+        if (transferExecutor == null) {
+            transferExecutor = Executors.newSingleThreadExecutor();
+        }
+        return transferExecutor;
+    }
+
+    /**
+     * Close the stream of a transfer, a failure to close is only reported if the transfer did
+     * not already fail, as it may mean the file was not completely written.
+     *
+     * @return {@code IOException} the first error of the transfer, or {@code null}.
+     */
+    private static IOException closeTransferStream(Closeable stream, IOException error) {
+        try {
+            stream.close();
+        } catch (IOException e) {
+            if (error == null) {
+                error = e;
+            }
+        }
+        return error;
+    }
+
+    private void postTransferProgress(final long progress, final long max) {
+        mainExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                transferProgress = progress;
+                transferMax = max;
+                if (transferListener != null) {
+                    transferListener.onTransferProgress(progress, max);
+                }
+            }
+        });
+    }
+
+    private void postTransferFinished(final int count, final IOException error) {
+        mainExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                transfersInFlight--;
+                if (transferListener != null) {
+                    transferListener.onTransferFinished(count, error);
+                } else {
+                    unnotifiedTransfers.add(new TransferFinished(count, error));
+                }
+            }
+        });
+    }
+
+    /**
+     * Find the {@code Feel} of an id, within the loaded {@code FeelTreeSet} or else within the
+     * displayed pages.
+     *
+     * @param id {@code long}
+     * @return {@code Feel} or {@code null} if it is not known.
+     */
+    Feel findFeel(long id) {
+        return feelTreeSet != null ? feelTreeSet.getById(id) : getPagedFeels().findById(id);
+    }
+
+    /**
+     * Delete a displayed or searched {@code Feel} from FeelsBook.
+     * <p>
+     * If the window of the {@code PagedFeelList} is stale, as the {@code Feel} sorts within it
+     * but is not within it, the {@code Feel} is deleted all the same and the window is reloaded.
+     *
+     * @param id {@code long} the id of the {@code Feel}.
+     * @return {@code boolean} {@code true} if the {@code Feel} was deleted.
+     */
+    boolean deleteFeel(long id) {
+        final Feel feel = findFeel(id);
+        if (feel == null) {
+            return false;
+        }
+        int position = getPagedFeels().remove(feel);
+        if (feelTreeSet != null) {
+            feelTreeSet.remove(feel);
+        }
+        updateTally(feel, -1);
+        write(Collections.singletonList(feel), Collections.<Feel>emptyList(), new Runnable() {
+            @Override
+            public void run() {
+                feelStore.remove(feel);
+            }
+        });
+        if (position < 0) {
+            refreshStaleWindow();
+        } else {
+            notifyFeelsChanged(FeelChange.removed(position));
+        }
+        return true;
+    }
+
+    /**
+     * Replace a displayed or searched {@code Feel} with its edited version of the same id.
+     * <p>
+     * As with {@code deleteFeel}, a stale window of the {@code PagedFeelList} is reloaded rather
+     * than dropping the edit.
+     *
+     * @param editedFeel {@code Feel}
+     * @return {@code boolean} {@code true} if the {@code Feel} was edited.
+     */
+    boolean editFeel(final Feel editedFeel) {
+        final Feel oldFeel = findFeel(editedFeel.getId());
+        if (oldFeel == null) {
+            return false;
+        }
+        int position = getPagedFeels().remove(oldFeel);
+        if (feelTreeSet != null) {
+            feelTreeSet.replace(oldFeel, editedFeel);
+        }
+        int newPosition = position < 0 ? -1 : pagedFeels.insert(editedFeel);
+        updateTally(oldFeel, -1);
+        updateTally(editedFeel, 1);
+        write(Collections.singletonList(oldFeel), Collections.singletonList(editedFeel), new Runnable() {
+            @Override
+            public void run() {
+                feelStore.edit(oldFeel, editedFeel);
+            }
+        });
+        if (position < 0) {
+            refreshStaleWindow();
+        } else {
+            notifyFeelsChanged(FeelChange.moved(position, newPosition));
+        }
+        return true;
+    }
+
+    /**
+     * Reload the window of the {@code PagedFeelList} after a modification it could not place,
+     * the reload is read after the write of the modification.
+     */
+    private void refreshStaleWindow() {
+        pagedFeels.refresh();
+        notifyFeelsChanged(FeelChange.reset(null));
+    }
+
+    private void updateTally(Feel feel, int amount) {
+        if (feelingTallies != null) {
+            feelingTallies[feel.getFeeling().ordinal()] += amount;
+            tallySnapshot = null;
+        }
+        if (feelHeatmap != null) {
+            feelHeatmap.update(feel.getFeeling().ordinal(), feel.getDate().getTime(), amount);
+        }
+    }
+
+    private void notifyFeelsChanged(FeelChange change) {
+        // iterate over a copy so listeners can unregister themselves while being notified
+        for (OnFeelsChangedListener listener : new ArrayList<>(listeners)) {
+            listener.onFeelsChanged(change);
+        }
+    }
+
+    /**
+     * A modification of the {@code Feel}s, numbered in the order the modifications were made.
+     */
+    private static final class Modification {
+        final long number;
+        final Collection<Feel> removed;
+        final Collection<Feel> added;
+
+        Modification(long number, Collection<Feel> removed, Collection<Feel> added) {
+            this.number = number;
+            this.removed = removed;
+            this.added = added;
+        }
+    }
+
+    /**
+     * A read of the complete {@code FeelTreeSet} made by {@code readFeelTreeSet}.
+     *
+     * @param <T> the type of what is read.
+     */
+    private interface FeelTreeSetRead<T> {
+        /**
+         * Called on the background read thread.
+         *
+         * @param feelTreeSet {@code ConcurrentFeelTreeSet}
+         * @return {@code T}
+         */
+        T read(ConcurrentFeelTreeSet feelTreeSet);
+    }
+
+    /**
+     * A read of the {@code FeelStore} made by {@code readFeelStore}.
+     *
+     * @param <T> the type of what is read.
+     */
+    private interface FeelStoreRead<T> {
+        /**
+         * Called on the {@code PersistenceExecutor} thread to read from the {@code FeelStore}.
+         *
+         * @return {@code T}
+         */
+        T read();
+
+        /**
+         * Called on the main thread with what was read.
+         *
+         * @param result              {@code T}
+         * @param unreadModifications {@code List<Modification>} the modifications made after the
+         *                            read, in the order they were made.
+         */
+        void onRead(T result, List<Modification> unreadModifications);
+    }
+
+    /**
+     * Interface for being notified of modifications to the {@code FeelRepository}'s
+     * {@code Feel}s, and of pages loaded into its {@code PagedFeelList}.
+     * <p>
+     * This is implemented by {@code FeelTab}, {@code StatsTab}, and {@code MainActivity}.
+     */
+    interface OnFeelsChangedListener {
+        /**
+         * Called on the main thread after the {@code Feel}s were modified or loaded.
+         *
+         * @param change {@code FeelChange} describing the modification.
+         */
+        void onFeelsChanged(FeelChange change);
+    }
+
+    /**
+     * Interface for receiving what the {@code FeelRepository} read or computed off the main
+     * thread.
+     *
+     * @param <T> the type of the result.
+     */
+    interface OnLoadedListener<T> {
+        /**
+         * Called on the main thread once loaded.
+         *
+         * @param result {@code T}
+         */
+        void onLoaded(T result);
+    }
+
+    /**
+     * The result of a transfer that finished while no {@code OnTransferListener} was attached.
+     */
+    private static final class TransferFinished {
+        final int count;
+        final IOException error;
+
+        TransferFinished(int count, IOException error) {
+            this.count = count;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Interface for being notified of the progress of {@code importFeels} and {@code exportFeels}.
+     * <p>
+     * This is implemented by {@code MainActivity}, attached while it is created.
+     *
+     * @see #attachTransferListener(OnTransferListener)
+     */
+    interface OnTransferListener {
+        /**
+         * Called on the main thread as the transfer progresses.
+         *
+         * @param progress {@code long} the bytes read by an import, or {@code Feel}s written by an export.
+         * @param max      {@code long} the total of {@code progress}, or {@code -1} if unknown.
+         */
+        void onTransferProgress(long progress, long max);
+
+        /**
+         * Called on the main thread once the transfer finished.
+         *
+         * @param count {@code int} the number of {@code Feel}s imported or exported.
+         * @param error {@code IOException} why the transfer failed, or {@code null} if it succeeded.
+         */
+        void onTransferFinished(int count, IOException error);
+    }
+}
@@ -7,12 +7,17 @@ import android.support.design.widget.FloatingActionButton;
 import android.support.v4.app.Fragment;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.SearchView;
 import android.view.*;
 import android.widget.FrameLayout;
 import android.widget.LinearLayout;
 import android.widget.PopupMenu;
 import android.widget.TextView;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
 import static android.view.Gravity.BOTTOM;
 import static android.view.Gravity.END;
 import static ca.klapstein.nklapste_feelsbook.Feel.dateFormat;
@@ -23,12 +28,25 @@ import static ca.klapstein.nklapste_feelsbook.Feel.dateFormat;
  * to add new {@code Feel}s.
  * <p>
  * This acts as the "main" screen for FeelsBook.
+ * <p>
+ * The {@code SearchView} above the history narrows it down to the {@code Feel}s whose comment
+ * matches the query, searched off the main thread as it is typed. At most one search is in
+ * flight, queries typed and modifications made meanwhile are searched once it is done. While
+ * searching, all {@code Feel}s matching the query can be deleted at once.
  */
-public class FeelTab extends Fragment {
+public class FeelTab extends Fragment implements FeelRepository.OnFeelsChangedListener {
     private static final String TAG = "FeelTab";
 
+    /**
+     * The maximum number of {@code Feel}s displayed for a search.
+     */
+    private static final int SEARCH_LIMIT = 500;
+
     private FeelAdapter mFeelAdapter;
-    private FeelTreeSet mFeelTreeSet;
+    private FeelRepository mFeelRepository;
+    private String mSearchQuery = "";
+    private boolean mSearching;
+    private boolean mSearchStale;
 
     @Nullable
     @Override
@@ -38,8 +56,9 @@ public class FeelTab extends Fragment {
 
     @Override
     public void onViewCreated(@NonNull View view, Bundle savedInstanceState) {
-        mFeelTreeSet = FeelsBookPreferencesManager.loadSharedPreferencesFeelList(getContext().getApplicationContext());
-        mFeelAdapter = new FeelAdapter(mFeelTreeSet);
+        mFeelRepository = FeelRepository.getInstance(getContext());
+        mFeelAdapter = new FeelAdapter(mFeelRepository.getPagedFeels());
+        mFeelRepository.addOnFeelsChangedListener(this);
 
         // define the RecyclerView listing Feels
         RecyclerView mFeelsRecyclerView = view.findViewById(R.id.feels_recycler_view);
@@ -59,10 +78,31 @@ public class FeelTab extends Fragment {
             }
         }));
 
+        SearchView searchView = view.findViewById(R.id.feels_search_view);
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                search(query);
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String query) {
+                search(query);
+                return true;
+            }
+        });
+
         // create the buttons to add a feel of each Feeling
         createAddFeelButtons(view);
     }
 
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        mFeelRepository.removeOnFeelsChangedListener(this);
+    }
+
     /**
      * Dynamically create a FloatingActionButton for creating a {@code Feel} with a
      * default {@code Feeling}.
@@ -110,32 +150,42 @@ public class FeelTab extends Fragment {
      * This menu provides two options:
      * 1. Edit the {@code Feel}.
      * 2. Delete the {@code Feel}.
+     * <p>
+     * While searching, a third option deletes all search results.
      *
      * @param view     {@code View}
      * @param position {@code int}
      * @see EditFeelDialog
      */
     private void onFeelListItemClick(View view, final int position) {
+        final Feel feel = mFeelAdapter.getFeel(position);
+        if (feel == null) {
+            // placeholder row whose page is still loading
+            return;
+        }
         //creating a popup menu
         PopupMenu popup = new PopupMenu(getContext(), view);
 
-        final Feel feel = (Feel) mFeelTreeSet.toArray()[position];
         //inflating menu from xml resource
         popup.inflate(R.menu.feel_options_menu);
+        popup.getMenu().findItem(R.id.button_delete_search_results).setVisible(!mSearchQuery.isEmpty());
         //adding click listener
         popup.setOnMenuItemClickListener(new PopupMenu.OnMenuItemClickListener() {
             @Override
             public boolean onMenuItemClick(MenuItem item) {
                 switch (item.getItemId()) {
                     case R.id.button_delete:
-                        deleteFeel(feel);
+                        deleteFeel(feel.getId());
+                        return true;
+                    case R.id.button_delete_search_results:
+                        deleteSearchResults();
                         return true;
                     case R.id.button_edit_feeling:
                         // create and show the EditFeelDialog
                         EditFeelDialog editFeelDialog = new EditFeelDialog();
                         Bundle args = new Bundle();
                         // editFeelDialog requires some extra arguments noting the Feel to be edited
-                        args.putInt(EditFeelDialog.POSITION_ARG_TAG, position);
+                        args.putLong(EditFeelDialog.ID_ARG_TAG, feel.getId());
                         args.putString(EditFeelDialog.FEELING_ARG_TAG, feel.getFeeling().toString());
                         args.putString(EditFeelDialog.COMMENT_ARG_TAG, feel.getComment());
                         args.putString(EditFeelDialog.DATE_ARG_TAG, dateFormat.format(feel.getDate()));
@@ -151,50 +201,104 @@ public class FeelTab extends Fragment {
     }
 
     /**
-     * Delete a {@code Feel} from the {@code mFeelTreeSet}.
-     * <p>
-     * Also do an update call with the {@code FeelAdapter} and save the changes
-     * with {@code FeelsBookPreferencesManager}.
+     * Delete a {@code Feel} from the FeelsBook {@code FeelRepository}.
      *
-     * @param feel {@code Feel}
+     * @param id {@code long} the id of the {@code Feel}.
      */
-    public void deleteFeel(Feel feel) {
-        mFeelTreeSet.remove(feel);
-        mFeelAdapter.notifyDataSetChanged();
-        FeelsBookPreferencesManager.saveSharedPreferencesFeelList(getContext().getApplicationContext(), mFeelTreeSet);
+    public void deleteFeel(long id) {
+        mFeelRepository.deleteFeel(id);
     }
 
     /**
-     * Add a {@code Feel} into the {@code mFeelTreeSet}.
-     * <p>
-     * Also do an update call with the {@code FeelAdapter} and save the changes
-     * with {@code FeelsBookPreferencesManager}.
+     * Add a batch of {@code Feel}s into the FeelsBook {@code FeelRepository}, persisted in one
+     * write.
      *
-     * @param feel {@code Feel}
+     * @param feels {@code Collection<Feel>}
+     * @return {@code int} the number of {@code Feel}s that were added.
      */
-    public void addFeel(Feel feel) {
-        mFeelTreeSet.add(feel);
-        mFeelAdapter.notifyDataSetChanged();
-        FeelsBookPreferencesManager.saveSharedPreferencesFeelList(getContext().getApplicationContext(), mFeelTreeSet);
+    public int addFeels(Collection<Feel> feels) {
+        return mFeelRepository.addFeels(feels);
     }
 
     /**
-     * Edit a Feel within the {@code mFeelTreeSet}.
-     * <p>
-     * Remove the original {@code Feel} from the {@code mFeelTreeSet} and replace it
-     * with the new {@code Feel}.
+     * Delete a batch of {@code Feel}s from the FeelsBook {@code FeelRepository}, persisted in one
+     * write.
+     *
+     * @param ids {@code Collection<Long>} the ids of the {@code Feel}s.
+     * @return {@code int} the number of {@code Feel}s that were deleted.
+     */
+    public int deleteFeels(Collection<Long> ids) {
+        return mFeelRepository.deleteFeels(ids);
+    }
+
+    /**
+     * Delete all {@code Feel}s matching the current search, once they were searched.
+     */
+    private void deleteSearchResults() {
+        mFeelRepository.searchFeels(mSearchQuery, Integer.MAX_VALUE, new FeelRepository.OnLoadedListener<List<Feel>>() {
+            @Override
+            public void onLoaded(List<Feel> results) {
+                List<Long> ids = new ArrayList<>(results.size());
+                for (Feel result : results) {
+                    ids.add(result.getId());
+                }
+                deleteFeels(ids);
+            }
+        });
+    }
+
+    /**
+     * Display the {@code Feel}s whose comment matches a query, or the complete history if the
+     * query is empty.
+     *
+     * @param query {@code String}
+     */
+    private void search(String query) {
+        mSearchQuery = query.trim();
+        if (mSearchQuery.isEmpty()) {
+            mFeelAdapter.setSearchResults(null);
+            return;
+        }
+        if (mSearching) {
+            mSearchStale = true;
+            return;
+        }
+        mSearching = true;
+        final String searchedQuery = mSearchQuery;
+        mFeelRepository.searchFeels(searchedQuery, SEARCH_LIMIT, new FeelRepository.OnLoadedListener<List<Feel>>() {
+            @Override
+            public void onLoaded(List<Feel> results) {
+                mSearching = false;
+                if (getView() == null) {
+                    mSearchStale = false;
+                    return;
+                }
+                if (mSearchStale) {
+                    mSearchStale = false;
+                    search(mSearchQuery);
+                }
+                // results of a query since cleared or replaced are dropped
+                if (searchedQuery.equals(mSearchQuery)) {
+                    mFeelAdapter.setSearchResults(results);
+                }
+            }
+        });
+    }
+
+    /**
+     * Update the {@code FeelAdapter} when the {@code FeelRepository}'s {@code Feel}s were
+     * modified or loaded.
      * <p>
-     * Also do an update call with the {@code FeelAdapter} and save the changes
-     * with {@code FeelsBookPreferencesManager}.
+     * While searching, modifications search again instead, and loaded pages are not displayed.
      *
-     * @param newFeel  {@code Feel}
-     * @param position {@code int} position the {@code Feel} is within the {@code mFeelTreeSet}.
+     * @param change {@code FeelChange}
      */
-    public void editFeel(Feel newFeel, final int position) {
-        Feel oldFeel = (Feel) mFeelTreeSet.toArray()[position];
-        mFeelTreeSet.remove(oldFeel);
-        mFeelTreeSet.add(newFeel);
-        mFeelAdapter.notifyDataSetChanged();
-        FeelsBookPreferencesManager.saveSharedPreferencesFeelList(getContext().getApplicationContext(), mFeelTreeSet);
+    @Override
+    public void onFeelsChanged(FeelChange change) {
+        if (mSearchQuery.isEmpty()) {
+            mFeelAdapter.onFeelsChanged(change);
+        } else if (change.type != FeelChange.LOADED) {
+            search(mSearchQuery);
+        }
     }
 }
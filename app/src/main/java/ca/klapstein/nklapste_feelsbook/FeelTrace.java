@@ -0,0 +1,67 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import android.os.Trace;
+
+
+/**
+ * Helper Class timing a section of code into a {@code LatencyHistogram} of {@code FeelMetrics},
+ * while marking it as an {@code android.os.Trace} section of the same name, so systrace and
+ * Perfetto captures line up with the metrics.
+ * <p>
+ * Sections must end on the thread they began on, in the reverse order they began:
+ * <pre>
+ * long start = FeelTrace.begin(LATENCY);
+ * try {
+ *     ...
+ * } finally {
+ *     FeelTrace.end(LATENCY, start);
+ * }
+ * </pre>
+ */
+final class FeelTrace {
+    private static final String TAG = "FeelTrace";
+
+    /**
+     * Whether {@code android.os.Trace} can be called, it cannot within JVM unit tests.
+     */
+    private static final boolean TRACE_AVAILABLE = isTraceAvailable();
+
+    private FeelTrace() {
+    }
+
+    private static boolean isTraceAvailable() {
+        try {
+            Trace.beginSection(TAG);
+            Trace.endSection();
+            return true;
+        } catch (RuntimeException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * Begin a section.
+     *
+     * @param histogram {@code LatencyHistogram} whose name is the name of the section.
+     * @return {@code long} the start of the section in {@code System.nanoTime}.
+     */
+    static long begin(LatencyHistogram histogram) {
+        if (TRACE_AVAILABLE) {
+            Trace.beginSection(histogram.getName());
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * End the section last begun on this thread, recording its latency.
+     *
+     * @param histogram  {@code LatencyHistogram} the section began with.
+     * @param startNanos {@code long} returned by {@code begin}.
+     */
+    static void end(LatencyHistogram histogram, long startNanos) {
+        histogram.record(System.nanoTime() - startNanos);
+        if (TRACE_AVAILABLE) {
+            Trace.endSection();
+        }
+    }
+}
@@ -2,37 +2,125 @@ package ca.klapstein.nklapste_feelsbook;
 
 import android.content.Context;
 import android.content.SharedPreferences;
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
 
-import java.lang.reflect.Type;
+import java.io.File;
+import java.io.StringReader;
 
 
 /**
  * Helper Class for accessing the  Android's SharedPreferences for use in FeelsBook.
  * <p>
- * Use {@code Gson} to serialize/deserialize FeelTreeSet to/from a JSON string for saving/loading
- * in Android's SharedPreferences.
+ * Use {@code FeelTreeSetJson} to serialize/deserialize FeelTreeSet to/from a JSON string for
+ * saving/loading in Android's SharedPreferences.
+ * <p>
+ * FeelsBook now persists its {@code FeelTreeSet} within a {@code FeelJournal}, or an
+ * {@code SQLiteFeelStore} if {@code R.bool.use_sqlite_feel_store} is set, obtained by
+ * {@code getFeelStore}. The SharedPreferences JSON string is only read once to migrate it into
+ * the {@code FeelStore} by {@code migrateFeelStore}, on the {@code PersistenceExecutor} thread.
  */
 class FeelsBookPreferencesManager {
     private static final String TAG = "FeelsBookPreferencesManager";
 
-    private static final String FEELS_TREESET_PREF_NAME = "mFeelsTreeSet";
-    private static final String FEELS_TREESET_PREF_JSON_KEY = "mFeelTreeSetJson";
+    static final String FEELS_TREESET_PREF_NAME = "mFeelsTreeSet";
+    static final String FEELS_TREESET_PREF_JSON_KEY = "mFeelTreeSetJson";
+    private static final String FEELS_JOURNAL_FILE_NAME = "feels.journal";
+
+    private static FeelStore feelStore;
 
     /**
-     * Save a {@code FeelTreeSet} using Android's SharedPreferences.
+     * Get the process wide {@code FeelStore} used to persist the FeelsBook {@code FeelTreeSet}.
+     * <p>
+     * Getting the {@code FeelStore} does not touch the disk, it is opened on first use, which
+     * must follow {@code migrateFeelStore}.
+     *
+     * @param context {@code Context}
+     * @return {@code FeelStore}
+     */
+    static synchronized FeelStore getFeelStore(Context context) {
+        if (feelStore == null) {
+            if (context.getResources().getBoolean(R.bool.use_sqlite_feel_store)) {
+                feelStore = new SQLiteFeelStore(context, SQLiteFeelStore.DATABASE_NAME);
+            } else {
+                feelStore = new FeelJournal(getJournalFile(context));
+            }
+        }
+        return feelStore;
+    }
+
+    /**
+     * Migrate any {@code FeelTreeSet} still saved in Android's SharedPreferences, or for an
+     * {@code SQLiteFeelStore} an existing {@code FeelJournal}, into the {@code FeelStore} of
+     * {@code getFeelStore}, removing it from the SharedPreferences.
+     * <p>
+     * This reads and writes the disk, and on a large history takes long, so it is run on the
+     * {@code PersistenceExecutor} thread as its first task, before any other use of the
+     * {@code FeelStore}.
+     *
+     * @param context {@code Context}
+     */
+    static synchronized void migrateFeelStore(Context context) {
+        FeelStore store = getFeelStore(context);
+        File journalFile = getJournalFile(context);
+        if (store instanceof SQLiteFeelStore) {
+            migrateToSQLiteFeelStore(context, (SQLiteFeelStore) store, journalFile);
+        } else {
+            migrateSharedPreferencesFeelList(context, (FeelJournal) store, journalFile);
+        }
+    }
+
+    private static File getJournalFile(Context context) {
+        return new File(context.getFilesDir(), FEELS_JOURNAL_FILE_NAME);
+    }
+
+    /**
+     * Migrate the {@code FeelTreeSet} JSON string saved in Android's SharedPreferences into the
+     * {@code FeelJournal}.
+     * <p>
+     * The SharedPreferences key is only removed after the {@code FeelJournal} was written, thus,
+     * if the migration is interrupted it is simply retried on the next start.
      *
      * @param context     {@code Context}
-     * @param feelTreeSet {@code FeelTreeSet}
+     * @param feelJournal {@code FeelJournal}
+     * @param journalFile {@code File} the file backing the {@code FeelJournal}.
+     */
+    private static void migrateSharedPreferencesFeelList(Context context, FeelJournal feelJournal, File journalFile) {
+        SharedPreferences mPrefs = context.getSharedPreferences(FEELS_TREESET_PREF_NAME, Context.MODE_PRIVATE);
+        if (!mPrefs.contains(FEELS_TREESET_PREF_JSON_KEY)) {
+            return;
+        }
+        if (!journalFile.exists()) {
+            feelJournal.rewrite(loadSharedPreferencesFeelList(context));
+        }
+        mPrefs.edit().remove(FEELS_TREESET_PREF_JSON_KEY).commit();
+    }
+
+    /**
+     * Migrate the {@code Feel}s of an existing {@code FeelJournal}, or else the
+     * {@code FeelTreeSet} JSON string saved in Android's SharedPreferences, into an empty
+     * {@code SQLiteFeelStore}.
+     * <p>
+     * The {@code FeelJournal} file is left in place, so switching back to it only loses the
+     * modifications made while using the {@code SQLiteFeelStore}.
+     *
+     * @param context         {@code Context}
+     * @param sqliteFeelStore {@code SQLiteFeelStore}
+     * @param journalFile     {@code File} the file backing the {@code FeelJournal}.
      */
-    static void saveSharedPreferencesFeelList(Context context, FeelTreeSet feelTreeSet) {
+    static void migrateToSQLiteFeelStore(Context context, SQLiteFeelStore sqliteFeelStore, File journalFile) {
         SharedPreferences mPrefs = context.getSharedPreferences(FEELS_TREESET_PREF_NAME, Context.MODE_PRIVATE);
-        SharedPreferences.Editor prefsEditor = mPrefs.edit();
-        Gson gson = new Gson();
-        String json = gson.toJson(feelTreeSet);
-        prefsEditor.putString(FEELS_TREESET_PREF_JSON_KEY, json);
-        prefsEditor.apply();
+        boolean hasSharedPreferencesFeelList = mPrefs.contains(FEELS_TREESET_PREF_JSON_KEY);
+        if (sqliteFeelStore.getCount() == 0) {
+            if (journalFile.exists()) {
+                FeelJournal feelJournal = new FeelJournal(journalFile);
+                sqliteFeelStore.rewrite(feelJournal.load());
+                feelJournal.close();
+            } else if (hasSharedPreferencesFeelList) {
+                sqliteFeelStore.rewrite(loadSharedPreferencesFeelList(context));
+            }
+        }
+        if (hasSharedPreferencesFeelList) {
+            mPrefs.edit().remove(FEELS_TREESET_PREF_JSON_KEY).commit();
+        }
     }
 
     /**
@@ -44,14 +132,11 @@ class FeelsBookPreferencesManager {
     static FeelTreeSet loadSharedPreferencesFeelList(Context context) {
         FeelTreeSet feelTreeSet;
         SharedPreferences mPrefs = context.getSharedPreferences(FEELS_TREESET_PREF_NAME, Context.MODE_PRIVATE);
-        Gson gson = new Gson();
         String json = mPrefs.getString(FEELS_TREESET_PREF_JSON_KEY, "");
         if (json.isEmpty()) {
             feelTreeSet = new FeelTreeSet();
         } else {
-            Type type = new TypeToken<FeelTreeSet>() {
-            }.getType();
-            feelTreeSet = gson.fromJson(json, type);
+            feelTreeSet = FeelTreeSetJson.readFeelTreeSet(new StringReader(json));
         }
         return feelTreeSet;
     }
@@ -1,9 +1,25 @@
 package ca.klapstein.nklapste_feelsbook;
 
+import android.content.Intent;
+import android.database.Cursor;
+import android.net.Uri;
 import android.os.Bundle;
+import android.provider.OpenableColumns;
 import android.support.design.widget.TabLayout;
 import android.support.v4.view.ViewPager;
+import android.support.v7.app.AlertDialog;
 import android.support.v7.app.AppCompatActivity;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.widget.ProgressBar;
+import android.widget.Toast;
+
+import java.io.FileDescriptor;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Locale;
 
 
 /**
@@ -12,10 +28,39 @@ import android.support.v7.app.AppCompatActivity;
  * Start a {@code FeelsBookFragmentPagerAdapter} and begin displaying the internal fragments
  * such as {@code FeelTab} and {@code StatsTab}. As such MainActivity acts more as a glue class
  * tying the various Fragments together.
+ * <p>
+ * The results of the {@code AddFeelDialog} and {@code EditFeelDialog} are passed on to the
+ * {@code FeelRepository} which notifies the Fragments of the changes.
+ * <p>
+ * The options menu imports {@code Feel}s from and exports them to CSV or JSON files picked
+ * through the Storage Access Framework, showing the progress of the transfer in a dialog. The
+ * {@code FeelRepository} only holds on to MainActivity as its {@code OnTransferListener} from
+ * {@code onCreate} to {@code onDestroy}, a recreated MainActivity shows the dialog again and is
+ * notified of the transfer in flight.
+ * <p>
+ * {@code dumpsys activity} dumps the {@code FeelMetrics} report, as JSON if given {@code --json}.
  */
-public class MainActivity extends AppCompatActivity implements ModifyFeelDialog.OnPositiveButtonClickListener {
+public class MainActivity extends AppCompatActivity implements ModifyFeelDialog.OnPositiveButtonClickListener,
+        FeelRepository.OnTransferListener {
     private static final String TAG = "MainActivity";
+    private static final int REQUEST_IMPORT = 1;
+    private static final int REQUEST_EXPORT_CSV = 2;
+    private static final int REQUEST_EXPORT_JSON = 3;
+    private static final String STATE_TRANSFER_TITLE_ID = "transferTitleId";
+    private static final String STATE_TRANSFER_FINISHED_MESSAGE_ID = "transferFinishedMessageId";
+    /**
+     * The resolution of the transfer {@code ProgressBar}, as the bytes of an import may not fit
+     * within its {@code int} range.
+     */
+    private static final int PROGRESS_MAX = 1000;
+    private static final String[] IMPORT_MIME_TYPES = {FeelFileFormat.CSV.getMimeType(),
+            "text/comma-separated-values", "text/plain", FeelFileFormat.JSON.getMimeType()};
     private ViewPager mViewPager;
+    private FeelRepository mFeelRepository;
+    private AlertDialog mTransferDialog;
+    private ProgressBar mTransferProgressBar;
+    private int mTransferTitleId;
+    private int mTransferFinishedMessageId;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -28,21 +73,205 @@ public class MainActivity extends AppCompatActivity implements ModifyFeelDialog.
         // Give the TabLayout the ViewPager
         TabLayout tabLayout = findViewById(R.id.sliding_tabs);
         tabLayout.setupWithViewPager(mViewPager);
+
+        mFeelRepository = FeelRepository.getInstance(this);
+        if (savedInstanceState != null && savedInstanceState.containsKey(STATE_TRANSFER_TITLE_ID)
+                && mFeelRepository.isTransferring()) {
+            showTransferDialog(savedInstanceState.getInt(STATE_TRANSFER_TITLE_ID),
+                    savedInstanceState.getInt(STATE_TRANSFER_FINISHED_MESSAGE_ID));
+        }
+        mFeelRepository.attachTransferListener(this);
+    }
+
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        if (mTransferDialog != null) {
+            outState.putInt(STATE_TRANSFER_TITLE_ID, mTransferTitleId);
+            outState.putInt(STATE_TRANSFER_FINISHED_MESSAGE_ID, mTransferFinishedMessageId);
+        }
     }
 
     /**
-     * Get the active FeelTab from the MainActivities ViewPager.
+     * Start writing out any {@code Feel} modifications still waiting to be persisted before
+     * FeelsBook leaves the foreground, the writes run on the background writer thread.
+     */
+    @Override
+    protected void onPause() {
+        super.onPause();
+        mFeelRepository.flush();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mFeelRepository.detachTransferListener(this);
+        if (mTransferDialog != null) {
+            mTransferDialog.dismiss();
+            mTransferDialog = null;
+        }
+    }
+
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(prefix, fd, writer, args);
+        writer.print(prefix);
+        writer.println("FeelMetrics:");
+        if (Arrays.asList(args).contains("--json")) {
+            writer.print(prefix);
+            writer.println(FeelMetrics.toJson());
+        } else {
+            for (String line : FeelMetrics.toText().split("\n")) {
+                writer.print(prefix);
+                writer.println(line);
+            }
+        }
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.main_options_menu, menu);
+        return true;
+    }
+
+    /**
+     * Let the user pick the file to import from, or create the file to export to.
      *
-     * @return {@code FeelTab}
+     * @param item {@code MenuItem}
+     * @return {@code boolean}
      */
-    private FeelTab getFeelingsTab() {
-        int index = mViewPager.getCurrentItem();
-        FeelsBookFragmentPagerAdapter adapter = ((FeelsBookFragmentPagerAdapter) mViewPager.getAdapter());
-        return (FeelTab) adapter.getFragment(index);
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        switch (item.getItemId()) {
+            case R.id.button_import: {
+                Intent intent = new Intent(Intent.ACTION_OPEN_DOCUMENT);
+                intent.addCategory(Intent.CATEGORY_OPENABLE);
+                intent.setType("*/*");
+                intent.putExtra(Intent.EXTRA_MIME_TYPES, IMPORT_MIME_TYPES);
+                startActivityForResult(intent, REQUEST_IMPORT);
+                return true;
+            }
+            case R.id.button_export_csv:
+                startActivityForResult(createExportIntent(FeelFileFormat.CSV), REQUEST_EXPORT_CSV);
+                return true;
+            case R.id.button_export_json:
+                startActivityForResult(createExportIntent(FeelFileFormat.JSON), REQUEST_EXPORT_JSON);
+                return true;
+            default:
+                return super.onOptionsItemSelected(item);
+        }
+    }
+
+    private Intent createExportIntent(FeelFileFormat format) {
+        Intent intent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
+        intent.addCategory(Intent.CATEGORY_OPENABLE);
+        intent.setType(format.getMimeType());
+        intent.putExtra(Intent.EXTRA_TITLE,
+                getString(R.string.export_file_name) + "." + format.name().toLowerCase(Locale.ROOT));
+        return intent;
+    }
+
+    /**
+     * Start importing from or exporting to the file picked through the Storage Access Framework.
+     *
+     * @param requestCode {@code int}
+     * @param resultCode  {@code int}
+     * @param data        {@code Intent} holding the {@code Uri} of the picked file.
+     */
+    @Override
+    protected void onActivityResult(int requestCode, int resultCode, Intent data) {
+        super.onActivityResult(requestCode, resultCode, data);
+        if (resultCode != RESULT_OK || data == null || data.getData() == null) {
+            return;
+        }
+        Uri uri = data.getData();
+        try {
+            switch (requestCode) {
+                case REQUEST_IMPORT:
+                    mFeelRepository.importFeels(getContentResolver().openInputStream(uri), querySize(uri));
+                    showTransferDialog(R.string.importing_feels, R.string.imported_feels);
+                    break;
+                case REQUEST_EXPORT_CSV:
+                case REQUEST_EXPORT_JSON:
+                    FeelFileFormat format = requestCode == REQUEST_EXPORT_CSV ? FeelFileFormat.CSV : FeelFileFormat.JSON;
+                    mFeelRepository.exportFeels(format, getContentResolver().openOutputStream(uri));
+                    showTransferDialog(R.string.exporting_feels, R.string.exported_feels);
+                    break;
+                default:
+                    break;
+            }
+        } catch (FileNotFoundException e) {
+            onTransferFinished(0, e);
+        }
+    }
+
+    /**
+     * Get the size of the file at a {@code Uri} for the progress of an import.
+     *
+     * @param uri {@code Uri}
+     * @return {@code long} the size in bytes, or {@code -1} if unknown.
+     */
+    private long querySize(Uri uri) {
+        Cursor cursor = getContentResolver().query(uri, new String[]{OpenableColumns.SIZE}, null, null, null);
+        if (cursor == null) {
+            return -1;
+        }
+        try {
+            return cursor.moveToFirst() && !cursor.isNull(0) ? cursor.getLong(0) : -1;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void showTransferDialog(int titleId, int finishedMessageId) {
+        mTransferTitleId = titleId;
+        mTransferFinishedMessageId = finishedMessageId;
+        mTransferProgressBar = new ProgressBar(this, null, android.R.attr.progressBarStyleHorizontal);
+        mTransferProgressBar.setMax(PROGRESS_MAX);
+        mTransferProgressBar.setIndeterminate(true);
+        mTransferDialog = new AlertDialog.Builder(this)
+                .setTitle(titleId)
+                .setView(mTransferProgressBar)
+                .setCancelable(false)
+                .show();
+    }
+
+    @Override
+    public void onTransferProgress(long progress, long max) {
+        if (mTransferProgressBar == null || max <= 0) {
+            return;
+        }
+        mTransferProgressBar.setIndeterminate(false);
+        mTransferProgressBar.setProgress((int) (Math.min(progress, max) * PROGRESS_MAX / max));
+    }
+
+    /**
+     * Dismiss the transfer dialog and report how the transfer went.
+     *
+     * @param count {@code int} the number of {@code Feel}s imported or exported.
+     * @param error {@code IOException} why the transfer failed, or {@code null} if it succeeded.
+     */
+    @Override
+    public void onTransferFinished(int count, IOException error) {
+        if (isFinishing() || isDestroyed()) {
+            return;
+        }
+        if (mTransferDialog != null) {
+            mTransferDialog.dismiss();
+            mTransferDialog = null;
+            mTransferProgressBar = null;
+        }
+        String message;
+        if (error != null) {
+            message = getString(R.string.transfer_failed, error.getMessage());
+        } else {
+            message = getString(mTransferFinishedMessageId, count);
+        }
+        Toast.makeText(this, message, Toast.LENGTH_LONG).show();
     }
 
     /**
-     * Interface hooks to pass the result from AddFeelDialog back to the FeelTab.
+     * Interface hooks to pass the result from AddFeelDialog to the FeelRepository.
      * <p>
      * This allows for inter-DialogFragment communication.
      *
@@ -51,22 +280,19 @@ public class MainActivity extends AppCompatActivity implements ModifyFeelDialog.
      */
     @Override
     public void onAddButtonClick(Feel feel) {
-        FeelTab feelTab = getFeelingsTab();
-        feelTab.addFeel(feel);
+        mFeelRepository.addFeel(feel);
     }
 
     /**
-     * Interface hooks to pass the result from EditFeelDialog back to the FeelTab.
+     * Interface hooks to pass the result from EditFeelDialog to the FeelRepository.
      * <p>
      * This allows for inter-DialogFragment communication.
      *
-     * @param feel     {@code Feel}
-     * @param position {@code int}
+     * @param editedFeel {@code Feel} the edited version of the {@code Feel} of the same id.
      * @see EditFeelDialog
      */
     @Override
-    public void onEditButtonClick(Feel feel, final int position) {
-        FeelTab feelTab = getFeelingsTab();
-        feelTab.editFeel(feel, position);
+    public void onEditButtonClick(Feel editedFeel) {
+        mFeelRepository.editFeel(editedFeel);
     }
 }
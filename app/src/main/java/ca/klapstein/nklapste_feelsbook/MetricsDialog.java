@@ -0,0 +1,59 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import android.app.Dialog;
+import android.content.ClipData;
+import android.content.ClipboardManager;
+import android.content.Context;
+import android.content.DialogInterface;
+import android.graphics.Typeface;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.v4.app.DialogFragment;
+import android.support.v7.app.AlertDialog;
+import android.widget.ScrollView;
+import android.widget.TextView;
+
+
+/**
+ * Hidden debug screen displaying the {@code FeelMetrics} report, opened by long pressing the
+ * tallies of the {@code StatsTab}.
+ * <p>
+ * The JSON report can be copied to the clipboard, and the metrics can be reset, e.g. before
+ * repeating a scenario. Both reports can also be dumped without the screen through
+ * {@code adb shell dumpsys activity ca.klapstein.nklapste_feelsbook/.MainActivity [--json]}.
+ *
+ * @see MainActivity#dump
+ */
+public class MetricsDialog extends DialogFragment {
+    public static final String TAG = "MetricsDialog";
+
+    @NonNull
+    @Override
+    public Dialog onCreateDialog(Bundle savedInstanceState) {
+        int padding = getResources().getDimensionPixelSize(R.dimen.activity_horizontal_margin);
+        final TextView reportText = new TextView(getContext());
+        reportText.setTypeface(Typeface.MONOSPACE);
+        reportText.setTextIsSelectable(true);
+        reportText.setPadding(padding, padding, padding, padding);
+        reportText.setText(FeelMetrics.toText());
+        ScrollView scrollView = new ScrollView(getContext());
+        scrollView.addView(reportText);
+
+        AlertDialog.Builder builder = new AlertDialog.Builder(getActivity());
+        builder.setTitle(R.string.metrics);
+        builder.setView(scrollView);
+        builder.setPositiveButton(R.string.copy_metrics_json, new DialogInterface.OnClickListener() {
+            public void onClick(DialogInterface dialog, int id) {
+                ClipboardManager clipboard = (ClipboardManager) getContext().getSystemService(Context.CLIPBOARD_SERVICE);
+                clipboard.setPrimaryClip(ClipData.newPlainText(getString(R.string.metrics), FeelMetrics.toJson()));
+            }
+        });
+        builder.setNeutralButton(R.string.reset_metrics, new DialogInterface.OnClickListener() {
+            public void onClick(DialogInterface dialog, int id) {
+                FeelMetrics.reset();
+            }
+        });
+        builder.setNegativeButton(R.string.cancel, null);
+        return builder.create();
+    }
+}
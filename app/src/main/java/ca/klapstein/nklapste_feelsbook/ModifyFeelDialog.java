@@ -15,7 +15,6 @@ import android.view.View;
 import android.widget.*;
 import com.ikovac.timepickerwithseconds.MyTimePickerDialog;
 
-import java.text.ParseException;
 import java.util.Calendar;
 import java.util.Date;
 
@@ -29,14 +28,19 @@ import static ca.klapstein.nklapste_feelsbook.Feel.dateFormat;
 abstract class ModifyFeelDialog extends DialogFragment {
     private static final String TAG = "ModifyFeelDialog";
 
+    /**
+     * From creating the dialog to committing it, which spans several frames, so it is not a
+     * {@code android.os.Trace} section.
+     */
+    private static final LatencyHistogram OPEN_TO_COMMIT_LATENCY = FeelMetrics.histogram("ModifyFeelDialog.openToCommit");
+    private static final FeelMetrics.Counter CANCELS = FeelMetrics.counter("ModifyFeelDialog.cancels");
+
     private Spinner feelSpinner;
     private TextView dateEditText;
     private EditText commentEditText;
     private OnPositiveButtonClickListener mOnPositiveButtonClickListener;
     private Feel feel;
-
-    @Nullable
-    private Integer position;
+    private long openedNanos;
 
     @Override
     public void onAttach(Context context) {
@@ -78,16 +82,17 @@ abstract class ModifyFeelDialog extends DialogFragment {
     protected abstract Feel getDefaultFeel(@Nullable Bundle args);
 
     /**
-     * Return the position of the Feel within FeelsBook {@code FeelTreeSet}.
+     * Return whether this dialog edits a {@code Feel} already within FeelsBook, rather than adding
+     * a new one.
      *
-     * @param args {@code Bundle}
-     * @return {@code Integer} the position of the Feel within FeelsBook {@code FeelTreeSet}.
+     * @return {@code boolean}
      */
-    protected abstract Integer getDefaultPosition(@Nullable Bundle args);
+    protected abstract boolean isEditingFeel();
 
     @NonNull
     @Override
     public Dialog onCreateDialog(Bundle savedInstanceState) {
+        openedNanos = System.nanoTime();
         // Use the Builder class for convenient dialog construction
         View view = LayoutInflater.from(getContext()).inflate(R.layout.add_edit_feel_dialog, null);
 
@@ -110,7 +115,6 @@ abstract class ModifyFeelDialog extends DialogFragment {
         feelSpinner.setAdapter(new ArrayAdapter<>(getContext().getApplicationContext(), android.R.layout.simple_spinner_dropdown_item, Feeling.values()));
 
         feel = getDefaultFeel(getArguments());
-        position = getDefaultPosition(getArguments());
 
         dateEditText.setText(dateFormat.format(feel.getDate()));
         feelSpinner.setSelection(feel.getFeeling().ordinal());
@@ -121,26 +125,29 @@ abstract class ModifyFeelDialog extends DialogFragment {
         builder.setTitle(getDialogTitle());
         builder.setPositiveButton(getDialogPositiveText(), new DialogInterface.OnClickListener() {
             public void onClick(DialogInterface dialog, int id) {
-                try {
-                    feel.setDate(dateFormat.parse(dateEditText.getText().toString()));
-                } catch (ParseException e) {
-                    Log.e(TAG, "Failed to parse date string", e);
+                String dateString = dateEditText.getText().toString();
+                Date date = dateFormat.parseDate(dateString);
+                if (date == null) {
+                    Log.e(TAG, "Failed to parse date string: " + dateString);
                     // Throw a RuntimeException because if we use this invalid date data we can potentially
                     // corrupt the FeelTreeSet and state of FeelsBook
-                    throw new RuntimeException(e);
+                    throw new RuntimeException("Unparseable date: " + dateString);
                 }
-                feel.setFeeling(Feeling.valueOf(feelSpinner.getSelectedItem().toString()));
-                feel.setComment(commentEditText.getText().toString());
-                if (position != null) {
-                    mOnPositiveButtonClickListener.onEditButtonClick(feel, position);
+                Feeling feeling = Feeling.valueOf(feelSpinner.getSelectedItem().toString());
+                String comment = commentEditText.getText().toString();
+                if (isEditingFeel()) {
+                    // the edited Feel keeps its id, which is how FeelsBook finds the Feel it replaces
+                    mOnPositiveButtonClickListener.onEditButtonClick(new Feel(feel.getId(), feeling, comment, date));
                 } else {
-                    mOnPositiveButtonClickListener.onAddButtonClick(feel);
+                    mOnPositiveButtonClickListener.onAddButtonClick(new Feel(feeling, comment, date));
                 }
+                OPEN_TO_COMMIT_LATENCY.record(System.nanoTime() - openedNanos);
                 dialog.dismiss();
             }
         });
         builder.setNegativeButton(getDialogNegativeText(), new DialogInterface.OnClickListener() {
             public void onClick(DialogInterface dialog, int id) {
+                CANCELS.increment();
                 dialog.dismiss();
             }
         });
@@ -193,14 +200,14 @@ abstract class ModifyFeelDialog extends DialogFragment {
      */
     private void onDateEditTextClick() {
         String date = dateEditText.getText().toString();
-        try {
-            showDateTimePicker(dateFormat.parse(date), getContext());
-        } catch (ParseException e) {
-            Log.e(TAG, "Failed to parse date string: " + date, e);
+        Date parsedDate = dateFormat.parseDate(date);
+        if (parsedDate == null) {
+            Log.e(TAG, "Failed to parse date string: " + date);
             // Throw a RuntimeException because if we use this invalid date data we can potentially
             // corrupt the FeelTreeSet and state of FeelsBook
-            throw new RuntimeException(e);
+            throw new RuntimeException("Unparseable date: " + date);
         }
+        showDateTimePicker(parsedDate, getContext());
     }
 
     /**
@@ -212,6 +219,6 @@ abstract class ModifyFeelDialog extends DialogFragment {
     public interface OnPositiveButtonClickListener {
         void onAddButtonClick(Feel feel);
 
-        void onEditButtonClick(Feel feel, int position);
+        void onEditButtonClick(Feel editedFeel);
     }
 }
@@ -0,0 +1,207 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * A single writer {@code Executor} that coalesces bursts of persistence writes.
+ * <p>
+ * Submitted writes are queued and run together, in submission order, on one background thread
+ * once the debounce window after the first queued write elapses. After each batch of writes the
+ * {@code onBatchWritten} task is run once, e.g. to fsync a {@code FeelStore}, and the
+ * {@code housekeeping} task is then queued as a task of its own, e.g. to compact it. Thus, a
+ * burst of edits costs at most one {@code onBatchWritten} per debounce window, and reads queued
+ * meanwhile do not wait for the housekeeping.
+ * <p>
+ * {@code flush} forces the queued writes out immediately without waiting for them, and is meant
+ * to be called when the app is paused or stopped. {@code flushAndWait} also blocks until they are
+ * written, and is meant for background threads bounding the writes they queue, while
+ * {@code awaitPendingWrites} lets tests wait for the queued writes without forcing them.
+ * <p>
+ * Reads are run on the same thread through {@code executeRead} after the queued writes, so they
+ * always see every write submitted before them. The {@code onBatchWritten} task of those writes
+ * is still left to the end of the debounce window.
+ */
+class PersistenceExecutor implements Executor {
+    private static final String TAG = "PersistenceExecutor";
+
+    private final ScheduledExecutorService writer;
+    private final long debounceMillis;
+    private final Runnable onBatchWritten;
+    private final Runnable housekeepingTask;
+    private final Runnable drainTask = new Runnable() {
+        @Override
+        public void run() {
+            drain(true);
+        }
+    };
+
+    private final Object lock = new Object();
+    private ArrayList<Runnable> pending = new ArrayList<>();
+    private boolean drainScheduled;
+    private boolean draining;
+    /**
+     * Whether writes were run by a read since the last {@code onBatchWritten}, only used on the
+     * writer thread.
+     */
+    private boolean batchStarted;
+
+    /**
+     * Construct a {@code PersistenceExecutor}.
+     *
+     * @param debounceMillis {@code long} how long to wait after the first queued write before
+     *                       running the queued writes.
+     * @param onBatchWritten {@code Runnable} task run on the writer thread after each batch.
+     * @param housekeeping   {@code Runnable} task queued on the writer thread after each
+     *                       {@code onBatchWritten}.
+     */
+    PersistenceExecutor(long debounceMillis, Runnable onBatchWritten, final Runnable housekeeping) {
+        this.debounceMillis = debounceMillis;
+        this.onBatchWritten = onBatchWritten;
+        this.housekeepingTask = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    housekeeping.run();
+                } catch (RuntimeException e) {
+                    Thread thread = Thread.currentThread();
+                    thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+                }
+            }
+        };
+        this.writer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, TAG);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Queue a write to be run on the writer thread within the current debounce window.
+     *
+     * @param write {@code Runnable}
+     */
+    @Override
+    public void execute(Runnable write) {
+        synchronized (lock) {
+            pending.add(write);
+            if (!drainScheduled) {
+                drainScheduled = true;
+                writer.schedule(drainTask, debounceMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Run a read on the writer thread right after all currently queued writes.
+     *
+     * @param read {@code Runnable}
+     */
+    void executeRead(final Runnable read) {
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                drain(false);
+                try {
+                    read.run();
+                } catch (RuntimeException e) {
+                    Thread thread = Thread.currentThread();
+                    thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Run all queued writes immediately, without waiting for them to be written.
+     */
+    void flush() {
+        writer.execute(drainTask);
+    }
+
+    /**
+     * Run all queued writes immediately and block until they are written.
+     */
+    void flushAndWait() {
+        try {
+            writer.submit(drainTask).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Wait for all currently queued writes to be written by their scheduled batch.
+     *
+     * @param timeout {@code long}
+     * @param unit    {@code TimeUnit}
+     * @return {@code boolean} {@code true} if all writes were written before the timeout elapsed.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    boolean awaitPendingWrites(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (lock) {
+            while (!pending.isEmpty() || draining || drainScheduled) {
+                long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remainingMillis <= 0) {
+                    return false;
+                }
+                lock.wait(remainingMillis);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Run all queued writes.
+     *
+     * @param endOfBatch {@code boolean} whether to also end the batch with {@code onBatchWritten}.
+     */
+    private void drain(boolean endOfBatch) {
+        ArrayList<Runnable> batch;
+        synchronized (lock) {
+            batch = pending;
+            pending = new ArrayList<>();
+            if (endOfBatch) {
+                drainScheduled = false;
+            }
+            draining = !batch.isEmpty() || (endOfBatch && batchStarted);
+            if (!draining) {
+                lock.notifyAll();
+                return;
+            }
+        }
+        try {
+            for (Runnable write : batch) {
+                write.run();
+            }
+            batchStarted = true;
+            if (endOfBatch) {
+                batchStarted = false;
+                onBatchWritten.run();
+                writer.execute(housekeepingTask);
+            }
+        } catch (RuntimeException e) {
+            // a failed write can leave the FeelStore out of sync with FeelsBook, thus, don't let
+            // the exception be swallowed by the ScheduledExecutorService
+            Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+        } finally {
+            synchronized (lock) {
+                draining = false;
+                lock.notifyAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+import static ca.klapstein.nklapste_feelsbook.FeelSchema.COLUMN_COMMENT;
+import static ca.klapstein.nklapste_feelsbook.FeelSchema.COLUMN_DATE;
+import static ca.klapstein.nklapste_feelsbook.FeelSchema.COLUMN_FEELING;
+import static ca.klapstein.nklapste_feelsbook.FeelSchema.COLUMN_ID;
+import static ca.klapstein.nklapste_feelsbook.FeelSchema.COLUMN_QUARTER;
+import static ca.klapstein.nklapste_feelsbook.FeelSchema.COLUMN_TALLY;
+import static ca.klapstein.nklapste_feelsbook.FeelSchema.DATABASE_VERSION;
+import static ca.klapstein.nklapste_feelsbook.FeelSchema.FEEL_ORDER;
+import static ca.klapstein.nklapste_feelsbook.FeelSchema.MILLIS_PER_QUARTER;
+import static ca.klapstein.nklapste_feelsbook.FeelSchema.TABLE_FEELING_TALLIES;
+import static ca.klapstein.nklapste_feelsbook.FeelSchema.TABLE_FEELS;
+import static ca.klapstein.nklapste_feelsbook.FeelSchema.TABLE_FEEL_QUARTERS;
+
+
+/**
+ * {@code FeelStore} persisting each {@code Feel} as one row of an SQLite table.
+ * <p>
+ * Each {@code Feel} is one row of the {@code feels} table keyed by its id. The table has an index on
+ * {@code (date DESC, feeling, comment, _id)}, which mirrors {@code Feel.compareTo}. Thus, adds,
+ * removes, and edits are single row operations by id, and {@code loadRange} is an ordered walk
+ * over the index.
+ * <p>
+ * The tally of each {@code Feeling} is kept within the {@code feeling_tallies} table by triggers on
+ * the {@code feels} table, so both {@code getCount} and {@code loadTallySnapshot} read at most one
+ * row per {@code Feeling} instead of grouping all {@code Feel}s. Likewise the {@code feel_quarters}
+ * table counts the {@code Feel}s of each {@code Feeling} by UTC quarter hour. The quarter hours
+ * are bucketed into the cells of the {@code FeelHeatmap} in Java, in the current
+ * {@code TimeZone} of the device when loaded, so the heatmap follows the device across time
+ * zones and daylight saving time changes. Every time zone is offset from UTC by whole quarter
+ * hours, so no quarter hour straddles two cells.
+ * <p>
+ * The database runs in write-ahead logging mode, so single row writes only append to the log.
+ * {@code flush} checkpoints the log after each batch of writes.
+ * <p>
+ * Comments are compared with SQLite's binary collation, which orders them the same way as
+ * {@code String.compareTo} except for characters outside the Basic Multilingual Plane.
+ *
+ * @see FeelsBookPreferencesManager#getFeelStore(Context)
+ */
+class SQLiteFeelStore implements FeelStore, FeelTallySource {
+    private static final String TAG = "SQLiteFeelStore";
+
+    static final String DATABASE_NAME = "feels.db";
+    private static final String[] FEEL_COLUMNS = {COLUMN_DATE, COLUMN_FEELING, COLUMN_COMMENT, COLUMN_ID};
+    private static final String FEEL_SELECTION = COLUMN_ID + " = ?";
+
+    private final FeelsDatabaseHelper databaseHelper;
+
+    /**
+     * Construct a {@code SQLiteFeelStore}.
+     *
+     * @param context {@code Context}
+     * @param name    {@code String} the name of the database, or {@code null} for an in-memory
+     *                database.
+     */
+    SQLiteFeelStore(Context context, String name) {
+        this.databaseHelper = new FeelsDatabaseHelper(context, name);
+    }
+
+    @Override
+    public synchronized FeelTreeSet load() {
+        Cursor cursor = databaseHelper.getReadableDatabase().query(TABLE_FEELS, FEEL_COLUMNS,
+                null, null, null, null, FEEL_ORDER);
+        List<Feel> feels = new ArrayList<>(cursor.getCount());
+        try {
+            while (cursor.moveToNext()) {
+                feels.add(readFeel(cursor));
+            }
+        } finally {
+            cursor.close();
+        }
+        // read in index order, so the FeelTreeSet is built without sorting
+        FeelTreeSet feelTreeSet = new FeelTreeSet();
+        feelTreeSet.addAll(feels);
+        return feelTreeSet;
+    }
+
+    @Override
+    public synchronized int getCount() {
+        return (int) DatabaseUtils.longForQuery(databaseHelper.getReadableDatabase(),
+                "SELECT SUM(" + COLUMN_TALLY + ") FROM " + TABLE_FEELING_TALLIES, null);
+    }
+
+    /**
+     * Load a range of consecutive {@code Feel}s by walking the {@code (date DESC, feeling, comment)}
+     * index.
+     *
+     * @param position {@code int} the position of the first {@code Feel} to load.
+     * @param count    {@code int} the maximum number of {@code Feel}s to load.
+     * @return {@code List<Feel>}
+     */
+    @Override
+    public synchronized List<Feel> loadRange(int position, int count) {
+        List<Feel> feels = new ArrayList<>(count);
+        Cursor cursor = databaseHelper.getReadableDatabase().query(TABLE_FEELS, FEEL_COLUMNS,
+                null, null, null, null, FEEL_ORDER, position + ", " + count);
+        try {
+            while (cursor.moveToNext()) {
+                feels.add(readFeel(cursor));
+            }
+        } finally {
+            cursor.close();
+        }
+        return feels;
+    }
+
+    @Override
+    public synchronized TallySnapshot loadTallySnapshot() {
+        int[] tallies = new int[Feeling.values().length];
+        Cursor cursor = databaseHelper.getReadableDatabase().query(TABLE_FEELING_TALLIES,
+                new String[]{COLUMN_FEELING, COLUMN_TALLY}, null, null, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                int feeling = cursor.getInt(0);
+                if (feeling < tallies.length) {
+                    tallies[feeling] = cursor.getInt(1);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        return new TallySnapshot(tallies);
+    }
+
+    /**
+     * Bucket the UTC quarter hours of the {@code feel_quarters} table into a {@code FeelHeatmap}
+     * of the current {@code TimeZone}.
+     *
+     * @return {@code FeelHeatmap}
+     */
+    @Override
+    public synchronized FeelHeatmap loadFeelHeatmap() {
+        FeelHeatmap feelHeatmap = new FeelHeatmap(TimeZone.getDefault());
+        Cursor cursor = databaseHelper.getReadableDatabase().query(TABLE_FEEL_QUARTERS,
+                new String[]{COLUMN_QUARTER, COLUMN_FEELING, COLUMN_TALLY}, null, null, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                int feeling = cursor.getInt(1);
+                if (feeling >= 0 && feeling < Feeling.values().length) {
+                    feelHeatmap.update(feeling, cursor.getLong(0) * MILLIS_PER_QUARTER, cursor.getInt(2));
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        return feelHeatmap;
+    }
+
+    @Override
+    public synchronized void add(Feel feel) {
+        databaseHelper.getWritableDatabase().insertWithOnConflict(TABLE_FEELS, null,
+                toContentValues(feel), SQLiteDatabase.CONFLICT_IGNORE);
+    }
+
+    @Override
+    public synchronized void remove(Feel feel) {
+        databaseHelper.getWritableDatabase().delete(TABLE_FEELS, FEEL_SELECTION, toSelectionArgs(feel));
+    }
+
+    /**
+     * Insert the rows of a batch of {@code Feel}s within one transaction, so the batch is one
+     * commit of the write-ahead log.
+     *
+     * @param feels {@code List<Feel>}
+     */
+    @Override
+    public synchronized void addAll(List<Feel> feels) {
+        SQLiteDatabase database = databaseHelper.getWritableDatabase();
+        database.beginTransaction();
+        try {
+            SQLiteStatement insert = compileInsert(database);
+            try {
+                for (Feel feel : feels) {
+                    bindInsert(insert, feel);
+                    insert.executeInsert();
+                }
+            } finally {
+                insert.close();
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    /**
+     * Delete the rows of a batch of {@code Feel}s within one transaction.
+     *
+     * @param feels {@code List<Feel>}
+     */
+    @Override
+    public synchronized void removeAll(List<Feel> feels) {
+        SQLiteDatabase database = databaseHelper.getWritableDatabase();
+        database.beginTransaction();
+        try {
+            SQLiteStatement delete = database.compileStatement("DELETE FROM " + TABLE_FEELS + " WHERE " + FEEL_SELECTION);
+            try {
+                for (Feel feel : feels) {
+                    delete.bindLong(1, feel.getId());
+                    delete.executeUpdateDelete();
+                }
+            } finally {
+                delete.close();
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    @Override
+    public synchronized void edit(Feel oldFeel, Feel newFeel) {
+        databaseHelper.getWritableDatabase().update(TABLE_FEELS, toContentValues(newFeel),
+                FEEL_SELECTION, toSelectionArgs(oldFeel));
+    }
+
+    /**
+     * Replace the entire contents of the store with the given {@code FeelTreeSet} within one
+     * transaction.
+     *
+     * @param feelTreeSet {@code FeelTreeSet}
+     */
+    synchronized void rewrite(FeelTreeSet feelTreeSet) {
+        SQLiteDatabase database = databaseHelper.getWritableDatabase();
+        database.beginTransaction();
+        try {
+            database.delete(TABLE_FEELS, null, null);
+            SQLiteStatement insert = compileInsert(database);
+            try {
+                for (Feel feel : feelTreeSet) {
+                    bindInsert(insert, feel);
+                    insert.executeInsert();
+                }
+            } finally {
+                insert.close();
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    /**
+     * Checkpoint the write-ahead log so all recorded modifications are durably written.
+     */
+    @Override
+    public synchronized void flush() {
+        Cursor cursor = databaseHelper.getWritableDatabase().rawQuery("PRAGMA wal_checkpoint(FULL)", null);
+        try {
+            cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Nothing to compact, SQLite reuses the pages of deleted rows and the log is truncated by
+     * its checkpoints.
+     */
+    @Override
+    public void compactIfNeeded() {
+    }
+
+    @Override
+    public synchronized void close() {
+        databaseHelper.close();
+    }
+
+    private static SQLiteStatement compileInsert(SQLiteDatabase database) {
+        return database.compileStatement(FeelSchema.INSERT_FEEL);
+    }
+
+    private static void bindInsert(SQLiteStatement insert, Feel feel) {
+        insert.bindLong(1, feel.getDate().getTime());
+        insert.bindLong(2, feel.getFeeling().ordinal());
+        insert.bindString(3, feel.getComment());
+        insert.bindLong(4, feel.getId());
+    }
+
+    private static Feel readFeel(Cursor cursor) {
+        return new Feel(cursor.getLong(3), Feeling.values()[cursor.getInt(1)], cursor.getString(2), new Date(cursor.getLong(0)));
+    }
+
+    private static ContentValues toContentValues(Feel feel) {
+        ContentValues values = new ContentValues(4);
+        values.put(COLUMN_ID, feel.getId());
+        values.put(COLUMN_DATE, feel.getDate().getTime());
+        values.put(COLUMN_FEELING, feel.getFeeling().ordinal());
+        values.put(COLUMN_COMMENT, feel.getComment());
+        return values;
+    }
+
+    private static String[] toSelectionArgs(Feel feel) {
+        return new String[]{Long.toString(feel.getId())};
+    }
+
+    /**
+     * {@code SQLiteOpenHelper} creating the {@code feels}, {@code feeling_tallies}, and
+     * {@code feel_quarters} tables of the {@code FeelSchema}.
+     */
+    private static final class FeelsDatabaseHelper extends SQLiteOpenHelper {
+        FeelsDatabaseHelper(Context context, String name) {
+            super(context, name, null, DATABASE_VERSION);
+        }
+
+        @Override
+        public void onConfigure(SQLiteDatabase db) {
+            db.enableWriteAheadLogging();
+        }
+
+        @Override
+        public void onCreate(SQLiteDatabase db) {
+            execSQL(db, FeelSchema.createStatements());
+        }
+
+        private static void execSQL(SQLiteDatabase db, List<String> statements) {
+            for (String statement : statements) {
+                db.execSQL(statement);
+            }
+        }
+
+        @Override
+        public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            if (oldVersion < 2) {
+                // version 2 uses the row id as the Feel id, so identical Feels may be held
+                db.execSQL("DROP INDEX feels_order");
+                db.execSQL(FeelSchema.createOrderIndex());
+            }
+            if (oldVersion < 4) {
+                // version 3 counted the heatmap cells by SQLite 'localtime', which went stale
+                // whenever the time zone of the device changed
+                db.execSQL("DROP TRIGGER IF EXISTS feels_insert_hours");
+                db.execSQL("DROP TRIGGER IF EXISTS feels_delete_hours");
+                db.execSQL("DROP TRIGGER IF EXISTS feels_update_hours");
+                db.execSQL("DROP TABLE IF EXISTS feel_hours");
+                execSQL(db, FeelSchema.createFeelQuarters());
+            }
+        }
+    }
+}
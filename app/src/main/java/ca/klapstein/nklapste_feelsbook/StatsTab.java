@@ -17,12 +17,34 @@ import java.util.Locale;
 /**
  * Fragment that displays statistics on all currently added {@code Feel}s within FeelsBook.
  * <p>
- * Provides simple sum statistics of the count of each {@code Feeling}.
+ * Provides simple sum statistics of the count of each {@code Feeling}, and a
+ * {@code FeelHeatmapView} of when each {@code Feeling} happens by day of the week and hour of the
+ * day. Both are read from the {@code FeelRepository} off the main thread, and drawn once read. The
+ * {@code FeelRepository} keeps them up to date from then on, so opening the statistics costs the
+ * same no matter how many {@code Feel}s exist.
+ * <p>
+ * Also displays the {@code FeelTrends} of each {@code Feeling}. As those need the complete
+ * {@code FeelTreeSet}, they are computed by the {@code FeelRepository} off the main thread, and
+ * at most one computation is in flight: modifications made meanwhile are all picked up by a
+ * single computation once it is done.
+ * <p>
+ * Long pressing the tallies opens the hidden {@code MetricsDialog}.
  */
-public class StatsTab extends Fragment {
+public class StatsTab extends Fragment implements FeelRepository.OnFeelsChangedListener {
     private static final String TAG = "StatsTab";
 
+    private static final LatencyHistogram REDRAW_LATENCY = FeelMetrics.histogram("StatsTab.redrawStats");
+    private static final LatencyHistogram TRENDS_LATENCY = FeelMetrics.histogram("StatsTab.redrawTrends");
+
     private TableLayout stats_table;
+    private TableLayout trends_table;
+    private FeelHeatmapView feel_heatmap;
+    private TextView[] tallyValues;
+    private TextView[][] trendValues;
+    private TallySnapshot displayedTallies;
+    private FeelRepository mFeelRepository;
+    private boolean trendsLoading;
+    private boolean trendsStale;
 
     public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
         return inflater.inflate(R.layout.stats_tab, container, false);
@@ -49,26 +71,174 @@ public class StatsTab extends Fragment {
     @Override
     public void setUserVisibleHint(boolean isVisibleToUser) {
         super.setUserVisibleHint(isVisibleToUser);
-        if (isVisibleToUser) {
-            // get the current mFeelTreeSet from Android's SharedPreferences
-            FeelTreeSet mFeelTreeSet = FeelsBookPreferencesManager.loadSharedPreferencesFeelList(getContext().getApplicationContext());
+        if (isVisibleToUser && stats_table != null) {
+            redrawStats();
+        }
+    }
+
+    /**
+     * Keep the feelings stats table up to date while it is visible.
+     *
+     * @param change {@code FeelChange}
+     */
+    @Override
+    public void onFeelsChanged(FeelChange change) {
+        if (getUserVisibleHint() && change.type != FeelChange.LOADED) {
+            redrawStats();
+        }
+    }
+
+    private void redrawStats() {
+        mFeelRepository.loadStats(drawStats);
+        loadTrends();
+    }
+
+    /**
+     * Draws the tallies and heatmap once the {@code FeelRepository} read them, right away from
+     * then on.
+     */
+    private final Runnable drawStats = new Runnable() {
+        @Override
+        public void run() {
+            if (stats_table == null) {
+                return;
+            }
+            long start = FeelTrace.begin(REDRAW_LATENCY);
+            try {
+                redrawStatsTable(mFeelRepository.getTallySnapshot());
+                feel_heatmap.setFeelHeatmap(mFeelRepository.getFeelHeatmap());
+            } finally {
+                FeelTrace.end(REDRAW_LATENCY, start);
+            }
+        }
+    };
+
+    private void loadTrends() {
+        if (trendsLoading) {
+            trendsStale = true;
+            return;
+        }
+        trendsLoading = true;
+        mFeelRepository.loadTrendSnapshot(System.currentTimeMillis(), drawTrends);
+    }
+
+    private final FeelRepository.OnLoadedListener<TrendSnapshot> drawTrends = new FeelRepository.OnLoadedListener<TrendSnapshot>() {
+        @Override
+        public void onLoaded(TrendSnapshot trendSnapshot) {
+            trendsLoading = false;
+            if (trends_table == null) {
+                return;
+            }
+            if (trendsStale) {
+                trendsStale = false;
+                loadTrends();
+            }
+            long start = FeelTrace.begin(TRENDS_LATENCY);
+            try {
+                redrawTrendsTable(trendSnapshot);
+            } finally {
+                FeelTrace.end(TRENDS_LATENCY, start);
+            }
+        }
+    };
 
-            // dynamically recreate and populate the table for all Feeling tallies.
+    /**
+     * Populate the table of the {@code FeelTrends} of each {@code Feeling}.
+     * <p>
+     * The rows of the table are only inflated once, afterwards only their values are updated.
+     *
+     * @param trendSnapshot {@code TrendSnapshot}
+     */
+    private void redrawTrendsTable(TrendSnapshot trendSnapshot) {
+        if (trendValues == null) {
+            trendValues = new TextView[Feeling.values().length][];
+            trends_table.removeAllViews();
+            for (Feeling feel : Feeling.values()) {
+                CardView row = (CardView) LayoutInflater.from(getContext()).inflate(R.layout.stats_trend_row, null, false);
+                TextView trendLabel = row.findViewById(R.id.trendLabel);
+                trendLabel.setText(feel.toString());
+                trendValues[feel.ordinal()] = new TextView[]{
+                        row.findViewById(R.id.trendStreaks),
+                        row.findViewById(R.id.trendAverages),
+                        row.findViewById(R.id.trendWeekOverWeek)};
+                trends_table.addView(row);
+            }
+        }
+        for (Feeling feel : Feeling.values()) {
+            TextView[] values = trendValues[feel.ordinal()];
+            values[0].setText(getString(R.string.trend_streaks,
+                    trendSnapshot.getCurrentStreak(feel), trendSnapshot.getLongestStreak(feel)));
+            values[1].setText(getString(R.string.trend_averages,
+                    trendSnapshot.getWeekAverage(feel), trendSnapshot.getMonthAverage(feel)));
+            double change = trendSnapshot.getWeekOverWeekChange(feel);
+            if (Double.isNaN(change)) {
+                values[2].setText(R.string.trend_week_over_week_none);
+            } else {
+                values[2].setText(getString(R.string.trend_week_over_week, change * 100));
+            }
+        }
+    }
+
+    /**
+     * Populate the table for all {@code Feeling} tallies.
+     * <p>
+     * The rows of the table are only inflated once, afterwards only the tally values are updated,
+     * and only if the {@code TallySnapshot} changed since the last redraw.
+     *
+     * @param tallySnapshot {@code TallySnapshot}
+     */
+    private void redrawStatsTable(TallySnapshot tallySnapshot) {
+        if (tallyValues == null) {
+            tallyValues = new TextView[Feeling.values().length];
             stats_table.removeAllViews();
             for (Feeling feel : Feeling.values()) {
                 CardView row = (CardView) LayoutInflater.from(getContext()).inflate(R.layout.stats_tally_row, null, false);
                 TextView tallyLabel = row.findViewById(R.id.tallyLabel);
-                TextView tallyValue = row.findViewById(R.id.tallyValue);
                 tallyLabel.setText(feel.toString());
-                tallyValue.setText(stringifyTally(mFeelTreeSet.getFeelingTallies().get(feel)));
+                tallyValues[feel.ordinal()] = row.findViewById(R.id.tallyValue);
                 stats_table.addView(row);
             }
         }
+        if (tallySnapshot == displayedTallies) {
+            return;
+        }
+        for (Feeling feel : Feeling.values()) {
+            tallyValues[feel.ordinal()].setText(stringifyTally(tallySnapshot.get(feel)));
+        }
+        displayedTallies = tallySnapshot;
     }
 
     @Override
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
         stats_table = view.findViewById(R.id.stats_table);
+        trends_table = view.findViewById(R.id.trends_table);
+        // hidden entry to the debug screen of the metrics
+        stats_table.setOnLongClickListener(new View.OnLongClickListener() {
+            @Override
+            public boolean onLongClick(View view) {
+                new MetricsDialog().show(getFragmentManager(), MetricsDialog.TAG);
+                return true;
+            }
+        });
+        feel_heatmap = view.findViewById(R.id.feel_heatmap);
+        mFeelRepository = FeelRepository.getInstance(getContext());
+        mFeelRepository.addOnFeelsChangedListener(this);
+        if (getUserVisibleHint()) {
+            redrawStats();
+        }
+    }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        mFeelRepository.removeOnFeelsChangedListener(this);
+        stats_table = null;
+        trends_table = null;
+        trendsStale = false;
+        feel_heatmap = null;
+        tallyValues = null;
+        trendValues = null;
+        displayedTallies = null;
     }
 }
@@ -0,0 +1,57 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM unit tests for the sorted difference used by {@code FeelAdapter} for bulk modifications.
+ */
+public class FeelAdapterTest {
+    private static List<Feel> randomSortedFeels(Random random, List<Feel> universe) {
+        FeelTreeSet feelTreeSet = new FeelTreeSet();
+        for (Feel feel : universe) {
+            if (random.nextBoolean()) {
+                feelTreeSet.add(feel);
+            }
+        }
+        return new ArrayList<>(feelTreeSet);
+    }
+
+    @Test
+    public void diffSortedTransformsOldIntoNew() {
+        Random random = new Random(7);
+        List<Feel> universe = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            universe.add(new Feel(Feeling.values()[i % Feeling.values().length], "", new Date(i * 1000L)));
+        }
+        for (int trial = 0; trial < 50; trial++) {
+            List<Feel> oldFeels = randomSortedFeels(random, universe);
+            List<Feel> newFeels = randomSortedFeels(random, universe);
+            int[] operations = FeelAdapter.diffSorted(oldFeels, newFeels);
+
+            // replay the operations the same way RecyclerView applies them
+            List<Feel> displayed = new ArrayList<>(oldFeels);
+            int inserted = 0;
+            for (int i = 0; i < operations.length; i += 3) {
+                int position = operations[i + 1];
+                int count = operations[i + 2];
+                for (int j = 0; j < count; j++) {
+                    if (operations[i] == FeelChange.INSERTED) {
+                        displayed.add(position + j, newFeels.get(position + j));
+                        inserted++;
+                    } else {
+                        displayed.remove(position);
+                    }
+                }
+            }
+            assertEquals(newFeels, displayed);
+            assertTrue(inserted <= newFeels.size());
+        }
+    }
+}
@@ -0,0 +1,615 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM unit tests for the shared {@code FeelRepository}.
+ */
+public class FeelRepositoryTest {
+    private CountingFeelStore feelStore;
+    private FeelRepository feelRepository;
+    private final LinkedBlockingQueue<Runnable> mainTasks = new LinkedBlockingQueue<>();
+
+    @Before
+    public void setUp() {
+        feelStore = new CountingFeelStore();
+        feelRepository = createFeelRepository(100);
+    }
+
+    /**
+     * Create a {@code FeelRepository} of the {@code feelStore} whose main thread tasks are run by
+     * {@code runMainTasks}.
+     */
+    private FeelRepository createFeelRepository(long debounceMillis) {
+        return new FeelRepository(feelStore, new PersistenceExecutor(debounceMillis, new Runnable() {
+            @Override
+            public void run() {
+                feelStore.flush();
+            }
+        }, new Runnable() {
+            @Override
+            public void run() {
+                feelStore.compactIfNeeded();
+            }
+        }), new Executor() {
+            @Override
+            public void execute(Runnable runnable) {
+                mainTasks.add(runnable);
+            }
+        }, 4, 2);
+    }
+
+    /**
+     * Run the tasks posted to the main thread until no more arrive.
+     */
+    private void runMainTasks() throws InterruptedException {
+        Runnable task;
+        while ((task = mainTasks.poll(200, TimeUnit.MILLISECONDS)) != null) {
+            task.run();
+        }
+    }
+
+    /**
+     * Run the tasks posted to the main thread until a task set the flag.
+     */
+    private void runMainTasksUntil(boolean[] done) throws InterruptedException {
+        while (!done[0]) {
+            Runnable task = mainTasks.poll(5, TimeUnit.SECONDS);
+            assertNotNull("Load did not finish", task);
+            task.run();
+        }
+    }
+
+    /**
+     * Load the complete {@code FeelTreeSet} of the {@code feelRepository}.
+     */
+    private ConcurrentFeelTreeSet loadFeelTreeSet() throws InterruptedException {
+        final boolean[] loaded = new boolean[1];
+        feelRepository.loadFeelTreeSet(new Runnable() {
+            @Override
+            public void run() {
+                loaded[0] = true;
+            }
+        });
+        runMainTasksUntil(loaded);
+        return feelRepository.getFeelTreeSet();
+    }
+
+    /**
+     * Switching between the {@code FeelTab} and {@code StatsTab} reads the {@code FeelTreeSet}
+     * from the {@code FeelRepository} each time, it must only be deserialized once.
+     */
+    @Test
+    public void repeatedTabSwitchesDeserializeOnce() throws InterruptedException {
+        ConcurrentFeelTreeSet feelTreeSet = loadFeelTreeSet();
+        for (int i = 0; i < 50; i++) {
+            // FeelTab.onViewCreated
+            assertSame(feelTreeSet, loadFeelTreeSet());
+            feelRepository.addFeel(new Feel(Feeling.Joy, "", new Date(i)));
+            // StatsTab.setUserVisibleHint
+            assertEquals(i + 1, loadFeelTreeSet().getTallySnapshot().get(Feeling.Joy));
+        }
+        assertEquals(1, feelStore.loads);
+    }
+
+    /**
+     * Modifications made while the {@code FeelTreeSet} is loaded off the main thread are applied
+     * to it, and the {@code FeelTrends} are computed off the main thread as well.
+     */
+    @Test
+    public void feelTreeSetLoadAppliesModificationsMadeWhileLoading() throws InterruptedException {
+        long day = 24 * 60 * 60 * 1000L;
+        long now = 100 * day;
+        for (int i = 0; i < 10; i++) {
+            feelStore.feelTreeSet.add(new Feel(Feeling.Joy, "", new Date(now - i * day)));
+        }
+        final boolean[] loaded = new boolean[1];
+        feelRepository.loadFeelTreeSet(new Runnable() {
+            @Override
+            public void run() {
+                loaded[0] = true;
+            }
+        });
+        assertNull(feelRepository.getFeelTreeSet());
+        Feel edited = new Feel(Feeling.Joy, "", new Date(now - 20 * day));
+        feelRepository.addFeel(edited);
+        feelRepository.addFeel(new Feel(Feeling.Joy, "", new Date(now - 10 * day)));
+        feelRepository.editFeel(new Feel(edited.getId(), Feeling.Fear, "", new Date(now - 20 * day)));
+        runMainTasksUntil(loaded);
+        assertEquals(12, feelRepository.getFeelTreeSet().size());
+        assertEquals(Feeling.Fear, feelRepository.getFeelTreeSet().getById(edited.getId()).getFeeling());
+
+        final List<TrendSnapshot> trends = new ArrayList<>();
+        final boolean[] computed = new boolean[1];
+        feelRepository.loadTrendSnapshot(now, new FeelRepository.OnLoadedListener<TrendSnapshot>() {
+            @Override
+            public void onLoaded(TrendSnapshot trendSnapshot) {
+                trends.add(trendSnapshot);
+                computed[0] = true;
+            }
+        });
+        runMainTasksUntil(computed);
+        assertEquals(11, trends.get(0).getLongestStreak(Feeling.Joy));
+        assertEquals(1, trends.get(0).getLongestStreak(Feeling.Fear));
+        assertEquals(1, feelStore.loads);
+    }
+
+    @Test
+    public void modificationsNotifyListenersAndPersist() throws InterruptedException {
+        final List<Integer> notifiedSizes = new ArrayList<>();
+        final List<FeelChange> changes = new ArrayList<>();
+        feelRepository.addOnFeelsChangedListener(new FeelRepository.OnFeelsChangedListener() {
+            @Override
+            public void onFeelsChanged(FeelChange change) {
+                notifiedSizes.add(feelRepository.getFeelCount());
+                changes.add(change);
+            }
+        });
+        Feel first = new Feel(Feeling.Fear, "first", new Date(1000));
+        Feel second = new Feel(Feeling.Love, "second", new Date(2000));
+        assertTrue(feelRepository.addFeel(first));
+        assertTrue(feelRepository.addFeel(second));
+        // adding the same feel again is a no-op and should not notify
+        assertFalse(feelRepository.addFeel(first));
+        assertSame(first, feelRepository.getPagedFeels().peek(1));
+        // the edited feel replaces the feel of its id
+        assertTrue(feelRepository.editFeel(new Feel(first.getId(), Feeling.Anger, "edited", new Date(3000))));
+        assertTrue(feelRepository.deleteFeel(second.getId()));
+        assertFalse(feelRepository.deleteFeel(second.getId()));
+
+        assertTrue(feelRepository.awaitPendingWrites(5, TimeUnit.SECONDS));
+        assertEquals(4, notifiedSizes.size());
+        assertEquals(Integer.valueOf(1), notifiedSizes.get(notifiedSizes.size() - 1));
+        // feels are sorted newest first
+        assertEquals(FeelChange.INSERTED, changes.get(0).type);
+        assertEquals(0, changes.get(0).toPosition);
+        assertEquals(0, changes.get(1).toPosition);
+        // editing the oldest feel into the newest moves it from the bottom to the top
+        assertEquals(FeelChange.MOVED, changes.get(2).type);
+        assertEquals(1, changes.get(2).fromPosition);
+        assertEquals(0, changes.get(2).toPosition);
+        assertEquals(FeelChange.REMOVED, changes.get(3).type);
+        assertEquals(1, changes.get(3).fromPosition);
+        assertEquals(2, feelStore.adds);
+        assertEquals(1, feelStore.edits);
+        assertEquals(1, feelStore.removes);
+    }
+
+    /**
+     * A burst of modifications within one debounce window is written in one batch.
+     */
+    @Test
+    public void burstOfModificationsIsWrittenInOneBatch() throws InterruptedException {
+        for (int i = 0; i < 200; i++) {
+            feelRepository.addFeel(new Feel(Feeling.Surprise, "", new Date(i)));
+        }
+        assertTrue(feelRepository.awaitPendingWrites(5, TimeUnit.SECONDS));
+        assertEquals(200, feelStore.adds);
+        assertEquals(1, feelStore.flushes);
+    }
+
+    /**
+     * A batch is written with one {@code addAll} or {@code removeAll} and notified as one
+     * {@code FeelChange}, skipping {@code Feel}s already added or not known.
+     */
+    @Test
+    public void batchesAreWrittenAndNotifiedOnce() throws InterruptedException {
+        final List<FeelChange> changes = new ArrayList<>();
+        feelRepository.addOnFeelsChangedListener(new FeelRepository.OnFeelsChangedListener() {
+            @Override
+            public void onFeelsChanged(FeelChange change) {
+                changes.add(change);
+            }
+        });
+        loadFeelTreeSet();
+        Feel existing = new Feel(Feeling.Joy, "existing", new Date(5000));
+        assertTrue(feelRepository.addFeel(existing));
+        List<Feel> batch = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            batch.add(new Feel(Feeling.values()[i % Feeling.values().length], "batch " + i, new Date(i * 7 % 300)));
+        }
+        batch.add(existing);
+        batch.add(batch.get(0));
+        changes.clear();
+        assertEquals(300, feelRepository.addFeels(batch));
+        assertEquals(1, changes.size());
+        assertEquals(FeelChange.RESET, changes.get(0).type);
+        assertEquals(301, feelRepository.getFeelCount());
+        assertEquals(301, feelRepository.getFeelTreeSet().size());
+        assertEquals(51, loadStats().getTallySnapshot().get(Feeling.Joy));
+
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 300; i += 2) {
+            ids.add(batch.get(i).getId());
+        }
+        ids.add(12345L);
+        assertEquals(150, feelRepository.deleteFeels(ids));
+        assertEquals(0, feelRepository.deleteFeels(ids));
+        assertEquals(2, changes.size());
+        assertEquals(151, feelRepository.getFeelCount());
+        assertEquals(151, feelRepository.getFeelTreeSet().size());
+
+        assertTrue(feelRepository.awaitPendingWrites(5, TimeUnit.SECONDS));
+        assertEquals(1, feelStore.adds);
+        assertEquals(1, feelStore.addAlls);
+        assertEquals(1, feelStore.removeAlls);
+        assertEquals(0, feelStore.removes);
+        assertEquals(feelRepository.getFeelTreeSet().toList(), new ArrayList<>(feelStore.feelTreeSet));
+    }
+
+    /**
+     * {@code flush} starts writing without waiting for the debounce window nor for the write.
+     */
+    /**
+     * Read the tallies and heatmap of the {@code feelRepository}.
+     */
+    private FeelRepository loadStats() throws InterruptedException {
+        final boolean[] loaded = new boolean[1];
+        feelRepository.loadStats(new Runnable() {
+            @Override
+            public void run() {
+                loaded[0] = true;
+            }
+        });
+        runMainTasksUntil(loaded);
+        return feelRepository;
+    }
+
+    /**
+     * Modifications made while the tallies and heatmap are read off the main thread are counted
+     * once, whether the read saw their writes or not.
+     */
+    @Test
+    public void statsCountModificationsMadeWhileRead() throws InterruptedException {
+        for (int i = 0; i < 20; i++) {
+            feelStore.feelTreeSet.add(new Feel(Feeling.Joy, "", new Date(i * 3600000L)));
+        }
+        feelRepository.getPagedFeels();
+        runMainTasks();
+        final List<TallySnapshot> drawn = new ArrayList<>();
+        feelRepository.loadStats(new Runnable() {
+            @Override
+            public void run() {
+                drawn.add(feelRepository.getTallySnapshot());
+            }
+        });
+        assertNull(feelRepository.getTallySnapshot());
+        Feel added = new Feel(Feeling.Joy, "", new Date(30 * 3600000L));
+        feelRepository.addFeel(added);
+        feelRepository.addFeel(new Feel(Feeling.Fear, "", new Date(31 * 3600000L)));
+        feelRepository.deleteFeel(added.getId());
+        runMainTasks();
+        assertEquals(1, drawn.size());
+        assertEquals(20, drawn.get(0).get(Feeling.Joy));
+        assertEquals(1, drawn.get(0).get(Feeling.Fear));
+
+        feelRepository.addFeel(new Feel(Feeling.Joy, "", new Date(32 * 3600000L)));
+        assertTrue(feelRepository.awaitPendingWrites(5, TimeUnit.SECONDS));
+        assertEquals(feelStore.feelTreeSet.getTallySnapshot(), loadStats().getTallySnapshot());
+        assertEquals(feelStore.feelTreeSet.getFeelHeatmap(), feelRepository.getFeelHeatmap());
+    }
+
+    @Test
+    public void flushWritesImmediately() throws InterruptedException {
+        feelRepository = createFeelRepository(TimeUnit.MINUTES.toMillis(1));
+        feelRepository.addFeel(new Feel(Feeling.Sadness, "", new Date(0)));
+        feelRepository.flush();
+        assertTrue(feelRepository.awaitPendingWrites(30, TimeUnit.SECONDS));
+        assertEquals(1, feelStore.adds);
+        assertEquals(1, feelStore.flushes);
+    }
+
+    /**
+     * Opening FeelsBook only reads the first page, further pages are read as they are displayed
+     * and only a bounded window of them is held.
+     */
+    @Test
+    public void feelsArePagedFromTheFeelStore() throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            feelStore.feelTreeSet.add(new Feel(Feeling.Joy, "", new Date(i)));
+        }
+        final List<FeelChange> changes = new ArrayList<>();
+        feelRepository.addOnFeelsChangedListener(new FeelRepository.OnFeelsChangedListener() {
+            @Override
+            public void onFeelsChanged(FeelChange change) {
+                changes.add(change);
+            }
+        });
+        PagedFeelList pagedFeels = feelRepository.getPagedFeels();
+        runMainTasks();
+        assertEquals(100, feelRepository.getFeelCount());
+        assertEquals(FeelChange.RESET, changes.get(0).type);
+        assertEquals(99, pagedFeels.peek(0).getDate().getTime());
+        assertNull(pagedFeels.get(60));
+        runMainTasks();
+        assertEquals(39, pagedFeels.peek(60).getDate().getTime());
+        assertEquals(FeelChange.LOADED, changes.get(changes.size() - 1).type);
+        assertTrue(pagedFeels.getWindowSize() <= 8);
+        assertEquals(0, feelStore.loads);
+
+        // modifications outside of the window still keep the count exact
+        assertTrue(feelRepository.addFeel(new Feel(Feeling.Joy, "", new Date(1000))));
+        assertTrue(feelRepository.awaitPendingWrites(5, TimeUnit.SECONDS));
+        assertEquals(101, feelRepository.getFeelCount());
+        assertEquals(101, feelStore.getCount());
+    }
+
+    /**
+     * Search the comments of the {@code Feel}s of the {@code feelRepository}.
+     */
+    private List<Feel> searchFeels(String query, int limit) throws InterruptedException {
+        final List<Feel> found = new ArrayList<>();
+        final boolean[] searched = new boolean[1];
+        feelRepository.searchFeels(query, limit, new FeelRepository.OnLoadedListener<List<Feel>>() {
+            @Override
+            public void onLoaded(List<Feel> results) {
+                found.addAll(results);
+                searched[0] = true;
+            }
+        });
+        runMainTasksUntil(searched);
+        return found;
+    }
+
+    /**
+     * Searched {@code Feel}s can be edited and deleted even if they are outside of the window of
+     * displayed pages.
+     */
+    @Test
+    public void searchedFeelsOutsideTheWindowAreModified() throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            feelStore.feelTreeSet.add(new Feel(Feeling.Joy, "note " + i, new Date(i)));
+        }
+        feelRepository.getPagedFeels();
+        runMainTasks();
+        List<Feel> found = searchFeels("NOTE 1", 100);
+        // note 1, note 10 to note 19, newest first
+        assertEquals(11, found.size());
+        assertEquals("note 19", found.get(0).getComment());
+        assertEquals("note 1", found.get(10).getComment());
+
+        assertTrue(feelRepository.editFeel(new Feel(found.get(10).getId(), Feeling.Joy, "memo", new Date(1))));
+        assertTrue(feelRepository.deleteFeel(found.get(0).getId()));
+        assertFalse(feelRepository.deleteFeel(found.get(0).getId()));
+        assertEquals(9, searchFeels("note 1", 100).size());
+        assertEquals(1, searchFeels("mem", 100).size());
+        assertTrue(feelRepository.awaitPendingWrites(5, TimeUnit.SECONDS));
+        assertEquals(99, feelRepository.getFeelCount());
+        assertEquals(99, feelStore.getCount());
+        assertEquals(1, feelStore.edits);
+    }
+
+    /**
+     * A {@code Feel} sorting within a stale window, but not within it, is still deleted or edited
+     * and the window is reloaded.
+     */
+    @Test
+    public void modificationsOfStaleWindowsAreApplied() throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            feelStore.feelTreeSet.add(new Feel(Feeling.Joy, "note " + i, new Date(i * 10)));
+        }
+        feelRepository.getPagedFeels();
+        runMainTasks();
+        // written behind the back of the loaded window
+        Feel deleted = new Feel(Feeling.Joy, "deleted", new Date(985));
+        Feel edited = new Feel(Feeling.Joy, "edited", new Date(975));
+        feelStore.feelTreeSet.add(deleted);
+        feelStore.feelTreeSet.add(edited);
+        assertNotNull(loadFeelTreeSet().getById(deleted.getId()));
+
+        assertTrue(feelRepository.deleteFeel(deleted.getId()));
+        assertTrue(feelRepository.editFeel(new Feel(edited.getId(), Feeling.Anger, "edited", new Date(975))));
+        assertTrue(feelRepository.awaitPendingWrites(5, TimeUnit.SECONDS));
+        runMainTasks();
+        assertEquals(101, feelStore.getCount());
+        assertNull(feelStore.feelTreeSet.getById(deleted.getId()));
+        assertEquals(Feeling.Anger, feelStore.feelTreeSet.getById(edited.getId()).getFeeling());
+        assertEquals(101, feelRepository.getFeelCount());
+        assertEquals(Feeling.Anger, feelRepository.getPagedFeels().peek(2).getFeeling());
+    }
+
+    /**
+     * Run the tasks posted to the main thread until a transfer finished.
+     */
+    private void runMainTasksUntilFinished(TransferResult result) throws InterruptedException {
+        while (!result.finished) {
+            Runnable task = mainTasks.poll(5, TimeUnit.SECONDS);
+            assertNotNull("Transfer did not finish", task);
+            task.run();
+        }
+        assertNull(result.error);
+    }
+
+    /**
+     * Imports are applied in batches while the window of displayed pages stays bounded, and
+     * importing an export again adds nothing as the ids are already known.
+     */
+    @Test
+    public void importsAreBatchedAndExportsReimportAsNoOp() throws InterruptedException, IOException {
+        for (int i = 0; i < 100; i++) {
+            feelStore.feelTreeSet.add(new Feel(Feeling.Joy, "note " + i, new Date(i)));
+        }
+        feelRepository.getPagedFeels();
+        runMainTasks();
+
+        ByteArrayOutputStream exported = new ByteArrayOutputStream();
+        TransferResult exportResult = new TransferResult();
+        feelRepository.attachTransferListener(exportResult);
+        feelRepository.exportFeels(FeelFileFormat.CSV, exported);
+        runMainTasksUntilFinished(exportResult);
+        assertEquals(100, exportResult.count);
+
+        // a reimport finishing while detached is notified once attached again
+        feelRepository.detachTransferListener(exportResult);
+        feelRepository.importFeels(new ByteArrayInputStream(exported.toByteArray()), exported.size());
+        runMainTasks();
+        assertTrue(feelRepository.isTransferring());
+        TransferResult reimportResult = new TransferResult();
+        feelRepository.attachTransferListener(reimportResult);
+        runMainTasksUntilFinished(reimportResult);
+        assertEquals(0, reimportResult.count);
+        assertFalse(feelRepository.isTransferring());
+
+        StringWriter csv = new StringWriter();
+        FeelCsvWriter csvWriter = new FeelCsvWriter(csv);
+        for (int i = 0; i < 10000; i++) {
+            csvWriter.write(new Feel(Feeling.Fear, "imported, " + i, new Date(1000 + i)));
+        }
+        byte[] bytes = csv.toString().getBytes(FeelImporter.CHARSET);
+        TransferResult importResult = new TransferResult();
+        feelRepository.attachTransferListener(importResult);
+        feelRepository.importFeels(new ByteArrayInputStream(bytes), bytes.length);
+        runMainTasksUntilFinished(importResult);
+        assertEquals(10000, importResult.count);
+        assertEquals(bytes.length, importResult.progress);
+        assertEquals(bytes.length, importResult.max);
+        assertEquals(10100, feelRepository.getFeelCount());
+        assertEquals(10100, feelRepository.getFeelTreeSet().size());
+        assertTrue(feelRepository.getPagedFeels().getWindowSize() <= 8);
+        assertTrue(feelRepository.awaitPendingWrites(5, TimeUnit.SECONDS));
+        assertEquals(10100, feelStore.getCount());
+        assertEquals((10000 + FeelImporter.BATCH_SIZE - 1) / FeelImporter.BATCH_SIZE, feelStore.addAlls);
+    }
+
+    /**
+     * An import failing with an unchecked exception still closes its stream and reports the
+     * failure, rather than leaving the transfer dialog up.
+     */
+    @Test
+    public void failedImportIsReported() throws InterruptedException {
+        final boolean[] closed = new boolean[1];
+        InputStream in = new InputStream() {
+            @Override
+            public int read() {
+                throw new IllegalStateException("broken");
+            }
+
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+        TransferResult result = new TransferResult();
+        feelRepository.attachTransferListener(result);
+        feelRepository.importFeels(in, -1);
+        while (!result.finished) {
+            Runnable task = mainTasks.poll(5, TimeUnit.SECONDS);
+            assertNotNull("Transfer did not finish", task);
+            task.run();
+        }
+        assertNotNull(result.error);
+        assertTrue(result.error.getCause() instanceof IllegalStateException);
+        assertTrue(closed[0]);
+        assertFalse(feelRepository.isTransferring());
+    }
+
+    private static class TransferResult implements FeelRepository.OnTransferListener {
+        long progress;
+        long max;
+        int count;
+        IOException error;
+        boolean finished;
+
+        @Override
+        public void onTransferProgress(long progress, long max) {
+            assertTrue(progress >= this.progress);
+            this.progress = progress;
+            this.max = max;
+        }
+
+        @Override
+        public void onTransferFinished(int count, IOException error) {
+            this.count = count;
+            this.error = error;
+            finished = true;
+        }
+    }
+
+    private static class CountingFeelStore implements FeelStore {
+        final FeelTreeSet feelTreeSet = new FeelTreeSet();
+        int loads;
+        int adds;
+        int removes;
+        int addAlls;
+        int removeAlls;
+        int edits;
+        int flushes;
+
+        @Override
+        public FeelTreeSet load() {
+            loads++;
+            FeelTreeSet loaded = new FeelTreeSet();
+            loaded.addAll(feelTreeSet);
+            return loaded;
+        }
+
+        @Override
+        public int getCount() {
+            return feelTreeSet.getCount();
+        }
+
+        @Override
+        public List<Feel> loadRange(int position, int count) {
+            return feelTreeSet.loadRange(position, count);
+        }
+
+        @Override
+        public void add(Feel feel) {
+            adds++;
+            feelTreeSet.add(feel);
+        }
+
+        @Override
+        public void remove(Feel feel) {
+            removes++;
+            feelTreeSet.remove(feel);
+        }
+
+        @Override
+        public void addAll(List<Feel> feels) {
+            addAlls++;
+            feelTreeSet.addAll(feels);
+        }
+
+        @Override
+        public void removeAll(List<Feel> feels) {
+            removeAlls++;
+            feelTreeSet.removeAll(feels);
+        }
+
+        @Override
+        public void edit(Feel oldFeel, Feel newFeel) {
+            edits++;
+            feelTreeSet.remove(oldFeel);
+            feelTreeSet.add(newFeel);
+        }
+
+        @Override
+        public void flush() {
+            flushes++;
+        }
+
+        @Override
+        public void compactIfNeeded() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Robolectric JVM tests for the {@code SQLiteFeelStore}, its save and load latency compared to
+ * the SharedPreferences JSON string it replaces is measured by the {@code FeelSaveBenchmark}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27, manifest = Config.NONE)
+public class SQLiteFeelStoreTest {
+    private Context context;
+    private SQLiteFeelStore sqliteFeelStore;
+
+    private static Feel feel(int i) {
+        return new Feel(i, Feeling.values()[i % Feeling.values().length], "comment é " + i, new Date(i * 60000L));
+    }
+
+    /**
+     * Write a {@code FeelTreeSet} as the SharedPreferences JSON string the app saved before
+     * the {@code FeelStore}, as a fixture to migrate from.
+     *
+     * @param feelTreeSet {@code FeelTreeSet}
+     */
+    private void saveSharedPreferencesFeelList(FeelTreeSet feelTreeSet) {
+        SharedPreferences mPrefs = context.getSharedPreferences(
+                FeelsBookPreferencesManager.FEELS_TREESET_PREF_NAME, Context.MODE_PRIVATE);
+        StringWriter json = new StringWriter();
+        FeelTreeSetJson.writeFeelTreeSet(json, feelTreeSet);
+        mPrefs.edit().putString(FeelsBookPreferencesManager.FEELS_TREESET_PREF_JSON_KEY, json.toString()).commit();
+    }
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.application;
+        sqliteFeelStore = new SQLiteFeelStore(context, SQLiteFeelStore.DATABASE_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        sqliteFeelStore.close();
+    }
+
+    @Test
+    public void modificationsMatchFeelTreeSet() {
+        FeelTreeSet expected = new FeelTreeSet();
+        Random random = new Random(5);
+        for (int i = 0; i < 500; i++) {
+            Feel feel = feel(random.nextInt(400));
+            switch (random.nextInt(3)) {
+                case 0:
+                    if (expected.add(feel)) {
+                        sqliteFeelStore.add(feel);
+                    }
+                    break;
+                case 1:
+                    if (expected.remove(feel)) {
+                        sqliteFeelStore.remove(feel);
+                    }
+                    break;
+                default:
+                    Feel newFeel = feel(random.nextInt(400));
+                    if (!expected.contains(newFeel) && expected.remove(feel)) {
+                        expected.add(newFeel);
+                        sqliteFeelStore.edit(feel, newFeel);
+                    }
+                    break;
+            }
+        }
+        sqliteFeelStore.flush();
+
+        assertEquals(expected.size(), sqliteFeelStore.getCount());
+        assertEquals(expected.getTallySnapshot(), sqliteFeelStore.loadTallySnapshot());
+        assertEquals(expected.getFeelHeatmap(), sqliteFeelStore.loadFeelHeatmap());
+        FeelTreeSet loaded = sqliteFeelStore.load();
+        assertEquals(expected.size(), loaded.size());
+        for (int position = 0; position < expected.size(); position += 30) {
+            List<Feel> page = sqliteFeelStore.loadRange(position, 30);
+            for (int i = 0; i < page.size(); i++) {
+                assertEquals(0, expected.get(position + i).compareTo(page.get(i)));
+                assertEquals(0, expected.get(position + i).compareTo(loaded.get(position + i)));
+            }
+        }
+    }
+
+    @Test
+    public void feelHeatmapFollowsTimeZone() {
+        TimeZone timeZone = TimeZone.getDefault();
+        try {
+            TimeZone.setDefault(TimeZone.getTimeZone("America/Edmonton"));
+            FeelHeatmap expected = new FeelHeatmap(TimeZone.getTimeZone("Asia/Kathmandu"));
+            for (int i = 0; i < 200; i++) {
+                Feel feel = new Feel(i, Feeling.values()[i % Feeling.values().length], "", new Date(i * 3217000L));
+                sqliteFeelStore.add(feel);
+                expected.add(feel);
+            }
+            // the quarter hours are bucketed within the time zone of the device when loaded
+            TimeZone.setDefault(TimeZone.getTimeZone("Asia/Kathmandu"));
+            assertEquals(expected, sqliteFeelStore.loadFeelHeatmap());
+        } finally {
+            TimeZone.setDefault(timeZone);
+        }
+    }
+
+    /**
+     * The {@code FeelSaveBenchmark} creates the {@code FeelSchema} rather than opening a
+     * {@code SQLiteFeelStore}, so the database created by the store must hold exactly the
+     * {@code FeelSchema}.
+     */
+    @Test
+    public void createsFeelSchema() {
+        assertEquals(0, sqliteFeelStore.getCount());
+        SQLiteDatabase expected = SQLiteDatabase.create(null);
+        SQLiteDatabase created = SQLiteDatabase.openDatabase(
+                context.getDatabasePath(SQLiteFeelStore.DATABASE_NAME).getPath(), null, SQLiteDatabase.OPEN_READONLY);
+        try {
+            for (String statement : FeelSchema.createStatements()) {
+                expected.execSQL(statement);
+            }
+            assertEquals(loadSchema(expected), loadSchema(created));
+        } finally {
+            expected.close();
+            created.close();
+        }
+    }
+
+    private static List<String> loadSchema(SQLiteDatabase database) {
+        List<String> schema = new ArrayList<>();
+        Cursor cursor = database.rawQuery("SELECT type, name, tbl_name, sql FROM sqlite_master "
+                + "WHERE name NOT LIKE 'android_%' AND name NOT LIKE 'sqlite_%' ORDER BY type, name", null);
+        try {
+            while (cursor.moveToNext()) {
+                schema.add(cursor.getString(0) + " " + cursor.getString(1) + " " + cursor.getString(2) + " " + cursor.getString(3));
+            }
+        } finally {
+            cursor.close();
+        }
+        return schema;
+    }
+
+    @Test
+    public void migratesSharedPreferencesFeelList() {
+        FeelTreeSet feelTreeSet = new FeelTreeSet();
+        for (int i = 0; i < 100; i++) {
+            feelTreeSet.add(feel(i));
+        }
+        saveSharedPreferencesFeelList(feelTreeSet);
+        File journalFile = new File(context.getFilesDir(), "missing.journal");
+        FeelsBookPreferencesManager.migrateToSQLiteFeelStore(context, sqliteFeelStore, journalFile);
+        assertEquals(100, sqliteFeelStore.getCount());
+        assertEquals(feelTreeSet.getTallySnapshot(), sqliteFeelStore.loadTallySnapshot());
+        // the JSON string is removed once migrated
+        assertEquals(0, FeelsBookPreferencesManager.loadSharedPreferencesFeelList(context).size());
+    }
+
+    @Test
+    public void loadsSharedPreferencesFeelListEqually() {
+        int size = 2000;
+        FeelTreeSet feelTreeSet = new FeelTreeSet();
+        for (int i = 0; i < size; i++) {
+            feelTreeSet.add(feel(i));
+        }
+        sqliteFeelStore.rewrite(feelTreeSet);
+        for (int i = 0; i < 50; i++) {
+            feelTreeSet.add(feel(size + i));
+            sqliteFeelStore.add(feel(size + i));
+        }
+        sqliteFeelStore.flush();
+        saveSharedPreferencesFeelList(feelTreeSet);
+
+        FeelTreeSet sharedPreferencesLoaded = FeelsBookPreferencesManager.loadSharedPreferencesFeelList(context);
+        FeelTreeSet sqliteLoaded = sqliteFeelStore.load();
+        assertEquals(sharedPreferencesLoaded.size(), sqliteLoaded.size());
+        assertEquals(sharedPreferencesLoaded.getTallySnapshot(), sqliteLoaded.getTallySnapshot());
+        List<Feel> firstPage = sqliteFeelStore.loadRange(0, FeelRepository.PAGE_SIZE);
+        for (int i = 0; i < firstPage.size(); i++) {
+            assertEquals(0, sharedPreferencesLoaded.get(i).compareTo(firstPage.get(i)));
+        }
+    }
+}
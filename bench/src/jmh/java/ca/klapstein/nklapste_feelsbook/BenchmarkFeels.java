@@ -0,0 +1,44 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import java.util.Date;
+import java.util.Random;
+
+
+/**
+ * Helper Class generating deterministic {@code Feel}s for the benchmarks.
+ */
+final class BenchmarkFeels {
+    private static final String TAG = "BenchmarkFeels";
+
+    /**
+     * Around when FeelsBook was written, {@code Feel}s are spread over the following year.
+     */
+    private static final long START_MILLIS = 1538000000000L;
+    private static final long YEAR_MILLIS = 365L * 24 * 60 * 60 * 1000;
+
+    private BenchmarkFeels() {
+    }
+
+    static Feel randomFeel(Random random) {
+        Feeling feeling = Feeling.values()[random.nextInt(Feeling.values().length)];
+        Date date = new Date(START_MILLIS + (long) (random.nextDouble() * YEAR_MILLIS));
+        String comment = random.nextInt(4) == 0 ? "" : "felt this " + random.nextInt(1000) + " times";
+        return new Feel(feeling, comment, date);
+    }
+
+    static Feel[] randomFeels(Random random, int count) {
+        Feel[] feels = new Feel[count];
+        for (int i = 0; i < count; i++) {
+            feels[i] = randomFeel(random);
+        }
+        return feels;
+    }
+
+    static FeelTreeSet feelTreeSet(Random random, int size) {
+        FeelTreeSet feelTreeSet = new FeelTreeSet();
+        while (feelTreeSet.size() < size) {
+            feelTreeSet.add(randomFeel(random));
+        }
+        return feelTreeSet;
+    }
+}
@@ -0,0 +1,90 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmarks of opening FeelsBook on a compacted {@code FeelJournal}, until the first page of the
+ * {@code FeelTab} can be displayed.
+ * <p>
+ * {@code fullLoad} replays the whole journal into a {@code FeelTreeSet} as FeelsBook did before
+ * paging, {@code firstPage} indexes the journal and reads only the newest page. The compacted
+ * journal has a {@code FeelSnapshot}, so {@code firstPage} and {@code firstPageAndTallies} read
+ * the index, page, and tallies from it rather than from the journal file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ColdStartBenchmark {
+    /**
+     * The page size of {@code FeelRepository}.
+     */
+    private static final int PAGE_SIZE = 64;
+
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    private File file;
+    private File snapshotFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = File.createTempFile("feels", ".journal");
+        snapshotFile = new File(file.getPath() + ".snapshot");
+        FeelJournal feelJournal = new FeelJournal(file);
+        feelJournal.rewrite(BenchmarkFeels.feelTreeSet(new Random(size), size));
+        feelJournal.close();
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (File deleted : new File[]{file, snapshotFile}) {
+            if (!deleted.delete()) {
+                deleted.deleteOnExit();
+            }
+        }
+    }
+
+    @Benchmark
+    public int fullLoad() {
+        FeelJournal feelJournal = new FeelJournal(file);
+        FeelTreeSet feelTreeSet = feelJournal.load();
+        feelJournal.close();
+        return feelTreeSet.size();
+    }
+
+    @Benchmark
+    public List<Feel> firstPage() {
+        FeelJournal feelJournal = new FeelJournal(file);
+        feelJournal.getCount();
+        List<Feel> page = feelJournal.loadRange(0, PAGE_SIZE);
+        feelJournal.close();
+        return page;
+    }
+
+    /**
+     * Open FeelsBook as far as drawing both the {@code FeelTab} and {@code StatsTab}.
+     */
+    @Benchmark
+    public TallySnapshot firstPageAndTallies() {
+        FeelJournal feelJournal = new FeelJournal(file);
+        feelJournal.loadRange(0, PAGE_SIZE);
+        TallySnapshot tallySnapshot = feelJournal.loadTallySnapshot();
+        feelJournal.close();
+        return tallySnapshot;
+    }
+}
@@ -0,0 +1,109 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Throughput of inserting a batch of {@code Feel}s into the sorted structures, and of re-sorting
+ * them, each of which is dominated by {@code Feel.compareTo}.
+ * <p>
+ * The {@code FeelTreeSet} is filled either one {@code Feel} at a time or by one {@code addAll} of
+ * the batch, shuffled or already sorted.
+ * <p>
+ * The {@code sameDay} batches share a handful of dates, as {@code Feel}s imported from a coarse
+ * source do, so their comparisons fall through to the feeling and comment.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class FeelBulkInsertBenchmark {
+    @Param({"1000", "100000"})
+    public int size;
+
+    @Param({"false", "true"})
+    public boolean sameDay;
+
+    private Feel[] feels;
+    private List<Feel> shuffledFeels;
+    private List<Feel> sortedFeels;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(size);
+        feels = BenchmarkFeels.randomFeels(random, size);
+        if (sameDay) {
+            for (int i = 0; i < feels.length; i++) {
+                Feel feel = feels[i];
+                feels[i] = new Feel(feel.getId(), feel.getFeeling(), feel.getComment(),
+                        new Date(1538000000000L + random.nextInt(8) * 1000L));
+            }
+        }
+        shuffledFeels = Arrays.asList(feels);
+        Feel[] sorted = feels.clone();
+        Arrays.sort(sorted);
+        sortedFeels = Collections.unmodifiableList(Arrays.asList(sorted));
+    }
+
+    @Benchmark
+    public TreeSet<Feel> treeSet() {
+        TreeSet<Feel> treeSet = new TreeSet<>();
+        for (Feel feel : feels) {
+            treeSet.add(feel);
+        }
+        return treeSet;
+    }
+
+    @Benchmark
+    public IndexedTreeSet<Feel> indexedTreeSet() {
+        IndexedTreeSet<Feel> indexedTreeSet = new IndexedTreeSet<>();
+        for (Feel feel : feels) {
+            indexedTreeSet.add(feel);
+        }
+        return indexedTreeSet;
+    }
+
+    @Benchmark
+    public FeelTreeSet feelTreeSet() {
+        FeelTreeSet feelTreeSet = new FeelTreeSet();
+        for (Feel feel : feels) {
+            feelTreeSet.add(feel);
+        }
+        return feelTreeSet;
+    }
+
+    @Benchmark
+    public FeelTreeSet feelTreeSetAddAll() {
+        FeelTreeSet feelTreeSet = new FeelTreeSet();
+        feelTreeSet.addAll(shuffledFeels);
+        return feelTreeSet;
+    }
+
+    @Benchmark
+    public FeelTreeSet feelTreeSetAddAllSorted() {
+        FeelTreeSet feelTreeSet = new FeelTreeSet();
+        feelTreeSet.addAll(sortedFeels);
+        return feelTreeSet;
+    }
+
+    @Benchmark
+    public Feel[] sort() {
+        Feel[] sorted = feels.clone();
+        Arrays.sort(sorted);
+        return sorted;
+    }
+}
@@ -0,0 +1,53 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmarks of {@code Feel.compareTo}, the comparison made at every node of the
+ * {@code FeelTreeSet}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FeelCompareBenchmark {
+    private Feel[] feels;
+    private Feel sameDateA;
+    private Feel sameDateB;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        feels = BenchmarkFeels.randomFeels(new Random(1), 1024);
+        Date date = new Date(1538000000000L);
+        sameDateA = new Feel(Feeling.Joy, "a comment sharing a long prefix 1", date);
+        sameDateB = new Feel(Feeling.Joy, "a comment sharing a long prefix 2", date);
+    }
+
+    /**
+     * Compare {@code Feel}s that almost always differ by date.
+     */
+    @Benchmark
+    public int differentDates() {
+        int i = next++;
+        return feels[i & 1023].compareTo(feels[(i + 1) & 1023]);
+    }
+
+    /**
+     * Compare {@code Feel}s that fall through to the feeling and comment tie-breaks.
+     */
+    @Benchmark
+    public int sameDate() {
+        return sameDateA.compareTo(sameDateB);
+    }
+}
@@ -0,0 +1,94 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmarks of formatting and parsing the date of a {@code Feel}.
+ * <p>
+ * The {@code simpleDateFormat} benchmarks replay the former shared {@code SimpleDateFormat} for
+ * comparison with {@code FeelDateFormat}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FeelDateFormatBenchmark {
+    /**
+     * Roughly the number of rows a phone shows at once.
+     */
+    private static final int VISIBLE_ROWS = 16;
+
+    private final SimpleDateFormat simpleDateFormat = new SimpleDateFormat(FeelDateFormat.PATTERN, Locale.getDefault());
+    private Feel[] feels;
+    private String[] labels;
+    private FeelDateFormat uncachedDateFormat;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        feels = BenchmarkFeels.randomFeels(new Random(2), 1024);
+        labels = new String[feels.length];
+        for (int i = 0; i < feels.length; i++) {
+            labels[i] = Feel.dateFormat.format(feels[i].getDate());
+        }
+    }
+
+    /**
+     * Bind a screen of rows, as {@code FeelAdapter.onBindViewHolder} does while scrolling back and
+     * forth, with the former {@code SimpleDateFormat}.
+     */
+    @Benchmark
+    public void bindSimpleDateFormat(Blackhole blackhole) {
+        int firstRow = next++ & (feels.length - VISIBLE_ROWS - 1);
+        for (int position = firstRow; position < firstRow + VISIBLE_ROWS; position++) {
+            blackhole.consume(simpleDateFormat.format(feels[position].getDate()));
+        }
+    }
+
+    /**
+     * Bind a screen of rows with {@code FeelDateFormat}, whose labels are cached.
+     */
+    @Benchmark
+    public void bindFeelDateFormat(Blackhole blackhole) {
+        int firstRow = next++ & (feels.length - VISIBLE_ROWS - 1);
+        for (int position = firstRow; position < firstRow + VISIBLE_ROWS; position++) {
+            blackhole.consume(Feel.dateFormat.format(feels[position].getDate()));
+        }
+    }
+
+    /**
+     * Format with a fresh {@code FeelDateFormat} every 1024 calls so labels are rarely cached.
+     */
+    @Benchmark
+    public String formatUncached() {
+        int i = next++ & 1023;
+        if (i == 0 || uncachedDateFormat == null) {
+            uncachedDateFormat = new FeelDateFormat(TimeZone.getDefault());
+        }
+        return uncachedDateFormat.format(feels[i].getDate());
+    }
+
+    @Benchmark
+    public long parseSimpleDateFormat() throws ParseException {
+        return simpleDateFormat.parse(labels[next++ & 1023]).getTime();
+    }
+
+    @Benchmark
+    public long parseFeelDateFormat() {
+        return Feel.dateFormat.parse(labels[next++ & 1023]);
+    }
+}
@@ -0,0 +1,61 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import java.util.Random;
+
+
+/**
+ * Reports the retained heap of a million {@code Feel}s, as JMH only measures allocation.
+ * <p>
+ * Compares the {@code IndexedTreeSet} of {@code Feel} objects that used to back the
+ * {@code FeelTreeSet} with the {@code FeelColumns} now backing it, and the whole
+ * {@code FeelTreeSet} including its id map and rollups. Each is filled with the same generated
+ * {@code Feel}s, which are only retained by the structure measured. Run the {@code main} of
+ * this class on the jmh classpath with a heap of at least 2 GB.
+ */
+public final class FeelFootprint {
+    private static final String TAG = "FeelFootprint";
+
+    private static final int SIZE = 1000000;
+
+    private FeelFootprint() {
+    }
+
+    public static void main(String[] args) {
+        long before = usedHeap();
+        IndexedTreeSet<Feel> indexedTreeSet = new IndexedTreeSet<>();
+        Random random = new Random(SIZE);
+        while (indexedTreeSet.size() < SIZE) {
+            indexedTreeSet.add(BenchmarkFeels.randomFeel(random));
+        }
+        report("IndexedTreeSet<Feel>", usedHeap() - before, indexedTreeSet.size());
+        indexedTreeSet = null;
+
+        before = usedHeap();
+        FeelColumns feelColumns = new FeelColumns();
+        random = new Random(SIZE);
+        while (feelColumns.size() < SIZE) {
+            feelColumns.insert(BenchmarkFeels.randomFeel(random));
+        }
+        report("FeelColumns", usedHeap() - before, feelColumns.size());
+        feelColumns = null;
+
+        before = usedHeap();
+        FeelTreeSet feelTreeSet = BenchmarkFeels.feelTreeSet(new Random(SIZE), SIZE);
+        report("FeelTreeSet", usedHeap() - before, feelTreeSet.size());
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * The size is taken after measuring, so the structure is still reachable while measured.
+     */
+    private static void report(String name, long bytes, int size) {
+        System.out.printf("%-22s %,14d bytes %8.1f bytes/feel%n", name, bytes, (double) bytes / size);
+    }
+}
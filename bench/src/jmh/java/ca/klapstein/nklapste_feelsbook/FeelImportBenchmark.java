@@ -0,0 +1,74 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmarks of importing a CSV or JSON file into a {@code FeelTreeSet} in batches, as done by
+ * {@code FeelRepository.importFeels}, and of exporting one.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FeelImportBenchmark {
+    @Param({"100000", "1000000"})
+    public int size;
+
+    @Param({"CSV", "JSON"})
+    public String format;
+
+    private FeelFileFormat fileFormat;
+    private FeelTreeSet feelTreeSet;
+    private byte[] file;
+
+    @Setup
+    public void setUp() throws IOException {
+        fileFormat = FeelFileFormat.valueOf(format);
+        feelTreeSet = new FeelTreeSet();
+        feelTreeSet.addAll(Arrays.asList(BenchmarkFeels.randomFeels(new Random(size), size)));
+        file = export().toByteArray();
+    }
+
+    @Benchmark
+    public FeelTreeSet importFeels() throws IOException {
+        final FeelTreeSet imported = new FeelTreeSet();
+        FeelImporter.importFeels(new ByteArrayInputStream(file), file.length, FeelImporter.BATCH_SIZE,
+                new FeelImporter.Listener() {
+                    @Override
+                    public void onBatch(List<Feel> feels) {
+                        imported.addAll(feels);
+                    }
+
+                    @Override
+                    public void onProgress(long bytesRead, long totalBytes) {
+                    }
+                });
+        return imported;
+    }
+
+    @Benchmark
+    public ByteArrayOutputStream export() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(file == null ? 0 : file.length);
+        FeelExporter.exportFeels(feelTreeSet, fileFormat, out, new FeelExporter.Listener() {
+            @Override
+            public void onProgress(int written, int total) {
+            }
+        });
+        return out;
+    }
+}
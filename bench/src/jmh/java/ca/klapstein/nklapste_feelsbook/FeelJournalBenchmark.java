@@ -0,0 +1,71 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmarks of the {@code FeelJournal}, the persistence path of every FeelsBook modification.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FeelJournalBenchmark {
+    @Param({"1000", "10000"})
+    public int size;
+
+    private File file;
+    private FeelJournal feelJournal;
+    private Feel[] feels;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(size);
+        file = File.createTempFile("feels", ".journal");
+        feelJournal = new FeelJournal(file);
+        feelJournal.rewrite(BenchmarkFeels.feelTreeSet(random, size));
+        feels = BenchmarkFeels.randomFeels(random, 1024);
+    }
+
+    @TearDown
+    public void tearDown() {
+        feelJournal.close();
+        if (!file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    /**
+     * Append an add and a remove record, followed by the flush and the compaction check done after
+     * each batch.
+     */
+    @Benchmark
+    public void addRemoveFlush() {
+        Feel feel = feels[next++ & 1023];
+        feelJournal.add(feel);
+        feelJournal.remove(feel);
+        feelJournal.flush();
+        feelJournal.compactIfNeeded();
+    }
+
+    /**
+     * Replay the whole journal, as done once when FeelsBook starts.
+     */
+    @Benchmark
+    public FeelTreeSet load() {
+        return feelJournal.load();
+    }
+}
@@ -0,0 +1,80 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmarks of saving and loading a {@code FeelTreeSet} as JSON, as done by
+ * {@code FeelsBookPreferencesManager}.
+ * <p>
+ * The reflective benchmarks are the baseline of a plain {@code new Gson()} serializing every
+ * field of each {@code Feel}, as FeelsBook did before the {@code FeelTreeSetJson} adapters.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FeelJsonBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    private static final Type FEEL_COLLECTION_TYPE = new TypeToken<Collection<Feel>>() {
+    }.getType();
+    private static final Type FEEL_LIST_TYPE = new TypeToken<List<Feel>>() {
+    }.getType();
+
+    private final Gson reflectiveGson = new Gson();
+    private FeelTreeSet feelTreeSet;
+    private String json;
+    private String reflectiveJson;
+
+    @Setup
+    public void setUp() {
+        feelTreeSet = BenchmarkFeels.feelTreeSet(new Random(size), size);
+        StringWriter writer = new StringWriter();
+        FeelTreeSetJson.writeFeelTreeSet(writer, feelTreeSet);
+        json = writer.toString();
+        reflectiveJson = reflectiveGson.toJson(feelTreeSet, FEEL_COLLECTION_TYPE);
+    }
+
+    @Benchmark
+    public String save() {
+        StringWriter writer = new StringWriter(json.length());
+        FeelTreeSetJson.writeFeelTreeSet(writer, feelTreeSet);
+        return writer.toString();
+    }
+
+    @Benchmark
+    public FeelTreeSet load() {
+        return FeelTreeSetJson.readFeelTreeSet(new StringReader(json));
+    }
+
+    @Benchmark
+    public String saveReflective() {
+        return reflectiveGson.toJson(feelTreeSet, FEEL_COLLECTION_TYPE);
+    }
+
+    @Benchmark
+    public FeelTreeSet loadReflective() {
+        List<Feel> feels = reflectiveGson.fromJson(reflectiveJson, FEEL_LIST_TYPE);
+        FeelTreeSet loaded = new FeelTreeSet();
+        loaded.addAll(feels);
+        return loaded;
+    }
+}
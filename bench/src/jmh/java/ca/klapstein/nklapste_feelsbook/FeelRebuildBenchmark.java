@@ -0,0 +1,78 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Scaling of rebuilding all statistics of a million {@code Feel}s, as after a bulk import, with
+ * {@code FeelTreeSet.rebuildStatistics} on a {@code ForkJoinPool} of 1 to 8 threads.
+ * <p>
+ * {@code walk} replays the former single threaded rebuild, which created each {@code Feel} to
+ * update the statistics once per {@code Feel}, for comparison.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FeelRebuildBenchmark {
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    @Param({"false", "true"})
+    public boolean comments;
+
+    private FeelTreeSet feelTreeSet;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setUp() {
+        feelTreeSet = new FeelTreeSet();
+        feelTreeSet.addAll(Arrays.asList(BenchmarkFeels.randomFeels(new Random(1), 1000000)));
+        if (comments) {
+            feelTreeSet.getCommentIndex();
+        }
+        pool = new ForkJoinPool(threads);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public FeelTreeSet rebuildStatistics() {
+        feelTreeSet.rebuildStatistics(pool);
+        return feelTreeSet;
+    }
+
+    @Benchmark
+    public Object walk() {
+        int[] tallies = new int[Feeling.values().length];
+        FeelRollups feelRollups = new FeelRollups(TimeZone.getDefault());
+        FeelHeatmap feelHeatmap = new FeelHeatmap(TimeZone.getDefault());
+        // only built, never searched, so it needs no FeelColumns holding the Feels
+        FeelCommentIndex commentIndex = comments ? new FeelCommentIndex(new FeelColumns()) : null;
+        for (Feel feel : feelTreeSet) {
+            tallies[feel.getFeeling().ordinal()]++;
+            feelRollups.add(feel);
+            feelHeatmap.add(feel);
+            if (commentIndex != null) {
+                commentIndex.add(feel);
+            }
+        }
+        return commentIndex != null ? commentIndex : feelHeatmap;
+    }
+}
@@ -0,0 +1,147 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmarks of saving one modification, and loading the first page, with the SharedPreferences
+ * JSON string compared to the row per {@code Feel} of the {@code SQLiteFeelStore}.
+ * <p>
+ * The {@code SQLiteFeelStore} needs Android, so its {@code FeelSchema} is created here through the
+ * sqlite-jdbc driver, which embeds the same SQLite library.
+ * Loading the whole JSON string is measured by {@code FeelJsonBenchmark}.
+ *
+ * @see FeelJsonBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FeelSaveBenchmark {
+    @Param({"2000", "10000"})
+    public int size;
+
+    private static final int PAGE_SIZE = 64;
+
+    private FeelTreeSet feelTreeSet;
+    private Feel[] feels;
+    private int next;
+
+    private File file;
+    private Connection connection;
+    private PreparedStatement insert;
+    private PreparedStatement delete;
+    private PreparedStatement firstPage;
+
+    @Setup
+    public void setUp() throws IOException, SQLException {
+        Random random = new Random(size);
+        feelTreeSet = BenchmarkFeels.feelTreeSet(random, size);
+        feels = BenchmarkFeels.randomFeels(random, 1024);
+
+        file = File.createTempFile("feels", ".db");
+        connection = DriverManager.getConnection("jdbc:sqlite:" + file.getPath());
+        Statement statement = connection.createStatement();
+        try {
+            statement.execute("PRAGMA journal_mode=WAL");
+            for (String sql : FeelSchema.createStatements()) {
+                statement.execute(sql);
+            }
+        } finally {
+            statement.close();
+        }
+        insert = connection.prepareStatement(FeelSchema.INSERT_FEEL);
+        delete = connection.prepareStatement("DELETE FROM feels WHERE _id = ?");
+        firstPage = connection.prepareStatement("SELECT date, feeling, comment, _id FROM feels "
+                + "ORDER BY " + FeelSchema.FEEL_ORDER + " LIMIT " + PAGE_SIZE);
+        connection.setAutoCommit(false);
+        for (Feel feel : feelTreeSet) {
+            bindInsert(feel);
+            insert.executeUpdate();
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        connection.close();
+        if (!file.delete()) {
+            file.deleteOnExit();
+        }
+        new File(file.getPath() + "-wal").delete();
+        new File(file.getPath() + "-shm").delete();
+    }
+
+    private void bindInsert(Feel feel) throws SQLException {
+        insert.setLong(1, feel.getDate().getTime());
+        insert.setInt(2, feel.getFeeling().ordinal());
+        insert.setString(3, feel.getComment());
+        insert.setLong(4, feel.getId());
+    }
+
+    /**
+     * Add or remove a {@code Feel}, then serialize the whole {@code FeelTreeSet} again, as
+     * {@code saveSharedPreferencesFeelList} did on every modification.
+     */
+    @Benchmark
+    public String sharedPreferencesSave() {
+        Feel feel = feels[next++ & 1023];
+        if (!feelTreeSet.add(feel)) {
+            feelTreeSet.remove(feel);
+        }
+        StringWriter json = new StringWriter();
+        FeelTreeSetJson.writeFeelTreeSet(json, feelTreeSet);
+        return json.toString();
+    }
+
+    /**
+     * Insert or delete the row of a {@code Feel}, a single row write of the log.
+     */
+    @Benchmark
+    public int sqliteSave() throws SQLException {
+        Feel feel = feels[next++ & 1023];
+        bindInsert(feel);
+        if (insert.executeUpdate() == 0) {
+            delete.setLong(1, feel.getId());
+            return delete.executeUpdate();
+        }
+        return 1;
+    }
+
+    /**
+     * Walk the order index for the first page of {@code Feel}s shown.
+     */
+    @Benchmark
+    public long sqliteFirstPage() throws SQLException {
+        long sum = 0;
+        ResultSet resultSet = firstPage.executeQuery();
+        try {
+            while (resultSet.next()) {
+                sum += resultSet.getLong(4);
+            }
+        } finally {
+            resultSet.close();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,73 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmarks of searching the comments of a million {@code Feel}s for the {@code FeelTab}.
+ * <p>
+ * {@code indexSearch} answers from the {@code FeelCommentIndex}, {@code scanSearch} matches the
+ * comment of every {@code Feel} in order as a search without the index would. The queries range
+ * from a rare word to a word within most comments.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FeelSearchBenchmark {
+    /**
+     * The search limit of {@code FeelTab}.
+     */
+    private static final int LIMIT = 500;
+
+    @Param({"1000000"})
+    public int size;
+
+    @Param({"felt 999", "felt 12", "times 1", "felt"})
+    public String query;
+
+    private FeelTreeSet feelTreeSet;
+
+    @Setup
+    public void setUp() {
+        feelTreeSet = BenchmarkFeels.feelTreeSet(new Random(size), size);
+        feelTreeSet.getCommentIndex();
+    }
+
+    @Benchmark
+    public List<Feel> indexSearch() {
+        return feelTreeSet.getCommentIndex().search(query, LIMIT);
+    }
+
+    @Benchmark
+    public List<Feel> scanSearch() {
+        String[] queryWords = FeelCommentIndex.uniqueWords(query);
+        List<Feel> found = new ArrayList<>();
+        for (Feel feel : feelTreeSet) {
+            String comment = feel.getComment().toLowerCase(Locale.ROOT);
+            boolean matches = true;
+            for (String queryWord : queryWords) {
+                matches &= comment.startsWith(queryWord) || comment.contains(" " + queryWord);
+            }
+            if (matches) {
+                found.add(feel);
+                if (found.size() == LIMIT) {
+                    break;
+                }
+            }
+        }
+        return found;
+    }
+}
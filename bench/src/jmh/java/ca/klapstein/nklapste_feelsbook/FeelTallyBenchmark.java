@@ -0,0 +1,85 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmarks of 1M add/remove cycles of the {@code Feeling} tallies of a {@code FeelTreeSet}.
+ * <p>
+ * {@code boxedTallies} replays the former {@code HashMap<Feeling, Integer>} tallies for
+ * comparison, run with the {@code gc} profiler to compare their allocation rates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FeelTallyBenchmark {
+    private static final int CYCLES = 1000000;
+
+    private FeelTreeSet feelTreeSet;
+    private Feel[] feels;
+    private HashMap<Feeling, Integer> boxedTallies;
+    private int[] primitiveTallies;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(3);
+        feelTreeSet = BenchmarkFeels.feelTreeSet(random, 10000);
+        feels = BenchmarkFeels.randomFeels(random, 1024);
+        // tallies of a large history, outside of the Integer cache just like a real FeelsBook
+        boxedTallies = new HashMap<>();
+        primitiveTallies = new int[Feeling.values().length];
+        for (Feeling feeling : Feeling.values()) {
+            boxedTallies.put(feeling, 2000);
+            primitiveTallies[feeling.ordinal()] = 2000;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CYCLES)
+    public int feelTreeSetAddRemove() {
+        int changed = 0;
+        for (int i = 0; i < CYCLES; i++) {
+            Feel feel = feels[i & 1023];
+            if (feelTreeSet.add(feel)) {
+                changed++;
+            }
+            if (feelTreeSet.remove(feel)) {
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CYCLES)
+    public HashMap<Feeling, Integer> boxedTallies() {
+        for (int i = 0; i < CYCLES; i++) {
+            Feeling feeling = feels[i & 1023].getFeeling();
+            boxedTallies.put(feeling, boxedTallies.get(feeling) + 1);
+            boxedTallies.put(feeling, boxedTallies.get(feeling) - 1);
+        }
+        return boxedTallies;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CYCLES)
+    public int[] primitiveTallies() {
+        for (int i = 0; i < CYCLES; i++) {
+            int ordinal = feels[i & 1023].getFeeling().ordinal();
+            primitiveTallies[ordinal]++;
+            primitiveTallies[ordinal]--;
+        }
+        return primitiveTallies;
+    }
+}
@@ -0,0 +1,97 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmarks of {@code FeelTreeSet} modification, of the positional access made by the
+ * {@code FeelAdapter} while binding rows, and of finding an edited {@code Feel} by its id.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FeelTreeSetBenchmark {
+    /**
+     * Roughly the number of rows a phone shows at once.
+     */
+    private static final int VISIBLE_ROWS = 16;
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    private FeelTreeSet feelTreeSet;
+    private Feel[] absentFeels;
+    private Feel[] presentFeels;
+    private long[] presentIds;
+    private Random random;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        random = new Random(size);
+        feelTreeSet = BenchmarkFeels.feelTreeSet(random, size);
+        absentFeels = BenchmarkFeels.randomFeels(random, 1024);
+        presentFeels = feelTreeSet.toArray(new Feel[0]);
+        presentIds = new long[presentFeels.length];
+        for (int i = 0; i < presentFeels.length; i++) {
+            presentIds[i] = presentFeels[i].getId();
+        }
+    }
+
+    /**
+     * Add a new {@code Feel} and remove it again, keeping the size of the set constant.
+     */
+    @Benchmark
+    public boolean addRemove() {
+        Feel feel = absentFeels[next++ & (absentFeels.length - 1)];
+        return feelTreeSet.add(feel) & feelTreeSet.remove(feel);
+    }
+
+    /**
+     * Bind a screen of rows at a random scroll position, as {@code FeelAdapter.onBindViewHolder}
+     * does with {@code FeelTreeSet.get}.
+     */
+    @Benchmark
+    public void bindVisibleRows(Blackhole blackhole) {
+        int firstRow = random.nextInt(size - VISIBLE_ROWS);
+        for (int position = firstRow; position < firstRow + VISIBLE_ROWS; position++) {
+            blackhole.consume(feelTreeSet.get(position));
+        }
+    }
+
+    /**
+     * Find the position of a clicked {@code Feel}, as {@code FeelRepository} does for each change.
+     */
+    @Benchmark
+    public int indexOf() {
+        return feelTreeSet.indexOf(presentFeels[random.nextInt(presentFeels.length)]);
+    }
+
+    /**
+     * Find an edited {@code Feel} by its id, as {@code FeelRepository.editFeel} does.
+     */
+    @Benchmark
+    public Feel getById() {
+        return feelTreeSet.getById(presentIds[random.nextInt(presentIds.length)]);
+    }
+
+    /**
+     * Find an edited {@code Feel} by its position through {@code toArray}, as the
+     * {@code FeelTab} once did.
+     */
+    @Benchmark
+    public Feel toArrayAtPosition() {
+        return feelTreeSet.toArray(new Feel[0])[random.nextInt(size)];
+    }
+}
@@ -0,0 +1,320 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+
+/**
+ * A thread safe variant of {@code FeelTreeSet} for use by background writers, such as an
+ * importer or a widget, while the UI thread reads, or by background readers, such as the
+ * {@code FeelTrends} computed by the {@code FeelRepository}, while the UI thread writes.
+ * <p>
+ * All modifications are made under a write lock, thus, the tallies of each {@code Feeling} are
+ * always consistent with the membership of the underlying {@code FeelTreeSet}. Reads are made
+ * under a shared read lock, so readers never block each other.
+ * <p>
+ * Unlike a {@code ConcurrentSkipListSet} this retains the O(log n) positional access of the
+ * {@code FeelTreeSet} that the {@code FeelAdapter} depends on. Multiple reads that need to be
+ * consistent with each other, e.g. {@code size} and {@code getTallySnapshot}, should be made
+ * together within {@code read}.
+ * <p>
+ * {@code searchComments} builds the {@code FeelCommentIndex} on first use, and
+ * {@code getTrendSnapshot} rebuilds the stale runs of the {@code FeelTrends}, outside of the lock,
+ * from a copy of the columns taken under the read lock. What was built is installed under the
+ * write lock unless the set was modified meanwhile, in which case it is built again. Thus,
+ * writers only ever wait for the copy, not for the build.
+ *
+ * @see FeelTreeSet
+ */
+class ConcurrentFeelTreeSet {
+    private static final String TAG = "ConcurrentFeelTreeSet";
+
+    private final FeelTreeSet feelTreeSet;
+    private final Lock readLock;
+    private final Lock writeLock;
+
+    ConcurrentFeelTreeSet() {
+        this(new FeelTreeSet());
+    }
+
+    /**
+     * Construct a {@code ConcurrentFeelTreeSet} guarding the given {@code FeelTreeSet}.
+     * <p>
+     * The given {@code FeelTreeSet} must no longer be accessed directly.
+     *
+     * @param feelTreeSet {@code FeelTreeSet}
+     */
+    ConcurrentFeelTreeSet(FeelTreeSet feelTreeSet) {
+        this.feelTreeSet = feelTreeSet;
+        ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        this.readLock = lock.readLock();
+        this.writeLock = lock.writeLock();
+    }
+
+    /**
+     * Add a {@code Feel}.
+     *
+     * @param feel {@code Feel}
+     * @return {@code boolean} {@code true} if the {@code Feel} was added.
+     */
+    boolean add(Feel feel) {
+        writeLock.lock();
+        try {
+            return feelTreeSet.add(feel);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Add many {@code Feel}s within a single acquisition of the write lock.
+     *
+     * @param feels {@code Collection<Feel>}
+     * @return {@code int} the number of {@code Feel}s that were added.
+     */
+    int addAll(Collection<Feel> feels) {
+        writeLock.lock();
+        try {
+            int sizeBefore = feelTreeSet.size();
+            feelTreeSet.addAll(feels);
+            return feelTreeSet.size() - sizeBefore;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Remove many {@code Feel}s within a single acquisition of the write lock.
+     *
+     * @param feels {@code Collection<Feel>}
+     * @return {@code int} the number of {@code Feel}s that were removed.
+     */
+    int removeAll(Collection<Feel> feels) {
+        writeLock.lock();
+        try {
+            int sizeBefore = feelTreeSet.size();
+            feelTreeSet.removeAll(feels);
+            return sizeBefore - feelTreeSet.size();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Remove a {@code Feel}.
+     *
+     * @param feel {@code Feel}
+     * @return {@code boolean} {@code true} if the {@code Feel} was removed.
+     */
+    boolean remove(Feel feel) {
+        writeLock.lock();
+        try {
+            return feelTreeSet.remove(feel);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Atomically replace a {@code Feel} with another.
+     *
+     * @param oldFeel {@code Feel}
+     * @param newFeel {@code Feel}
+     * @return {@code boolean} {@code true} if {@code oldFeel} was present and replaced.
+     */
+    boolean replace(Feel oldFeel, Feel newFeel) {
+        writeLock.lock();
+        try {
+            if (!feelTreeSet.remove(oldFeel)) {
+                return false;
+            }
+            feelTreeSet.add(newFeel);
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    void clear() {
+        writeLock.lock();
+        try {
+            feelTreeSet.clear();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    boolean contains(Feel feel) {
+        readLock.lock();
+        try {
+            return feelTreeSet.contains(feel);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Get the {@code Feel} of an id.
+     *
+     * @param id {@code long}
+     * @return {@code Feel} or {@code null} if no {@code Feel} of the id is held.
+     */
+    Feel getById(long id) {
+        readLock.lock();
+        try {
+            return feelTreeSet.getById(id);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    int size() {
+        readLock.lock();
+        try {
+            return feelTreeSet.size();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Get the {@code Feel} at a position, or {@code null} if the position is no longer valid.
+     *
+     * @param position {@code int}
+     * @return {@code Feel}
+     */
+    Feel get(int position) {
+        readLock.lock();
+        try {
+            return position >= 0 && position < feelTreeSet.size() ? feelTreeSet.get(position) : null;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    int indexOf(Feel feel) {
+        readLock.lock();
+        try {
+            return feelTreeSet.indexOf(feel);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    TallySnapshot getTallySnapshot() {
+        readLock.lock();
+        try {
+            return feelTreeSet.getTallySnapshot();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Copy the current {@code Feel}s, in sorted order, for iteration outside of the lock.
+     *
+     * @return {@code List<Feel>}
+     */
+    List<Feel> toList() {
+        readLock.lock();
+        try {
+            return new ArrayList<>(feelTreeSet);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Take a {@code TrendSnapshot} of the {@code FeelTrends}, rebuilding their stale runs outside
+     * of the lock.
+     *
+     * @param nowMillis {@code long} epoch milliseconds of the day of the snapshot.
+     * @return {@code TrendSnapshot}
+     * @see FeelTrends#getSnapshot(long)
+     */
+    TrendSnapshot getTrendSnapshot(long nowMillis) {
+        while (true) {
+            FeelTrends.Rebuild rebuild;
+            readLock.lock();
+            try {
+                FeelTrends feelTrends = feelTreeSet.getFeelTrends();
+                rebuild = feelTrends.copyForRebuild();
+                if (rebuild == null) {
+                    return feelTrends.getSnapshot(nowMillis);
+                }
+            } finally {
+                readLock.unlock();
+            }
+            rebuild.run(ForkJoinPool.commonPool());
+            writeLock.lock();
+            try {
+                feelTreeSet.getFeelTrends().finishRebuild(rebuild);
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Search the comments of the {@code Feel}s, building the {@code FeelCommentIndex} outside of
+     * the lock on first use.
+     * <p>
+     * The {@code FeelCommentIndex} reuses its buffers between searches, so searches must not run
+     * concurrently with each other.
+     *
+     * @param query {@code String} words that each must start a word of a matching comment.
+     * @param limit {@code int} the maximum number of {@code Feel}s to return.
+     * @return {@code List<Feel>} the matching {@code Feel}s in {@code Feel.compareTo} order.
+     * @see FeelCommentIndex#search(String, int)
+     */
+    List<Feel> searchComments(String query, int limit) {
+        while (true) {
+            FeelTreeSet.CommentIndexBuild build;
+            readLock.lock();
+            try {
+                build = feelTreeSet.copyForCommentIndex();
+                if (build == null) {
+                    return feelTreeSet.getCommentIndex().search(query, limit);
+                }
+            } finally {
+                readLock.unlock();
+            }
+            build.run();
+            writeLock.lock();
+            try {
+                feelTreeSet.finishCommentIndex(build);
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Run a {@code Reader} against a consistent view of the underlying {@code FeelTreeSet}.
+     *
+     * @param reader {@code Reader<T>} which must not modify the {@code FeelTreeSet}.
+     * @param <T>    the type of the result.
+     * @return {@code T} the result of the {@code Reader}.
+     */
+    <T> T read(Reader<T> reader) {
+        readLock.lock();
+        try {
+            return reader.read(feelTreeSet);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Interface for reading multiple values from a {@code ConcurrentFeelTreeSet} atomically.
+     *
+     * @param <T> the type of the result.
+     */
+    interface Reader<T> {
+        T read(FeelTreeSet feelTreeSet);
+    }
+}
@@ -0,0 +1,47 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import android.support.annotation.NonNull;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+
+/**
+ * {@code FilterInputStream} that counts the bytes read through it, used to find the end of the
+ * last complete record of a {@code FeelJournal} and to report the progress of an import.
+ */
+final class CountingInputStream extends FilterInputStream {
+    private static final String TAG = "CountingInputStream";
+
+    long count;
+
+    CountingInputStream(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        int result = super.read();
+        if (result != -1) {
+            count++;
+        }
+        return result;
+    }
+
+    @Override
+    public int read(@NonNull byte[] buffer, int offset, int length) throws IOException {
+        int result = super.read(buffer, offset, length);
+        if (result != -1) {
+            count += result;
+        }
+        return result;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long result = super.skip(n);
+        count += result;
+        return result;
+    }
+}
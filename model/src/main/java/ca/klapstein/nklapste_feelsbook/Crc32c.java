@@ -0,0 +1,99 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import java.util.zip.Checksum;
+
+
+/**
+ * CRC-32C (Castagnoli) {@code Checksum} of the segments of a {@code FeelJournal}.
+ * <p>
+ * {@code java.util.zip.CRC32C} only exists from Android API 26 on, so this is a table driven
+ * slicing-by-8 implementation that processes eight bytes per step.
+ *
+ * @see FeelJournal
+ */
+final class Crc32c implements Checksum {
+    private static final String TAG = "Crc32c";
+
+    /**
+     * The reversed Castagnoli polynomial.
+     */
+    private static final int POLYNOMIAL = 0x82F63B78;
+
+    /**
+     * {@code TABLE[k][b]} is the CRC of byte {@code b} followed by {@code k} zero bytes.
+     */
+    private static final int[][] TABLE = new int[8][256];
+
+    static {
+        for (int b = 0; b < 256; b++) {
+            int crc = b;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc >>> 1) ^ (POLYNOMIAL & -(crc & 1));
+            }
+            TABLE[0][b] = crc;
+        }
+        for (int b = 0; b < 256; b++) {
+            for (int k = 1; k < 8; k++) {
+                int previous = TABLE[k - 1][b];
+                TABLE[k][b] = (previous >>> 8) ^ TABLE[0][previous & 0xFF];
+            }
+        }
+    }
+
+    private int crc = 0xFFFFFFFF;
+
+    /**
+     * Compute the CRC-32C of a range of bytes.
+     *
+     * @param bytes  {@code byte[]}
+     * @param offset {@code int}
+     * @param length {@code int}
+     * @return {@code int}
+     */
+    static int of(byte[] bytes, int offset, int length) {
+        Crc32c crc32c = new Crc32c();
+        crc32c.update(bytes, offset, length);
+        return (int) crc32c.getValue();
+    }
+
+    @Override
+    public void update(int b) {
+        crc = (crc >>> 8) ^ TABLE[0][(crc ^ b) & 0xFF];
+    }
+
+    @Override
+    public void update(byte[] bytes, int offset, int length) {
+        int value = crc;
+        int end = offset + length;
+        int[] t0 = TABLE[0];
+        int[] t1 = TABLE[1];
+        int[] t2 = TABLE[2];
+        int[] t3 = TABLE[3];
+        int[] t4 = TABLE[4];
+        int[] t5 = TABLE[5];
+        int[] t6 = TABLE[6];
+        int[] t7 = TABLE[7];
+        while (end - offset >= 8) {
+            int low = value ^ ((bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8
+                    | (bytes[offset + 2] & 0xFF) << 16 | (bytes[offset + 3] & 0xFF) << 24);
+            value = t7[low & 0xFF] ^ t6[(low >>> 8) & 0xFF] ^ t5[(low >>> 16) & 0xFF] ^ t4[low >>> 24]
+                    ^ t3[bytes[offset + 4] & 0xFF] ^ t2[bytes[offset + 5] & 0xFF]
+                    ^ t1[bytes[offset + 6] & 0xFF] ^ t0[bytes[offset + 7] & 0xFF];
+            offset += 8;
+        }
+        while (offset < end) {
+            value = (value >>> 8) ^ t0[(value ^ bytes[offset++]) & 0xFF];
+        }
+        crc = value;
+    }
+
+    @Override
+    public long getValue() {
+        return ~crc & 0xFFFFFFFFL;
+    }
+
+    @Override
+    public void reset() {
+        crc = 0xFFFFFFFF;
+    }
+}
@@ -0,0 +1,250 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import android.support.annotation.NonNull;
+
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Object Class defining a Feel. It contains a {@code Date} and {@code Feeling} and can
+ * potentially contain an additional {@code String} comment.
+ * <p>
+ * Each {@code Feel} also has a stable 64-bit id identifying it within FeelsBook. Editing a
+ * {@code Feel} replaces it with a new {@code Feel} of the same id, so the id survives edits and
+ * is persisted along with the {@code Feel}.
+ * <p>
+ * To keep {@code compareTo} cheap, each {@code Feel} caches a primitive sort key packing its
+ * negated date and {@code Feeling} ordinal, and a key packing the first characters of its
+ * comment. The keys are refreshed by the setters, so the {@code Date} of a {@code Feel} must be
+ * replaced through {@code setDate} rather than modified in place. As with any element of a sorted
+ * set, a {@code Feel} must be removed from the set before it is modified and added back after.
+ *
+ * @see Feeling the "main" data contained within this class.
+ */
+public class Feel implements Comparable<Feel> {
+    static final FeelDateFormat dateFormat = new FeelDateFormat(TimeZone.getDefault());
+    private static final String TAG = "Feel";
+    /**
+     * The last id handed out, started from the current time so ids handed out after a restart
+     * are larger than those persisted before it.
+     */
+    private static final AtomicLong lastId = new AtomicLong(System.currentTimeMillis() << 20);
+    /**
+     * Number of low bits of the sort key holding the {@code Feeling} ordinal, enough for up to
+     * eight {@code Feeling}s.
+     */
+    private static final int FEELING_BITS = 3;
+    /**
+     * Largest date magnitude in milliseconds that fits in the sort key, dates beyond it are
+     * clamped and compared in full when their keys tie.
+     */
+    private static final long MAX_KEY_MILLIS = Long.MAX_VALUE >> FEELING_BITS;
+    /**
+     * Number of leading comment characters packed into the comment key.
+     */
+    private static final int COMMENT_KEY_CHARS = 4;
+    private final long id;
+    private String comment;
+    private Feeling feeling;
+    private Date date;
+    /**
+     * The negated date in milliseconds with the {@code Feeling} ordinal packed into the low bits.
+     */
+    private long sortKey;
+    /**
+     * The first characters of the comment packed big-endian, with the sign bit flipped so signed
+     * comparison orders them like {@code String.compareTo}.
+     */
+    private long commentKey;
+
+    /**
+     * Construct a {@code Feel} an effective container for {@code Feel}.
+     * <p>
+     * Set the comment to a default empty string {@code ""}.
+     * <p>
+     * Set the date to the current time.
+     *
+     * @param feeling {@code Feeling} the feeling felt.
+     */
+    Feel(Feeling feeling) {
+        this(nextId(), feeling, "", new Date());
+    }
+
+    /**
+     * Construct a {@code Feel} an effective container for {@code Feel}.
+     * <p>
+     * Set the comment to a default empty string {@code ""}.
+     *
+     * @param feeling {@code Feeling} the feeling felt.
+     * @param date    {@code} the date the feel was felt.
+     */
+    Feel(Feeling feeling, Date date) {
+        this(nextId(), feeling, "", date);
+    }
+
+    /**
+     * Construct a {@code Feel} an effective container for {@code Feel}.
+     *
+     * @param feeling {@code Feeling} the feeling felt.
+     * @param comment {@code String} an optional comment to be added to the feeling.
+     * @param date    {@code} the date the feel was felt.
+     */
+    Feel(Feeling feeling, String comment, Date date) {
+        this(nextId(), feeling, comment, date);
+    }
+
+    /**
+     * Construct a {@code Feel} with a known id, either read back from storage or replacing the
+     * edited {@code Feel} of that id.
+     *
+     * @param id      {@code long} the id of the feel.
+     * @param feeling {@code Feeling} the feeling felt.
+     * @param comment {@code String} an optional comment to be added to the feeling.
+     * @param date    {@code} the date the feel was felt.
+     */
+    Feel(long id, Feeling feeling, String comment, Date date) {
+        this.id = id;
+        this.feeling = feeling;
+        this.comment = comment;
+        this.date = date;
+        updateSortKey();
+        updateCommentKey();
+        // ids read back from storage are never handed out again, even if the clock went back
+        long last = lastId.get();
+        while (id > last && !lastId.compareAndSet(last, id)) {
+            last = lastId.get();
+        }
+    }
+
+    /**
+     * Hand out a new unique id.
+     *
+     * @return {@code long}
+     */
+    static long nextId() {
+        return lastId.incrementAndGet();
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getComment() {
+        return comment;
+    }
+
+    public void setComment(String comment) {
+        this.comment = comment;
+        updateCommentKey();
+    }
+
+    public Feeling getFeeling() {
+        return feeling;
+    }
+
+    public void setFeeling(Feeling feeling) {
+        this.feeling = feeling;
+        updateSortKey();
+    }
+
+    public Date getDate() {
+        return date;
+    }
+
+    public void setDate(Date date) {
+        this.date = date;
+        updateSortKey();
+    }
+
+    /**
+     * Pack the negated date and the {@code Feeling} ordinal into the sort key, so a later date
+     * gives a smaller key.
+     */
+    private void updateSortKey() {
+        long millis = Math.max(-MAX_KEY_MILLIS, Math.min(MAX_KEY_MILLIS, date.getTime()));
+        sortKey = (-millis << FEELING_BITS) | feeling.ordinal();
+    }
+
+    private boolean hasClampedDate() {
+        long negatedMillis = sortKey >> FEELING_BITS;
+        return negatedMillis == -MAX_KEY_MILLIS || negatedMillis == MAX_KEY_MILLIS;
+    }
+
+    /**
+     * Pack the first characters of the comment into the comment key, padding shorter comments
+     * with zero characters.
+     * <p>
+     * Two comments with different keys compare the same way as their keys, as they first differ
+     * within the packed characters. Comments with equal keys are compared in full.
+     */
+    private void updateCommentKey() {
+        long key = 0;
+        int length = Math.min(COMMENT_KEY_CHARS, comment.length());
+        for (int i = 0; i < COMMENT_KEY_CHARS; i++) {
+            key = (key << Character.SIZE) | (i < length ? comment.charAt(i) : 0);
+        }
+        commentKey = key ^ Long.MIN_VALUE;
+    }
+
+    /**
+     * Compare two {@code Feel}s.
+     * <p>
+     * Compare them by their date, feeling, comment, then id in that priority.
+     * A later date is considered larger. Thus, two {@code Feel}s only compare equal if they have
+     * the same id and contents.
+     * <p>
+     * This compareTo method is utilised for the automatic sorting of {@code FeelTreeSet}.
+     * <p>
+     * The date and feeling are compared at once through the cached sort key, and the comment
+     * through its leading characters, so only {@code Feel}s sharing a date, feeling, and comment
+     * prefix compare their comments in full.
+     *
+     * @param feel {@code Feel}
+     * @return {@code int}
+     */
+    @Override
+    public int compareTo(@NonNull Feel feel) {
+        if ((sortKey ^ feel.sortKey) >> FEELING_BITS == 0 && hasClampedDate()) {
+            // both dates were clamped to the same key, though they may differ
+            int dateComparison = -date.compareTo(feel.date);
+            if (dateComparison != 0) {
+                return dateComparison;
+            }
+        }
+        if (sortKey != feel.sortKey) {
+            return sortKey < feel.sortKey ? -1 : 1;
+        }
+
+        if (commentKey != feel.commentKey) {
+            return commentKey < feel.commentKey ? -1 : 1;
+        }
+        int commentComparison = comment.compareTo(feel.comment);
+        if (commentComparison != 0) {
+            return commentComparison;
+        }
+
+        return id < feel.id ? -1 : (id == feel.id ? 0 : 1);
+    }
+
+    /**
+     * Two {@code Feel}s are equal if they compare as equal, that is, they have the same id,
+     * date, {@code Feeling}, and comment.
+     * <p>
+     * As the {@code FeelTreeSet} creates a new {@code Feel} each time one is read, {@code Feel}s
+     * are compared by value rather than identity.
+     *
+     * @param obj {@code Object}
+     * @return {@code boolean}
+     */
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof Feel && compareTo((Feel) obj) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (id ^ (id >>> 32));
+    }
+}
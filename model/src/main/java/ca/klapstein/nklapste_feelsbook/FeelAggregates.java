@@ -0,0 +1,146 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import java.util.TimeZone;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+
+/**
+ * The statistics of a range of consecutive positions of {@code FeelColumns}: the tally of each
+ * {@code Feeling}, their {@code FeelRollups}, their {@code FeelHeatmap}, and optionally the
+ * {@code FeelCommentIndex} of their comments, which counts the {@code Feel}s using each word.
+ * <p>
+ * Used to rebuild all statistics of a {@code FeelTreeSet} from scratch after a bulk import or
+ * migration, rather than updating them once per {@code Feel}. {@code compute} splits the sorted
+ * positions into ranges of at most {@code LEAF_SIZE} positions, each aggregated by its own task of
+ * a {@code ForkJoinPool} from the primitive columns. The aggregates of neighbouring ranges are
+ * then merged by {@code addAll}, which only sums counters and appends the comment index, so the
+ * merge is associative and the ranges may be split anywhere.
+ *
+ * @see FeelTreeSet#rebuildStatistics(ForkJoinPool)
+ */
+final class FeelAggregates {
+    private static final String TAG = "FeelAggregates";
+
+    /**
+     * Ranges of at most this many positions are aggregated by a single task.
+     */
+    static final int LEAF_SIZE = 16 * 1024;
+
+    private static final Feeling[] FEELINGS = Feeling.values();
+
+    final int[] tallies = new int[FEELINGS.length];
+    final FeelRollups feelRollups;
+    final FeelHeatmap feelHeatmap;
+    /**
+     * {@code null} unless the comments were aggregated.
+     */
+    final FeelCommentIndex commentIndex;
+
+    private FeelAggregates(FeelColumns feelColumns, TimeZone timeZone, boolean comments) {
+        feelRollups = new FeelRollups(timeZone);
+        feelHeatmap = new FeelHeatmap(timeZone);
+        commentIndex = comments ? new FeelCommentIndex(feelColumns) : null;
+    }
+
+    /**
+     * Aggregate all positions of {@code FeelColumns} in parallel.
+     * <p>
+     * The {@code FeelColumns} must not be modified until this returns.
+     *
+     * @param pool        {@code ForkJoinPool} running the tasks.
+     * @param feelColumns {@code FeelColumns}
+     * @param timeZone    {@code TimeZone} of the rollups and heatmap.
+     * @param comments    {@code boolean} whether to index the comments as well.
+     * @return {@code FeelAggregates}
+     */
+    static FeelAggregates compute(ForkJoinPool pool, FeelColumns feelColumns, TimeZone timeZone, boolean comments) {
+        return pool.invoke(new AggregateTask(feelColumns, timeZone, comments, 0, feelColumns.size()));
+    }
+
+    /**
+     * Aggregate a range of positions of {@code FeelColumns} on the calling thread.
+     *
+     * @param feelColumns {@code FeelColumns}
+     * @param timeZone    {@code TimeZone} of the rollups and heatmap.
+     * @param comments    {@code boolean} whether to index the comments as well.
+     * @param from        {@code int} the first position of the range.
+     * @param to          {@code int} the position after the range.
+     * @return {@code FeelAggregates}
+     */
+    static FeelAggregates of(FeelColumns feelColumns, TimeZone timeZone, boolean comments, int from, int to) {
+        // TimeZone caches its last transition, so each range uses its own
+        FeelAggregates aggregates = new FeelAggregates(feelColumns, (TimeZone) timeZone.clone(), comments);
+        int rows = to - from;
+        long[] dates = new long[rows];
+        byte[] feelings = new byte[rows];
+        feelColumns.copyColumns(from, to, dates, feelings);
+        for (int row = 0; row < rows; row++) {
+            int feeling = feelings[row];
+            aggregates.tallies[feeling]++;
+            aggregates.feelRollups.update(feeling, dates[row], 1);
+            aggregates.feelHeatmap.update(feeling, dates[row], 1);
+        }
+        if (comments) {
+            long[] ids = new long[rows];
+            String[] commentTexts = new String[rows];
+            feelColumns.copyComments(from, to, ids, commentTexts);
+            for (int row = 0; row < rows; row++) {
+                aggregates.commentIndex.add(ids[row], dates[row], FeelCommentIndex.uniqueWords(commentTexts[row]));
+            }
+        }
+        return aggregates;
+    }
+
+    /**
+     * Merge the aggregates of the range directly following the range of these into these.
+     *
+     * @param next {@code FeelAggregates}
+     */
+    void addAll(FeelAggregates next) {
+        for (int feeling = 0; feeling < tallies.length; feeling++) {
+            tallies[feeling] += next.tallies[feeling];
+        }
+        feelRollups.addAll(next.feelRollups);
+        feelHeatmap.addAll(next.feelHeatmap);
+        if (commentIndex != null) {
+            commentIndex.addAll(next.commentIndex);
+        }
+    }
+
+    /**
+     * Aggregates a range of positions of the {@code FeelColumns}, forking into halves down to
+     * {@code LEAF_SIZE} positions.
+     */
+    private static final class AggregateTask extends RecursiveTask<FeelAggregates> {
+        private static final long serialVersionUID = 1L;
+
+        private final FeelColumns feelColumns;
+        private final TimeZone timeZone;
+        private final boolean comments;
+        private final int from;
+        private final int to;
+
+        AggregateTask(FeelColumns feelColumns, TimeZone timeZone, boolean comments, int from, int to) {
+            this.feelColumns = feelColumns;
+            this.timeZone = timeZone;
+            this.comments = comments;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected FeelAggregates compute() {
+            if (to - from <= LEAF_SIZE) {
+                return of(feelColumns, timeZone, comments, from, to);
+            }
+            int middle = (from + to) >>> 1;
+            AggregateTask newer = new AggregateTask(feelColumns, timeZone, comments, from, middle);
+            newer.fork();
+            FeelAggregates older = new AggregateTask(feelColumns, timeZone, comments, middle, to).compute();
+            FeelAggregates aggregates = newer.join();
+            aggregates.addAll(older);
+            return aggregates;
+        }
+    }
+}
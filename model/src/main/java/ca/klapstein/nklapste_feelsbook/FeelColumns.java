@@ -0,0 +1,822 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import java.util.Arrays;
+import java.util.Date;
+
+
+/**
+ * Sorted columnar storage of {@code Feel}s.
+ * <p>
+ * Instead of one object graph per {@code Feel} (the {@code Feel}, its {@code Date}, its
+ * comment {@code String} and its backing {@code char[]}, and a tree node) the rows are split
+ * into chunks of at most {@code CHUNK_CAPACITY} {@code Feel}s. Each chunk holds a
+ * {@code long[]} of dates, a {@code long[]} of ids, a {@code byte[]} of {@code Feeling}
+ * ordinals, and the UTF-8 comments concatenated within a {@code byte[]} arena indexed by an
+ * {@code int[]} of end offsets. Unpaired surrogates, which UTF-8 cannot hold, are encoded as three
+ * byte sequences of their own, as WTF-8 does, so every comment round-trips and compares like
+ * {@code String.compareTo}.
+ * <p>
+ * Rows are kept in {@code Feel.compareTo} order. Inserting or removing a row only moves the
+ * rows of its own chunk. The position of the first row of each chunk is cached, and shifted
+ * after the modified chunk on each modification, so positional access is a binary search over
+ * the chunks. A {@code Feel} is only created, by {@code get}, for the rows that are asked
+ * for.
+ * <p>
+ * Batches of {@code Feel}s are added or removed with {@code addAll} and {@code removeAll} in one
+ * linear merge, which copies runs of untouched rows between the batch's rows into newly filled
+ * chunks, rather than moving the rows of a chunk once per {@code Feel}.
+ * <p>
+ * The id of each row is indexed within a {@code FeelIdMap}, along with its date and chunk, so
+ * {@code getById} finds a row in constant time: a hash lookup, then a binary search by date
+ * within a single chunk. Rows moved to another chunk, by splits, merges, and batches, are indexed
+ * again.
+ * <p>
+ * A {@code FeelColumns} is not thread safe, though as reads never write they may run
+ * concurrently with each other.
+ *
+ * @see FeelTreeSet
+ */
+final class FeelColumns {
+    private static final String TAG = "FeelColumns";
+
+    static final int CHUNK_CAPACITY = 1024;
+
+    private static final Feeling[] FEELINGS = Feeling.values();
+
+    private Chunk[] chunks = new Chunk[4];
+    private int chunkCount;
+    private int size;
+    /**
+     * The position of the first row of each chunk, valid for the first {@code validStarts}
+     * chunks.
+     */
+    private int[] chunkStarts = new int[4];
+    private int validStarts;
+    private final FeelIdMap<Chunk> chunksById = new FeelIdMap<>();
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        Arrays.fill(chunks, 0, chunkCount, null);
+        chunkCount = 0;
+        size = 0;
+        validStarts = 0;
+        chunksById.clear();
+    }
+
+    boolean containsId(long id) {
+        return chunksById.get(id) != null;
+    }
+
+    /**
+     * Create the {@code Feel} of an id.
+     *
+     * @param id {@code long}
+     * @return {@code Feel} or {@code null} if the id is not held.
+     */
+    Feel getById(long id) {
+        Chunk chunk = chunksById.get(id);
+        if (chunk == null) {
+            return null;
+        }
+        long date = chunksById.getDate(id);
+        for (int row = chunk.firstNotNewer(date); row < chunk.size && chunk.dates[row] == date; row++) {
+            if (chunk.ids[row] == id) {
+                return chunk.feel(row);
+            }
+        }
+        throw new IllegalStateException("Id not within its chunk: " + id);
+    }
+
+    /**
+     * Create the {@code Feel} of a position.
+     *
+     * @param position {@code int}
+     * @return {@code Feel}
+     * @throws IndexOutOfBoundsException if the position is out of range.
+     */
+    Feel get(int position) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("Index: " + position + ", Size: " + size);
+        }
+        int chunkIndex = chunkOf(position);
+        return chunks[chunkIndex].feel(position - chunkStarts[chunkIndex]);
+    }
+
+    /**
+     * Create the {@code Feel}s of a range of positions, walking the chunks in order.
+     *
+     * @param from  {@code int} the first position of the range.
+     * @param to    {@code int} the position after the range.
+     * @param feels {@code Object[]} receiving the {@code Feel}s from index {@code 0} on.
+     */
+    void copyFeels(int from, int to, Object[] feels) {
+        if (from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException("Range: " + from + " to " + to + ", Size: " + size);
+        }
+        int position = from;
+        while (position < to) {
+            int chunkIndex = chunkOf(position);
+            Chunk chunk = chunks[chunkIndex];
+            int row = position - chunkStarts[chunkIndex];
+            int rows = Math.min(chunk.size - row, to - position);
+            for (int i = 0; i < rows; i++) {
+                feels[position - from + i] = chunk.feel(row + i);
+            }
+            position += rows;
+        }
+    }
+
+    /**
+     * Copy the dates and {@code Feeling} ordinals of a range of positions, without creating any
+     * {@code Feel}.
+     *
+     * @param from     {@code int} the first position of the range.
+     * @param to       {@code int} the position after the range.
+     * @param dates    {@code long[]} receiving the dates from index {@code 0} on.
+     * @param feelings {@code byte[]} receiving the {@code Feeling} ordinals from index {@code 0} on.
+     */
+    void copyColumns(int from, int to, long[] dates, byte[] feelings) {
+        if (from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException("Range: " + from + " to " + to + ", Size: " + size);
+        }
+        int position = from;
+        while (position < to) {
+            int chunkIndex = chunkOf(position);
+            Chunk chunk = chunks[chunkIndex];
+            int row = position - chunkStarts[chunkIndex];
+            int rows = Math.min(chunk.size - row, to - position);
+            System.arraycopy(chunk.dates, row, dates, position - from, rows);
+            System.arraycopy(chunk.feelings, row, feelings, position - from, rows);
+            position += rows;
+        }
+    }
+
+    /**
+     * Copy the ids and decode the comments of a range of positions, without creating any
+     * {@code Feel}. Empty comments are copied as the same {@code ""} without decoding.
+     *
+     * @param from     {@code int} the first position of the range.
+     * @param to       {@code int} the position after the range.
+     * @param ids      {@code long[]} receiving the ids from index {@code 0} on.
+     * @param comments {@code String[]} receiving the comments from index {@code 0} on.
+     */
+    void copyComments(int from, int to, long[] ids, String[] comments) {
+        if (from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException("Range: " + from + " to " + to + ", Size: " + size);
+        }
+        int position = from;
+        while (position < to) {
+            int chunkIndex = chunkOf(position);
+            Chunk chunk = chunks[chunkIndex];
+            int row = position - chunkStarts[chunkIndex];
+            int rows = Math.min(chunk.size - row, to - position);
+            System.arraycopy(chunk.ids, row, ids, position - from, rows);
+            for (int i = 0; i < rows; i++) {
+                comments[position - from + i] = chunk.comment(row + i);
+            }
+            position += rows;
+        }
+    }
+
+    /**
+     * Find the position of a {@code Feel}.
+     *
+     * @param feel {@code Feel}
+     * @return {@code int} the position of the {@code Feel}, or {@code -(insertion point) - 1}
+     * if it is not held.
+     */
+    int find(Feel feel) {
+        if (chunkCount == 0) {
+            return -1;
+        }
+        long date = feel.getDate().getTime();
+        int feeling = feel.getFeeling().ordinal();
+        int chunkIndex = chunkFor(date, feeling, feel.getComment(), feel.getId());
+        int row = chunks[chunkIndex].find(date, feeling, feel.getComment(), feel.getId());
+        int start = chunkStarts[chunkIndex];
+        return row >= 0 ? start + row : row - start;
+    }
+
+    /**
+     * Insert a {@code Feel} whose id is not already held.
+     *
+     * @param feel {@code Feel}
+     * @return {@code int} the position of the inserted {@code Feel}, or {@code -1} if it or its
+     * id was already held.
+     */
+    int insert(Feel feel) {
+        if (containsId(feel.getId())) {
+            return -1;
+        }
+        long date = feel.getDate().getTime();
+        int feeling = feel.getFeeling().ordinal();
+        String comment = feel.getComment();
+        if (chunkCount == 0) {
+            insertChunk(0, new Chunk());
+        }
+        int chunkIndex = chunkFor(date, feeling, comment, feel.getId());
+        Chunk chunk = chunks[chunkIndex];
+        int row = chunk.find(date, feeling, comment, feel.getId());
+        if (row >= 0) {
+            return -1;
+        }
+        row = -row - 1;
+        if (chunk.size == CHUNK_CAPACITY) {
+            if (row == CHUNK_CAPACITY && chunkIndex == chunkCount - 1) {
+                // appending in order, as when loading, keeps every chunk full
+                chunk = new Chunk();
+                insertChunk(++chunkIndex, chunk);
+                row = 0;
+            } else {
+                Chunk upper = chunk.split();
+                insertChunk(chunkIndex + 1, upper);
+                indexRows(upper, 0, upper.size);
+                if (row > chunk.size) {
+                    row -= chunk.size;
+                    chunk = upper;
+                    chunkIndex++;
+                }
+            }
+        }
+        chunk.insert(row, date, feeling, encodeComment(comment), feel.getId());
+        chunksById.put(feel.getId(), date, chunk);
+        size++;
+        shiftStarts(chunkIndex + 1, 1);
+        return chunkStarts[chunkIndex] + row;
+    }
+
+    /**
+     * Remove the row at a position.
+     *
+     * @param position {@code int}
+     */
+    void remove(int position) {
+        int chunkIndex = chunkOf(position);
+        Chunk chunk = chunks[chunkIndex];
+        int row = position - chunkStarts[chunkIndex];
+        chunksById.remove(chunk.ids[row]);
+        chunk.remove(row);
+        size--;
+        if (chunk.size == 0) {
+            removeChunk(chunkIndex);
+        } else if (chunkIndex + 1 < chunkCount && chunk.size + chunks[chunkIndex + 1].size <= CHUNK_CAPACITY / 2) {
+            int from = chunk.size;
+            chunk.appendAll(chunks[chunkIndex + 1]);
+            indexRows(chunk, from, chunk.size);
+            removeChunk(chunkIndex + 1);
+        } else if (chunkIndex > 0 && chunk.size + chunks[chunkIndex - 1].size <= CHUNK_CAPACITY / 2) {
+            Chunk lower = chunks[chunkIndex - 1];
+            int from = lower.size;
+            lower.appendAll(chunk);
+            indexRows(lower, from, lower.size);
+            removeChunk(chunkIndex);
+        }
+        shiftStarts(chunkIndex + 1, -1);
+    }
+
+    /**
+     * Merge sorted {@code Feel}s into the rows in one pass.
+     * <p>
+     * The rows are rebuilt into full chunks, so this is O(n + m) no matter where the
+     * {@code Feel}s fall. {@code Feel}s whose id is held, or is the id of a previous
+     * {@code Feel} of the batch, are skipped.
+     *
+     * @param feels {@code Feel[]} {@code Feel}s in {@code Feel.compareTo} order, the merged ones
+     *              are moved to the start of the array in the same order.
+     * @param count {@code int} the number of {@code Feel}s to merge from the start of the array.
+     * @return {@code int} the number of merged {@code Feel}s.
+     */
+    int addAll(Feel[] feels, int count) {
+        chunksById.ensureCapacity(size + count);
+        Chunk[] oldChunks = detachChunks(size + count);
+        int oldChunkCount = oldChunks.length;
+        int next = 0;
+        int added = 0;
+        for (int chunkIndex = 0; chunkIndex < oldChunkCount; chunkIndex++) {
+            Chunk chunk = oldChunks[chunkIndex];
+            int row = 0;
+            while (row < chunk.size) {
+                if (next == count) {
+                    appendRows(chunk, row, chunk.size - row);
+                    break;
+                }
+                Feel feel = feels[next];
+                if (containsId(feel.getId())) {
+                    next++;
+                    continue;
+                }
+                int end = -chunk.find(feel.getDate().getTime(), feel.getFeeling().ordinal(), feel.getComment(), feel.getId()) - 1;
+                appendRows(chunk, row, end - row);
+                row = end;
+                if (row < chunk.size) {
+                    appendFeel(feel);
+                    feels[added++] = feel;
+                    next++;
+                }
+            }
+        }
+        for (; next < count; next++) {
+            Feel feel = feels[next];
+            if (!containsId(feel.getId())) {
+                appendFeel(feel);
+                feels[added++] = feel;
+            }
+        }
+        size += added;
+        finishChunks();
+        return added;
+    }
+
+    /**
+     * Remove the rows of sorted {@code Feel}s in one pass.
+     * <p>
+     * The rows are rebuilt into full chunks, so this is O(n + m) no matter where the
+     * {@code Feel}s fall.
+     *
+     * @param feels   {@code Feel[]} {@code Feel}s in {@code Feel.compareTo} order.
+     * @param count   {@code int} the number of {@code Feel}s to remove from the start of the
+     *                array.
+     * @param removed {@code boolean[]} set for each {@code Feel} whose row was removed.
+     * @return {@code int} the number of removed rows.
+     */
+    int removeAll(Feel[] feels, int count, boolean[] removed) {
+        Chunk[] oldChunks = detachChunks(size);
+        int removedCount = 0;
+        int next = 0;
+        for (Chunk chunk : oldChunks) {
+            int row = 0;
+            while (row < chunk.size) {
+                if (next == count) {
+                    appendRows(chunk, row, chunk.size - row);
+                    break;
+                }
+                Feel feel = feels[next];
+                int found = chunk.find(feel.getDate().getTime(), feel.getFeeling().ordinal(), feel.getComment(), feel.getId());
+                if (found >= row) {
+                    appendRows(chunk, row, found - row);
+                    chunksById.remove(chunk.ids[found]);
+                    row = found + 1;
+                    removed[next++] = true;
+                    removedCount++;
+                } else if (found >= 0 || -found - 1 < chunk.size) {
+                    // an equal Feel removed before, or a Feel that is not held
+                    next++;
+                } else {
+                    // within a later chunk
+                    appendRows(chunk, row, chunk.size - row);
+                    break;
+                }
+            }
+        }
+        size -= removedCount;
+        finishChunks();
+        return removedCount;
+    }
+
+    /**
+     * Take the chunks out of this {@code FeelColumns}, leaving it empty with room for the chunks
+     * of a number of rows.
+     *
+     * @return {@code Chunk[]} the detached chunks.
+     */
+    private Chunk[] detachChunks(int rows) {
+        Chunk[] oldChunks = Arrays.copyOf(chunks, chunkCount);
+        int capacity = Math.max(4, rows / CHUNK_CAPACITY + 1);
+        chunks = new Chunk[capacity];
+        chunkStarts = new int[capacity];
+        chunkCount = 0;
+        validStarts = 0;
+        return oldChunks;
+    }
+
+    /**
+     * Get the last chunk if it has room for another row, otherwise append a new one.
+     */
+    private Chunk tailChunk() {
+        Chunk tail = chunkCount == 0 ? null : chunks[chunkCount - 1];
+        if (tail == null || tail.size == CHUNK_CAPACITY) {
+            if (tail != null) {
+                tail.trimArena();
+            }
+            tail = new Chunk();
+            insertChunk(chunkCount, tail);
+        }
+        return tail;
+    }
+
+    private void appendRows(Chunk chunk, int from, int count) {
+        while (count > 0) {
+            Chunk tail = tailChunk();
+            int copied = Math.min(count, CHUNK_CAPACITY - tail.size);
+            tail.copyFrom(chunk, from, copied);
+            indexRows(tail, tail.size - copied, tail.size);
+            from += copied;
+            count -= copied;
+        }
+    }
+
+    private void appendFeel(Feel feel) {
+        Chunk tail = tailChunk();
+        long date = feel.getDate().getTime();
+        tail.insert(tail.size, date, feel.getFeeling().ordinal(), encodeComment(feel.getComment()), feel.getId());
+        chunksById.put(feel.getId(), date, tail);
+    }
+
+    /**
+     * Index the rows of a chunk by their id, after they were moved into it.
+     */
+    private void indexRows(Chunk chunk, int from, int to) {
+        for (int row = from; row < to; row++) {
+            chunksById.put(chunk.ids[row], chunk.dates[row], chunk);
+        }
+    }
+
+    private void finishChunks() {
+        if (chunkCount > 0) {
+            chunks[chunkCount - 1].trimArena();
+        }
+        refreshStarts();
+    }
+
+    /**
+     * Shift the valid starts of the chunks from a chunk on by the number of rows inserted or
+     * removed before them, which is a tight loop over the {@code int[]} rather than a walk over
+     * the chunks, then recompute the starts invalidated by inserted or removed chunks.
+     */
+    private void shiftStarts(int fromChunk, int delta) {
+        for (int chunkIndex = fromChunk; chunkIndex < validStarts; chunkIndex++) {
+            chunkStarts[chunkIndex] += delta;
+        }
+        refreshStarts();
+    }
+
+    /**
+     * Recompute the starts of the chunks from the first modified chunk.
+     */
+    private void refreshStarts() {
+        for (; validStarts < chunkCount; validStarts++) {
+            chunkStarts[validStarts] = validStarts == 0 ? 0
+                    : chunkStarts[validStarts - 1] + chunks[validStarts - 1].size;
+        }
+    }
+
+    /**
+     * Get the index of the chunk holding a position.
+     */
+    private int chunkOf(int position) {
+        // chunks are never left empty, so their starts are distinct
+        int index = Arrays.binarySearch(chunkStarts, 0, chunkCount, position);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    /**
+     * Get the index of the first chunk whose last row is not lower than the key, or the last
+     * chunk if every row is lower.
+     */
+    private int chunkFor(long date, int feeling, String comment, long id) {
+        int low = 0;
+        int high = chunkCount - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            Chunk chunk = chunks[middle];
+            if (chunk.size > 0 && chunk.compare(chunk.size - 1, date, feeling, comment, id) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private void insertChunk(int chunkIndex, Chunk chunk) {
+        if (chunkCount == chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunkCount * 2);
+            chunkStarts = Arrays.copyOf(chunkStarts, chunkCount * 2);
+        }
+        System.arraycopy(chunks, chunkIndex, chunks, chunkIndex + 1, chunkCount - chunkIndex);
+        chunks[chunkIndex] = chunk;
+        chunkCount++;
+        validStarts = Math.min(validStarts, chunkIndex);
+    }
+
+    private void removeChunk(int chunkIndex) {
+        System.arraycopy(chunks, chunkIndex + 1, chunks, chunkIndex, chunkCount - chunkIndex - 1);
+        chunks[--chunkCount] = null;
+        validStarts = Math.min(validStarts, chunkIndex);
+    }
+
+    /**
+     * Encode a comment as UTF-8, except that unpaired surrogates are encoded as three byte
+     * sequences rather than replaced by {@code '?'}.
+     *
+     * @param comment {@code String}
+     * @return {@code byte[]}
+     */
+    static byte[] encodeComment(String comment) {
+        int length = comment.length();
+        int encodedLength = length;
+        for (int i = 0; i < length; i++) {
+            char c = comment.charAt(i);
+            if (Character.isSurrogate(c) && isSurrogatePair(comment, i)) {
+                // a surrogate pair takes four bytes, two per surrogate
+                encodedLength += 2;
+                i++;
+            } else if (c >= 0x800) {
+                encodedLength += 2;
+            } else if (c >= 0x80) {
+                encodedLength += 1;
+            }
+        }
+        byte[] bytes = new byte[encodedLength];
+        int offset = 0;
+        for (int i = 0; i < length; i++) {
+            char c = comment.charAt(i);
+            if (c < 0x80) {
+                bytes[offset++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[offset++] = (byte) (0xC0 | c >> 6);
+                bytes[offset++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isSurrogate(c) && isSurrogatePair(comment, i)) {
+                int codePoint = Character.toCodePoint(c, comment.charAt(++i));
+                bytes[offset++] = (byte) (0xF0 | codePoint >> 18);
+                bytes[offset++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                bytes[offset++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                bytes[offset++] = (byte) (0x80 | codePoint & 0x3F);
+            } else {
+                bytes[offset++] = (byte) (0xE0 | c >> 12);
+                bytes[offset++] = (byte) (0x80 | c >> 6 & 0x3F);
+                bytes[offset++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        return bytes;
+    }
+
+    private static boolean isSurrogatePair(String comment, int index) {
+        return Character.isHighSurrogate(comment.charAt(index)) && index + 1 < comment.length()
+                && Character.isLowSurrogate(comment.charAt(index + 1));
+    }
+
+    /**
+     * Decode a comment encoded by {@code encodeComment}.
+     *
+     * @param bytes {@code byte[]}
+     * @param start {@code int} the offset of the first byte of the comment.
+     * @param end   {@code int} the offset after the last byte of the comment.
+     * @return {@code String}
+     */
+    static String decodeComment(byte[] bytes, int start, int end) {
+        char[] chars = new char[end - start];
+        int length = 0;
+        int offset = start;
+        while (offset < end) {
+            int lead = bytes[offset] & 0xFF;
+            if (lead < 0x80) {
+                chars[length++] = (char) lead;
+                offset += 1;
+            } else if (lead < 0xE0) {
+                chars[length++] = (char) ((lead & 0x1F) << 6 | bytes[offset + 1] & 0x3F);
+                offset += 2;
+            } else if (lead < 0xF0) {
+                chars[length++] = (char) ((lead & 0x0F) << 12 | (bytes[offset + 1] & 0x3F) << 6 | bytes[offset + 2] & 0x3F);
+                offset += 3;
+            } else {
+                int codePoint = (lead & 0x07) << 18 | (bytes[offset + 1] & 0x3F) << 12
+                        | (bytes[offset + 2] & 0x3F) << 6 | bytes[offset + 3] & 0x3F;
+                chars[length++] = Character.highSurrogate(codePoint);
+                chars[length++] = Character.lowSurrogate(codePoint);
+                offset += 4;
+            }
+        }
+        return new String(chars, 0, length);
+    }
+
+    /**
+     * A run of at most {@code CHUNK_CAPACITY} sorted rows.
+     */
+    private static final class Chunk {
+        private final long[] dates = new long[CHUNK_CAPACITY];
+        private final long[] ids = new long[CHUNK_CAPACITY];
+        private final byte[] feelings = new byte[CHUNK_CAPACITY];
+        /**
+         * The end offset of the comment of each row within the arena, each comment starts at the
+         * end of the comment of the previous row.
+         */
+        private final int[] commentEnds = new int[CHUNK_CAPACITY];
+        private byte[] arena = new byte[0];
+        private int size;
+
+        private int commentStart(int row) {
+            return row == 0 ? 0 : commentEnds[row - 1];
+        }
+
+        private String comment(int row) {
+            int start = commentStart(row);
+            return start == commentEnds[row] ? "" : decodeComment(arena, start, commentEnds[row]);
+        }
+
+        private Feel feel(int row) {
+            return new Feel(ids[row], FEELINGS[feelings[row]], comment(row), new Date(dates[row]));
+        }
+
+        /**
+         * Compare a row to a key in {@code Feel.compareTo} order, only comparing the comment of
+         * the row when the dates and feelings tie.
+         */
+        private int compare(int row, long date, int feeling, String comment, long id) {
+            if (dates[row] != date) {
+                return dates[row] > date ? -1 : 1;
+            }
+            if (feelings[row] != feeling) {
+                return feelings[row] < feeling ? -1 : 1;
+            }
+            int comparison = compareComment(row, comment);
+            if (comparison != 0) {
+                return comparison;
+            }
+            return ids[row] < id ? -1 : (ids[row] == id ? 0 : 1);
+        }
+
+        /**
+         * Compare the comment of a row to a comment in {@code String.compareTo} order, decoding
+         * the UTF-8 bytes of the row one character at a time rather than into a new
+         * {@code String}.
+         * <p>
+         * Characters outside the Basic Multilingual Plane are compared as their surrogate pairs,
+         * as {@code String.compareTo} does, and unpaired surrogates decode to themselves.
+         */
+        private int compareComment(int row, String comment) {
+            int offset = commentStart(row);
+            int end = commentEnds[row];
+            int length = comment.length();
+            int index = 0;
+            while (offset < end && index < length) {
+                int lead = arena[offset] & 0xFF;
+                int codePoint;
+                if (lead < 0x80) {
+                    codePoint = lead;
+                    offset += 1;
+                } else if (lead < 0xE0) {
+                    codePoint = (lead & 0x1F) << 6 | arena[offset + 1] & 0x3F;
+                    offset += 2;
+                } else if (lead < 0xF0) {
+                    codePoint = (lead & 0x0F) << 12 | (arena[offset + 1] & 0x3F) << 6 | arena[offset + 2] & 0x3F;
+                    offset += 3;
+                } else {
+                    codePoint = (lead & 0x07) << 18 | (arena[offset + 1] & 0x3F) << 12
+                            | (arena[offset + 2] & 0x3F) << 6 | arena[offset + 3] & 0x3F;
+                    offset += 4;
+                }
+                if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                    char c = comment.charAt(index++);
+                    if (codePoint != c) {
+                        return codePoint - c;
+                    }
+                    continue;
+                }
+                char high = Character.highSurrogate(codePoint);
+                char c = comment.charAt(index++);
+                if (high != c) {
+                    return high - c;
+                }
+                if (index == length) {
+                    // the key ends within the surrogate pair
+                    return 1;
+                }
+                char low = Character.lowSurrogate(codePoint);
+                c = comment.charAt(index++);
+                if (low != c) {
+                    return low - c;
+                }
+            }
+            if (offset < end) {
+                return 1;
+            }
+            return index < length ? -1 : 0;
+        }
+
+        /**
+         * @return {@code int} the row of the key, or {@code -(insertion point) - 1}.
+         */
+        private int find(long date, int feeling, String comment, long id) {
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int comparison = compare(middle, date, feeling, comment, id);
+                if (comparison < 0) {
+                    low = middle + 1;
+                } else if (comparison > 0) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -low - 1;
+        }
+
+        /**
+         * @return {@code int} the first row whose date is not newer than the given date.
+         */
+        private int firstNotNewer(long date) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (dates[middle] > date) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        private void insert(int row, long date, int feeling, byte[] comment, long id) {
+            int start = commentStart(row);
+            int arenaEnd = commentStart(size);
+            int moved = size - row;
+            System.arraycopy(dates, row, dates, row + 1, moved);
+            System.arraycopy(ids, row, ids, row + 1, moved);
+            System.arraycopy(feelings, row, feelings, row + 1, moved);
+            System.arraycopy(commentEnds, row, commentEnds, row + 1, moved);
+            if (arenaEnd + comment.length > arena.length) {
+                arena = Arrays.copyOf(arena, Math.max(arenaEnd + comment.length, arena.length + (arena.length >> 1)));
+            }
+            System.arraycopy(arena, start, arena, start + comment.length, arenaEnd - start);
+            System.arraycopy(comment, 0, arena, start, comment.length);
+            dates[row] = date;
+            ids[row] = id;
+            feelings[row] = (byte) feeling;
+            commentEnds[row] = start + comment.length;
+            size++;
+            for (int i = row + 1; i < size; i++) {
+                commentEnds[i] += comment.length;
+            }
+        }
+
+        private void remove(int row) {
+            int start = commentStart(row);
+            int length = commentEnds[row] - start;
+            int arenaEnd = commentStart(size);
+            System.arraycopy(arena, commentEnds[row], arena, start, arenaEnd - commentEnds[row]);
+            int moved = size - row - 1;
+            System.arraycopy(dates, row + 1, dates, row, moved);
+            System.arraycopy(ids, row + 1, ids, row, moved);
+            System.arraycopy(feelings, row + 1, feelings, row, moved);
+            System.arraycopy(commentEnds, row + 1, commentEnds, row, moved);
+            size--;
+            for (int i = row; i < size; i++) {
+                commentEnds[i] -= length;
+            }
+        }
+
+        /**
+         * Move the upper half of the rows into a new {@code Chunk}.
+         *
+         * @return {@code Chunk} the new {@code Chunk} of the upper rows.
+         */
+        private Chunk split() {
+            Chunk upper = new Chunk();
+            int keep = size / 2;
+            upper.copyFrom(this, keep, size - keep);
+            size = keep;
+            arena = Arrays.copyOf(arena, commentStart(keep));
+            return upper;
+        }
+
+        private void trimArena() {
+            int arenaEnd = commentStart(size);
+            if (arenaEnd < arena.length) {
+                arena = Arrays.copyOf(arena, arenaEnd);
+            }
+        }
+
+        private void appendAll(Chunk other) {
+            copyFrom(other, 0, other.size);
+        }
+
+        /**
+         * Append rows of another {@code Chunk} after the rows of this one.
+         */
+        private void copyFrom(Chunk other, int from, int count) {
+            System.arraycopy(other.dates, from, dates, size, count);
+            System.arraycopy(other.ids, from, ids, size, count);
+            System.arraycopy(other.feelings, from, feelings, size, count);
+            int otherStart = other.commentStart(from);
+            int otherEnd = other.commentStart(from + count);
+            int arenaEnd = commentStart(size);
+            int needed = arenaEnd + otherEnd - otherStart;
+            if (needed > arena.length) {
+                arena = Arrays.copyOf(arena, Math.max(needed, arena.length + (arena.length >> 1)));
+            }
+            System.arraycopy(other.arena, otherStart, arena, arenaEnd, otherEnd - otherStart);
+            for (int i = 0; i < count; i++) {
+                commentEnds[size + i] = other.commentEnds[from + i] - otherStart + arenaEnd;
+            }
+            size += count;
+        }
+    }
+}
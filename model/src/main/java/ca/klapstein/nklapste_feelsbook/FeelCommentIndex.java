@@ -0,0 +1,511 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+
+/**
+ * Inverted index over the words of the comments of the {@code Feel}s within a {@code FeelTreeSet}.
+ * <p>
+ * Each indexed {@code Feel} is given a document id, and every word of its comment maps to a
+ * posting list, a sorted {@code int[]} of the document ids of the {@code Feel}s using it. Document
+ * ids are handed out in increasing order, so adding a {@code Feel} only appends to its posting
+ * lists. Once more than half of the handed out document ids belong to removed {@code Feel}s the
+ * index is renumbered.
+ * <p>
+ * No {@code Feel} is held, only the stable id and the date of the {@code Feel} of each document
+ * id, within primitive arrays. The matches of a query are created from the {@code FeelColumns}
+ * by their stable id.
+ * <p>
+ * A query matches the {@code Feel}s whose comment has, for every word of the query, a word
+ * starting with it. The words are kept in a sorted map so that the words starting with a query
+ * word are one range of it. The posting lists of the rarest query word are intersected with the
+ * others, and the matches are ranked in {@code Feel.compareTo} order by their date first, so only
+ * ties create the {@code Feel}s to compare them.
+ * <p>
+ * A {@code FeelCommentIndex} is not thread safe.
+ *
+ * @see FeelTreeSet#getCommentIndex()
+ */
+public final class FeelCommentIndex {
+    private static final String TAG = "FeelCommentIndex";
+
+    private final FeelColumns feelColumns;
+    private final TreeMap<String, Postings> words = new TreeMap<>();
+    /**
+     * {@code Feel} ids by document id.
+     */
+    private long[] feelIds = new long[64];
+    /**
+     * {@code Feel} dates by document id, so ranking does not need to create each {@code Feel}.
+     */
+    private long[] dates = new long[64];
+    private int nextId;
+    private int liveCount;
+    /**
+     * Bit set over ids, reused by each query.
+     */
+    private long[] scratchBits = new long[1];
+
+    /**
+     * Construct an empty {@code FeelCommentIndex}.
+     *
+     * @param feelColumns {@code FeelColumns} holding the indexed {@code Feel}s by their id.
+     */
+    FeelCommentIndex(FeelColumns feelColumns) {
+        this.feelColumns = feelColumns;
+    }
+
+    /**
+     * Get the number of indexed {@code Feel}s, those with at least one word in their comment.
+     *
+     * @return {@code int}
+     */
+    public int size() {
+        return liveCount;
+    }
+
+    /**
+     * Index the comment of a {@code Feel} added to the {@code FeelTreeSet}.
+     *
+     * @param feel {@code Feel}
+     */
+    void add(Feel feel) {
+        add(feel.getId(), feel.getDate().getTime(), uniqueWords(feel.getComment()));
+    }
+
+    /**
+     * Index the comment of a {@code Feel} whose words were already split.
+     *
+     * @param feelId    {@code long} the id of the {@code Feel}.
+     * @param date      {@code long} the epoch milliseconds of the date of the {@code Feel}.
+     * @param feelWords {@code String[]} the {@code uniqueWords} of the comment of the {@code Feel}.
+     */
+    void add(long feelId, long date, String[] feelWords) {
+        if (feelWords.length == 0) {
+            return;
+        }
+        ensureIdCapacity(nextId + 1);
+        int id = nextId++;
+        feelIds[id] = feelId;
+        dates[id] = date;
+        liveCount++;
+        for (String word : feelWords) {
+            Postings postings = words.get(word);
+            if (postings == null) {
+                postings = new Postings();
+                words.put(word, postings);
+            }
+            postings.add(id);
+        }
+    }
+
+    /**
+     * Remove the comment of a {@code Feel} removed from the {@code FeelTreeSet}.
+     *
+     * @param feel {@code Feel} of the same id as the indexed {@code Feel}.
+     */
+    void remove(Feel feel) {
+        String[] feelWords = uniqueWords(feel.getComment());
+        if (feelWords.length == 0) {
+            return;
+        }
+        // the rarest word of the comment has the fewest ids to look through
+        Postings rarest = null;
+        for (String word : feelWords) {
+            Postings postings = words.get(word);
+            if (postings == null) {
+                return;
+            }
+            if (rarest == null || postings.size < rarest.size) {
+                rarest = postings;
+            }
+        }
+        int id = -1;
+        for (int i = 0; i < rarest.size; i++) {
+            int candidate = rarest.ids[i];
+            if (feelIds[candidate] == feel.getId()) {
+                id = candidate;
+                break;
+            }
+        }
+        if (id < 0) {
+            return;
+        }
+        for (String word : feelWords) {
+            Postings postings = words.get(word);
+            postings.remove(id);
+            if (postings.size == 0) {
+                words.remove(word);
+            }
+        }
+        liveCount--;
+        if (nextId > 1024 && nextId > 2 * liveCount) {
+            renumber();
+        }
+    }
+
+    /**
+     * Append the {@code Feel}s of another index to this one, renumbering them after the ids of
+     * this index, so the posting lists of a word are concatenated and stay sorted.
+     * <p>
+     * Appending is associative, so indexes built over consecutive ranges of {@code Feel}s may be
+     * combined in any grouping.
+     *
+     * @param other {@code FeelCommentIndex}
+     */
+    void addAll(FeelCommentIndex other) {
+        int offset = nextId;
+        ensureIdCapacity(nextId + other.nextId);
+        System.arraycopy(other.feelIds, 0, feelIds, offset, other.nextId);
+        System.arraycopy(other.dates, 0, dates, offset, other.nextId);
+        nextId += other.nextId;
+        liveCount += other.liveCount;
+        for (Map.Entry<String, Postings> entry : other.words.entrySet()) {
+            Postings postings = words.get(entry.getKey());
+            if (postings == null) {
+                postings = new Postings();
+                words.put(entry.getKey(), postings);
+            }
+            Postings otherPostings = entry.getValue();
+            for (int i = 0; i < otherPostings.size; i++) {
+                postings.add(otherPostings.ids[i] + offset);
+            }
+        }
+    }
+
+    private void ensureIdCapacity(int capacity) {
+        if (capacity > feelIds.length) {
+            int length = Math.max(capacity, feelIds.length * 2);
+            feelIds = Arrays.copyOf(feelIds, length);
+            dates = Arrays.copyOf(dates, length);
+        }
+    }
+
+    /**
+     * Get the number of indexed {@code Feel}s whose comment uses a word.
+     *
+     * @param word {@code String} a single lower case word.
+     * @return {@code int}
+     */
+    public int getWordCount(String word) {
+        Postings postings = words.get(word);
+        return postings == null ? 0 : postings.size;
+    }
+
+    /**
+     * Remove every {@code Feel} from the index.
+     */
+    void clear() {
+        words.clear();
+        feelIds = new long[64];
+        dates = new long[64];
+        nextId = 0;
+        liveCount = 0;
+        scratchBits = new long[1];
+    }
+
+    /**
+     * Search for the {@code Feel}s whose comment has, for every word of the query, a word
+     * starting with it.
+     *
+     * @param query {@code String} words separated by anything but letters and digits, matching is
+     *              case insensitive.
+     * @param limit {@code int} the maximum number of {@code Feel}s to return.
+     * @return {@code List<Feel>} the first {@code limit} matching {@code Feel}s in
+     * {@code Feel.compareTo} order, empty if the query has no words.
+     */
+    public List<Feel> search(String query, int limit) {
+        String[] queryWords = uniqueWords(query);
+        if (queryWords.length == 0 || limit <= 0) {
+            return new ArrayList<>();
+        }
+        // gather the posting lists of the words starting with each query word
+        List<Collection<Postings>> matches = new ArrayList<>(queryWords.length);
+        int rarestIndex = 0;
+        long rarestSize = Long.MAX_VALUE;
+        for (String queryWord : queryWords) {
+            Collection<Postings> postingsList = prefixRange(queryWord).values();
+            long size = 0;
+            for (Postings postings : postingsList) {
+                size += postings.size;
+            }
+            if (size == 0) {
+                return new ArrayList<>();
+            }
+            if (size < rarestSize) {
+                rarestSize = size;
+                rarestIndex = matches.size();
+            }
+            matches.add(postingsList);
+        }
+        int[] candidates = union(matches.get(rarestIndex));
+        int candidateCount = candidates.length;
+        for (int i = 0; i < matches.size() && candidateCount > 0; i++) {
+            if (i != rarestIndex) {
+                candidateCount = retain(candidates, candidateCount, matches.get(i));
+            }
+        }
+        return rank(candidates, candidateCount, limit);
+    }
+
+    private NavigableMap<String, Postings> prefixRange(String prefix) {
+        return words.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    /**
+     * @return {@code int[]} the sorted union of the ids of the posting lists.
+     */
+    private int[] union(Collection<Postings> postingsList) {
+        Postings postings = onlyPostings(postingsList);
+        if (postings != null) {
+            return Arrays.copyOf(postings.ids, postings.size);
+        }
+        long[] bits = markAll(postingsList);
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        int[] ids = new int[count];
+        int index = 0;
+        for (int i = 0; i < bits.length; i++) {
+            long word = bits[i];
+            while (word != 0) {
+                ids[index++] = (i << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Keep only the candidate ids within any of the posting lists.
+     *
+     * @return {@code int} the number of candidates kept at the start of {@code candidates}.
+     */
+    private int retain(int[] candidates, int candidateCount, Collection<Postings> postingsList) {
+        int kept = 0;
+        Postings postings = onlyPostings(postingsList);
+        if (postings != null && postings.size <= 16 * candidateCount) {
+            // merge with the one sorted posting list, as dense as the candidates
+            int index = 0;
+            for (int i = 0; i < candidateCount && index < postings.size; i++) {
+                int id = candidates[i];
+                while (index < postings.size && postings.ids[index] < id) {
+                    index++;
+                }
+                if (index < postings.size && postings.ids[index] == id) {
+                    candidates[kept++] = id;
+                }
+            }
+            return kept;
+        }
+        if (postings != null) {
+            // gallop through the one sorted posting list, starting after the previous match, so
+            // sparse candidates skip over the many ids between them
+            int from = 0;
+            for (int i = 0; i < candidateCount && from < postings.size; i++) {
+                int id = candidates[i];
+                int step = 1;
+                int to = from;
+                while (to < postings.size && postings.ids[to] < id) {
+                    from = to + 1;
+                    to += step;
+                    step <<= 1;
+                }
+                int index = Arrays.binarySearch(postings.ids, from, Math.min(to + 1, postings.size), id);
+                if (index >= 0) {
+                    candidates[kept++] = id;
+                    from = index + 1;
+                } else {
+                    from = -index - 1;
+                }
+            }
+            return kept;
+        }
+        long[] bits = markAll(postingsList);
+        for (int i = 0; i < candidateCount; i++) {
+            int id = candidates[i];
+            if ((bits[id >>> 6] & (1L << id)) != 0) {
+                candidates[kept++] = id;
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * @return {@code Postings} the only posting list, or {@code null} if there are more, without
+     * counting the entries of a sorted map range.
+     */
+    private static Postings onlyPostings(Collection<Postings> postingsList) {
+        Iterator<Postings> iterator = postingsList.iterator();
+        Postings first = iterator.next();
+        return iterator.hasNext() ? null : first;
+    }
+
+    /**
+     * Mark the ids of the posting lists within the reused bit set.
+     *
+     * @return {@code long[]} the bit set, holding at least {@code nextId} bits.
+     */
+    private long[] markAll(Collection<Postings> postingsList) {
+        int length = (nextId >>> 6) + 1;
+        if (scratchBits.length < length) {
+            scratchBits = new long[length];
+        } else {
+            Arrays.fill(scratchBits, 0L);
+        }
+        for (Postings postings : postingsList) {
+            for (int i = 0; i < postings.size; i++) {
+                int id = postings.ids[i];
+                scratchBits[id >>> 6] |= 1L << id;
+            }
+        }
+        return scratchBits;
+    }
+
+    /**
+     * Select the first {@code limit} candidates in {@code Feel.compareTo} order with a bounded
+     * heap whose root is the last of the kept candidates.
+     */
+    private List<Feel> rank(int[] candidates, int candidateCount, int limit) {
+        int heapSize = 0;
+        int[] heap = new int[Math.min(limit, candidateCount)];
+        for (int i = 0; i < candidateCount; i++) {
+            int id = candidates[i];
+            if (heapSize < heap.length) {
+                // sift up
+                int child = heapSize++;
+                while (child > 0) {
+                    int parent = (child - 1) >>> 1;
+                    if (compareIds(heap[parent], id) >= 0) {
+                        break;
+                    }
+                    heap[child] = heap[parent];
+                    child = parent;
+                }
+                heap[child] = id;
+            } else if (compareIds(id, heap[0]) < 0) {
+                // replace the root and sift down
+                int parent = 0;
+                while (true) {
+                    int child = 2 * parent + 1;
+                    if (child >= heapSize) {
+                        break;
+                    }
+                    if (child + 1 < heapSize && compareIds(heap[child + 1], heap[child]) > 0) {
+                        child++;
+                    }
+                    if (compareIds(heap[child], id) <= 0) {
+                        break;
+                    }
+                    heap[parent] = heap[child];
+                    parent = child;
+                }
+                heap[parent] = id;
+            }
+        }
+        List<Feel> ranked = new ArrayList<>(heapSize);
+        for (int i = 0; i < heapSize; i++) {
+            ranked.add(feelColumns.getById(feelIds[heap[i]]));
+        }
+        Collections.sort(ranked);
+        return ranked;
+    }
+
+    private int compareIds(int a, int b) {
+        if (dates[a] != dates[b]) {
+            return dates[a] > dates[b] ? -1 : 1;
+        }
+        return feelColumns.getById(feelIds[a]).compareTo(feelColumns.getById(feelIds[b]));
+    }
+
+    /**
+     * Hand out new ids in the order of the old ones, dropping the ids of removed {@code Feel}s,
+     * which are those left within no posting list.
+     */
+    private void renumber() {
+        long[] live = markAll(words.values());
+        int[] newIds = new int[nextId];
+        int count = 0;
+        for (int id = 0; id < nextId; id++) {
+            if ((live[id >>> 6] & (1L << id)) != 0) {
+                newIds[id] = count;
+                feelIds[count] = feelIds[id];
+                dates[count] = dates[id];
+                count++;
+            }
+        }
+        nextId = count;
+        for (Postings postings : words.values()) {
+            for (int i = 0; i < postings.size; i++) {
+                postings.ids[i] = newIds[postings.ids[i]];
+            }
+        }
+    }
+
+    /**
+     * Split text into its distinct lower case words, runs of letters and digits.
+     *
+     * @param text {@code String}
+     * @return {@code String[]}
+     */
+    static String[] uniqueWords(String text) {
+        ArrayList<String> textWords = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); ) {
+            int codePoint = i < text.length() ? text.codePointAt(i) : ' ';
+            if (Character.isLetterOrDigit(codePoint)) {
+                if (start < 0) {
+                    start = i;
+                }
+            } else if (start >= 0) {
+                textWords.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+            i += Character.charCount(codePoint);
+        }
+        if (textWords.size() > 1) {
+            Collections.sort(textWords);
+            int unique = 1;
+            for (int i = 1; i < textWords.size(); i++) {
+                if (!textWords.get(i).equals(textWords.get(unique - 1))) {
+                    textWords.set(unique++, textWords.get(i));
+                }
+            }
+            return textWords.subList(0, unique).toArray(new String[unique]);
+        }
+        return textWords.toArray(new String[textWords.size()]);
+    }
+
+    /**
+     * Growable sorted {@code int[]} of document ids.
+     */
+    private static final class Postings {
+        int[] ids = new int[4];
+        int size;
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        void remove(int id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index >= 0) {
+                System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+                size--;
+            }
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Date;
+
+
+/**
+ * Streaming reader of {@code Feel}s from RFC 4180 CSV, one record at a time.
+ * <p>
+ * An optional header row maps the {@code id}, {@code date}, {@code feeling} and {@code comment}
+ * columns by name in any order, other columns are ignored. Without a header the columns are read
+ * in that order. The date is either epoch milliseconds or a {@code FeelDateFormat} label, the
+ * feeling either its name, in any case, or its ordinal. {@code Feel}s without an id are given a
+ * new one.
+ * <p>
+ * Fields are parsed from reused buffers, so beyond the comment of each {@code Feel} reading does
+ * not allocate per record.
+ *
+ * @see FeelCsvWriter
+ */
+final class FeelCsvReader implements Closeable {
+    private static final String TAG = "FeelCsvReader";
+
+    static final String ID_COLUMN = "id";
+    static final String DATE_COLUMN = "date";
+    static final String FEELING_COLUMN = "feeling";
+    static final String COMMENT_COLUMN = "comment";
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final char BYTE_ORDER_MARK = '\uFEFF';
+    /**
+     * Up to this many digits a number cannot overflow a {@code long}.
+     */
+    private static final int SAFE_DIGITS = 18;
+
+    private static final Feeling[] FEELINGS = Feeling.values();
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+
+    private StringBuilder[] fields = new StringBuilder[4];
+    private int fieldCount;
+
+    /**
+     * The line the current record starts on, and the line being read.
+     */
+    private long recordLine;
+    private long line;
+    private boolean started;
+
+    private boolean columnsKnown;
+    private int idColumn = 0;
+    private int dateColumn = 1;
+    private int feelingColumn = 2;
+    private int commentColumn = 3;
+
+    FeelCsvReader(Reader reader) {
+        this.reader = reader;
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = new StringBuilder();
+        }
+    }
+
+    /**
+     * Read the next {@code Feel}, skipping blank lines.
+     *
+     * @return {@code Feel} or {@code null} at the end of the stream.
+     * @throws IOException if reading fails or the record is malformed.
+     */
+    Feel read() throws IOException {
+        while (readRecord()) {
+            if (fieldCount == 1 && fields[0].length() == 0) {
+                continue;
+            }
+            if (!columnsKnown) {
+                columnsKnown = true;
+                if (readHeader()) {
+                    continue;
+                }
+            }
+            return parseFeel();
+        }
+        return null;
+    }
+
+    /**
+     * @return {@code long} the line of the last record read, starting at 1.
+     */
+    long getLineNumber() {
+        return recordLine;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Map the columns if the record is a header, i.e. names both the date and feeling columns,
+     * which no valid record of {@code Feel}s can.
+     *
+     * @return {@code boolean} whether the record was a header.
+     */
+    private boolean readHeader() {
+        int id = -1;
+        int date = -1;
+        int feeling = -1;
+        int comment = -1;
+        for (int i = 0; i < fieldCount; i++) {
+            String name = fields[i].toString().trim();
+            if (ID_COLUMN.equalsIgnoreCase(name)) {
+                id = i;
+            } else if (DATE_COLUMN.equalsIgnoreCase(name)) {
+                date = i;
+            } else if (FEELING_COLUMN.equalsIgnoreCase(name)) {
+                feeling = i;
+            } else if (COMMENT_COLUMN.equalsIgnoreCase(name)) {
+                comment = i;
+            }
+        }
+        if (date == -1 || feeling == -1) {
+            return false;
+        }
+        idColumn = id;
+        dateColumn = date;
+        feelingColumn = feeling;
+        commentColumn = comment;
+        return true;
+    }
+
+    private Feel parseFeel() throws IOException {
+        if (dateColumn >= fieldCount || feelingColumn >= fieldCount) {
+            throw malformed("expected at least " + (Math.max(dateColumn, feelingColumn) + 1)
+                    + " fields but found " + fieldCount);
+        }
+        long date = parseDate(fields[dateColumn]);
+        Feeling feeling = parseFeeling(fields[feelingColumn]);
+        String comment = commentColumn >= 0 && commentColumn < fieldCount ? fields[commentColumn].toString() : "";
+        if (idColumn >= 0 && idColumn < fieldCount && !isBlank(fields[idColumn])) {
+            return new Feel(parseLong(fields[idColumn], "id"), feeling, comment, new Date(date));
+        }
+        return new Feel(feeling, comment, new Date(date));
+    }
+
+    private long parseDate(StringBuilder field) throws IOException {
+        int start = trimStart(field);
+        int end = trimEnd(field);
+        if (end - start == FeelDateFormat.PATTERN.length() - 2) {
+            long date = Feel.dateFormat.parse(field.subSequence(start, end));
+            if (date != FeelDateFormat.INVALID) {
+                return date;
+            }
+        }
+        return parseLong(field, "date");
+    }
+
+    private Feeling parseFeeling(StringBuilder field) throws IOException {
+        int start = trimStart(field);
+        int end = trimEnd(field);
+        if (start < end && isDigit(field.charAt(start))) {
+            long ordinal = parseLong(field, "feeling");
+            if (ordinal >= FEELINGS.length) {
+                throw malformed("invalid feeling ordinal " + ordinal);
+            }
+            return FEELINGS[(int) ordinal];
+        }
+        for (Feeling feeling : FEELINGS) {
+            if (equalsIgnoreCase(field, start, end, feeling.name())) {
+                return feeling;
+            }
+        }
+        throw malformed("invalid feeling \"" + field + "\"");
+    }
+
+    /**
+     * Parse a trimmed, optionally negative, decimal {@code long} without allocating unless it
+     * is long enough to possibly overflow.
+     */
+    private long parseLong(StringBuilder field, String what) throws IOException {
+        int start = trimStart(field);
+        int end = trimEnd(field);
+        boolean negative = start < end && field.charAt(start) == '-';
+        int digitsStart = negative ? start + 1 : start;
+        if (digitsStart == end) {
+            throw malformed("invalid " + what + " \"" + field + "\"");
+        }
+        if (end - digitsStart > SAFE_DIGITS) {
+            try {
+                return Long.parseLong(field.substring(start, end));
+            } catch (NumberFormatException e) {
+                throw malformed("invalid " + what + " \"" + field + "\"");
+            }
+        }
+        long value = 0;
+        for (int i = digitsStart; i < end; i++) {
+            char c = field.charAt(i);
+            if (!isDigit(c)) {
+                throw malformed("invalid " + what + " \"" + field + "\"");
+            }
+            value = value * 10 + (c - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Read the fields of the next record into {@code fields}.
+     *
+     * @return {@code boolean} {@code false} at the end of the stream.
+     */
+    private boolean readRecord() throws IOException {
+        int c = next();
+        if (!started) {
+            started = true;
+            if (c == BYTE_ORDER_MARK) {
+                c = next();
+            }
+        }
+        if (c == -1) {
+            return false;
+        }
+        line++;
+        recordLine = line;
+        fieldCount = 0;
+        while (true) {
+            StringBuilder field = nextField();
+            if (c == '"') {
+                while (true) {
+                    c = next();
+                    if (c == -1) {
+                        throw malformed("unterminated quoted field");
+                    }
+                    if (c == '"') {
+                        c = next();
+                        if (c != '"') {
+                            break;
+                        }
+                    } else if (c == '\n') {
+                        line++;
+                    }
+                    field.append((char) c);
+                }
+                if (c != ',' && c != '\n' && c != '\r' && c != -1) {
+                    throw malformed("unexpected character after quoted field");
+                }
+            } else {
+                while (c != ',' && c != '\n' && c != '\r' && c != -1) {
+                    field.append((char) c);
+                    c = next();
+                }
+            }
+            if (c == ',') {
+                c = next();
+                continue;
+            }
+            if (c == '\r' && next() != '\n' && limit > 0) {
+                position--;
+            }
+            return true;
+        }
+    }
+
+    private StringBuilder nextField() {
+        if (fieldCount == fields.length) {
+            StringBuilder[] grown = new StringBuilder[fields.length * 2];
+            System.arraycopy(fields, 0, grown, 0, fields.length);
+            for (int i = fields.length; i < grown.length; i++) {
+                grown[i] = new StringBuilder();
+            }
+            fields = grown;
+        }
+        StringBuilder field = fields[fieldCount++];
+        field.setLength(0);
+        return field;
+    }
+
+    private int next() throws IOException {
+        if (position == limit) {
+            int read = reader.read(buffer, 0, buffer.length);
+            position = 0;
+            if (read <= 0) {
+                limit = 0;
+                return -1;
+            }
+            limit = read;
+        }
+        return buffer[position++];
+    }
+
+    private IOException malformed(String reason) {
+        return new IOException("Malformed CSV at line " + recordLine + ": " + reason);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean equalsIgnoreCase(StringBuilder field, int start, int end, String name) {
+        if (end - start != name.length()) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            char c = field.charAt(i);
+            char n = name.charAt(i - start);
+            if (c != n && Character.toUpperCase(c) != Character.toUpperCase(n)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isBlank(StringBuilder field) {
+        return trimStart(field) == field.length();
+    }
+
+    private static int trimStart(StringBuilder field) {
+        int start = 0;
+        while (start < field.length() && field.charAt(start) == ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimEnd(StringBuilder field) {
+        int end = field.length();
+        while (end > 0 && field.charAt(end - 1) == ' ') {
+            end--;
+        }
+        return end;
+    }
+}
@@ -0,0 +1,101 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+
+
+/**
+ * Streaming writer of {@code Feel}s as RFC 4180 CSV, one record at a time.
+ * <p>
+ * The header {@code id,date,feeling,comment} is followed by one record per {@code Feel} with its
+ * date as epoch milliseconds and its {@code Feeling} by name, so that {@code FeelCsvReader} reads
+ * back the same {@code Feel}s. Comments are quoted only when they contain a delimiter, quote or
+ * line break.
+ *
+ * @see FeelCsvReader
+ */
+final class FeelCsvWriter implements Closeable, Flushable {
+    private static final String TAG = "FeelCsvWriter";
+
+    private static final String LINE_END = "\r\n";
+
+    private final Writer writer;
+    private boolean headerWritten;
+
+    FeelCsvWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Write a {@code Feel} as the next record, after the header if it is the first.
+     *
+     * @param feel {@code Feel}
+     * @throws IOException if writing fails.
+     */
+    void write(Feel feel) throws IOException {
+        writeHeader();
+        writer.write(Long.toString(feel.getId()));
+        writer.write(',');
+        writer.write(Long.toString(feel.getDate().getTime()));
+        writer.write(',');
+        writer.write(feel.getFeeling().name());
+        writer.write(',');
+        writeComment(feel.getComment());
+        writer.write(LINE_END);
+    }
+
+    /**
+     * Write the header if it has not been yet, so that even a file without {@code Feel}s has one.
+     *
+     * @throws IOException if writing fails.
+     */
+    void writeHeader() throws IOException {
+        if (headerWritten) {
+            return;
+        }
+        headerWritten = true;
+        writer.write(FeelCsvReader.ID_COLUMN + ',' + FeelCsvReader.DATE_COLUMN + ','
+                + FeelCsvReader.FEELING_COLUMN + ',' + FeelCsvReader.COMMENT_COLUMN + LINE_END);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    private void writeComment(String comment) throws IOException {
+        if (!needsQuotes(comment)) {
+            writer.write(comment);
+            return;
+        }
+        writer.write('"');
+        int start = 0;
+        for (int i = 0; i < comment.length(); i++) {
+            if (comment.charAt(i) == '"') {
+                writer.write(comment, start, i + 1 - start);
+                writer.write('"');
+                start = i + 1;
+            }
+        }
+        writer.write(comment, start, comment.length() - start);
+        writer.write('"');
+    }
+
+    private static boolean needsQuotes(String comment) {
+        for (int i = 0; i < comment.length(); i++) {
+            char c = comment.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        // a leading or trailing space would otherwise be trimmed by some readers
+        return !comment.isEmpty() && (comment.charAt(0) == ' ' || comment.charAt(comment.length() - 1) == ' ');
+    }
+}
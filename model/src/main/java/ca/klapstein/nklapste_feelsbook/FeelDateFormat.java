@@ -0,0 +1,221 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import java.util.Date;
+import java.util.TimeZone;
+
+
+/**
+ * Immutable, thread safe formatter and parser for the {@code yyyy-MM-dd'T'HH:mm:ss} dates shown
+ * throughout FeelsBook.
+ * <p>
+ * Unlike a shared {@code SimpleDateFormat} a {@code FeelDateFormat} can be used concurrently
+ * from any thread. Formatted labels are cached per second within a small direct mapped cache of
+ * immutable entries, thus, rebinding the same rows of the {@code FeelAdapter} does not allocate.
+ * <p>
+ * Parsing is strict and never throws, {@code parse} returns {@code INVALID} and
+ * {@code parseDate} returns {@code null} for malformed input so the hot path does not allocate a
+ * {@code ParseException}.
+ * <p>
+ * Digits are always ASCII, regardless of the default {@code Locale}.
+ */
+final class FeelDateFormat {
+    private static final String TAG = "FeelDateFormat";
+
+    /**
+     * Returned by {@code parse} for malformed input.
+     */
+    static final long INVALID = Long.MIN_VALUE;
+
+    static final String PATTERN = "yyyy-MM-dd'T'HH:mm:ss";
+
+    private static final int LABEL_LENGTH = PATTERN.length() - 2;
+    private static final long MILLIS_PER_SECOND = 1000;
+    private static final long SECONDS_PER_DAY = 24 * 60 * 60;
+    private static final long MILLIS_PER_DAY = SECONDS_PER_DAY * MILLIS_PER_SECOND;
+    private static final int CACHE_SIZE = 1024;
+
+    private final TimeZone timeZone;
+    private final CacheEntry[] cache = new CacheEntry[CACHE_SIZE];
+
+    /**
+     * Construct a {@code FeelDateFormat} for the given {@code TimeZone}.
+     *
+     * @param timeZone {@code TimeZone} which must not be modified afterwards.
+     */
+    FeelDateFormat(TimeZone timeZone) {
+        this.timeZone = (TimeZone) timeZone.clone();
+    }
+
+    /**
+     * Convert a proleptic Gregorian date into days since 1970-01-01.
+     * <p>
+     * Uses Howard Hinnant's {@code days_from_civil} algorithm.
+     *
+     * @param year  {@code long}
+     * @param month {@code int} 1 to 12.
+     * @param day   {@code int} 1 to 31.
+     * @return {@code long}
+     */
+    static long daysFromCivil(long year, int month, int day) {
+        year -= month <= 2 ? 1 : 0;
+        long era = Math.floorDiv(year, 400);
+        long yearOfEra = year - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private static int daysInMonth(long year, int month) {
+        if (month == 2) {
+            boolean leapYear = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+            return leapYear ? 29 : 28;
+        }
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    /**
+     * Format a {@code Date}.
+     *
+     * @param date {@code Date}
+     * @return {@code String}
+     */
+    String format(Date date) {
+        return format(date.getTime());
+    }
+
+    /**
+     * Format epoch milliseconds, truncated to the second.
+     *
+     * @param timeMillis {@code long}
+     * @return {@code String}
+     */
+    String format(long timeMillis) {
+        long second = Math.floorDiv(timeMillis, MILLIS_PER_SECOND);
+        int slot = (int) ((second * 0x9E3779B97F4A7C15L) >>> 54) & (CACHE_SIZE - 1);
+        // entries are immutable, so a racy read sees either a complete entry or an older one
+        CacheEntry entry = cache[slot];
+        if (entry != null && entry.second == second) {
+            return entry.label;
+        }
+        String label = render(second * MILLIS_PER_SECOND);
+        cache[slot] = new CacheEntry(second, label);
+        return label;
+    }
+
+    private String render(long timeMillis) {
+        long localMillis = timeMillis + timeZone.getOffset(timeMillis);
+        long epochDay = Math.floorDiv(localMillis, MILLIS_PER_DAY);
+        int secondOfDay = (int) (Math.floorMod(localMillis, MILLIS_PER_DAY) / MILLIS_PER_SECOND);
+
+        // Howard Hinnant's civil_from_days algorithm
+        long z = epochDay + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * shiftedMonth + 2) / 5 + 1);
+        int month = (int) (shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        if (year < 0 || year > 9999) {
+            return String.format("%04d-%02d-%02dT%02d:%02d:%02d", year, month, day,
+                    secondOfDay / 3600, secondOfDay / 60 % 60, secondOfDay % 60);
+        }
+        char[] chars = new char[LABEL_LENGTH];
+        int y = (int) year;
+        chars[0] = (char) ('0' + y / 1000);
+        chars[1] = (char) ('0' + y / 100 % 10);
+        chars[2] = (char) ('0' + y / 10 % 10);
+        chars[3] = (char) ('0' + y % 10);
+        chars[4] = '-';
+        putTwoDigits(chars, 5, month);
+        chars[7] = '-';
+        putTwoDigits(chars, 8, day);
+        chars[10] = 'T';
+        putTwoDigits(chars, 11, secondOfDay / 3600);
+        chars[13] = ':';
+        putTwoDigits(chars, 14, secondOfDay / 60 % 60);
+        chars[16] = ':';
+        putTwoDigits(chars, 17, secondOfDay % 60);
+        return new String(chars);
+    }
+
+    private static void putTwoDigits(char[] chars, int index, int value) {
+        chars[index] = (char) ('0' + value / 10);
+        chars[index + 1] = (char) ('0' + value % 10);
+    }
+
+    /**
+     * Parse a {@code yyyy-MM-dd'T'HH:mm:ss} date into epoch milliseconds.
+     * <p>
+     * Local times skipped by a daylight saving transition are shifted forward, like
+     * {@code SimpleDateFormat} does.
+     *
+     * @param text {@code CharSequence}
+     * @return {@code long} epoch milliseconds, or {@code INVALID} if the text is malformed.
+     */
+    long parse(CharSequence text) {
+        if (text == null || text.length() != LABEL_LENGTH
+                || text.charAt(4) != '-' || text.charAt(7) != '-' || text.charAt(10) != 'T'
+                || text.charAt(13) != ':' || text.charAt(16) != ':') {
+            return INVALID;
+        }
+        int year = parseDigits(text, 0, 4);
+        int month = parseDigits(text, 5, 2);
+        int day = parseDigits(text, 8, 2);
+        int hour = parseDigits(text, 11, 2);
+        int minute = parseDigits(text, 14, 2);
+        int second = parseDigits(text, 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return INVALID;
+        }
+        long localMillis = daysFromCivil(year, month, day) * MILLIS_PER_DAY
+                + ((hour * 60 + minute) * 60 + second) * MILLIS_PER_SECOND;
+        // guess the offset with the standard offset, then correct for daylight saving time
+        int offset = timeZone.getOffset(localMillis - timeZone.getRawOffset());
+        long timeMillis = localMillis - offset;
+        int actualOffset = timeZone.getOffset(timeMillis);
+        if (actualOffset != offset) {
+            timeMillis = localMillis - actualOffset;
+        }
+        return timeMillis;
+    }
+
+    /**
+     * Parse a {@code yyyy-MM-dd'T'HH:mm:ss} date.
+     *
+     * @param text {@code CharSequence}
+     * @return {@code Date}, or {@code null} if the text is malformed.
+     */
+    Date parseDate(CharSequence text) {
+        long timeMillis = parse(text);
+        return timeMillis == INVALID ? null : new Date(timeMillis);
+    }
+
+    /**
+     * @return {@code int} the parsed digits, or a negative value if a character is not a digit.
+     */
+    private static int parseDigits(CharSequence text, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static final class CacheEntry {
+        final long second;
+        final String label;
+
+        CacheEntry(long second, String label) {
+            this.second = second;
+            this.label = label;
+        }
+    }
+}
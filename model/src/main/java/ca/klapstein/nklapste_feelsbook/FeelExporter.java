@@ -0,0 +1,109 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+
+
+/**
+ * Streams {@code Feel}s into a CSV or JSON file one page at a time.
+ * <p>
+ * The {@code Feel}s are loaded from a {@code FeelPageSource}, so only one page is held at a time
+ * regardless of the number of {@code Feel}s exported.
+ *
+ * @see FeelImporter
+ * @see FeelFileFormat
+ */
+final class FeelExporter {
+    private static final String TAG = "FeelExporter";
+
+    /**
+     * The number of {@code Feel}s loaded from the {@code FeelPageSource} at a time.
+     */
+    static final int PAGE_SIZE = 1024;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Interface defining the receiver of the progress of an export, called on the exporting thread.
+     */
+    interface Listener {
+        /**
+         * Called after each page of {@code Feel}s is written.
+         *
+         * @param written {@code int} the number of {@code Feel}s written so far.
+         * @param total   {@code int} the number of {@code Feel}s being exported.
+         */
+        void onProgress(int written, int total);
+    }
+
+    private FeelExporter() {
+    }
+
+    /**
+     * Export all {@code Feel}s of a {@code FeelPageSource} in newest first order.
+     * <p>
+     * The stream is flushed but not closed. The {@code FeelPageSource} must not be modified
+     * during the export.
+     *
+     * @param source   {@code FeelPageSource}
+     * @param format   {@code FeelFileFormat}
+     * @param out      {@code OutputStream}
+     * @param listener {@code Listener}
+     * @return {@code int} the number of {@code Feel}s exported.
+     * @throws IOException if writing fails.
+     */
+    static int exportFeels(FeelPageSource source, FeelFileFormat format, OutputStream out, Listener listener)
+            throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, FeelImporter.CHARSET), BUFFER_SIZE);
+        int total = source.getCount();
+        int written;
+        if (format == FeelFileFormat.JSON) {
+            written = exportJson(source, total, writer, listener);
+        } else {
+            written = exportCsv(source, total, writer, listener);
+        }
+        writer.flush();
+        return written;
+    }
+
+    private static int exportCsv(FeelPageSource source, int total, Writer writer, Listener listener)
+            throws IOException {
+        FeelCsvWriter csvWriter = new FeelCsvWriter(writer);
+        csvWriter.writeHeader();
+        int written = 0;
+        List<Feel> page;
+        while (!(page = source.loadRange(written, PAGE_SIZE)).isEmpty()) {
+            for (Feel feel : page) {
+                csvWriter.write(feel);
+            }
+            written += page.size();
+            listener.onProgress(written, total);
+        }
+        return written;
+    }
+
+    private static int exportJson(FeelPageSource source, int total, Writer writer, Listener listener)
+            throws IOException {
+        JsonWriter jsonWriter = new JsonWriter(writer);
+        FeelTypeAdapter feelTypeAdapter = new FeelTypeAdapter();
+        jsonWriter.beginArray();
+        int written = 0;
+        List<Feel> page;
+        while (!(page = source.loadRange(written, PAGE_SIZE)).isEmpty()) {
+            for (Feel feel : page) {
+                feelTypeAdapter.write(jsonWriter, feel);
+            }
+            written += page.size();
+            listener.onProgress(written, total);
+        }
+        jsonWriter.endArray();
+        jsonWriter.flush();
+        return written;
+    }
+}
@@ -0,0 +1,68 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+
+/**
+ * The file formats {@code Feel}s are imported from and exported to.
+ *
+ * @see FeelImporter
+ * @see FeelExporter
+ */
+enum FeelFileFormat {
+    /**
+     * One {@code Feel} per line with a {@code id,date,feeling,comment} header.
+     *
+     * @see FeelCsvReader
+     */
+    CSV("text/csv"),
+    /**
+     * A JSON array of {@code Feel}s as written by {@code FeelTypeAdapter}, the same as the
+     * {@code FeelTreeSet} JSON of older versions of FeelsBook.
+     */
+    JSON("application/json");
+
+    private static final String TAG = "FeelFileFormat";
+
+    /**
+     * The number of leading bytes looked at by {@code detect}.
+     */
+    private static final int DETECT_LIMIT = 64;
+
+    private final String mimeType;
+
+    FeelFileFormat(String mimeType) {
+        this.mimeType = mimeType;
+    }
+
+    String getMimeType() {
+        return mimeType;
+    }
+
+    /**
+     * Detect the format of a stream from its first non-whitespace character, a JSON array or
+     * object starts with {@code [} or {@code {}, anything else is CSV.
+     * <p>
+     * The stream is reset to where it was, so it must support {@code mark}.
+     *
+     * @param in {@code InputStream}
+     * @return {@code FeelFileFormat}
+     * @throws IOException if reading the stream fails.
+     */
+    static FeelFileFormat detect(InputStream in) throws IOException {
+        in.mark(DETECT_LIMIT);
+        try {
+            for (int i = 0; i < DETECT_LIMIT; i++) {
+                int b = in.read();
+                // skip a UTF-8 byte order mark along with whitespace
+                if (b == -1 || !(Character.isWhitespace(b) || b == 0xEF || b == 0xBB || b == 0xBF)) {
+                    return b == '[' || b == '{' ? JSON : CSV;
+                }
+            }
+            return CSV;
+        } finally {
+            in.reset();
+        }
+    }
+}
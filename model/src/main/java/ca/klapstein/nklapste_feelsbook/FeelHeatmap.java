@@ -0,0 +1,157 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import java.util.Arrays;
+import java.util.TimeZone;
+
+
+/**
+ * Incrementally maintained counts of each {@code Feeling} by day of the week and hour of the day.
+ * <p>
+ * The counts form a cube of {@code Feeling} x {@code DAYS} x {@code HOURS} cells, stored within a
+ * single primitive {@code int} array laid out as {@code [feeling][day][hour]}, rather than as
+ * nested arrays. Every {@code Feel} added to or removed from a {@code FeelTreeSet} increments or
+ * decrements exactly one cell, which costs O(1) without any {@code Calendar}: the day and hour
+ * are derived from the epoch milliseconds shifted by the offset of the {@code TimeZone} given on
+ * construction. Days are numbered from Monday {@code 0} to Sunday {@code 6}.
+ * <p>
+ * As the cube has a fixed size, reading it, copying it, or drawing it costs the same no matter
+ * how many {@code Feel}s exist.
+ *
+ * @see FeelTreeSet#getFeelHeatmap()
+ * @see FeelRollups
+ */
+public class FeelHeatmap {
+    private static final String TAG = "FeelHeatmap";
+
+    public static final int DAYS = 7;
+    public static final int HOURS = 24;
+    /**
+     * The number of cells of each {@code Feeling}.
+     */
+    static final int FEELING_CELLS = DAYS * HOURS;
+
+    private static final long MILLIS_PER_HOUR = 60 * 60 * 1000L;
+    private static final long MILLIS_PER_DAY = HOURS * MILLIS_PER_HOUR;
+
+    private final TimeZone timeZone;
+    private final int[] counts;
+
+    FeelHeatmap(TimeZone timeZone) {
+        this(timeZone, new int[Feeling.values().length * FEELING_CELLS]);
+    }
+
+    /**
+     * Construct a {@code FeelHeatmap} of previously counted cells.
+     *
+     * @param timeZone {@code TimeZone} the cells were counted in.
+     * @param counts   {@code int[]} the cells laid out as {@code [feeling][day][hour]}, this
+     *                 array is not copied.
+     */
+    FeelHeatmap(TimeZone timeZone, int[] counts) {
+        if (counts.length != Feeling.values().length * FEELING_CELLS) {
+            throw new IllegalArgumentException("Expected " + Feeling.values().length * FEELING_CELLS
+                    + " cells but got " + counts.length);
+        }
+        this.timeZone = timeZone;
+        this.counts = counts;
+    }
+
+    /**
+     * Get the index of the cell counting a {@code Feeling} at a point in time.
+     *
+     * @param feeling    {@code int} the {@code Feeling.ordinal()}.
+     * @param timeMillis {@code long} epoch milliseconds.
+     * @return {@code int}
+     */
+    int getCell(int feeling, long timeMillis) {
+        long localMillis = timeMillis + timeZone.getOffset(timeMillis);
+        long epochDay = Math.floorDiv(localMillis, MILLIS_PER_DAY);
+        int hour = (int) (Math.floorMod(localMillis, MILLIS_PER_DAY) / MILLIS_PER_HOUR);
+        // 1970-01-01 was a Thursday, shift so that Monday is day 0
+        int day = (int) Math.floorMod(epochDay + 3, DAYS);
+        return feeling * FEELING_CELLS + day * HOURS + hour;
+    }
+
+    /**
+     * Get the count of a {@code Feeling} within one hour of one day of the week.
+     *
+     * @param feeling {@code Feeling}
+     * @param day     {@code int} from Monday {@code 0} to Sunday {@code 6}.
+     * @param hour    {@code int} from {@code 0} to {@code 23}.
+     * @return {@code int}
+     */
+    public int getCount(Feeling feeling, int day, int hour) {
+        return counts[feeling.ordinal() * FEELING_CELLS + day * HOURS + hour];
+    }
+
+    /**
+     * Get the highest count of any cell of a {@code Feeling}, in O(DAYS * HOURS).
+     *
+     * @param feeling {@code Feeling}
+     * @return {@code int}
+     */
+    public int getMaxCount(Feeling feeling) {
+        int max = 0;
+        int start = feeling.ordinal() * FEELING_CELLS;
+        for (int cell = start; cell < start + FEELING_CELLS; cell++) {
+            max = Math.max(max, counts[cell]);
+        }
+        return max;
+    }
+
+    TimeZone getTimeZone() {
+        return timeZone;
+    }
+
+    /**
+     * @return {@code int[]} the cells laid out as {@code [feeling][day][hour]}, a copy.
+     */
+    int[] getCounts() {
+        return Arrays.copyOf(counts, counts.length);
+    }
+
+    /**
+     * @return {@code FeelHeatmap} an independent copy of this {@code FeelHeatmap}.
+     */
+    FeelHeatmap copy() {
+        return new FeelHeatmap(timeZone, getCounts());
+    }
+
+    void add(Feel feel) {
+        update(feel.getFeeling().ordinal(), feel.getDate().getTime(), 1);
+    }
+
+    void remove(Feel feel) {
+        update(feel.getFeeling().ordinal(), feel.getDate().getTime(), -1);
+    }
+
+    void update(int feeling, long timeMillis, int delta) {
+        counts[getCell(feeling, timeMillis)] += delta;
+    }
+
+    /**
+     * Add the counts of another {@code FeelHeatmap} of the same {@code TimeZone} to this one.
+     *
+     * @param other {@code FeelHeatmap}
+     */
+    void addAll(FeelHeatmap other) {
+        for (int cell = 0; cell < counts.length; cell++) {
+            counts[cell] += other.counts[cell];
+        }
+    }
+
+    void clear() {
+        Arrays.fill(counts, 0);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof FeelHeatmap && timeZone.equals(((FeelHeatmap) obj).timeZone)
+                && Arrays.equals(counts, ((FeelHeatmap) obj).counts);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(counts);
+    }
+}
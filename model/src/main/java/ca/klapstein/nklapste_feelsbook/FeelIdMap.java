@@ -0,0 +1,214 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import java.util.Arrays;
+
+
+/**
+ * Open addressing hash map from {@code Feel} id to {@code Feel} date and a value, such as the
+ * chunk of {@code FeelColumns} holding the {@code Feel}.
+ * <p>
+ * Ids and dates are kept within primitive {@code long[]}s with linear probing, so a lookup
+ * neither boxes the id nor follows a chain of entry objects. Removals shift the following
+ * entries of the probe sequence back instead of leaving tombstones. The table is kept at most
+ * three quarters full.
+ * <p>
+ * {@code Long.MIN_VALUE} marks an empty slot, so the entry of that id is kept aside.
+ * <p>
+ * A {@code FeelIdMap} is not thread safe.
+ *
+ * @param <V> the type of the values, never {@code null}.
+ * @see FeelTreeSet#getById(long)
+ */
+final class FeelIdMap<V> {
+    private static final String TAG = "FeelIdMap";
+
+    /**
+     * The id of an empty slot.
+     */
+    private static final long ABSENT = Long.MIN_VALUE;
+
+    private long[] ids = emptyIds(16);
+    private long[] dates = new long[16];
+    private Object[] values = new Object[16];
+    private int size;
+    private long absentIdDate;
+    private V absentIdValue;
+
+    int size() {
+        return size + (absentIdValue != null ? 1 : 0);
+    }
+
+    /**
+     * Get the value of an id.
+     *
+     * @param id {@code long}
+     * @return {@code V} or {@code null} if there is none.
+     */
+    V get(long id) {
+        if (id == ABSENT) {
+            return absentIdValue;
+        }
+        int slot = find(id);
+        return slot < 0 ? null : value(slot);
+    }
+
+    /**
+     * Get the date of an id.
+     *
+     * @param id {@code long} an id that is held.
+     * @return {@code long}
+     */
+    long getDate(long id) {
+        if (id == ABSENT) {
+            return absentIdDate;
+        }
+        int slot = find(id);
+        if (slot < 0) {
+            throw new IllegalArgumentException("Id not held: " + id);
+        }
+        return dates[slot];
+    }
+
+    private int find(long id) {
+        int mask = ids.length - 1;
+        for (int slot = slot(id, mask); ids[slot] != ABSENT; slot = (slot + 1) & mask) {
+            if (ids[slot] == id) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V value(int slot) {
+        return (V) values[slot];
+    }
+
+    /**
+     * Put the date and value of an id, replacing those of the same id.
+     *
+     * @param id    {@code long}
+     * @param date  {@code long}
+     * @param value {@code V}
+     * @return {@code V} the replaced value, or {@code null} if there was none.
+     */
+    V put(long id, long date, V value) {
+        if (id == ABSENT) {
+            V replaced = absentIdValue;
+            absentIdDate = date;
+            absentIdValue = value;
+            return replaced;
+        }
+        if (4 * (size + 1) > 3 * ids.length) {
+            resize(ids.length * 2);
+        }
+        int mask = ids.length - 1;
+        int slot = slot(id, mask);
+        while (ids[slot] != ABSENT) {
+            if (ids[slot] == id) {
+                V replaced = value(slot);
+                dates[slot] = date;
+                values[slot] = value;
+                return replaced;
+            }
+            slot = (slot + 1) & mask;
+        }
+        ids[slot] = id;
+        dates[slot] = date;
+        values[slot] = value;
+        size++;
+        return null;
+    }
+
+    /**
+     * Grow the table ahead of a batch of puts, so it is resized at most once.
+     *
+     * @param count {@code int} the number of ids that will be held.
+     */
+    void ensureCapacity(int count) {
+        int capacity = ids.length;
+        while (4L * count > 3L * capacity) {
+            capacity *= 2;
+        }
+        if (capacity > ids.length) {
+            resize(capacity);
+        }
+    }
+
+    /**
+     * Remove an id.
+     *
+     * @param id {@code long}
+     * @return {@code V} the value of the removed id, or {@code null} if there was none.
+     */
+    V remove(long id) {
+        if (id == ABSENT) {
+            V removed = absentIdValue;
+            absentIdValue = null;
+            return removed;
+        }
+        int mask = ids.length - 1;
+        int slot = find(id);
+        if (slot < 0) {
+            return null;
+        }
+        V removed = value(slot);
+        // shift back every following entry of the probe sequence that may fill the hole
+        int hole = slot;
+        for (int next = (hole + 1) & mask; ids[next] != ABSENT; next = (next + 1) & mask) {
+            int home = slot(ids[next], mask);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                ids[hole] = ids[next];
+                dates[hole] = dates[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+        }
+        ids[hole] = ABSENT;
+        values[hole] = null;
+        size--;
+        return removed;
+    }
+
+    void clear() {
+        Arrays.fill(ids, ABSENT);
+        Arrays.fill(values, null);
+        size = 0;
+        absentIdValue = null;
+    }
+
+    private void resize(int capacity) {
+        long[] oldIds = ids;
+        long[] oldDates = dates;
+        Object[] oldValues = values;
+        ids = emptyIds(capacity);
+        dates = new long[capacity];
+        values = new Object[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldIds.length; i++) {
+            if (oldIds[i] != ABSENT) {
+                int slot = slot(oldIds[i], mask);
+                while (ids[slot] != ABSENT) {
+                    slot = (slot + 1) & mask;
+                }
+                ids[slot] = oldIds[i];
+                dates[slot] = oldDates[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private static long[] emptyIds(int capacity) {
+        long[] ids = new long[capacity];
+        Arrays.fill(ids, ABSENT);
+        return ids;
+    }
+
+    /**
+     * Spread the bits of the id, as sequential ids would otherwise fill runs of slots.
+     */
+    private static int slot(long id, int mask) {
+        long hash = id * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & mask;
+    }
+}
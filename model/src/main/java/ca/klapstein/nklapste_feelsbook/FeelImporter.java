@@ -0,0 +1,161 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Streams {@code Feel}s out of a CSV or JSON file in batches.
+ * <p>
+ * Only one batch of {@code Feel}s is held at a time, so memory stays constant regardless of the
+ * size of the file, as long as the {@code Listener} does not keep the batches it is handed.
+ *
+ * @see FeelExporter
+ * @see FeelFileFormat
+ */
+final class FeelImporter {
+    private static final String TAG = "FeelImporter";
+
+    /**
+     * The default number of {@code Feel}s handed to the {@code Listener} at a time, large enough
+     * for {@code FeelTreeSet.addAll} to merge rather than insert one by one.
+     */
+    static final int BATCH_SIZE = 4096;
+
+    static final Charset CHARSET = Charset.forName("UTF-8");
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Interface defining the receiver of imported {@code Feel}s, called on the importing thread.
+     */
+    interface Listener {
+        /**
+         * Called with each batch of imported {@code Feel}s, in file order.
+         *
+         * @param feels {@code List<Feel>} which is handed over to the {@code Listener}.
+         * @throws IOException to abort the import.
+         */
+        void onBatch(List<Feel> feels) throws IOException;
+
+        /**
+         * Called after each batch.
+         *
+         * @param bytesRead  {@code long} the number of bytes read so far.
+         * @param totalBytes {@code long} the size of the file, or {@code -1} if unknown.
+         */
+        void onProgress(long bytesRead, long totalBytes);
+    }
+
+    private FeelImporter() {
+    }
+
+    /**
+     * Import all {@code Feel}s in a CSV or JSON stream, detecting its {@code FeelFileFormat}.
+     * <p>
+     * The stream is not closed.
+     *
+     * @param in         {@code InputStream}
+     * @param totalBytes {@code long} the size of the stream for progress, or {@code -1} if unknown.
+     * @param batchSize  {@code int} the maximum number of {@code Feel}s per batch.
+     * @param listener   {@code Listener}
+     * @return {@code int} the number of {@code Feel}s imported.
+     * @throws IOException if reading fails, the file is malformed, or the {@code Listener} aborts.
+     */
+    static int importFeels(InputStream in, long totalBytes, int batchSize, Listener listener) throws IOException {
+        CountingInputStream counter = new CountingInputStream(in);
+        BufferedInputStream buffered = new BufferedInputStream(counter, BUFFER_SIZE);
+        FeelFileFormat format = FeelFileFormat.detect(buffered);
+        Reader reader = new InputStreamReader(buffered, CHARSET);
+        Batcher batcher = new Batcher(counter, totalBytes, batchSize, listener);
+        if (format == FeelFileFormat.JSON) {
+            importJson(reader, batcher);
+        } else {
+            importCsv(reader, batcher);
+        }
+        return batcher.finish();
+    }
+
+    private static void importCsv(Reader reader, Batcher batcher) throws IOException {
+        FeelCsvReader csvReader = new FeelCsvReader(reader);
+        Feel feel;
+        while ((feel = csvReader.read()) != null) {
+            batcher.add(feel);
+        }
+    }
+
+    private static void importJson(Reader reader, Batcher batcher) throws IOException {
+        JsonReader jsonReader = new JsonReader(reader);
+        FeelTypeAdapter feelTypeAdapter = new FeelTypeAdapter();
+        try {
+            if (jsonReader.peek() != JsonToken.BEGIN_ARRAY) {
+                throw new IOException("Malformed JSON: expected an array of feels at " + jsonReader.getPath());
+            }
+            jsonReader.beginArray();
+            while (jsonReader.hasNext()) {
+                Feel feel = feelTypeAdapter.read(jsonReader);
+                if (feel != null) {
+                    batcher.add(feel);
+                }
+            }
+            jsonReader.endArray();
+        } catch (JsonParseException | IllegalStateException | IllegalArgumentException e) {
+            // an unknown feeling name or a value of the wrong type
+            throw new IOException("Malformed JSON at " + jsonReader.getPath() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Collects {@code Feel}s into batches for the {@code Listener}.
+     */
+    private static final class Batcher {
+        private final CountingInputStream counter;
+        private final long totalBytes;
+        private final int batchSize;
+        private final Listener listener;
+        private ArrayList<Feel> batch;
+        private int count;
+
+        Batcher(CountingInputStream counter, long totalBytes, int batchSize, Listener listener) {
+            this.counter = counter;
+            this.totalBytes = totalBytes;
+            this.batchSize = batchSize;
+            this.listener = listener;
+            this.batch = new ArrayList<>(batchSize);
+        }
+
+        void add(Feel feel) throws IOException {
+            batch.add(feel);
+            if (batch.size() == batchSize) {
+                flush();
+            }
+        }
+
+        int finish() throws IOException {
+            if (!batch.isEmpty()) {
+                flush();
+            } else {
+                listener.onProgress(counter.count, totalBytes);
+            }
+            return count;
+        }
+
+        private void flush() throws IOException {
+            count += batch.size();
+            List<Feel> feels = batch;
+            batch = new ArrayList<>(batchSize);
+            listener.onBatch(feels);
+            listener.onProgress(counter.count, totalBytes);
+        }
+    }
+}
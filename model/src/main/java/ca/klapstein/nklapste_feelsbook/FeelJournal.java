@@ -0,0 +1,1302 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.TimeZone;
+
+
+/**
+ * A {@code FeelStore} that persists the {@code FeelTreeSet} as an append-only binary log of
+ * add/remove/edit records within a file.
+ * <p>
+ * Saving a single {@code Feel} appends one small record, so its cost does not depend on the size
+ * of the history. Records are written to the OS immediately, but only fsync'd in batches of
+ * {@code SYNC_BATCH_SIZE} records or on {@code flush}.
+ * <p>
+ * Records are written within segments, each framed by its length and a CRC-32C checksum. A
+ * modification, or up to {@code INDEX_BLOCK_SIZE} records of a batch, is appended as one segment
+ * with a single write. Recovery keeps the leading run of complete segments whose checksums match
+ * and truncates the rest, so a segment torn or garbled by the process or device dying mid write
+ * is dropped as a whole, never applied in part.
+ * <p>
+ * Removes and edits leave dead records behind within the log. Once the ratio of dead records
+ * passes {@code COMPACTION_DEAD_RATIO} the log is compacted by {@code compactIfNeeded}, rewriting
+ * only the live {@code Feel}s. {@code flush} only fsyncs, compaction is run as its own task on the
+ * background {@code PersistenceExecutor} thread after the {@code flush} of each batch of writes.
+ * <p>
+ * Compaction writes the live {@code Feel}s in sorted order, so every journal starts with a sorted
+ * base of add records followed by a tail of later modifications. For paged reads the journal
+ * keeps a sparse index of every {@code INDEX_BLOCK_SIZE}th base record and holds the effect of the
+ * tail in memory, which lets {@code loadRange} read only one block of the file no matter how large
+ * the history is. Once the tail holds {@code MAX_OVERLAY_SIZE} modifications, or
+ * {@code MAX_TAIL_RECORDS} records, the journal is compacted by streaming the base and the tail
+ * into a new base, so compaction also never needs the whole {@code FeelTreeSet} in memory. The new
+ * base is written to a temporary file which is fsync'd and then renamed over the journal file.
+ * <p>
+ * The file layout is a 4 byte magic number followed by segments of the form:
+ * <pre>
+ * segment := type:byte length:int checksum:int record+ (length bytes)
+ * record  := op:byte feel (feel if op == OP_EDIT)
+ * feel    := id:long date:long feeling:byte commentLength:int comment:byte[commentLength] (UTF-8)
+ * </pre>
+ * The checksum is the CRC-32C of the type, length, and records. The base is written as
+ * {@code SEGMENT_BASE} segments of {@code INDEX_BLOCK_SIZE} add records each, so every index block
+ * of the base is one segment, and the tail as {@code SEGMENT_TAIL} segments.
+ * <p>
+ * Journals of the first version, whose {@code Feel}s have no id, are rewritten with newly handed
+ * out ids when first opened. Journals of the second version, whose records are not framed within
+ * segments, are rewritten as they are.
+ * <p>
+ * Each sorted base is also written to a memory mapped {@code FeelSnapshot} next to the journal
+ * file. When opening, the count, tallies, and index of the base are read from the snapshot, and
+ * only the tail after the base is read from the journal file, so opening does not read the whole
+ * history. As the tail is bounded by {@code MAX_TAIL_RECORDS}, so is the time to recover an
+ * opened journal. Pages of the base are read from the snapshot as well. If the snapshot is missing,
+ * corrupt, or does not match the journal, it is dropped and the journal file is read instead,
+ * which writes a new snapshot of its base. The old snapshot is deleted before a new base replaces
+ * the journal, so a snapshot never outlives its base.
+ * <p>
+ * As the base tallies and {@code FeelHeatmap} are known once indexed, a {@code FeelJournal} is
+ * also a {@code FeelTallySource}. The heatmap is counted in the default {@code TimeZone} of when
+ * the {@code FeelJournal} was constructed, a snapshot counted in another one is not used.
+ *
+ * @see FeelStore
+ * @see FeelSnapshot
+ */
+class FeelJournal implements FeelStore, FeelTallySource {
+    private static final String TAG = "FeelJournal";
+
+    static final int SYNC_BATCH_SIZE = 32;
+    static final double COMPACTION_DEAD_RATIO = 0.5;
+    static final int COMPACTION_MIN_RECORDS = 1024;
+    static final int INDEX_BLOCK_SIZE = 256;
+    static final int MAX_OVERLAY_SIZE = 4096;
+    static final int MAX_TAIL_RECORDS = 2 * MAX_OVERLAY_SIZE;
+
+    private static final int MAGIC = 0x46424A33; // "FBJ3"
+    private static final int UNFRAMED_MAGIC = 0x46424A32; // "FBJ2"
+    private static final int LEGACY_MAGIC = 0x46424A31; // "FBJ1"
+    private static final int SEGMENT_BASE = 1;
+    private static final int SEGMENT_TAIL = 2;
+    private static final int SEGMENT_HEADER_SIZE = 1 + 4 + 4;
+    private static final int MAX_COMMENT_LENGTH = 1 << 20;
+    private static final byte OP_ADD = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final byte OP_EDIT = 3;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File file;
+    private final File snapshotFile;
+    private final TimeZone timeZone = TimeZone.getDefault();
+
+    private FileOutputStream fileOutputStream;
+    private DataOutputStream out;
+    /**
+     * The records of the segment being written, appended to the journal file as a whole.
+     */
+    private final SegmentBuffer segment = new SegmentBuffer();
+    private final DataOutputStream segmentOut = new DataOutputStream(segment);
+    private int totalRecords;
+    private int liveRecords;
+    private int unsyncedRecords;
+    private long recoveryReadLength;
+
+    /**
+     * Sparse index of the sorted base of the journal, {@code null} until first needed.
+     */
+    private BaseIndex baseIndex;
+    /**
+     * The snapshot of the base, {@code null} if there is none or it was found corrupt.
+     */
+    private FeelSnapshot snapshot;
+    /**
+     * {@code Feel}s added by the tail of the journal that are not within the base.
+     */
+    private final IndexedTreeSet<Feel> addedFeels = new IndexedTreeSet<>();
+    /**
+     * {@code Feel}s of the base removed by the tail of the journal.
+     */
+    private final IndexedTreeSet<Feel> removedFeels = new IndexedTreeSet<>();
+
+    FeelJournal(File file) {
+        this.file = file;
+        this.snapshotFile = new File(file.getPath() + ".snapshot");
+    }
+
+    /**
+     * Load the journal into a new {@code FeelTreeSet} by merging the sorted base with the tail.
+     * <p>
+     * Torn segments at the end of the journal (e.g. from the process dying mid write) are
+     * discarded and truncated from the file.
+     *
+     * @return {@code FeelTreeSet}
+     */
+    @Override
+    public synchronized FeelTreeSet load() {
+        ensureBaseIndex();
+        try {
+            ArrayList<Feel> feels = new ArrayList<>(getCount());
+            MergedCursor cursor = new MergedCursor(0);
+            Feel feel;
+            while ((feel = cursor.next()) != null) {
+                feels.add(feel);
+            }
+            FeelTreeSet feelTreeSet = new FeelTreeSet();
+            feelTreeSet.addAll(feels);
+            return feelTreeSet;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public synchronized void add(Feel feel) {
+        try {
+            ensureOutput();
+            segmentOut.writeByte(OP_ADD);
+            writeFeel(segmentOut, feel);
+            liveRecords++;
+            onRecordsWritten(1);
+            if (baseIndex != null) {
+                applyAdd(feel);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public synchronized void remove(Feel feel) {
+        try {
+            ensureOutput();
+            segmentOut.writeByte(OP_REMOVE);
+            writeFeel(segmentOut, feel);
+            liveRecords--;
+            onRecordsWritten(1);
+            if (baseIndex != null) {
+                applyRemove(feel);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Append an add record for each {@code Feel}, then flush them together. A batch of at least
+     * {@code SYNC_BATCH_SIZE} records is fsynced once, rather than once per {@code SYNC_BATCH_SIZE}.
+     *
+     * @param feels {@code List<Feel>}
+     */
+    @Override
+    public synchronized void addAll(List<Feel> feels) {
+        try {
+            ensureOutput();
+            writeRecords(OP_ADD, feels);
+            liveRecords += feels.size();
+            if (baseIndex != null) {
+                for (Feel feel : feels) {
+                    applyAdd(feel);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Append a remove record for each {@code Feel}, then flush them together. A batch of at least
+     * {@code SYNC_BATCH_SIZE} records is fsynced once, rather than once per {@code SYNC_BATCH_SIZE}.
+     *
+     * @param feels {@code List<Feel>}
+     */
+    @Override
+    public synchronized void removeAll(List<Feel> feels) {
+        try {
+            ensureOutput();
+            writeRecords(OP_REMOVE, feels);
+            liveRecords -= feels.size();
+            if (baseIndex != null) {
+                for (Feel feel : feels) {
+                    applyRemove(feel);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public synchronized void edit(Feel oldFeel, Feel newFeel) {
+        try {
+            ensureOutput();
+            segmentOut.writeByte(OP_EDIT);
+            writeFeel(segmentOut, oldFeel);
+            writeFeel(segmentOut, newFeel);
+            onRecordsWritten(1);
+            if (baseIndex != null) {
+                applyRemove(oldFeel);
+                applyAdd(newFeel);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public synchronized int getCount() {
+        ensureBaseIndex();
+        return baseIndex.count - removedFeels.size() + addedFeels.size();
+    }
+
+    /**
+     * Get the tallies of the base adjusted by the in-memory effect of the tail.
+     *
+     * @return {@code TallySnapshot}
+     */
+    @Override
+    public synchronized TallySnapshot loadTallySnapshot() {
+        ensureBaseIndex();
+        int[] tallies = Arrays.copyOf(baseIndex.tallies, baseIndex.tallies.length);
+        for (Feel feel : removedFeels) {
+            tallies[feel.getFeeling().ordinal()]--;
+        }
+        for (Feel feel : addedFeels) {
+            tallies[feel.getFeeling().ordinal()]++;
+        }
+        return new TallySnapshot(tallies);
+    }
+
+    /**
+     * Get the {@code FeelHeatmap} of the base adjusted by the in-memory effect of the tail.
+     *
+     * @return {@code FeelHeatmap}
+     */
+    @Override
+    public synchronized FeelHeatmap loadFeelHeatmap() {
+        ensureBaseIndex();
+        FeelHeatmap heatmap = baseIndex.heatmap.copy();
+        for (Feel feel : removedFeels) {
+            heatmap.remove(feel);
+        }
+        for (Feel feel : addedFeels) {
+            heatmap.add(feel);
+        }
+        return heatmap;
+    }
+
+    /**
+     * Load a range of consecutive {@code Feel}s by merging one block of the sorted base with the
+     * in-memory effect of the tail.
+     *
+     * @param position {@code int} the position of the first {@code Feel} to load.
+     * @param count    {@code int} the maximum number of {@code Feel}s to load.
+     * @return {@code List<Feel>}
+     */
+    @Override
+    public synchronized List<Feel> loadRange(int position, int count) {
+        int total = getCount();
+        if (position >= total || count <= 0) {
+            return new ArrayList<>();
+        }
+        List<Feel> feels = new ArrayList<>(Math.min(count, total - position));
+        try {
+            // find the last block starting at or before the position
+            int low = 0;
+            int high = baseIndex.blockCount - 1;
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+                if (mergedPosition(middle) <= position) {
+                    low = middle;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            MergedCursor cursor = new MergedCursor(low);
+            int current = low == 0 ? 0 : mergedPosition(low);
+            while (feels.size() < count) {
+                Feel feel = cursor.next();
+                if (feel == null) {
+                    break;
+                }
+                if (current++ >= position) {
+                    feels.add(feel);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return feels;
+    }
+
+    /**
+     * Fsync all written records.
+     */
+    @Override
+    public synchronized void flush() {
+        sync();
+    }
+
+    /**
+     * Compact the journal if the ratio of dead records passed {@code COMPACTION_DEAD_RATIO} or too
+     * many modifications are held on top of the sorted base.
+     */
+    @Override
+    public synchronized void compactIfNeeded() {
+        if (needsCompaction()) {
+            compact();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        sync();
+        try {
+            closeOutput();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Replace the entire contents of the journal with the given {@code FeelTreeSet}.
+     * <p>
+     * The new journal is written to a temporary file which is then renamed over the old one,
+     * so the journal is never left half written.
+     *
+     * @param feelTreeSet {@code FeelTreeSet}
+     */
+    synchronized void rewrite(FeelTreeSet feelTreeSet) {
+        try {
+            writeBase(feelTreeSet.iterator());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Compact the journal by streaming the sorted base, merged with the effect of the tail, into
+     * a new journal holding only the live {@code Feel}s.
+     */
+    synchronized void compact() {
+        sync();
+        ensureBaseIndex();
+        try {
+            final MergedCursor cursor = new MergedCursor(0);
+            writeBase(new Iterator<Feel>() {
+                private Feel next = cursor.next();
+
+                @Override
+                public boolean hasNext() {
+                    return next != null;
+                }
+
+                @Override
+                public Feel next() {
+                    Feel feel = next;
+                    try {
+                        next = cursor.next();
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                    return feel;
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            });
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Get the number of records that no longer contribute to the loaded {@code FeelTreeSet}.
+     *
+     * @return {@code int}
+     */
+    synchronized int getDeadRecordCount() {
+        return totalRecords - liveRecords;
+    }
+
+    /**
+     * Get the number of bytes of the journal file read to recover it when it was opened, which
+     * is only the tail and one block of the base if the base was read from the snapshot.
+     *
+     * @return {@code long}
+     */
+    synchronized long getRecoveryReadLength() {
+        return recoveryReadLength;
+    }
+
+    /**
+     * Check whether the ratio of dead records within the journal passed
+     * {@code COMPACTION_DEAD_RATIO}, or the tail outgrew {@code MAX_OVERLAY_SIZE} or
+     * {@code MAX_TAIL_RECORDS}.
+     *
+     * @return {@code boolean}
+     */
+    synchronized boolean needsCompaction() {
+        if (addedFeels.size() + removedFeels.size() >= MAX_OVERLAY_SIZE) {
+            return true;
+        }
+        if (baseIndex != null && totalRecords - baseIndex.count >= MAX_TAIL_RECORDS) {
+            return true;
+        }
+        return totalRecords >= COMPACTION_MIN_RECORDS
+                && (double) getDeadRecordCount() / totalRecords > COMPACTION_DEAD_RATIO;
+    }
+
+    private void sync() {
+        try {
+            if (out != null) {
+                out.flush();
+                fileOutputStream.getFD().sync();
+                unsyncedRecords = 0;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Append the records of a batch as segments of at most {@code INDEX_BLOCK_SIZE} records.
+     */
+    private void writeRecords(byte op, List<Feel> feels) throws IOException {
+        int segmentRecords = 0;
+        for (Feel feel : feels) {
+            segmentOut.writeByte(op);
+            writeFeel(segmentOut, feel);
+            if (++segmentRecords == INDEX_BLOCK_SIZE) {
+                onRecordsWritten(segmentRecords);
+                segmentRecords = 0;
+            }
+        }
+        if (segmentRecords > 0) {
+            onRecordsWritten(segmentRecords);
+        }
+    }
+
+    /**
+     * Append the records of the {@code segment} to the journal file as one tail segment.
+     */
+    private void onRecordsWritten(int count) throws IOException {
+        writeSegment(out, SEGMENT_TAIL, segment);
+        // hand the records to the OS right away so they survive the process dying,
+        // but only pay for an fsync once per batch
+        out.flush();
+        totalRecords += count;
+        unsyncedRecords += count;
+        if (unsyncedRecords >= SYNC_BATCH_SIZE) {
+            fileOutputStream.getFD().sync();
+            unsyncedRecords = 0;
+        }
+    }
+
+    /**
+     * Replay all valid records of a journal file of an earlier version, whose records are not
+     * framed within segments, into the set of {@code Feel}s.
+     *
+     * @param feels  {@code Set<Feel>}
+     * @param legacy {@code boolean} whether the {@code Feel}s were written without ids.
+     */
+    private void replayUnframed(Set<Feel> feels, boolean legacy) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            in.readInt();
+            while (true) {
+                try {
+                    int op = in.read();
+                    if (op == -1) {
+                        return;
+                    }
+                    Feel feel = readFeel(in, legacy);
+                    switch (op) {
+                        case OP_ADD:
+                            feels.add(feel);
+                            break;
+                        case OP_REMOVE:
+                            feels.remove(feel);
+                            break;
+                        case OP_EDIT:
+                            Feel newFeel = readFeel(in, legacy);
+                            feels.remove(feel);
+                            feels.add(newFeel);
+                            break;
+                        default:
+                            return;
+                    }
+                } catch (EOFException e) {
+                    return;
+                }
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * @return {@code int} the magic number the journal file starts with.
+     */
+    private int readMagic() throws IOException {
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            return in.readInt();
+        } catch (EOFException e) {
+            throw new IOException("Truncated journal header in " + file, e);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Replay a journal of an earlier version and rewrite it in the current one.
+     * <p>
+     * Journals of the first version have no ids, all their replayed {@code Feel}s have the id
+     * {@code 0}, so that they compare as they did before ids were added while replaying. They are
+     * then handed out new ids.
+     *
+     * @return {@code FeelTreeSet} the migrated {@code Feel}s.
+     */
+    private FeelTreeSet migrate() throws IOException {
+        closeOutput();
+        int magic = readMagic();
+        FeelTreeSet feelTreeSet = new FeelTreeSet();
+        if (magic == LEGACY_MAGIC) {
+            IndexedTreeSet<Feel> legacyFeels = new IndexedTreeSet<>();
+            replayUnframed(legacyFeels, true);
+            for (Feel feel : legacyFeels) {
+                feelTreeSet.add(new Feel(feel.getFeeling(), feel.getComment(), feel.getDate()));
+            }
+        } else if (magic == UNFRAMED_MAGIC) {
+            replayUnframed(feelTreeSet, false);
+        } else {
+            throw new IOException("Invalid journal header in " + file);
+        }
+        writeBase(feelTreeSet.iterator());
+        return feelTreeSet;
+    }
+
+    /**
+     * Write the given sorted {@code Feel}s as the new base of the journal, replacing the old
+     * journal, and index them.
+     * <p>
+     * The new journal is written to a temporary file, fsync'd, and renamed over the old one, so
+     * the journal is never left half written. The snapshot of the new base is only moved into
+     * place after the new journal, and the old snapshot is deleted before it, so a crash in
+     * between leaves no snapshot rather than a wrong one.
+     *
+     * @param feels {@code Iterator<Feel>} sorted {@code Feel}s.
+     */
+    private void writeBase(Iterator<Feel> feels) throws IOException {
+        File tmpFile = new File(file.getPath() + ".tmp");
+        BaseIndex newBaseIndex = new BaseIndex(timeZone);
+        FeelSnapshot.Writer snapshotWriter = new FeelSnapshot.Writer(snapshotFile, timeZone);
+        SegmentBuffer baseSegment = new SegmentBuffer();
+        DataOutputStream baseSegmentOut = new DataOutputStream(baseSegment);
+        long baseLength;
+        FileOutputStream tmpFileOutputStream = new FileOutputStream(tmpFile);
+        try {
+            DataOutputStream tmpOut = new DataOutputStream(new BufferedOutputStream(tmpFileOutputStream));
+            tmpOut.writeInt(MAGIC);
+            while (feels.hasNext()) {
+                Feel feel = feels.next();
+                if (newBaseIndex.startsBlock() && baseSegment.size() > 0) {
+                    writeSegment(tmpOut, SEGMENT_BASE, baseSegment);
+                }
+                // every record of a block is at the offset of its segment
+                newBaseIndex.add(tmpOut.size(), feel);
+                snapshotWriter.add(tmpOut.size(), feel);
+                baseSegmentOut.writeByte(OP_ADD);
+                writeFeel(baseSegmentOut, feel);
+            }
+            if (baseSegment.size() > 0) {
+                writeSegment(tmpOut, SEGMENT_BASE, baseSegment);
+            }
+            tmpOut.flush();
+            tmpFileOutputStream.getFD().sync();
+            baseLength = tmpOut.size();
+        } catch (IOException | RuntimeException e) {
+            snapshotWriter.discard();
+            throw e;
+        } finally {
+            tmpFileOutputStream.close();
+        }
+        closeOutput();
+        dropSnapshot();
+        if (!tmpFile.renameTo(file)) {
+            throw new IOException("Failed to rename " + tmpFile + " to " + file);
+        }
+        if (snapshotWriter.finish(baseLength)) {
+            snapshot = openSnapshot();
+        }
+        baseIndex = newBaseIndex;
+        addedFeels.clear();
+        removedFeels.clear();
+        totalRecords = newBaseIndex.count;
+        liveRecords = newBaseIndex.count;
+        openOutput();
+    }
+
+    /**
+     * Build the index of the sorted base and hold the effect of the tail in memory, if not
+     * already done.
+     * <p>
+     * With a snapshot this only reads the tail and the last block of the base from the journal
+     * file, otherwise it reads the journal once, but only keeps the first {@code Feel} of each
+     * index block and the effect of the tail.
+     */
+    private void ensureBaseIndex() {
+        if (baseIndex != null) {
+            return;
+        }
+        try {
+            if (out != null) {
+                out.flush();
+            }
+            if (!file.exists()) {
+                rewrite(new FeelTreeSet());
+                return;
+            }
+            if (readMagic() != MAGIC) {
+                migrate();
+                return;
+            }
+            recoveryReadLength = 0;
+            snapshot = openSnapshot();
+            if (snapshot != null && (snapshot.getFeelHeatmap(timeZone) == null || !snapshotMatchesJournal())) {
+                dropSnapshot();
+            }
+            long validLength = scan();
+            if (validLength < file.length()) {
+                closeOutput();
+                truncate(validLength);
+            }
+            liveRecords = getCount();
+            openOutput();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Index the sorted base of the journal and apply the tail of the journal to the in-memory
+     * overlay.
+     * <p>
+     * With a {@code snapshot} the base is indexed from it and only the tail after the base is
+     * read from the journal file.
+     *
+     * @return {@code long} the length of the valid prefix of the journal file.
+     */
+    private long scan() throws IOException {
+        baseIndex = null;
+        addedFeels.clear();
+        removedFeels.clear();
+        long baseLength;
+        if (snapshot != null) {
+            baseIndex = BaseIndex.of(snapshot, timeZone);
+            baseLength = snapshot.getJournalLength();
+        } else {
+            baseLength = scanBase();
+        }
+        totalRecords = baseIndex.count;
+        return scanTail(baseLength);
+    }
+
+    /**
+     * Index the leading base segments of the journal file, and write a new snapshot of them.
+     *
+     * @return {@code long} the length of the base.
+     */
+    private long scanBase() throws IOException {
+        BaseIndex newBaseIndex = new BaseIndex(timeZone);
+        long fileLength = file.length();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        FeelSnapshot.Writer snapshotWriter = new FeelSnapshot.Writer(snapshotFile, timeZone);
+        SegmentBuffer baseSegment = new SegmentBuffer();
+        long baseLength;
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Invalid journal header in " + file);
+            }
+            baseLength = 4;
+            // only the last base segment may hold less than a block
+            while (newBaseIndex.startsBlock()
+                    && readSegment(in, fileLength - baseLength, baseSegment) == SEGMENT_BASE) {
+                List<Feel[]> records = decodeRecords(baseSegment);
+                if (records == null || records.size() > INDEX_BLOCK_SIZE) {
+                    break;
+                }
+                for (Feel[] record : records) {
+                    Feel feel = record[1];
+                    if (record[0] != null || feel == null) {
+                        throw new IOException("Invalid base record in " + file);
+                    }
+                    newBaseIndex.add(baseLength, feel);
+                    snapshotWriter.add(baseLength, feel);
+                }
+                baseLength += SEGMENT_HEADER_SIZE + baseSegment.size();
+            }
+        } catch (IOException e) {
+            snapshotWriter.discard();
+            if (e instanceof EOFException) {
+                throw new IOException("Truncated journal header in " + file, e);
+            }
+            throw e;
+        } finally {
+            in.close();
+        }
+        baseIndex = newBaseIndex;
+        recoveryReadLength += baseLength;
+        if (snapshotWriter.finish(baseLength)) {
+            snapshot = openSnapshot();
+        }
+        return baseLength;
+    }
+
+    /**
+     * Apply the tail segments of the journal file from an offset on to the in-memory overlay,
+     * up to the first torn or corrupt segment.
+     *
+     * @param offset {@code long} the offset of the first segment of the tail.
+     * @return {@code long} the length of the valid prefix of the journal file.
+     */
+    private long scanTail(long offset) throws IOException {
+        long fileLength = file.length();
+        FileInputStream fileInputStream = new FileInputStream(file);
+        fileInputStream.getChannel().position(offset);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(fileInputStream));
+        try {
+            long validLength = offset;
+            while (readSegment(in, fileLength - validLength, segment) == SEGMENT_TAIL) {
+                List<Feel[]> records = decodeRecords(segment);
+                if (records == null) {
+                    break;
+                }
+                for (Feel[] record : records) {
+                    if (record[0] != null) {
+                        applyRemove(record[0]);
+                    }
+                    if (record[1] != null) {
+                        applyAdd(record[1]);
+                    }
+                }
+                validLength += SEGMENT_HEADER_SIZE + segment.size();
+                totalRecords += records.size();
+            }
+            recoveryReadLength += validLength - offset;
+            return validLength;
+        } finally {
+            segment.reset();
+            in.close();
+        }
+    }
+
+    /**
+     * Check that the {@code snapshot} mirrors the base of the journal file, by comparing its last
+     * block with the last base segment within the journal file.
+     *
+     * @return {@code boolean}
+     */
+    private boolean snapshotMatchesJournal() throws IOException {
+        long fileLength = file.length();
+        if (snapshot.getJournalLength() > fileLength) {
+            return false;
+        }
+        int blockCount = snapshot.getBlockCount();
+        if (blockCount == 0) {
+            return snapshot.getJournalLength() == 4;
+        }
+        long offset = snapshot.getJournalOffset(blockCount - 1);
+        FileInputStream fileInputStream = new FileInputStream(file);
+        fileInputStream.getChannel().position(offset);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(fileInputStream));
+        SegmentBuffer baseSegment = new SegmentBuffer();
+        try {
+            if (readSegment(in, fileLength - offset, baseSegment) != SEGMENT_BASE) {
+                return false;
+            }
+            recoveryReadLength += SEGMENT_HEADER_SIZE + baseSegment.size();
+            List<Feel[]> records = decodeRecords(baseSegment);
+            Feel[] feels = snapshot.readBlock(blockCount - 1);
+            if (records == null || records.size() != feels.length) {
+                return false;
+            }
+            for (int i = 0; i < feels.length; i++) {
+                Feel[] record = records.get(i);
+                if (record[0] != null || record[1] == null || record[1].compareTo(feels[i]) != 0) {
+                    return false;
+                }
+            }
+            return offset + SEGMENT_HEADER_SIZE + baseSegment.size() == snapshot.getJournalLength();
+        } catch (IOException e) {
+            return false;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Apply an added {@code Feel} to the in-memory overlay of the tail.
+     */
+    private void applyAdd(Feel feel) throws IOException {
+        if (removedFeels.remove(feel)) {
+            // a base feel was added back
+            return;
+        }
+        if (!addedFeels.contains(feel) && !baseContains(feel)) {
+            addedFeels.add(feel);
+        }
+    }
+
+    /**
+     * Apply a removed {@code Feel} to the in-memory overlay of the tail.
+     */
+    private void applyRemove(Feel feel) throws IOException {
+        if (addedFeels.remove(feel)) {
+            return;
+        }
+        if (!removedFeels.contains(feel) && baseContains(feel)) {
+            removedFeels.add(feel);
+        }
+    }
+
+    /**
+     * Check whether the sorted base contains a {@code Feel}, reading at most one block.
+     */
+    private boolean baseContains(Feel feel) throws IOException {
+        int block = findBlock(feel);
+        return block >= 0 && Arrays.binarySearch(readBaseBlock(block), feel) >= 0;
+    }
+
+    /**
+     * @return {@code int} the last block whose first {@code Feel} is not greater than the given
+     * {@code Feel}, or {@code -1} if there is none.
+     */
+    private int findBlock(Feel feel) throws IOException {
+        int low = 0;
+        int high = baseIndex.blockCount - 1;
+        int found = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (blockFirstFeel(middle).compareTo(feel) <= 0) {
+                found = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Get the position of the first base record of a block within the merged view of the base
+     * and the tail.
+     */
+    private int mergedPosition(int block) throws IOException {
+        Feel first = blockFirstFeel(block);
+        return block * INDEX_BLOCK_SIZE - removedFeels.rank(first) + addedFeels.rank(first);
+    }
+
+    /**
+     * Get the first {@code Feel} of a block of the base, reading it on first use if the index
+     * was restored from the snapshot.
+     */
+    private Feel blockFirstFeel(int block) throws IOException {
+        Feel feel = baseIndex.blockFirstFeels[block];
+        if (feel == null) {
+            feel = readBaseBlock(block)[0];
+            baseIndex.blockFirstFeels[block] = feel;
+        }
+        return feel;
+    }
+
+    /**
+     * Read the {@code Feel}s of a block of the base, from the snapshot if there is one, and
+     * otherwise from the journal file.
+     * <p>
+     * A corrupt snapshot block drops the snapshot, the block is then read from the journal file.
+     */
+    private Feel[] readBaseBlock(int block) throws IOException {
+        if (snapshot != null) {
+            try {
+                return snapshot.readBlock(block);
+            } catch (IOException e) {
+                dropSnapshot();
+            }
+        }
+        DataInputStream in = openBlock(block);
+        SegmentBuffer baseSegment = new SegmentBuffer();
+        try {
+            long remaining = file.length() - baseIndex.blockOffsets[block];
+            List<Feel[]> records = readSegment(in, remaining, baseSegment) == SEGMENT_BASE
+                    ? decodeRecords(baseSegment) : null;
+            if (records == null || records.size() != baseIndex.getBlockRecordCount(block)) {
+                throw new IOException("Corrupt base segment " + block + " in " + file);
+            }
+            Feel[] feels = new Feel[records.size()];
+            for (int i = 0; i < feels.length; i++) {
+                feels[i] = records.get(i)[1];
+            }
+            return feels;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * @return {@code FeelSnapshot} the mapped snapshot file, or {@code null} if it is missing or
+     * its header is corrupt.
+     */
+    private FeelSnapshot openSnapshot() {
+        if (!snapshotFile.exists()) {
+            return null;
+        }
+        try {
+            return FeelSnapshot.open(snapshotFile);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Stop using the snapshot and delete its file, a new one is written with the next base.
+     */
+    private void dropSnapshot() {
+        snapshot = null;
+        snapshotFile.delete();
+    }
+
+    private DataInputStream openBlock(int block) throws IOException {
+        FileInputStream fileInputStream = new FileInputStream(file);
+        fileInputStream.getChannel().position(baseIndex.blockOffsets[block]);
+        return new DataInputStream(new BufferedInputStream(fileInputStream));
+    }
+
+    private void truncate(long length) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.setLength(length);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private void ensureOutput() throws IOException {
+        // drop the records of a write that failed part way
+        segment.reset();
+        if (out == null) {
+            if (!file.exists()) {
+                rewrite(new FeelTreeSet());
+            } else if (readMagic() != MAGIC) {
+                // segments must not be appended to a journal of an earlier version
+                migrate();
+            } else {
+                openOutput();
+            }
+        }
+    }
+
+    private void openOutput() throws IOException {
+        if (out == null) {
+            fileOutputStream = new FileOutputStream(file, true);
+            out = new DataOutputStream(new BufferedOutputStream(fileOutputStream));
+            unsyncedRecords = 0;
+        }
+    }
+
+    private void closeOutput() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+            fileOutputStream = null;
+        }
+    }
+
+    /**
+     * Append the records of a {@code SegmentBuffer} as one segment and reset it.
+     */
+    private static void writeSegment(DataOutputStream out, int type, SegmentBuffer segment) throws IOException {
+        byte[] header = new byte[SEGMENT_HEADER_SIZE];
+        header[0] = (byte) type;
+        putInt(header, 1, segment.size());
+        Crc32c crc32c = new Crc32c();
+        crc32c.update(header, 0, 5);
+        crc32c.update(segment.bytes(), 0, segment.size());
+        putInt(header, 5, (int) crc32c.getValue());
+        out.write(header);
+        out.write(segment.bytes(), 0, segment.size());
+        segment.reset();
+    }
+
+    /**
+     * Read the next segment into a {@code SegmentBuffer}, verifying its checksum.
+     *
+     * @param remaining {@code long} the number of bytes left within the journal file.
+     * @return {@code int} the type of the segment, or {@code -1} at the end of the file or if the
+     * segment is torn or corrupt.
+     */
+    private static int readSegment(DataInputStream in, long remaining, SegmentBuffer segment) throws IOException {
+        byte[] header = new byte[SEGMENT_HEADER_SIZE];
+        try {
+            in.readFully(header);
+        } catch (EOFException e) {
+            return -1;
+        }
+        int type = header[0];
+        int length = getInt(header, 1);
+        if ((type != SEGMENT_BASE && type != SEGMENT_TAIL) || length <= 0 || length > remaining - SEGMENT_HEADER_SIZE) {
+            return -1;
+        }
+        try {
+            segment.readFully(in, length);
+        } catch (EOFException e) {
+            return -1;
+        }
+        Crc32c crc32c = new Crc32c();
+        crc32c.update(header, 0, 5);
+        crc32c.update(segment.bytes(), 0, length);
+        return (int) crc32c.getValue() == getInt(header, 5) ? type : -1;
+    }
+
+    /**
+     * Decode the records of a segment, each as the {@code Feel} it removes and the {@code Feel}
+     * it adds, either of which is {@code null} for an add or a remove.
+     *
+     * @return {@code List<Feel[]>} or {@code null} if the records are malformed.
+     */
+    private static List<Feel[]> decodeRecords(SegmentBuffer segment) {
+        ArrayList<Feel[]> records = new ArrayList<>();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(segment.bytes(), 0, segment.size()));
+        try {
+            while (in.available() > 0) {
+                int op = in.read();
+                Feel feel = readFeel(in);
+                switch (op) {
+                    case OP_ADD:
+                        records.add(new Feel[]{null, feel});
+                        break;
+                    case OP_REMOVE:
+                        records.add(new Feel[]{feel, null});
+                        break;
+                    case OP_EDIT:
+                        records.add(new Feel[]{feel, readFeel(in)});
+                        break;
+                    default:
+                        return null;
+                }
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return records;
+    }
+
+    private static void putInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    private static int getInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) << 24 | (bytes[offset + 1] & 0xFF) << 16
+                | (bytes[offset + 2] & 0xFF) << 8 | (bytes[offset + 3] & 0xFF);
+    }
+
+    private static void writeFeel(DataOutputStream out, Feel feel) throws IOException {
+        byte[] comment = feel.getComment().getBytes(UTF_8);
+        out.writeLong(feel.getId());
+        out.writeLong(feel.getDate().getTime());
+        out.writeByte(feel.getFeeling().ordinal());
+        out.writeInt(comment.length);
+        out.write(comment);
+    }
+
+    private static Feel readFeel(DataInputStream in) throws IOException {
+        return readFeel(in, false);
+    }
+
+    /**
+     * @param legacy {@code boolean} whether the {@code Feel} was written without an id, it is then
+     *               read with the id {@code 0}.
+     */
+    private static Feel readFeel(DataInputStream in, boolean legacy) throws IOException {
+        long id = legacy ? 0 : in.readLong();
+        long date = in.readLong();
+        int feeling = in.readUnsignedByte();
+        int commentLength = in.readInt();
+        if (feeling >= Feeling.values().length || commentLength < 0 || commentLength > MAX_COMMENT_LENGTH) {
+            throw new EOFException("Corrupt feel record");
+        }
+        byte[] comment = new byte[commentLength];
+        in.readFully(comment);
+        return new Feel(id, Feeling.values()[feeling], new String(comment, UTF_8), new Date(date));
+    }
+
+    /**
+     * Sparse index of the sorted base, the file offset and first {@code Feel} of every
+     * {@code INDEX_BLOCK_SIZE} records, along with the tally of each {@code Feeling}.
+     */
+    private static final class BaseIndex {
+        int count;
+        int blockCount;
+        long[] blockOffsets = new long[16];
+        /**
+         * The first {@code Feel} of each block, {@code null} until read if restored from a
+         * {@code FeelSnapshot}.
+         */
+        Feel[] blockFirstFeels = new Feel[16];
+        final int[] tallies = new int[Feeling.values().length];
+        FeelHeatmap heatmap;
+
+        BaseIndex(TimeZone timeZone) {
+            heatmap = new FeelHeatmap(timeZone);
+        }
+
+        /**
+         * Restore the index of the base mirrored by a {@code FeelSnapshot} without reading any
+         * of its blocks.
+         */
+        static BaseIndex of(FeelSnapshot snapshot, TimeZone timeZone) {
+            BaseIndex baseIndex = new BaseIndex(timeZone);
+            baseIndex.heatmap = snapshot.getFeelHeatmap(timeZone);
+            baseIndex.count = snapshot.getCount();
+            baseIndex.blockCount = snapshot.getBlockCount();
+            baseIndex.blockOffsets = new long[Math.max(16, baseIndex.blockCount)];
+            baseIndex.blockFirstFeels = new Feel[baseIndex.blockOffsets.length];
+            for (int block = 0; block < baseIndex.blockCount; block++) {
+                baseIndex.blockOffsets[block] = snapshot.getJournalOffset(block);
+            }
+            int[] tallies = snapshot.getTallies();
+            System.arraycopy(tallies, 0, baseIndex.tallies, 0, tallies.length);
+            return baseIndex;
+        }
+
+        boolean startsBlock() {
+            return count % INDEX_BLOCK_SIZE == 0;
+        }
+
+        /**
+         * Add the next base record, only its offset and {@code Feel} at the start of a block are
+         * kept.
+         *
+         * @param offset {@code long} the offset of the segment of the record.
+         * @param feel   {@code Feel} the {@code Feel} of the record.
+         */
+        void add(long offset, Feel feel) {
+            if (startsBlock()) {
+                if (blockCount == blockOffsets.length) {
+                    blockOffsets = Arrays.copyOf(blockOffsets, blockCount * 2);
+                    blockFirstFeels = Arrays.copyOf(blockFirstFeels, blockCount * 2);
+                }
+                blockOffsets[blockCount] = offset;
+                blockFirstFeels[blockCount] = feel;
+                blockCount++;
+            }
+            tallies[feel.getFeeling().ordinal()]++;
+            heatmap.add(feel);
+            count++;
+        }
+
+        int getBlockRecordCount(int block) {
+            return Math.min(INDEX_BLOCK_SIZE, count - block * INDEX_BLOCK_SIZE);
+        }
+    }
+
+    /**
+     * Cursor over the merged view of the sorted base, minus the removed {@code Feel}s, plus the
+     * added {@code Feel}s of the tail, starting at a block of the base.
+     */
+    private final class MergedCursor {
+        private int nextBlock;
+        private Feel[] blockFeels = new Feel[0];
+        private int blockIndex;
+        private Feel nextBase;
+        private int addedIndex;
+
+        /**
+         * @param block {@code int} the block to start at, block {@code 0} starts at the very
+         *              beginning including the added {@code Feel}s before the base.
+         */
+        MergedCursor(int block) throws IOException {
+            nextBlock = block;
+            addedIndex = block == 0 ? 0 : addedFeels.rank(blockFirstFeel(block));
+            advanceBase();
+        }
+
+        private void advanceBase() throws IOException {
+            nextBase = null;
+            while (true) {
+                if (blockIndex == blockFeels.length) {
+                    if (nextBlock >= baseIndex.blockCount) {
+                        return;
+                    }
+                    blockFeels = readBaseBlock(nextBlock++);
+                    blockIndex = 0;
+                } else {
+                    Feel feel = blockFeels[blockIndex++];
+                    if (!removedFeels.contains(feel)) {
+                        nextBase = feel;
+                        return;
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return {@code Feel} the next {@code Feel}, or {@code null} at the end.
+         */
+        Feel next() throws IOException {
+            Feel nextAdded = addedIndex < addedFeels.size() ? addedFeels.get(addedIndex) : null;
+            if (nextAdded != null && (nextBase == null || nextAdded.compareTo(nextBase) < 0)) {
+                addedIndex++;
+                return nextAdded;
+            }
+            Feel feel = nextBase;
+            if (feel != null) {
+                advanceBase();
+            }
+            return feel;
+        }
+    }
+
+    /**
+     * {@code ByteArrayOutputStream} collecting the records of a segment, also used to read one.
+     */
+    private static final class SegmentBuffer extends ByteArrayOutputStream {
+        byte[] bytes() {
+            return buf;
+        }
+
+        /**
+         * Replace the contents with the next {@code length} bytes of a stream.
+         */
+        void readFully(DataInputStream in, int length) throws IOException {
+            if (buf.length < length) {
+                buf = new byte[Math.max(length, buf.length * 2)];
+            }
+            count = 0;
+            in.readFully(buf, 0, length);
+            count = length;
+        }
+    }
+}
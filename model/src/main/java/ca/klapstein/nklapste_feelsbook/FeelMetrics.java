@@ -0,0 +1,183 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Process wide registry of the {@code LatencyHistogram}s and {@code Counter}s of FeelsBook.
+ * <p>
+ * Each histogram or counter is looked up by its name once, and kept in a static field of the code
+ * it measures, so recording never looks anything up nor allocates. {@code toText} and
+ * {@code toJson} report all of them, in order of their names, for the debug screen and dumps.
+ */
+public final class FeelMetrics {
+    private static final String TAG = "FeelMetrics";
+
+    private static final double[] PERCENTILES = {50, 90, 99};
+
+    private static final Map<String, LatencyHistogram> histograms = new TreeMap<>();
+    private static final Map<String, Counter> counters = new TreeMap<>();
+
+    private FeelMetrics() {
+    }
+
+    /**
+     * Get the {@code LatencyHistogram} of a name, creating it on first use.
+     *
+     * @param name {@code String} also used as the {@code android.os.Trace} section name, thus at
+     *             most 127 characters.
+     * @return {@code LatencyHistogram}
+     */
+    public static LatencyHistogram histogram(String name) {
+        synchronized (histograms) {
+            LatencyHistogram histogram = histograms.get(name);
+            if (histogram == null) {
+                histogram = new LatencyHistogram(name);
+                histograms.put(name, histogram);
+            }
+            return histogram;
+        }
+    }
+
+    /**
+     * Get the {@code Counter} of a name, creating it on first use.
+     *
+     * @param name {@code String}
+     * @return {@code Counter}
+     */
+    public static Counter counter(String name) {
+        synchronized (counters) {
+            Counter counter = counters.get(name);
+            if (counter == null) {
+                counter = new Counter(name);
+                counters.put(name, counter);
+            }
+            return counter;
+        }
+    }
+
+    /**
+     * Reset all histograms and counters to zero.
+     */
+    public static void reset() {
+        for (LatencyHistogram histogram : copyHistograms()) {
+            histogram.reset();
+        }
+        for (Counter counter : copyCounters()) {
+            counter.value.set(0);
+        }
+    }
+
+    private static List<LatencyHistogram> copyHistograms() {
+        synchronized (histograms) {
+            return new ArrayList<>(histograms.values());
+        }
+    }
+
+    private static List<Counter> copyCounters() {
+        synchronized (counters) {
+            return new ArrayList<>(counters.values());
+        }
+    }
+
+    /**
+     * Report all histograms, as their count and latency percentiles in milliseconds, and all
+     * counters, one per line.
+     *
+     * @return {@code String}
+     */
+    public static String toText() {
+        StringBuilder text = new StringBuilder();
+        for (LatencyHistogram original : copyHistograms()) {
+            LatencyHistogram histogram = original.copy();
+            text.append(histogram.getName()).append('\n');
+            text.append(String.format(Locale.ROOT, "  count=%d mean=%.3fms", histogram.getCount(),
+                    histogram.getMean() / 1e6));
+            for (double percentile : PERCENTILES) {
+                text.append(String.format(Locale.ROOT, " p%.0f=%.3fms", percentile,
+                        histogram.getValueAtPercentile(percentile) / 1e6));
+            }
+            text.append(String.format(Locale.ROOT, " max=%.3fms", histogram.getMax() / 1e6)).append('\n');
+        }
+        for (Counter counter : copyCounters()) {
+            text.append(counter.getName()).append(" = ").append(counter.get()).append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * Report all histograms and counters as a JSON object, latencies in nanoseconds.
+     *
+     * @return {@code String}
+     */
+    public static String toJson() {
+        StringWriter writer = new StringWriter();
+        JsonWriter jsonWriter = new JsonWriter(writer);
+        try {
+            jsonWriter.beginObject();
+            jsonWriter.name("histograms").beginObject();
+            for (LatencyHistogram original : copyHistograms()) {
+                LatencyHistogram histogram = original.copy();
+                jsonWriter.name(histogram.getName()).beginObject();
+                jsonWriter.name("count").value(histogram.getCount());
+                jsonWriter.name("min").value(histogram.getMin());
+                jsonWriter.name("mean").value(histogram.getMean());
+                for (double percentile : PERCENTILES) {
+                    jsonWriter.name(String.format(Locale.ROOT, "p%.0f", percentile))
+                            .value(histogram.getValueAtPercentile(percentile));
+                }
+                jsonWriter.name("max").value(histogram.getMax());
+                jsonWriter.endObject();
+            }
+            jsonWriter.endObject();
+            jsonWriter.name("counters").beginObject();
+            for (Counter counter : copyCounters()) {
+                jsonWriter.name(counter.getName()).value(counter.get());
+            }
+            jsonWriter.endObject();
+            jsonWriter.endObject();
+            jsonWriter.close();
+        } catch (IOException e) {
+            // a StringWriter does not throw
+            throw new IllegalStateException(e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * A named, thread safe, count of events.
+     */
+    public static final class Counter {
+        private final String name;
+        private final AtomicLong value = new AtomicLong();
+
+        private Counter(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void increment() {
+            value.incrementAndGet();
+        }
+
+        public void add(long delta) {
+            value.addAndGet(delta);
+        }
+
+        public long get() {
+            return value.get();
+        }
+    }
+}
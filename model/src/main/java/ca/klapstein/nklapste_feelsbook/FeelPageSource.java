@@ -0,0 +1,32 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import java.util.List;
+
+
+/**
+ * Interface defining a source of {@code Feel}s that can be read one page at a time.
+ * <p>
+ * Positions are those within the sorted order of a {@code FeelTreeSet}, i.e. newest first. This
+ * lets the {@code PagedFeelList} load only the {@code Feel}s near what is being displayed instead
+ * of the whole history.
+ *
+ * @see PagedFeelList
+ */
+interface FeelPageSource {
+    /**
+     * Get the total number of {@code Feel}s.
+     *
+     * @return {@code int}
+     */
+    int getCount();
+
+    /**
+     * Load a range of consecutive {@code Feel}s.
+     *
+     * @param position {@code int} the position of the first {@code Feel} to load.
+     * @param count    {@code int} the maximum number of {@code Feel}s to load.
+     * @return {@code List<Feel>} the loaded {@code Feel}s in sorted order, which is shorter than
+     * {@code count} at the end of the source.
+     */
+    List<Feel> loadRange(int position, int count);
+}
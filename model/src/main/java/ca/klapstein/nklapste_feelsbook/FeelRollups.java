@@ -0,0 +1,285 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import java.util.TimeZone;
+
+
+/**
+ * Incrementally maintained per-day, per-week, and per-month counts of each {@code Feeling}.
+ * <p>
+ * Every {@code Feel} added to or removed from a {@code FeelTreeSet} increments or decrements one
+ * counter for each {@code Granularity}. Counters are stored in primitive {@code int} arrays
+ * indexed by bucket and {@code Feeling.ordinal()}, thus, range queries such as "Joy counts per
+ * week for the last 52 weeks" cost O(buckets) no matter how many {@code Feel}s exist.
+ * <p>
+ * Buckets are numbered consecutively in the local time of the {@code TimeZone} given on
+ * construction:
+ * <ul>
+ * <li>{@code DAY}: days since 1970-01-01.</li>
+ * <li>{@code WEEK}: Monday starting weeks since the week of 1970-01-01.</li>
+ * <li>{@code MONTH}: {@code year * 12 + (month - 1)}.</li>
+ * </ul>
+ *
+ * @see FeelTreeSet
+ */
+public class FeelRollups {
+    private static final String TAG = "FeelRollups";
+
+    private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+
+    private final TimeZone timeZone;
+    private final BucketCounter[] counters = new BucketCounter[Granularity.values().length];
+
+    FeelRollups(TimeZone timeZone) {
+        this.timeZone = timeZone;
+        for (Granularity granularity : Granularity.values()) {
+            counters[granularity.ordinal()] = new BucketCounter();
+        }
+    }
+
+    /**
+     * Convert days since 1970-01-01 into {@code year * 12 + (month - 1)}.
+     * <p>
+     * Uses Howard Hinnant's {@code civil_from_days} algorithm so no {@code Calendar} is needed.
+     *
+     * @param epochDay {@code long}
+     * @return {@code long}
+     */
+    static long epochDayToMonthBucket(long epochDay) {
+        long z = epochDay + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        long month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return year * 12 + (month - 1);
+    }
+
+    /**
+     * Get the local day since 1970-01-01 of a point in time.
+     *
+     * @param timeZone   {@code TimeZone}
+     * @param timeMillis {@code long} epoch milliseconds.
+     * @return {@code long}
+     */
+    static long epochDay(TimeZone timeZone, long timeMillis) {
+        return Math.floorDiv(timeMillis + timeZone.getOffset(timeMillis), MILLIS_PER_DAY);
+    }
+
+    /**
+     * Get the bucket of the given {@code Granularity} containing a point in time.
+     *
+     * @param granularity {@code Granularity}
+     * @param timeMillis  {@code long} epoch milliseconds.
+     * @return {@code long} the bucket number.
+     */
+    public long getBucket(Granularity granularity, long timeMillis) {
+        long epochDay = epochDay(timeZone, timeMillis);
+        switch (granularity) {
+            case DAY:
+                return epochDay;
+            case WEEK:
+                // 1970-01-01 was a Thursday, shift so that weeks start on Monday
+                return Math.floorDiv(epochDay + 3, 7);
+            case MONTH:
+                return epochDayToMonthBucket(epochDay);
+            default:
+                throw new IllegalArgumentException("Unknown granularity " + granularity);
+        }
+    }
+
+    /**
+     * Get the count of a {@code Feeling} within a single bucket.
+     *
+     * @param granularity {@code Granularity}
+     * @param feeling     {@code Feeling}
+     * @param bucket      {@code long}
+     * @return {@code int}
+     */
+    public int getCount(Granularity granularity, Feeling feeling, long bucket) {
+        return counters[granularity.ordinal()].get(bucket, feeling.ordinal());
+    }
+
+    /**
+     * Get the counts of a {@code Feeling} for a range of consecutive buckets in O(bucketCount).
+     *
+     * @param granularity {@code Granularity}
+     * @param feeling     {@code Feeling}
+     * @param firstBucket {@code long} the first bucket of the range.
+     * @param bucketCount {@code int} the number of buckets within the range.
+     * @return {@code int[]} the count of each bucket within the range, oldest first.
+     */
+    public int[] getCounts(Granularity granularity, Feeling feeling, long firstBucket, int bucketCount) {
+        int[] counts = new int[bucketCount];
+        counters[granularity.ordinal()].copyRange(firstBucket, feeling.ordinal(), counts);
+        return counts;
+    }
+
+    /**
+     * Get the counts of a {@code Feeling} for the last {@code bucketCount} buckets up to and
+     * including the bucket containing {@code nowMillis}.
+     *
+     * @param granularity {@code Granularity}
+     * @param feeling     {@code Feeling}
+     * @param nowMillis   {@code long} epoch milliseconds.
+     * @param bucketCount {@code int}
+     * @return {@code int[]} the count of each bucket, oldest first.
+     */
+    public int[] getRecentCounts(Granularity granularity, Feeling feeling, long nowMillis, int bucketCount) {
+        return getCounts(granularity, feeling, getBucket(granularity, nowMillis) - bucketCount + 1, bucketCount);
+    }
+
+    TimeZone getTimeZone() {
+        return timeZone;
+    }
+
+    void add(Feel feel) {
+        update(feel, 1);
+    }
+
+    void remove(Feel feel) {
+        update(feel, -1);
+    }
+
+    void clear() {
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new BucketCounter();
+        }
+    }
+
+    /**
+     * Add the counts of other {@code FeelRollups} of the same {@code TimeZone} to these, in
+     * O(pages).
+     *
+     * @param other {@code FeelRollups}
+     */
+    void addAll(FeelRollups other) {
+        for (int i = 0; i < counters.length; i++) {
+            counters[i].addAll(other.counters[i]);
+        }
+    }
+
+    private void update(Feel feel, int delta) {
+        update(feel.getFeeling().ordinal(), feel.getDate().getTime(), delta);
+    }
+
+    void update(int feeling, long timeMillis, int delta) {
+        long epochDay = epochDay(timeZone, timeMillis);
+        counters[Granularity.DAY.ordinal()].add(epochDay, feeling, delta);
+        counters[Granularity.WEEK.ordinal()].add(Math.floorDiv(epochDay + 3, 7), feeling, delta);
+        counters[Granularity.MONTH.ordinal()].add(epochDayToMonthBucket(epochDay), feeling, delta);
+    }
+
+    /**
+     * The width of a bucket of {@code FeelRollups}.
+     */
+    public enum Granularity {
+        DAY,
+        WEEK,
+        MONTH,
+    }
+
+    /**
+     * Sparse {@code int} counters, each bucket holding one counter per {@code Feeling}.
+     * <p>
+     * Buckets are grouped into dense pages of {@code PAGE_BUCKETS} buckets. Pages are kept within
+     * an open addressing hash table keyed by page number, so feels far apart in time (e.g. a
+     * mistyped year) do not blow up the memory used while lookups stay O(1) without boxing.
+     */
+    private static final class BucketCounter {
+        private static final int FEELINGS = Feeling.values().length;
+        private static final int PAGE_SHIFT = 6;
+        private static final int PAGE_BUCKETS = 1 << PAGE_SHIFT;
+
+        private long[] pageNumbers = new long[16];
+        private int[][] pages = new int[16][];
+        private int pageCount;
+
+        int get(long bucket, int ordinal) {
+            int[] page = findPage(bucket >> PAGE_SHIFT);
+            return page == null ? 0 : page[(int) (bucket & (PAGE_BUCKETS - 1)) * FEELINGS + ordinal];
+        }
+
+        void copyRange(long fromBucket, int ordinal, int[] destination) {
+            int i = 0;
+            while (i < destination.length) {
+                long bucket = fromBucket + i;
+                int[] page = findPage(bucket >> PAGE_SHIFT);
+                int offset = (int) (bucket & (PAGE_BUCKETS - 1));
+                int run = Math.min(PAGE_BUCKETS - offset, destination.length - i);
+                if (page != null) {
+                    for (int j = 0; j < run; j++) {
+                        destination[i + j] = page[(offset + j) * FEELINGS + ordinal];
+                    }
+                }
+                i += run;
+            }
+        }
+
+        void add(long bucket, int ordinal, int delta) {
+            long pageNumber = bucket >> PAGE_SHIFT;
+            int[] page = findPage(pageNumber);
+            if (page == null) {
+                page = new int[PAGE_BUCKETS * FEELINGS];
+                insertPage(pageNumber, page);
+            }
+            page[(int) (bucket & (PAGE_BUCKETS - 1)) * FEELINGS + ordinal] += delta;
+        }
+
+        void addAll(BucketCounter other) {
+            for (int i = 0; i < other.pages.length; i++) {
+                int[] otherPage = other.pages[i];
+                if (otherPage == null) {
+                    continue;
+                }
+                int[] page = findPage(other.pageNumbers[i]);
+                if (page == null) {
+                    insertPage(other.pageNumbers[i], otherPage.clone());
+                } else {
+                    for (int j = 0; j < page.length; j++) {
+                        page[j] += otherPage[j];
+                    }
+                }
+            }
+        }
+
+        private static int slot(long pageNumber, int mask) {
+            long hash = pageNumber * 0x9E3779B97F4A7C15L;
+            return (int) (hash >>> 32) & mask;
+        }
+
+        private int[] findPage(long pageNumber) {
+            int mask = pages.length - 1;
+            for (int slot = slot(pageNumber, mask); pages[slot] != null; slot = (slot + 1) & mask) {
+                if (pageNumbers[slot] == pageNumber) {
+                    return pages[slot];
+                }
+            }
+            return null;
+        }
+
+        private void insertPage(long pageNumber, int[] page) {
+            if ((pageCount + 1) * 2 > pages.length) {
+                long[] oldPageNumbers = pageNumbers;
+                int[][] oldPages = pages;
+                pageNumbers = new long[oldPages.length * 2];
+                pages = new int[oldPages.length * 2][];
+                pageCount = 0;
+                for (int i = 0; i < oldPages.length; i++) {
+                    if (oldPages[i] != null) {
+                        insertPage(oldPageNumbers[i], oldPages[i]);
+                    }
+                }
+            }
+            int mask = pages.length - 1;
+            int slot = slot(pageNumber, mask);
+            while (pages[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            pageNumbers[slot] = pageNumber;
+            pages[slot] = page;
+            pageCount++;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Helper Class holding the SQLite schema of the {@code SQLiteFeelStore}.
+ * <p>
+ * The schema is plain SQL without Android, so the {@code FeelSaveBenchmark} creates the very same
+ * tables, index and triggers through the sqlite-jdbc driver.
+ */
+final class FeelSchema {
+    private static final String TAG = "FeelSchema";
+
+    static final int DATABASE_VERSION = 4;
+
+    static final String TABLE_FEELS = "feels";
+    static final String TABLE_FEELING_TALLIES = "feeling_tallies";
+    static final String TABLE_FEEL_QUARTERS = "feel_quarters";
+    static final String COLUMN_ID = "_id";
+    static final String COLUMN_DATE = "date";
+    static final String COLUMN_FEELING = "feeling";
+    static final String COLUMN_COMMENT = "comment";
+    static final String COLUMN_TALLY = "tally";
+    static final String COLUMN_QUARTER = "quarter";
+    /**
+     * The order of the {@code feels_order} index, which mirrors {@code Feel.compareTo}.
+     */
+    static final String FEEL_ORDER = COLUMN_DATE + " DESC, " + COLUMN_FEELING + ", " + COLUMN_COMMENT + ", " + COLUMN_ID;
+    static final String INSERT_FEEL = "INSERT OR IGNORE INTO " + TABLE_FEELS
+            + " (" + COLUMN_DATE + ", " + COLUMN_FEELING + ", " + COLUMN_COMMENT + ", " + COLUMN_ID + ") VALUES (?, ?, ?, ?)";
+
+    static final long MILLIS_PER_QUARTER = 15 * 60 * 1000L;
+
+    private FeelSchema() {
+    }
+
+    /**
+     * @return {@code List<String>} the statements creating the current version of the schema
+     * within an empty database.
+     */
+    static List<String> createStatements() {
+        List<String> statements = new ArrayList<>();
+        statements.add("CREATE TABLE " + TABLE_FEELS + " ("
+                + COLUMN_ID + " INTEGER PRIMARY KEY, "
+                + COLUMN_DATE + " INTEGER NOT NULL, "
+                + COLUMN_FEELING + " INTEGER NOT NULL, "
+                + COLUMN_COMMENT + " TEXT NOT NULL)");
+        statements.add(createOrderIndex());
+        statements.add("CREATE TABLE " + TABLE_FEELING_TALLIES + " ("
+                + COLUMN_FEELING + " INTEGER PRIMARY KEY, "
+                + COLUMN_TALLY + " INTEGER NOT NULL)");
+        for (Feeling feeling : Feeling.values()) {
+            statements.add("INSERT INTO " + TABLE_FEELING_TALLIES + " VALUES (" + feeling.ordinal() + ", 0)");
+        }
+        statements.add("CREATE TRIGGER feels_insert AFTER INSERT ON " + TABLE_FEELS + " BEGIN "
+                + incrementTally("NEW", 1) + " END");
+        statements.add("CREATE TRIGGER feels_delete AFTER DELETE ON " + TABLE_FEELS + " BEGIN "
+                + incrementTally("OLD", -1) + " END");
+        statements.add("CREATE TRIGGER feels_update AFTER UPDATE OF " + COLUMN_FEELING + " ON " + TABLE_FEELS + " BEGIN "
+                + incrementTally("OLD", -1) + " " + incrementTally("NEW", 1) + " END");
+        statements.addAll(createFeelQuarters());
+        return statements;
+    }
+
+    /**
+     * @return {@code String} the statement creating the {@code feels_order} index.
+     */
+    static String createOrderIndex() {
+        return "CREATE INDEX feels_order ON " + TABLE_FEELS + " (" + FEEL_ORDER + ")";
+    }
+
+    /**
+     * Create the {@code feel_quarters} table counting the existing rows of the {@code feels}
+     * table, and the triggers keeping it up to date. Only quarter hours holding a {@code Feel}
+     * have a row.
+     *
+     * @return {@code List<String>}
+     */
+    static List<String> createFeelQuarters() {
+        List<String> statements = new ArrayList<>();
+        statements.add("CREATE TABLE " + TABLE_FEEL_QUARTERS + " ("
+                + COLUMN_QUARTER + " INTEGER NOT NULL, "
+                + COLUMN_FEELING + " INTEGER NOT NULL, "
+                + COLUMN_TALLY + " INTEGER NOT NULL, "
+                + "PRIMARY KEY (" + COLUMN_QUARTER + ", " + COLUMN_FEELING + ")) WITHOUT ROWID");
+        statements.add("INSERT INTO " + TABLE_FEEL_QUARTERS + " SELECT " + quarter(TABLE_FEELS) + ", "
+                + COLUMN_FEELING + ", COUNT(*) FROM " + TABLE_FEELS + " GROUP BY 1, 2");
+        statements.add("CREATE TRIGGER feels_insert_quarters AFTER INSERT ON " + TABLE_FEELS + " BEGIN "
+                + incrementQuarter("NEW") + " END");
+        statements.add("CREATE TRIGGER feels_delete_quarters AFTER DELETE ON " + TABLE_FEELS + " BEGIN "
+                + decrementQuarter("OLD") + " END");
+        statements.add("CREATE TRIGGER feels_update_quarters AFTER UPDATE OF " + COLUMN_DATE + ", " + COLUMN_FEELING
+                + " ON " + TABLE_FEELS + " BEGIN " + decrementQuarter("OLD") + " " + incrementQuarter("NEW") + " END");
+        return statements;
+    }
+
+    /**
+     * @return {@code String} the expression of the UTC quarter hour of a row, rounded down as
+     * {@code Math.floorDiv} does.
+     */
+    private static String quarter(String row) {
+        String date = row + "." + COLUMN_DATE;
+        return "((" + date + " - ((" + date + " % " + MILLIS_PER_QUARTER + ") + " + MILLIS_PER_QUARTER + ") % "
+                + MILLIS_PER_QUARTER + ") / " + MILLIS_PER_QUARTER + ")";
+    }
+
+    private static String quarterSelection(String row) {
+        return " WHERE " + COLUMN_QUARTER + " = " + quarter(row) + " AND " + COLUMN_FEELING + " = " + row + "." + COLUMN_FEELING;
+    }
+
+    private static String incrementQuarter(String row) {
+        return "INSERT OR IGNORE INTO " + TABLE_FEEL_QUARTERS + " VALUES (" + quarter(row) + ", "
+                + row + "." + COLUMN_FEELING + ", 0); "
+                + "UPDATE " + TABLE_FEEL_QUARTERS + " SET " + COLUMN_TALLY + " = " + COLUMN_TALLY + " + 1"
+                + quarterSelection(row) + ";";
+    }
+
+    /**
+     * @return {@code String} the statements decrementing the quarter hour of a row, deleting
+     * its row once no {@code Feel} is left within it.
+     */
+    private static String decrementQuarter(String row) {
+        return "UPDATE " + TABLE_FEEL_QUARTERS + " SET " + COLUMN_TALLY + " = " + COLUMN_TALLY + " - 1"
+                + quarterSelection(row) + "; "
+                + "DELETE FROM " + TABLE_FEEL_QUARTERS + quarterSelection(row) + " AND " + COLUMN_TALLY + " = 0;";
+    }
+
+    private static String incrementTally(String row, int amount) {
+        return "UPDATE " + TABLE_FEELING_TALLIES + " SET " + COLUMN_TALLY + " = " + COLUMN_TALLY + " + (" + amount + ")"
+                + " WHERE " + COLUMN_FEELING + " = " + row + "." + COLUMN_FEELING + ";";
+    }
+}
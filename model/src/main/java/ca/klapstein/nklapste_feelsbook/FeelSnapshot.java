@@ -0,0 +1,456 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.zip.CRC32;
+
+
+/**
+ * A read-only, memory mapped snapshot of the sorted base of a {@code FeelJournal}.
+ * <p>
+ * Opening a {@code FeelJournal} otherwise means reading the whole journal file to index it. The
+ * snapshot instead has a fixed layout that is mapped with {@code FileChannel.map}, so the count,
+ * the tallies, the {@code FeelHeatmap}, and the first page of {@code Feel}s are read from the
+ * mapped buffer without touching the rest of the file.
+ * <p>
+ * The rows are stored column-wise within blocks of {@code BLOCK_SIZE} {@code Feel}s, the same
+ * blocks that the {@code FeelJournal} indexes its base by:
+ * <pre>
+ * snapshot := header block* blockTable
+ * header   := magic:int count:int blockCount:int feelingCount:int tally:int[feelingCount]
+ *             timeZoneHash:int heatmap:int[feelingCount * FEELING_CELLS]
+ *             journalLength:long blockTableOffset:long blockTableChecksum:int headerChecksum:int
+ * block    := date:long[rows] id:long[rows] feeling:byte[rows] commentEnd:int[rows]
+ *             comments:byte[] (UTF-8, each comment ends at its commentEnd)
+ * blockTableEntry := blockOffset:long journalOffset:long blockChecksum:int
+ * </pre>
+ * The checksums are CRC32s. The header and block table are verified on {@code open}, each block
+ * the first time it is read, so a corrupt snapshot is detected before any of its {@code Feel}s
+ * are used. The {@code FeelJournal} then falls back to reading its own file.
+ * <p>
+ * {@code journalLength} is the length of the journal base the snapshot mirrors, records
+ * appended to the journal after it are not within the snapshot. {@code timeZoneHash} is the hash
+ * of the id of the {@code TimeZone} the heatmap was counted in.
+ *
+ * @see FeelJournal
+ */
+final class FeelSnapshot {
+    private static final String TAG = "FeelSnapshot";
+
+    static final int BLOCK_SIZE = FeelJournal.INDEX_BLOCK_SIZE;
+
+    private static final int MAGIC = 0x46425332; // "FBS2"
+    private static final int BLOCK_TABLE_ENTRY_SIZE = 8 + 8 + 4;
+    private static final int ROW_COLUMNS_SIZE = 8 + 8 + 1 + 4;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Feeling[] FEELINGS = Feeling.values();
+
+    private final File file;
+    private final MappedByteBuffer buffer;
+    private final int count;
+    private final int[] tallies;
+    private final int timeZoneHash;
+    private final int[] heatmap;
+    private final long journalLength;
+    private final long blockTableOffset;
+    private final long[] blockOffsets;
+    private final long[] journalOffsets;
+    private final int[] blockChecksums;
+    private final boolean[] verifiedBlocks;
+
+    private FeelSnapshot(File file, MappedByteBuffer buffer, int count, int[] tallies, int timeZoneHash, int[] heatmap,
+                         long journalLength, long blockTableOffset, long[] blockOffsets, long[] journalOffsets,
+                         int[] blockChecksums) {
+        this.file = file;
+        this.buffer = buffer;
+        this.count = count;
+        this.tallies = tallies;
+        this.timeZoneHash = timeZoneHash;
+        this.heatmap = heatmap;
+        this.journalLength = journalLength;
+        this.blockTableOffset = blockTableOffset;
+        this.blockOffsets = blockOffsets;
+        this.journalOffsets = journalOffsets;
+        this.blockChecksums = blockChecksums;
+        this.verifiedBlocks = new boolean[blockOffsets.length];
+    }
+
+    /**
+     * Map a snapshot file and verify its header and block table.
+     *
+     * @param file {@code File}
+     * @return {@code FeelSnapshot}
+     * @throws IOException if the file cannot be read or is corrupt.
+     */
+    static FeelSnapshot open(File file) throws IOException {
+        MappedByteBuffer buffer;
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            // the mapping stays valid after the channel is closed
+            buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, randomAccessFile.length());
+        } finally {
+            randomAccessFile.close();
+        }
+        long length = buffer.capacity();
+        if (length < 16 || buffer.getInt(0) != MAGIC) {
+            throw corrupt(file, "header");
+        }
+        int count = buffer.getInt(4);
+        int blockCount = buffer.getInt(8);
+        int feelingCount = buffer.getInt(12);
+        if (feelingCount < 0 || feelingCount > FEELINGS.length || headerSize(feelingCount) > length) {
+            throw corrupt(file, "header");
+        }
+        int headerSize = headerSize(feelingCount);
+        if (checksum(buffer, 0, headerSize - 4) != buffer.getInt(headerSize - 4)) {
+            throw corrupt(file, "header checksum");
+        }
+        int[] tallies = new int[FEELINGS.length];
+        for (int i = 0; i < feelingCount; i++) {
+            tallies[i] = buffer.getInt(16 + 4 * i);
+        }
+        int position = 16 + 4 * feelingCount;
+        int timeZoneHash = buffer.getInt(position);
+        int[] heatmap = new int[FEELINGS.length * FeelHeatmap.FEELING_CELLS];
+        for (int i = 0; i < feelingCount * FeelHeatmap.FEELING_CELLS; i++) {
+            heatmap[i] = buffer.getInt(position + 4 + 4 * i);
+        }
+        position += 4 + 4 * feelingCount * FeelHeatmap.FEELING_CELLS;
+        long journalLength = buffer.getLong(position);
+        long blockTableOffset = buffer.getLong(position + 8);
+        int blockTableChecksum = buffer.getInt(position + 16);
+        if (count < 0 || blockCount != (count + BLOCK_SIZE - 1) / BLOCK_SIZE || blockTableOffset < headerSize
+                || blockTableOffset + (long) blockCount * BLOCK_TABLE_ENTRY_SIZE != length) {
+            throw corrupt(file, "header");
+        }
+        if (checksum(buffer, (int) blockTableOffset, blockCount * BLOCK_TABLE_ENTRY_SIZE) != blockTableChecksum) {
+            throw corrupt(file, "block table checksum");
+        }
+        long[] blockOffsets = new long[blockCount];
+        long[] journalOffsets = new long[blockCount];
+        int[] blockChecksums = new int[blockCount];
+        for (int block = 0; block < blockCount; block++) {
+            int entry = (int) blockTableOffset + block * BLOCK_TABLE_ENTRY_SIZE;
+            blockOffsets[block] = buffer.getLong(entry);
+            journalOffsets[block] = buffer.getLong(entry + 8);
+            blockChecksums[block] = buffer.getInt(entry + 16);
+            long previous = block == 0 ? headerSize : blockOffsets[block - 1];
+            if (blockOffsets[block] < previous || blockOffsets[block] > blockTableOffset) {
+                throw corrupt(file, "block table");
+            }
+        }
+        return new FeelSnapshot(file, buffer, count, tallies, timeZoneHash, heatmap, journalLength, blockTableOffset,
+                blockOffsets, journalOffsets, blockChecksums);
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    int getBlockCount() {
+        return blockOffsets.length;
+    }
+
+    /**
+     * Get the tally of each {@code Feeling} over all {@code Feel}s of the snapshot.
+     *
+     * @return {@code int[]} tallies indexed by {@code Feeling.ordinal()}, a copy.
+     */
+    int[] getTallies() {
+        return Arrays.copyOf(tallies, tallies.length);
+    }
+
+    /**
+     * Get the {@code FeelHeatmap} over all {@code Feel}s of the snapshot.
+     *
+     * @param timeZone {@code TimeZone} the heatmap is needed in.
+     * @return {@code FeelHeatmap} a copy, or {@code null} if the heatmap was counted within a
+     * different {@code TimeZone}.
+     */
+    FeelHeatmap getFeelHeatmap(TimeZone timeZone) {
+        if (timeZone.getID().hashCode() != timeZoneHash) {
+            return null;
+        }
+        return new FeelHeatmap(timeZone, Arrays.copyOf(heatmap, heatmap.length));
+    }
+
+    /**
+     * Get the length of the journal base this snapshot mirrors.
+     *
+     * @return {@code long}
+     */
+    long getJournalLength() {
+        return journalLength;
+    }
+
+    /**
+     * Get the offset of the first record of a block within the journal file.
+     *
+     * @param block {@code int}
+     * @return {@code long}
+     */
+    long getJournalOffset(int block) {
+        return journalOffsets[block];
+    }
+
+    /**
+     * Read the {@code Feel}s of a block, verifying its checksum the first time it is read.
+     *
+     * @param block {@code int}
+     * @return {@code Feel[]} the {@code Feel}s of the block in sorted order.
+     * @throws IOException if the block is corrupt.
+     */
+    Feel[] readBlock(int block) throws IOException {
+        int rows = Math.min(BLOCK_SIZE, count - block * BLOCK_SIZE);
+        ByteBuffer blockBuffer = ByteBuffer.wrap(readBlockBytes(block));
+        int commentsOffset = rows * ROW_COLUMNS_SIZE;
+        Feel[] feels = new Feel[rows];
+        int commentStart = commentsOffset;
+        for (int row = 0; row < rows; row++) {
+            long date = blockBuffer.getLong(8 * row);
+            long id = blockBuffer.getLong(8 * (rows + row));
+            int feeling = blockBuffer.get(16 * rows + row);
+            int commentEnd = commentsOffset + blockBuffer.getInt(17 * rows + 4 * row);
+            if (feeling < 0 || feeling >= FEELINGS.length || commentEnd < commentStart || commentEnd > blockBuffer.capacity()) {
+                throw corrupt(file, "block " + block);
+            }
+            String comment = commentEnd == commentStart ? ""
+                    : new String(blockBuffer.array(), commentStart, commentEnd - commentStart, UTF_8);
+            feels[row] = new Feel(id, FEELINGS[feeling], comment, new Date(date));
+            commentStart = commentEnd;
+        }
+        return feels;
+    }
+
+    private byte[] readBlockBytes(int block) throws IOException {
+        long start = blockOffsets[block];
+        long end = block + 1 < blockOffsets.length ? blockOffsets[block + 1] : blockTableOffset;
+        int rows = Math.min(BLOCK_SIZE, count - block * BLOCK_SIZE);
+        if (end - start < (long) rows * ROW_COLUMNS_SIZE) {
+            throw corrupt(file, "block " + block);
+        }
+        byte[] bytes = new byte[(int) (end - start)];
+        ByteBuffer view = buffer.duplicate();
+        view.position((int) start);
+        view.get(bytes);
+        if (!verifiedBlocks[block]) {
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, bytes.length);
+            if ((int) crc.getValue() != blockChecksums[block]) {
+                throw corrupt(file, "block " + block + " checksum");
+            }
+            verifiedBlocks[block] = true;
+        }
+        return bytes;
+    }
+
+    private static int headerSize(int feelingCount) {
+        return 16 + 4 * feelingCount + 4 + 4 * feelingCount * FeelHeatmap.FEELING_CELLS + 8 + 8 + 4 + 4;
+    }
+
+    private static int checksum(ByteBuffer buffer, int offset, int length) {
+        byte[] bytes = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset);
+        view.get(bytes);
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        return (int) crc.getValue();
+    }
+
+    private static IOException corrupt(File file, String part) {
+        return new IOException("Corrupt " + part + " in feel snapshot " + file);
+    }
+
+    /**
+     * Writes a new snapshot from sorted {@code Feel}s, one block at a time.
+     * <p>
+     * The snapshot is written to a temporary file which {@code finish} renames over the snapshot
+     * file. As the snapshot only speeds up opening the {@code FeelJournal}, failing to write it
+     * is not an error: the {@code Writer} then stops writing, deletes its temporary file, and
+     * {@code finish} returns {@code false}.
+     */
+    static final class Writer {
+        private final File file;
+        private final File tmpFile;
+        private RandomAccessFile out;
+        private int count;
+        private final int[] tallies = new int[FEELINGS.length];
+        private final FeelHeatmap heatmap;
+        private long[] blockOffsets = new long[16];
+        private long[] journalOffsets = new long[16];
+        private int[] blockChecksums = new int[16];
+        private int blockCount;
+
+        private final long[] dates = new long[BLOCK_SIZE];
+        private final long[] ids = new long[BLOCK_SIZE];
+        private final byte[] feelings = new byte[BLOCK_SIZE];
+        private final int[] commentEnds = new int[BLOCK_SIZE];
+        private byte[] comments = new byte[1024];
+        private int rows;
+
+        /**
+         * @param file     {@code File} the snapshot file.
+         * @param timeZone {@code TimeZone} to count the {@code FeelHeatmap} in.
+         */
+        Writer(File file, TimeZone timeZone) {
+            this.file = file;
+            this.heatmap = new FeelHeatmap(timeZone);
+            this.tmpFile = new File(file.getPath() + ".tmp");
+            try {
+                out = new RandomAccessFile(tmpFile, "rw");
+                out.setLength(0);
+                out.seek(headerSize(FEELINGS.length));
+            } catch (IOException e) {
+                discard();
+            }
+        }
+
+        /**
+         * Add the next {@code Feel}, in sorted order.
+         *
+         * @param journalOffset {@code long} the offset of its record within the journal file.
+         * @param feel          {@code Feel}
+         */
+        void add(long journalOffset, Feel feel) {
+            byte[] comment = feel.getComment().getBytes(UTF_8);
+            add(journalOffset, feel.getId(), feel.getDate().getTime(), feel.getFeeling().ordinal(), comment, comment.length);
+        }
+
+        /**
+         * Add the next {@code Feel} from its encoded fields, in sorted order.
+         */
+        void add(long journalOffset, long id, long date, int feeling, byte[] comment, int commentLength) {
+            if (out == null) {
+                return;
+            }
+            if (rows == 0) {
+                if (blockCount == blockOffsets.length) {
+                    blockOffsets = Arrays.copyOf(blockOffsets, blockCount * 2);
+                    journalOffsets = Arrays.copyOf(journalOffsets, blockCount * 2);
+                    blockChecksums = Arrays.copyOf(blockChecksums, blockCount * 2);
+                }
+                journalOffsets[blockCount] = journalOffset;
+            }
+            int commentStart = rows == 0 ? 0 : commentEnds[rows - 1];
+            if (commentStart + commentLength > comments.length) {
+                comments = Arrays.copyOf(comments, Math.max(commentStart + commentLength, comments.length * 2));
+            }
+            System.arraycopy(comment, 0, comments, commentStart, commentLength);
+            dates[rows] = date;
+            ids[rows] = id;
+            feelings[rows] = (byte) feeling;
+            commentEnds[rows] = commentStart + commentLength;
+            rows++;
+            count++;
+            tallies[feeling]++;
+            heatmap.update(feeling, date, 1);
+            if (rows == BLOCK_SIZE) {
+                writeBlock();
+            }
+        }
+
+        /**
+         * Write the header and block table, and rename the snapshot over the snapshot file.
+         *
+         * @param journalLength {@code long} the length of the journal base the snapshot mirrors.
+         * @return {@code boolean} {@code true} if the snapshot was written.
+         */
+        boolean finish(long journalLength) {
+            if (rows > 0) {
+                writeBlock();
+            }
+            if (out == null) {
+                return false;
+            }
+            try {
+                long blockTableOffset = out.getFilePointer();
+                ByteBuffer blockTable = ByteBuffer.allocate(blockCount * BLOCK_TABLE_ENTRY_SIZE);
+                for (int block = 0; block < blockCount; block++) {
+                    blockTable.putLong(blockOffsets[block]).putLong(journalOffsets[block]).putInt(blockChecksums[block]);
+                }
+                out.write(blockTable.array());
+                ByteBuffer header = ByteBuffer.allocate(headerSize(FEELINGS.length));
+                header.putInt(MAGIC).putInt(count).putInt(blockCount).putInt(FEELINGS.length);
+                for (int tally : tallies) {
+                    header.putInt(tally);
+                }
+                header.putInt(heatmap.getTimeZone().getID().hashCode());
+                for (int cell : heatmap.getCounts()) {
+                    header.putInt(cell);
+                }
+                header.putLong(journalLength).putLong(blockTableOffset).putInt(checksum(blockTable.array()));
+                header.putInt(checksum(Arrays.copyOf(header.array(), header.position())));
+                out.seek(0);
+                out.write(header.array());
+                out.getFD().sync();
+                out.close();
+                out = null;
+                if (!tmpFile.renameTo(file)) {
+                    throw new IOException("Failed to rename " + tmpFile + " to " + file);
+                }
+                return true;
+            } catch (IOException e) {
+                discard();
+                return false;
+            }
+        }
+
+        private void writeBlock() {
+            if (out == null) {
+                rows = 0;
+                return;
+            }
+            ByteBuffer block = ByteBuffer.allocate(rows * ROW_COLUMNS_SIZE + commentEnds[rows - 1]);
+            for (int row = 0; row < rows; row++) {
+                block.putLong(dates[row]);
+            }
+            for (int row = 0; row < rows; row++) {
+                block.putLong(ids[row]);
+            }
+            block.put(feelings, 0, rows);
+            for (int row = 0; row < rows; row++) {
+                block.putInt(commentEnds[row]);
+            }
+            block.put(comments, 0, commentEnds[rows - 1]);
+            rows = 0;
+            try {
+                blockOffsets[blockCount] = out.getFilePointer();
+                blockChecksums[blockCount] = checksum(block.array());
+                blockCount++;
+                out.write(block.array());
+            } catch (IOException e) {
+                discard();
+            }
+        }
+
+        /**
+         * Stop writing and delete the temporary file, leaving any existing snapshot file as is.
+         */
+        void discard() {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException ignored) {
+                    // the snapshot is discarded either way
+                }
+                out = null;
+            }
+            tmpFile.delete();
+        }
+
+        private static int checksum(byte[] bytes) {
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, bytes.length);
+            return (int) crc.getValue();
+        }
+    }
+}
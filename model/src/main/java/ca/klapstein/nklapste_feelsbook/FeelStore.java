@@ -0,0 +1,90 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import java.util.List;
+
+
+/**
+ * Interface defining a persistent storage engine for the FeelsBook {@code FeelTreeSet}.
+ * <p>
+ * Instead of saving the whole {@code FeelTreeSet} on every change a {@code FeelStore} is told
+ * about each individual modification so that saving a single {@code Feel} is cheap no matter how
+ * large the history is.
+ * <p>
+ * Only modifications that actually changed the {@code FeelTreeSet} should be passed on.
+ * <p>
+ * A {@code FeelStore} persists the id of each {@code Feel} along with it, so the {@code Feel}s it
+ * loads can be edited and removed by their id.
+ * <p>
+ * A {@code FeelStore} is also a {@code FeelPageSource} so that the {@code FeelTab} can display
+ * the newest {@code Feel}s without loading the whole {@code FeelTreeSet}.
+ *
+ * @see FeelJournal
+ */
+interface FeelStore extends FeelPageSource {
+    /**
+     * Load the entire {@code FeelTreeSet} from the store.
+     *
+     * @return {@code FeelTreeSet}
+     */
+    FeelTreeSet load();
+
+    /**
+     * Record that a {@code Feel} was added to the {@code FeelTreeSet}.
+     *
+     * @param feel {@code Feel}
+     */
+    void add(Feel feel);
+
+    /**
+     * Record that a {@code Feel} was removed from the {@code FeelTreeSet}.
+     *
+     * @param feel {@code Feel}
+     */
+    void remove(Feel feel);
+
+    /**
+     * Record that a batch of {@code Feel}s was added to the {@code FeelTreeSet}, written out at
+     * once rather than one {@code Feel} at a time.
+     *
+     * @param feels {@code List<Feel>}
+     */
+    void addAll(List<Feel> feels);
+
+    /**
+     * Record that a batch of {@code Feel}s was removed from the {@code FeelTreeSet}, written out
+     * at once rather than one {@code Feel} at a time.
+     *
+     * @param feels {@code List<Feel>}
+     */
+    void removeAll(List<Feel> feels);
+
+    /**
+     * Record that a {@code Feel} within the {@code FeelTreeSet} was replaced by another.
+     *
+     * @param oldFeel {@code Feel} the {@code Feel} that was removed.
+     * @param newFeel {@code Feel} the {@code Feel} that was added in its place.
+     */
+    void edit(Feel oldFeel, Feel newFeel);
+
+    /**
+     * Force all recorded modifications to be durably written.
+     * <p>
+     * This is called on a background thread after each batch of modifications, and should do
+     * nothing but that, so a {@code flush} never waits for any housekeeping.
+     */
+    void flush();
+
+    /**
+     * Do any housekeeping the store needs, such as compacting it once it outgrew the
+     * {@code Feel}s it holds.
+     * <p>
+     * This is called on a background thread as its own task after the {@code flush} of a batch
+     * of modifications, thus, reads and writes queued meanwhile run first.
+     */
+    void compactIfNeeded();
+
+    /**
+     * Flush and release any resources held by the store.
+     */
+    void close();
+}
@@ -0,0 +1,26 @@
+package ca.klapstein.nklapste_feelsbook;
+
+
+/**
+ * Interface defining a source of the tally of each {@code Feeling}, and of their
+ * {@code FeelHeatmap}, that does not need to load every {@code Feel}.
+ * <p>
+ * A {@code FeelStore} implementing this, such as the {@code SQLiteFeelStore} or the
+ * {@code FeelJournal}, lets the {@code StatsTab} be drawn without loading the complete
+ * {@code FeelTreeSet}.
+ */
+interface FeelTallySource {
+    /**
+     * Load the current tally of each {@code Feeling}.
+     *
+     * @return {@code TallySnapshot}
+     */
+    TallySnapshot loadTallySnapshot();
+
+    /**
+     * Load the current {@code FeelHeatmap} of all {@code Feel}s in the default {@code TimeZone}.
+     *
+     * @return {@code FeelHeatmap} which is not updated afterwards.
+     */
+    FeelHeatmap loadFeelHeatmap();
+}
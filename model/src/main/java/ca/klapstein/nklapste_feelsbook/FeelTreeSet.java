@@ -0,0 +1,597 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import android.support.annotation.NonNull;
+
+import java.lang.reflect.Array;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.TimeZone;
+import java.util.concurrent.ForkJoinPool;
+
+
+/**
+ * A sorted {@code Set} of {@code Feel}s.
+ * <p>
+ * The {@code Feel}s are kept sorted by date within {@code FeelColumns}, which provides an easy
+ * way to implement the feelings list while retaining order by date. It also provides O(log n)
+ * positional access with {@code get} and {@code indexOf} for use within {@code FeelAdapter}.
+ * <p>
+ * As {@code FeelColumns} holds the fields of the {@code Feel}s in primitive arrays, rather
+ * than the {@code Feel}s themselves, {@code get} and iteration create a new but equal
+ * {@code Feel} on each call. Thus, this set only holds objects for the {@code Feel}s that are
+ * in use, such as those on screen.
+ * <p>
+ * Additionally running tallies of each {@code Feeling}, their per-day/week/month
+ * {@code FeelRollups}, their day of week by hour of day {@code FeelHeatmap}, and their
+ * {@code FeelTrends}, are kept for quick statistics generation. Once searched, a
+ * {@code FeelCommentIndex} over the {@code Feel}s' comments is kept up to date as well. It may be
+ * built from a copy of the comments by a {@code CommentIndexBuild}, without holding on to this
+ * set while it is built.
+ * <p>
+ * Each {@code Feel} is also indexed by its id within the {@code FeelColumns}, so it can be found
+ * in constant time with {@code getById}. As {@code Feel}s are ordered by their id last, feels
+ * with the exact same date, feeling, and comment can be held as long as their ids differ.
+ * <p>
+ * Batches large enough compared to the set are added and removed by {@code addAll} and
+ * {@code removeAll} in one linear merge of {@code FeelColumns}, sorting the batch first unless
+ * it is already sorted, such as when it was read from another {@code FeelTreeSet}. Batches making
+ * up at least half of the resulting set, such as loading or a bulk import, then recompute all
+ * statistics from scratch as parallel {@code FeelAggregates}, rather than once per {@code Feel}.
+ *
+ * @see Feel
+ * @see Feeling
+ * @see FeelColumns
+ */
+public class FeelTreeSet extends AbstractSet<Feel> implements FeelPageSource {
+    private static final String TAG = "FeelTreeSet";
+    /**
+     * Batches of at least {@code 1 / BULK_MERGE_RATIO} of the size of the set are merged, smaller
+     * ones are cheaper to insert or remove one at a time.
+     */
+    static final int BULK_MERGE_RATIO = 64;
+    /**
+     * Merged batches of at least {@code 1 / REBUILD_RATIO} of the resulting size of the set
+     * rebuild its statistics, smaller ones update them once per {@code Feel}.
+     */
+    static final int REBUILD_RATIO = 2;
+
+    /**
+     * The {@code Feel}s themselves, as sorted primitive columns.
+     */
+    private final FeelColumns feelColumns = new FeelColumns();
+    private int modCount;
+    /**
+     * Tallies indexed by {@code Feeling.ordinal()}, primitive so that updating them never boxes.
+     */
+    private final int[] feelingTallies = new int[Feeling.values().length];
+    private final FeelRollups feelRollups = new FeelRollups(TimeZone.getDefault());
+    private final FeelHeatmap feelHeatmap = new FeelHeatmap(TimeZone.getDefault());
+    private final FeelTrends feelTrends = new FeelTrends(feelColumns, feelRollups);
+    private TallySnapshot tallySnapshot;
+    /**
+     * Built on the first call to {@code getCommentIndex}, so loading does not pay for it.
+     */
+    private FeelCommentIndex commentIndex;
+
+    FeelTreeSet() {
+    }
+
+    @Override
+    public int size() {
+        return feelColumns.size();
+    }
+
+    @Override
+    public boolean contains(Object obj) {
+        return indexOf(obj) >= 0;
+    }
+
+    /**
+     * Attempt to remove an object from the {@code FeelTreeSet}.
+     * <p>
+     * If it is successfully removed decrement the tally of the removed {@code Feel}'s
+     * {@code Feeling}.
+     *
+     * @param obj {@code Object}
+     * @return {@code boolean}
+     */
+    @Override
+    public boolean remove(Object obj) {
+        int position = indexOf(obj);
+        if (position >= 0) {
+            Feel feel = (Feel) obj;
+            feelColumns.remove(position);
+            modCount++;
+            feelingTallies[feel.getFeeling().ordinal()]--;
+            tallySnapshot = null;
+            feelRollups.remove(feel);
+            feelHeatmap.remove(feel);
+            feelTrends.remove(feel);
+            if (commentIndex != null) {
+                commentIndex.remove(feel);
+            }
+        }
+        return position >= 0;
+    }
+
+    /**
+     * Inserts the specified {@code Feel} into this {@code FeelTreeSet}.
+     * <p>
+     * If it is successfully inserted increment the tally of the
+     * inserted {@code Feel}'s {@code Feeling}.
+     * <p>
+     * A {@code Feel} whose id is already held is not inserted, it has to be removed first.
+     *
+     * @param feel {@code Feel}
+     * @return {@code boolean}
+     */
+    @Override
+    public boolean add(Feel feel) {
+        boolean offerResult = feelColumns.insert(feel) >= 0;
+        if (offerResult) {
+            modCount++;
+            feelingTallies[feel.getFeeling().ordinal()]++;
+            tallySnapshot = null;
+            feelRollups.add(feel);
+            feelHeatmap.add(feel);
+            feelTrends.add(feel);
+            if (commentIndex != null) {
+                commentIndex.add(feel);
+            }
+        }
+        return offerResult;
+    }
+
+    /**
+     * Insert a batch of {@code Feel}s into this {@code FeelTreeSet}.
+     * <p>
+     * As with {@code add}, {@code Feel}s whose id is already held are not inserted, nor more than
+     * one of the {@code Feel}s of the batch sharing an id. A large batch is merged in O(n + m),
+     * plus sorting it if it is not already sorted.
+     *
+     * @param feels {@code Collection<? extends Feel>}
+     * @return {@code boolean} {@code true} if any {@code Feel} was inserted.
+     */
+    @Override
+    public boolean addAll(@NonNull Collection<? extends Feel> feels) {
+        if (feels.size() < size() / BULK_MERGE_RATIO) {
+            return super.addAll(feels);
+        }
+        Feel[] added = new Feel[feels.size()];
+        int count = 0;
+        boolean sorted = true;
+        for (Feel feel : feels) {
+            if (feelColumns.containsId(feel.getId())) {
+                continue;
+            }
+            if (count > 0 && added[count - 1].compareTo(feel) > 0) {
+                sorted = false;
+            }
+            added[count++] = feel;
+        }
+        if (count == 0) {
+            return false;
+        }
+        if (!sorted) {
+            Arrays.sort(added, 0, count);
+        }
+        // also skips Feels repeating the id of another Feel of the batch
+        count = feelColumns.addAll(added, count);
+        modCount++;
+        tallySnapshot = null;
+        feelTrends.invalidate();
+        if (count * REBUILD_RATIO >= size()) {
+            rebuildStatistics(ForkJoinPool.commonPool());
+            return true;
+        }
+        for (int i = 0; i < count; i++) {
+            Feel feel = added[i];
+            feelingTallies[feel.getFeeling().ordinal()]++;
+            feelRollups.add(feel);
+            feelHeatmap.add(feel);
+            if (commentIndex != null) {
+                commentIndex.add(feel);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Remove a batch of objects from this {@code FeelTreeSet}.
+     * <p>
+     * A large batch is removed in O(n + m), plus sorting it.
+     *
+     * @param objs {@code Collection<?>}
+     * @return {@code boolean} {@code true} if any {@code Feel} was removed.
+     */
+    @Override
+    public boolean removeAll(@NonNull Collection<?> objs) {
+        if (objs.size() < size() / BULK_MERGE_RATIO) {
+            boolean modified = false;
+            for (Object obj : objs) {
+                modified |= remove(obj);
+            }
+            return modified;
+        }
+        Feel[] feels = new Feel[objs.size()];
+        int count = 0;
+        for (Object obj : objs) {
+            if (obj instanceof Feel) {
+                feels[count++] = (Feel) obj;
+            }
+        }
+        Arrays.sort(feels, 0, count);
+        boolean[] removed = new boolean[count];
+        int removedCount = feelColumns.removeAll(feels, count, removed);
+        if (removedCount == 0) {
+            return false;
+        }
+        modCount++;
+        tallySnapshot = null;
+        feelTrends.invalidate();
+        boolean rebuild = removedCount * REBUILD_RATIO >= size();
+        for (int i = 0; i < count; i++) {
+            if (removed[i]) {
+                Feel feel = feels[i];
+                if (rebuild) {
+                    continue;
+                }
+                feelingTallies[feel.getFeeling().ordinal()]--;
+                feelRollups.remove(feel);
+                feelHeatmap.remove(feel);
+                if (commentIndex != null) {
+                    commentIndex.remove(feel);
+                }
+            }
+        }
+        if (rebuild) {
+            rebuildStatistics(ForkJoinPool.commonPool());
+        }
+        return true;
+    }
+
+    /**
+     * Recompute the tallies, {@code FeelRollups}, {@code FeelHeatmap}, and, if it was built, the
+     * {@code FeelCommentIndex} from the {@code FeelColumns}, aggregating ranges of them in
+     * parallel.
+     *
+     * @param pool {@code ForkJoinPool} running the aggregation.
+     */
+    void rebuildStatistics(ForkJoinPool pool) {
+        FeelAggregates aggregates = FeelAggregates.compute(pool, feelColumns, feelRollups.getTimeZone(),
+                commentIndex != null);
+        System.arraycopy(aggregates.tallies, 0, feelingTallies, 0, feelingTallies.length);
+        tallySnapshot = null;
+        feelRollups.clear();
+        feelRollups.addAll(aggregates.feelRollups);
+        feelHeatmap.clear();
+        feelHeatmap.addAll(aggregates.feelHeatmap);
+        if (commentIndex != null) {
+            commentIndex = aggregates.commentIndex;
+        }
+        feelTrends.invalidate();
+    }
+
+    /**
+     * Remove all {@code Feel}s from this {@code FeelTreeSet} and reset all tallies.
+     */
+    @Override
+    public void clear() {
+        feelColumns.clear();
+        modCount++;
+        Arrays.fill(feelingTallies, 0);
+        tallySnapshot = null;
+        feelRollups.clear();
+        feelHeatmap.clear();
+        feelTrends.clear();
+        if (commentIndex != null) {
+            commentIndex.clear();
+        }
+    }
+
+    /**
+     * Get the {@code Feel} at a position within the sorted order of this set.
+     *
+     * @param index {@code int}
+     * @return {@code Feel}
+     * @throws IndexOutOfBoundsException if the index is out of range.
+     */
+    public Feel get(int index) {
+        return feelColumns.get(index);
+    }
+
+    /**
+     * Create the {@code Feel}s of this set in order, walking the {@code FeelColumns} chunk by
+     * chunk rather than looking up each position.
+     *
+     * @return {@code Object[]}
+     */
+    @NonNull
+    @Override
+    public Object[] toArray() {
+        Object[] feels = new Object[size()];
+        feelColumns.copyFeels(0, feels.length, feels);
+        return feels;
+    }
+
+    @NonNull
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T[] toArray(@NonNull T[] array) {
+        int size = size();
+        T[] feels = array.length >= size ? array
+                : (T[]) Array.newInstance(array.getClass().getComponentType(), size);
+        feelColumns.copyFeels(0, size, feels);
+        if (feels.length > size) {
+            feels[size] = null;
+        }
+        return feels;
+    }
+
+    /**
+     * Get the position of a {@code Feel} within the sorted order of this set.
+     *
+     * @param obj {@code Object}
+     * @return {@code int} the position of the {@code Feel}, or {@code -1} if it is not within
+     * this set.
+     */
+    public int indexOf(Object obj) {
+        if (!(obj instanceof Feel)) {
+            return -1;
+        }
+        int position = feelColumns.find((Feel) obj);
+        return position >= 0 ? position : -1;
+    }
+
+    /**
+     * Get the number of {@code Feel}s within this set that are lower than the given
+     * {@code Feel}.
+     * <p>
+     * Unlike {@code indexOf} the {@code Feel} does not need to be within this set, thus, this is
+     * the position it would be inserted at.
+     *
+     * @param feel {@code Feel}
+     * @return {@code int}
+     */
+    public int rank(Feel feel) {
+        int position = feelColumns.find(feel);
+        return position >= 0 ? position : -position - 1;
+    }
+
+    /**
+     * Get the first (newest) {@code Feel} currently in this set.
+     *
+     * @return {@code Feel}
+     * @throws NoSuchElementException if this set is empty.
+     */
+    public Feel first() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return get(0);
+    }
+
+    /**
+     * Get the last (oldest) {@code Feel} currently in this set.
+     *
+     * @return {@code Feel}
+     * @throws NoSuchElementException if this set is empty.
+     */
+    public Feel last() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return get(size() - 1);
+    }
+
+    @NonNull
+    @Override
+    public Iterator<Feel> iterator() {
+        return new Iterator<Feel>() {
+            private int next;
+            private Feel lastReturned;
+            private int expectedModCount = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return next < size();
+            }
+
+            @Override
+            public Feel next() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (next >= size()) {
+                    throw new NoSuchElementException();
+                }
+                lastReturned = get(next++);
+                return lastReturned;
+            }
+
+            @Override
+            public void remove() {
+                if (lastReturned == null) {
+                    throw new IllegalStateException();
+                }
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                FeelTreeSet.this.remove(lastReturned);
+                next--;
+                lastReturned = null;
+                expectedModCount = modCount;
+            }
+        };
+    }
+
+    /**
+     * Get the {@code Feel} of an id in constant time.
+     *
+     * @param id {@code long}
+     * @return {@code Feel} or {@code null} if there is none.
+     */
+    public Feel getById(long id) {
+        return feelColumns.getById(id);
+    }
+
+    /**
+     * Remove the {@code Feel} of an id.
+     *
+     * @param id {@code long}
+     * @return {@code Feel} the removed {@code Feel}, or {@code null} if there was none.
+     */
+    public Feel removeById(long id) {
+        Feel feel = getById(id);
+        if (feel != null) {
+            remove(feel);
+        }
+        return feel;
+    }
+
+    /**
+     * Get the tally of a single {@code Feeling}.
+     *
+     * @param feeling {@code Feeling}
+     * @return {@code int}
+     */
+    public int getFeelingTally(Feeling feeling) {
+        return feelingTallies[feeling.ordinal()];
+    }
+
+    /**
+     * Get a read-only {@code TallySnapshot} of the current tally of each {@code Feeling}.
+     * <p>
+     * The snapshot is cached until this {@code FeelTreeSet} is next modified.
+     *
+     * @return {@code TallySnapshot}
+     */
+    public TallySnapshot getTallySnapshot() {
+        if (tallySnapshot == null) {
+            tallySnapshot = new TallySnapshot(feelingTallies);
+        }
+        return tallySnapshot;
+    }
+
+    /**
+     * Get the {@code FeelCommentIndex} of the comments of the {@code Feel}s, building it on the
+     * first call.
+     *
+     * @return {@code FeelCommentIndex}
+     */
+    public FeelCommentIndex getCommentIndex() {
+        CommentIndexBuild build = copyForCommentIndex();
+        if (build != null) {
+            build.run();
+            finishCommentIndex(build);
+        }
+        return commentIndex;
+    }
+
+    /**
+     * Copy the ids, dates, and comments of the {@code Feel}s to build the
+     * {@code FeelCommentIndex} from, which costs far less than building it.
+     *
+     * @return {@code CommentIndexBuild} or {@code null} if the {@code FeelCommentIndex} is
+     * already built.
+     */
+    CommentIndexBuild copyForCommentIndex() {
+        return commentIndex == null ? new CommentIndexBuild() : null;
+    }
+
+    /**
+     * Install the {@code FeelCommentIndex} built by a {@code CommentIndexBuild}, unless this set
+     * was modified since it was copied.
+     *
+     * @param build {@code CommentIndexBuild} that was run.
+     * @return {@code boolean} {@code true} if the {@code FeelCommentIndex} is built.
+     */
+    boolean finishCommentIndex(CommentIndexBuild build) {
+        if (build.modCount != modCount) {
+            return commentIndex != null;
+        }
+        if (commentIndex == null) {
+            commentIndex = build.commentIndex;
+        }
+        return true;
+    }
+
+    public FeelRollups getFeelRollups() {
+        return feelRollups;
+    }
+
+    /**
+     * Get the live {@code FeelHeatmap} of this set, which is updated in O(1) by every add and
+     * remove.
+     *
+     * @return {@code FeelHeatmap}
+     */
+    public FeelHeatmap getFeelHeatmap() {
+        return feelHeatmap;
+    }
+
+    /**
+     * Get the {@code FeelTrends} of this set, which are updated incrementally by single adds and
+     * removes, and rebuilt in parallel on the next read after a batch was merged.
+     *
+     * @return {@code FeelTrends}
+     */
+    public FeelTrends getFeelTrends() {
+        return feelTrends;
+    }
+
+    @Override
+    public int getCount() {
+        return size();
+    }
+
+    @Override
+    public List<Feel> loadRange(int position, int count) {
+        int end = Math.min(size(), position + count);
+        List<Feel> feels = new ArrayList<>(Math.max(0, end - position));
+        for (int i = position; i < end; i++) {
+            feels.add(get(i));
+        }
+        return feels;
+    }
+
+    /**
+     * A {@code FeelCommentIndex} built from a copy of the comments of a {@code FeelTreeSet}, so
+     * it may be built on another thread while the set is modified.
+     */
+    final class CommentIndexBuild {
+        private final int modCount;
+        private final long[] ids;
+        private final long[] dates;
+        private final String[] comments;
+        private FeelCommentIndex commentIndex;
+
+        private CommentIndexBuild() {
+            int rows = size();
+            modCount = FeelTreeSet.this.modCount;
+            ids = new long[rows];
+            dates = new long[rows];
+            comments = new String[rows];
+            feelColumns.copyColumns(0, rows, dates, new byte[rows]);
+            feelColumns.copyComments(0, rows, ids, comments);
+        }
+
+        /**
+         * Build the {@code FeelCommentIndex} from the copy, touching nothing of the
+         * {@code FeelTreeSet} but the reference to its {@code FeelColumns}.
+         */
+        void run() {
+            FeelCommentIndex built = new FeelCommentIndex(feelColumns);
+            for (int row = 0; row < ids.length; row++) {
+                built.add(ids[row], dates[row], FeelCommentIndex.uniqueWords(comments[row]));
+            }
+            commentIndex = built;
+        }
+    }
+}
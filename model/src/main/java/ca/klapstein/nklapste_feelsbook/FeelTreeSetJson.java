@@ -0,0 +1,72 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+
+/**
+ * Helper Class for streaming a {@code FeelTreeSet} to/from JSON.
+ * <p>
+ * The JSON is streamed with the hand written {@code FeelTypeAdapter} and
+ * {@code FeelTreeSetTypeAdapter} rather than using reflection.
+ */
+class FeelTreeSetJson {
+    private static final String TAG = "FeelTreeSetJson";
+
+    private static final Gson gson = new GsonBuilder()
+            .registerTypeAdapter(Feel.class, new FeelTypeAdapter())
+            .registerTypeAdapter(FeelTreeSet.class, new FeelTreeSetTypeAdapter())
+            .create();
+
+    private FeelTreeSetJson() {
+    }
+
+    /**
+     * Stream a {@code FeelTreeSet} as JSON into a {@code Writer}.
+     *
+     * @param writer      {@code Writer}
+     * @param feelTreeSet {@code FeelTreeSet}
+     * @throws JsonIOException if writing to the {@code Writer} fails.
+     */
+    static void writeFeelTreeSet(Writer writer, FeelTreeSet feelTreeSet) {
+        try {
+            JsonWriter jsonWriter = gson.newJsonWriter(writer);
+            gson.getAdapter(FeelTreeSet.class).write(jsonWriter, feelTreeSet);
+            jsonWriter.flush();
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+    }
+
+    /**
+     * Stream a {@code FeelTreeSet} from JSON within a {@code Reader}.
+     * <p>
+     * Both the compact JSON written by {@code writeFeelTreeSet} and the reflective JSON written
+     * by older versions of FeelsBook can be read.
+     *
+     * @param reader {@code Reader}
+     * @return {@code FeelTreeSet}
+     * @throws JsonIOException     if reading from the {@code Reader} fails.
+     * @throws JsonSyntaxException if the JSON is not a valid {@code FeelTreeSet}.
+     */
+    static FeelTreeSet readFeelTreeSet(Reader reader) {
+        try {
+            JsonReader jsonReader = gson.newJsonReader(reader);
+            FeelTreeSet feelTreeSet = gson.getAdapter(FeelTreeSet.class).read(jsonReader);
+            return feelTreeSet == null ? new FeelTreeSet() : feelTreeSet;
+        } catch (MalformedJsonException | IllegalStateException | IllegalArgumentException e) {
+            throw new JsonSyntaxException(e);
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+
+/**
+ * Hand written streaming Gson {@code TypeAdapter} for a {@code FeelTreeSet}.
+ * <p>
+ * The {@code FeelTreeSet} is written as a JSON array of {@code Feel}s using
+ * {@code FeelTypeAdapter}. The {@code Feeling} tallies are not written, instead they are rebuilt
+ * as each {@code Feel} is added back into the {@code FeelTreeSet} when read.
+ *
+ * @see FeelTypeAdapter
+ */
+class FeelTreeSetTypeAdapter extends TypeAdapter<FeelTreeSet> {
+    private static final String TAG = "FeelTreeSetTypeAdapter";
+
+    private final FeelTypeAdapter feelTypeAdapter = new FeelTypeAdapter();
+
+    @Override
+    public void write(JsonWriter out, FeelTreeSet feelTreeSet) throws IOException {
+        if (feelTreeSet == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginArray();
+        for (Feel feel : feelTreeSet) {
+            feelTypeAdapter.write(out, feel);
+        }
+        out.endArray();
+    }
+
+    @Override
+    public FeelTreeSet read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        FeelTreeSet feelTreeSet = new FeelTreeSet();
+        in.beginArray();
+        while (in.hasNext()) {
+            Feel feel = feelTypeAdapter.read(in);
+            if (feel != null) {
+                feelTreeSet.add(feel);
+            }
+        }
+        in.endArray();
+        return feelTreeSet;
+    }
+}
@@ -0,0 +1,446 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+
+/**
+ * Daily streaks, moving averages, and week-over-week change of each {@code Feeling} within a
+ * {@code FeelTreeSet}.
+ * <p>
+ * Streaks are kept as the runs of consecutive local days on which a {@code Feeling} was felt.
+ * Adding or removing a single {@code Feel} only changes the runs when the count of its day within
+ * the {@code FeelRollups} goes from or to zero, which joins, extends, shortens, or splits one run
+ * in O(log runs). The length of every run is counted within a sorted multiset, so the longest
+ * streak is its last key.
+ * <p>
+ * Moving averages and week-over-week change are read from the per-day {@code FeelRollups}, so
+ * they cost O(days) no matter how many {@code Feel}s exist.
+ * <p>
+ * Batches merged by {@code FeelTreeSet.addAll} and {@code removeAll}, such as a bulk import or
+ * loading the history, mark the runs stale instead. They are then rebuilt on the next read by a
+ * {@code ForkJoinPool}: as the {@code FeelColumns} are sorted by date, each task computes the runs
+ * of a range of positions, and the runs of neighbouring ranges are merged by a union of sorted
+ * intervals, which is associative, so the tasks may split the range anywhere. The rebuild runs
+ * on a copy of the dates and {@code Feeling}s taken by {@code copyForRebuild}, so another thread
+ * may rebuild the runs while the {@code FeelTreeSet} is modified, and only install them with
+ * {@code finishRebuild} if it was not.
+ *
+ * @see FeelTreeSet#getFeelTrends()
+ * @see FeelRollups
+ */
+public class FeelTrends {
+    private static final String TAG = "FeelTrends";
+
+    /**
+     * Ranges of at most this many positions are rebuilt by a single task.
+     */
+    static final int REBUILD_LEAF_SIZE = 16 * 1024;
+
+    private static final Feeling[] FEELINGS = Feeling.values();
+
+    private final FeelColumns feelColumns;
+    private final FeelRollups feelRollups;
+    private DayRuns[] dayRuns = new DayRuns[FEELINGS.length];
+    private boolean stale;
+    /**
+     * Counts the modifications of the {@code FeelTreeSet}, which all pass through {@code add},
+     * {@code remove}, {@code invalidate}, or {@code clear}.
+     */
+    private int modCount;
+
+    FeelTrends(FeelColumns feelColumns, FeelRollups feelRollups) {
+        this.feelColumns = feelColumns;
+        this.feelRollups = feelRollups;
+        clear();
+    }
+
+    /**
+     * Get the longest run of consecutive days on which a {@code Feeling} was felt.
+     *
+     * @param feeling {@code Feeling}
+     * @return {@code int} the number of days.
+     */
+    public int getLongestStreak(Feeling feeling) {
+        ensureRuns();
+        return dayRuns[feeling.ordinal()].getLongest();
+    }
+
+    /**
+     * Get the run of consecutive days on which a {@code Feeling} was felt up to today, or up to
+     * yesterday if it was not felt yet today.
+     *
+     * @param feeling   {@code Feeling}
+     * @param nowMillis {@code long} epoch milliseconds.
+     * @return {@code int} the number of days, {@code 0} if the {@code Feeling} was neither felt
+     * today nor yesterday.
+     */
+    public int getCurrentStreak(Feeling feeling, long nowMillis) {
+        ensureRuns();
+        long today = feelRollups.getBucket(FeelRollups.Granularity.DAY, nowMillis);
+        DayRuns runs = dayRuns[feeling.ordinal()];
+        int streak = runs.getLengthUpTo(today);
+        return streak > 0 ? streak : runs.getLengthUpTo(today - 1);
+    }
+
+    /**
+     * Get the average number of {@code Feel}s of a {@code Feeling} per day over the last days up
+     * to and including today.
+     *
+     * @param feeling   {@code Feeling}
+     * @param nowMillis {@code long} epoch milliseconds.
+     * @param days      {@code int} the number of days averaged over, such as {@code 7} or
+     *                  {@code 30}.
+     * @return {@code double}
+     */
+    public double getMovingAverage(Feeling feeling, long nowMillis, int days) {
+        return (double) sum(feelRollups.getRecentCounts(FeelRollups.Granularity.DAY, feeling, nowMillis, days),
+                0, days) / days;
+    }
+
+    /**
+     * Get the relative change of the number of {@code Feel}s of a {@code Feeling} within the last
+     * seven days, up to and including today, compared to the seven days before them.
+     *
+     * @param feeling   {@code Feeling}
+     * @param nowMillis {@code long} epoch milliseconds.
+     * @return {@code double} e.g. {@code 0.5} for an increase by half, or {@code NaN} if there
+     * was no {@code Feel} within the seven days before.
+     */
+    public double getWeekOverWeekChange(Feeling feeling, long nowMillis) {
+        int[] counts = feelRollups.getRecentCounts(FeelRollups.Granularity.DAY, feeling, nowMillis, 14);
+        int previousWeek = sum(counts, 0, 7);
+        int lastWeek = sum(counts, 7, 14);
+        return previousWeek == 0 ? Double.NaN : (double) (lastWeek - previousWeek) / previousWeek;
+    }
+
+    /**
+     * Take an immutable snapshot of the trends of each {@code Feeling} as of a day, e.g. to hand
+     * them to another thread.
+     *
+     * @param nowMillis {@code long} epoch milliseconds.
+     * @return {@code TrendSnapshot}
+     */
+    public TrendSnapshot getSnapshot(long nowMillis) {
+        return new TrendSnapshot(this, nowMillis);
+    }
+
+    private static int sum(int[] counts, int from, int to) {
+        int sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += counts[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Update the runs after the {@code Feel} was added to the {@code FeelRollups}.
+     */
+    void add(Feel feel) {
+        modCount++;
+        if (stale) {
+            return;
+        }
+        long day = feelRollups.getBucket(FeelRollups.Granularity.DAY, feel.getDate().getTime());
+        if (feelRollups.getCount(FeelRollups.Granularity.DAY, feel.getFeeling(), day) == 1) {
+            dayRuns[feel.getFeeling().ordinal()].addDay(day);
+        }
+    }
+
+    /**
+     * Update the runs after the {@code Feel} was removed from the {@code FeelRollups}.
+     */
+    void remove(Feel feel) {
+        modCount++;
+        if (stale) {
+            return;
+        }
+        long day = feelRollups.getBucket(FeelRollups.Granularity.DAY, feel.getDate().getTime());
+        if (feelRollups.getCount(FeelRollups.Granularity.DAY, feel.getFeeling(), day) == 0) {
+            dayRuns[feel.getFeeling().ordinal()].removeDay(day);
+        }
+    }
+
+    /**
+     * Mark the runs to be rebuilt from the {@code FeelColumns} on the next read.
+     */
+    void invalidate() {
+        modCount++;
+        stale = true;
+    }
+
+    void clear() {
+        modCount++;
+        for (int i = 0; i < dayRuns.length; i++) {
+            dayRuns[i] = new DayRuns();
+        }
+        stale = false;
+    }
+
+    private void ensureRuns() {
+        Rebuild rebuild = copyForRebuild();
+        if (rebuild != null) {
+            rebuild.run(ForkJoinPool.commonPool());
+            finishRebuild(rebuild);
+        }
+    }
+
+    /**
+     * Copy the dates and {@code Feeling}s to rebuild the stale runs from, which costs far less
+     * than rebuilding them.
+     *
+     * @return {@code Rebuild} or {@code null} if the runs are not stale.
+     */
+    Rebuild copyForRebuild() {
+        return stale ? new Rebuild() : null;
+    }
+
+    /**
+     * Install the runs of a {@code Rebuild}, unless the {@code FeelTreeSet} was modified since
+     * they were copied.
+     *
+     * @param rebuild {@code Rebuild} that was run.
+     * @return {@code boolean} {@code true} if the runs are no longer stale.
+     */
+    boolean finishRebuild(Rebuild rebuild) {
+        if (rebuild.modCount != modCount) {
+            return !stale;
+        }
+        dayRuns = rebuild.dayRuns;
+        stale = false;
+        return true;
+    }
+
+    /**
+     * Union two sorted lists of runs, joining runs that overlap or touch.
+     *
+     * @param a {@code long[]} runs as {@code start, end} pairs of days, in ascending order.
+     * @param b {@code long[]} runs as {@code start, end} pairs of days, in ascending order.
+     * @return {@code long[]} runs as {@code start, end} pairs of days, in ascending order.
+     */
+    static long[] unionRuns(long[] a, long[] b) {
+        long[] union = new long[a.length + b.length];
+        int length = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length || j < b.length) {
+            long[] next;
+            int index;
+            if (j == b.length || (i < a.length && a[i] <= b[j])) {
+                next = a;
+                index = i;
+                i += 2;
+            } else {
+                next = b;
+                index = j;
+                j += 2;
+            }
+            if (length > 0 && next[index] <= union[length - 1] + 1) {
+                union[length - 1] = Math.max(union[length - 1], next[index + 1]);
+            } else {
+                union[length++] = next[index];
+                union[length++] = next[index + 1];
+            }
+        }
+        return Arrays.copyOf(union, length);
+    }
+
+    /**
+     * The runs of each {@code Feeling} rebuilt from a copy of the dates and {@code Feeling}s of
+     * the {@code FeelColumns}, so they may be rebuilt on another thread while the
+     * {@code FeelTreeSet} is modified.
+     */
+    final class Rebuild {
+        private final int modCount;
+        private final long[] dates;
+        private final byte[] feelings;
+        private final TimeZone timeZone;
+        private DayRuns[] dayRuns;
+
+        private Rebuild() {
+            int rows = feelColumns.size();
+            modCount = FeelTrends.this.modCount;
+            dates = new long[rows];
+            feelings = new byte[rows];
+            feelColumns.copyColumns(0, rows, dates, feelings);
+            timeZone = feelRollups.getTimeZone();
+        }
+
+        /**
+         * Rebuild the runs from the copy, touching nothing of the {@code FeelTreeSet}.
+         *
+         * @param pool {@code ForkJoinPool} running the rebuild.
+         */
+        void run(ForkJoinPool pool) {
+            long[][] runs = pool.invoke(new RunsTask(dates, feelings, timeZone, 0, dates.length));
+            DayRuns[] rebuilt = new DayRuns[FEELINGS.length];
+            for (int feeling = 0; feeling < rebuilt.length; feeling++) {
+                rebuilt[feeling] = DayRuns.of(runs[feeling]);
+            }
+            dayRuns = rebuilt;
+        }
+    }
+
+    /**
+     * Computes the runs of each {@code Feeling} within a range of positions of copied columns,
+     * forking into halves down to {@code REBUILD_LEAF_SIZE} positions.
+     */
+    private static final class RunsTask extends RecursiveTask<long[][]> {
+        private static final long serialVersionUID = 1L;
+
+        private final long[] dates;
+        private final byte[] feelings;
+        private final TimeZone timeZone;
+        private final int from;
+        private final int to;
+
+        RunsTask(long[] dates, byte[] feelings, TimeZone timeZone, int from, int to) {
+            this.dates = dates;
+            this.feelings = feelings;
+            this.timeZone = timeZone;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected long[][] compute() {
+            if (to - from <= REBUILD_LEAF_SIZE) {
+                return computeRange();
+            }
+            int middle = (from + to) >>> 1;
+            RunsTask newer = new RunsTask(dates, feelings, timeZone, from, middle);
+            newer.fork();
+            long[][] older = new RunsTask(dates, feelings, timeZone, middle, to).compute();
+            long[][] runs = newer.join();
+            for (int feeling = 0; feeling < runs.length; feeling++) {
+                runs[feeling] = unionRuns(runs[feeling], older[feeling]);
+            }
+            return runs;
+        }
+
+        private long[][] computeRange() {
+            // TimeZone caches its last transition, so each task uses its own
+            TimeZone localTimeZone = (TimeZone) timeZone.clone();
+            long[][] days = new long[FEELINGS.length][];
+            int[] counts = new int[FEELINGS.length];
+            for (int row = from; row < to; row++) {
+                counts[feelings[row]]++;
+            }
+            for (int feeling = 0; feeling < days.length; feeling++) {
+                days[feeling] = new long[counts[feeling]];
+            }
+            Arrays.fill(counts, 0);
+            // the rows are newest first, so the days are too, apart from time zone transitions
+            for (int row = to - 1; row >= from; row--) {
+                int feeling = feelings[row];
+                days[feeling][counts[feeling]++] = FeelRollups.epochDay(localTimeZone, dates[row]);
+            }
+            long[][] runs = new long[FEELINGS.length][];
+            for (int feeling = 0; feeling < runs.length; feeling++) {
+                runs[feeling] = toRuns(days[feeling]);
+            }
+            return runs;
+        }
+
+        private static long[] toRuns(long[] days) {
+            Arrays.sort(days);
+            long[] runs = new long[2 * days.length];
+            int length = 0;
+            for (long day : days) {
+                if (length > 0 && day <= runs[length - 1] + 1) {
+                    runs[length - 1] = day;
+                } else {
+                    runs[length++] = day;
+                    runs[length++] = day;
+                }
+            }
+            return Arrays.copyOf(runs, length);
+        }
+    }
+
+    /**
+     * The runs of consecutive days of one {@code Feeling}, keyed by their first day, and the
+     * number of runs of each length.
+     */
+    private static final class DayRuns {
+        private final TreeMap<Long, Long> runs = new TreeMap<>();
+        private final TreeMap<Long, Integer> lengthCounts = new TreeMap<>();
+
+        static DayRuns of(long[] runs) {
+            DayRuns dayRuns = new DayRuns();
+            for (int i = 0; i < runs.length; i += 2) {
+                dayRuns.putRun(runs[i], runs[i + 1]);
+            }
+            return dayRuns;
+        }
+
+        int getLongest() {
+            return lengthCounts.isEmpty() ? 0 : lengthCounts.lastKey().intValue();
+        }
+
+        /**
+         * @return {@code int} the number of days of the run containing a day, up to that day.
+         */
+        int getLengthUpTo(long day) {
+            Map.Entry<Long, Long> run = runs.floorEntry(day);
+            return run == null || run.getValue() < day ? 0 : (int) (day - run.getKey() + 1);
+        }
+
+        void addDay(long day) {
+            Map.Entry<Long, Long> before = runs.floorEntry(day);
+            if (before != null && before.getValue() >= day) {
+                return;
+            }
+            long start = day;
+            long end = day;
+            if (before != null && before.getValue() == day - 1) {
+                start = before.getKey();
+                removeRun(start, before.getValue());
+            }
+            Long after = runs.get(day + 1);
+            if (after != null) {
+                end = after;
+                removeRun(day + 1, after);
+            }
+            putRun(start, end);
+        }
+
+        void removeDay(long day) {
+            Map.Entry<Long, Long> run = runs.floorEntry(day);
+            if (run == null || run.getValue() < day) {
+                return;
+            }
+            long start = run.getKey();
+            long end = run.getValue();
+            removeRun(start, end);
+            if (start < day) {
+                putRun(start, day - 1);
+            }
+            if (day < end) {
+                putRun(day + 1, end);
+            }
+        }
+
+        private void putRun(long start, long end) {
+            runs.put(start, end);
+            long length = end - start + 1;
+            Integer count = lengthCounts.get(length);
+            lengthCounts.put(length, count == null ? 1 : count + 1);
+        }
+
+        private void removeRun(long start, long end) {
+            runs.remove(start);
+            long length = end - start + 1;
+            int count = lengthCounts.get(length);
+            if (count == 1) {
+                lengthCounts.remove(length);
+            } else {
+                lengthCounts.put(length, count - 1);
+            }
+        }
+    }
+}
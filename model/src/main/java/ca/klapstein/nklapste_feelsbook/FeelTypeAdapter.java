@@ -0,0 +1,120 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.Date;
+
+
+/**
+ * Hand written streaming Gson {@code TypeAdapter} for a single {@code Feel}.
+ * <p>
+ * A {@code Feel} is written in a compact form with its id, its date as epoch milliseconds and
+ * its {@code Feeling} as its ordinal, e.g. {@code {"i":7,"d":1538712131000,"f":2,"c":"comment"}}.
+ * An empty comment is omitted.
+ * <p>
+ * For migrating old data the reflective form previously written by {@code Gson}, e.g.
+ * {@code {"comment":"comment","feeling":"Joy","date":"Oct 4, 2018 10:02:11 PM"}}, can also
+ * be read. {@code Feel}s written without an id are given a new one.
+ *
+ * @see FeelTreeSetTypeAdapter
+ */
+class FeelTypeAdapter extends TypeAdapter<Feel> {
+    private static final String TAG = "FeelTypeAdapter";
+
+    private static final String ID_KEY = "i";
+    private static final String DATE_KEY = "d";
+    private static final String FEELING_KEY = "f";
+    private static final String COMMENT_KEY = "c";
+    private static final String LEGACY_DATE_KEY = "date";
+    private static final String LEGACY_FEELING_KEY = "feeling";
+    private static final String LEGACY_COMMENT_KEY = "comment";
+
+    private static final Feeling[] FEELINGS = Feeling.values();
+
+    /**
+     * Gson's default {@code Date} adapter, only used to read legacy date strings.
+     */
+    private final TypeAdapter<Date> legacyDateAdapter = new Gson().getAdapter(Date.class);
+
+    @Override
+    public void write(JsonWriter out, Feel feel) throws IOException {
+        if (feel == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name(ID_KEY).value(feel.getId());
+        out.name(DATE_KEY).value(feel.getDate().getTime());
+        out.name(FEELING_KEY).value(feel.getFeeling().ordinal());
+        if (!feel.getComment().isEmpty()) {
+            out.name(COMMENT_KEY).value(feel.getComment());
+        }
+        out.endObject();
+    }
+
+    @Override
+    public Feel read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        long id = 0;
+        boolean hasId = false;
+        Date date = null;
+        Feeling feeling = null;
+        String comment = "";
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case ID_KEY:
+                    id = in.nextLong();
+                    hasId = true;
+                    break;
+                case DATE_KEY:
+                case LEGACY_DATE_KEY:
+                    date = readDate(in);
+                    break;
+                case FEELING_KEY:
+                case LEGACY_FEELING_KEY:
+                    feeling = readFeeling(in);
+                    break;
+                case COMMENT_KEY:
+                case LEGACY_COMMENT_KEY:
+                    comment = in.nextString();
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        if (date == null || feeling == null) {
+            throw new JsonParseException("Feel is missing its date or feeling at " + in.getPath());
+        }
+        return hasId ? new Feel(id, feeling, comment, date) : new Feel(feeling, comment, date);
+    }
+
+    private Date readDate(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NUMBER) {
+            return new Date(in.nextLong());
+        }
+        return legacyDateAdapter.read(in);
+    }
+
+    private static Feeling readFeeling(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NUMBER) {
+            int ordinal = in.nextInt();
+            if (ordinal < 0 || ordinal >= FEELINGS.length) {
+                throw new JsonParseException("Invalid feeling ordinal " + ordinal + " at " + in.getPath());
+            }
+            return FEELINGS[ordinal];
+        }
+        return Feeling.valueOf(in.nextString());
+    }
+}
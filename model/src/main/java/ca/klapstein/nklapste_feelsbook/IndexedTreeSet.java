@@ -0,0 +1,388 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import android.support.annotation.NonNull;
+
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+
+/**
+ * A sorted {@code Set} backed by a size augmented AVL tree.
+ * <p>
+ * Elements are ordered by their natural ordering ({@code compareTo}) exactly like a
+ * {@code TreeSet}. Additionally every node tracks the size of its subtree which allows
+ * positional access with {@code get} and {@code indexOf} in O(log n) instead of copying the
+ * whole set into an array.
+ *
+ * @param <E> the type of elements maintained by this set
+ */
+public class IndexedTreeSet<E extends Comparable<? super E>> extends AbstractSet<E> {
+    private static final String TAG = "IndexedTreeSet";
+
+    private Node<E> root;
+    private int modCount;
+
+    /**
+     * Flag set by the recursive {@code insert} and {@code delete} helpers noting whether the
+     * tree was actually modified.
+     */
+    private boolean modified;
+
+    @Override
+    public int size() {
+        return size(root);
+    }
+
+    @Override
+    public void clear() {
+        root = null;
+        modCount++;
+    }
+
+    @Override
+    public boolean contains(Object obj) {
+        return indexOf(obj) >= 0;
+    }
+
+    /**
+     * Inserts the specified element into this set if it is not already present.
+     *
+     * @param element {@code E}
+     * @return {@code boolean} {@code true} if this set did not already contain the element.
+     */
+    @Override
+    public boolean add(E element) {
+        if (element == null) {
+            throw new NullPointerException();
+        }
+        modified = false;
+        root = insert(root, element);
+        if (modified) {
+            modCount++;
+        }
+        return modified;
+    }
+
+    /**
+     * Removes the specified element from this set if it is present.
+     *
+     * @param obj {@code Object}
+     * @return {@code boolean} {@code true} if this set contained the element.
+     * @throws ClassCastException if the object cannot be compared with the elements of this set.
+     */
+    @Override
+    public boolean remove(Object obj) {
+        if (obj == null) {
+            return false;
+        }
+        @SuppressWarnings("unchecked")
+        E element = (E) obj;
+        modified = false;
+        root = delete(root, element);
+        if (modified) {
+            modCount++;
+        }
+        return modified;
+    }
+
+    /**
+     * Get the element at the given position within the sorted order of this set.
+     *
+     * @param index {@code int}
+     * @return {@code E}
+     * @throws IndexOutOfBoundsException if the index is out of range.
+     */
+    public E get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        Node<E> node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index > leftSize) {
+                index -= leftSize + 1;
+                node = node.right;
+            } else {
+                return node.value;
+            }
+        }
+    }
+
+    /**
+     * Get the position of an element within the sorted order of this set.
+     *
+     * @param obj {@code Object}
+     * @return {@code int} the position of the element, or {@code -1} if it is not within this set.
+     * @throws ClassCastException if the object cannot be compared with the elements of this set.
+     */
+    public int indexOf(Object obj) {
+        if (obj == null) {
+            return -1;
+        }
+        @SuppressWarnings("unchecked")
+        E element = (E) obj;
+        Node<E> node = root;
+        int index = 0;
+        while (node != null) {
+            int comparison = element.compareTo(node.value);
+            if (comparison < 0) {
+                node = node.left;
+            } else if (comparison > 0) {
+                index += size(node.left) + 1;
+                node = node.right;
+            } else {
+                return index + size(node.left);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Get the number of elements within this set that are lower than the given element.
+     * <p>
+     * Unlike {@code indexOf} the element does not need to be within this set, thus, this is the
+     * position it would be inserted at.
+     *
+     * @param element {@code E}
+     * @return {@code int}
+     */
+    public int rank(E element) {
+        Node<E> node = root;
+        int rank = 0;
+        while (node != null) {
+            int comparison = element.compareTo(node.value);
+            if (comparison < 0) {
+                node = node.left;
+            } else if (comparison > 0) {
+                rank += size(node.left) + 1;
+                node = node.right;
+            } else {
+                return rank + size(node.left);
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * Get the first (lowest) element currently in this set.
+     *
+     * @return {@code E}
+     * @throws NoSuchElementException if this set is empty.
+     */
+    public E first() {
+        if (root == null) {
+            throw new NoSuchElementException();
+        }
+        return leftmost(root).value;
+    }
+
+    /**
+     * Get the last (highest) element currently in this set.
+     *
+     * @return {@code E}
+     * @throws NoSuchElementException if this set is empty.
+     */
+    public E last() {
+        if (root == null) {
+            throw new NoSuchElementException();
+        }
+        Node<E> node = root;
+        while (node.right != null) {
+            node = node.right;
+        }
+        return node.value;
+    }
+
+    @NonNull
+    @Override
+    public Iterator<E> iterator() {
+        return new InOrderIterator();
+    }
+
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static int height(Node<?> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static <E> Node<E> leftmost(Node<E> node) {
+        while (node.left != null) {
+            node = node.left;
+        }
+        return node;
+    }
+
+    private Node<E> insert(Node<E> node, E element) {
+        if (node == null) {
+            modified = true;
+            return new Node<>(element);
+        }
+        int comparison = element.compareTo(node.value);
+        if (comparison < 0) {
+            node.left = insert(node.left, element);
+        } else if (comparison > 0) {
+            node.right = insert(node.right, element);
+        } else {
+            return node;
+        }
+        return modified ? rebalance(node) : node;
+    }
+
+    private Node<E> delete(Node<E> node, E element) {
+        if (node == null) {
+            return null;
+        }
+        int comparison = element.compareTo(node.value);
+        if (comparison < 0) {
+            node.left = delete(node.left, element);
+        } else if (comparison > 0) {
+            node.right = delete(node.right, element);
+        } else {
+            modified = true;
+            if (node.left == null) {
+                return node.right;
+            }
+            if (node.right == null) {
+                return node.left;
+            }
+            // replace this node with its in-order successor
+            Node<E> successor = leftmost(node.right);
+            successor.right = deleteMin(node.right);
+            successor.left = node.left;
+            node = successor;
+        }
+        return modified ? rebalance(node) : node;
+    }
+
+    private Node<E> deleteMin(Node<E> node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        node.left = deleteMin(node.left);
+        return rebalance(node);
+    }
+
+    private Node<E> rebalance(Node<E> node) {
+        int balance = height(node.left) - height(node.right);
+        if (balance > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (balance < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        node.update();
+        return node;
+    }
+
+    private Node<E> rotateRight(Node<E> node) {
+        Node<E> pivot = node.left;
+        node.left = pivot.right;
+        pivot.right = node;
+        node.update();
+        pivot.update();
+        return pivot;
+    }
+
+    private Node<E> rotateLeft(Node<E> node) {
+        Node<E> pivot = node.right;
+        node.right = pivot.left;
+        pivot.left = node;
+        node.update();
+        pivot.update();
+        return pivot;
+    }
+
+    private static final class Node<E> {
+        final E value;
+        Node<E> left;
+        Node<E> right;
+        int height = 1;
+        int size = 1;
+
+        Node(E value) {
+            this.value = value;
+        }
+
+        void update() {
+            height = Math.max(height(left), height(right)) + 1;
+            size = size(left) + size(right) + 1;
+        }
+    }
+
+    /**
+     * Iterates over the elements in ascending order using an explicit stack of the path to the
+     * next node.
+     */
+    private final class InOrderIterator implements Iterator<E> {
+        private final ArrayDeque<Node<E>> stack = new ArrayDeque<>();
+        private int expectedModCount = modCount;
+        private E lastReturned;
+
+        InOrderIterator() {
+            pushLeft(root);
+        }
+
+        private void pushLeft(Node<E> node) {
+            while (node != null) {
+                stack.push(node);
+                node = node.left;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !stack.isEmpty();
+        }
+
+        @Override
+        public E next() {
+            if (expectedModCount != modCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (stack.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            Node<E> node = stack.pop();
+            pushLeft(node.right);
+            lastReturned = node.value;
+            return lastReturned;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            if (expectedModCount != modCount) {
+                throw new ConcurrentModificationException();
+            }
+            IndexedTreeSet.this.remove(lastReturned);
+            expectedModCount = modCount;
+            // the removal may have rotated the tree, re-seek to the successor of the removed value
+            stack.clear();
+            Node<E> node = root;
+            while (node != null) {
+                if (lastReturned.compareTo(node.value) < 0) {
+                    stack.push(node);
+                    node = node.left;
+                } else {
+                    node = node.right;
+                }
+            }
+            lastReturned = null;
+        }
+    }
+}
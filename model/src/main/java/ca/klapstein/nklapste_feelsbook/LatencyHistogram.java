@@ -0,0 +1,161 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import java.util.Arrays;
+
+
+/**
+ * Histogram of latencies in nanoseconds, bucketed log-linearly in the manner of HdrHistogram.
+ * <p>
+ * Values below {@code SUB_BUCKETS} each have their own bucket. Above, every power of two is split
+ * into {@code SUB_BUCKETS / 2} equally wide buckets, so the bucket of any value is within about
+ * 3% of it, and all of {@code long} fits within a fixed {@code long[]} of {@code BUCKET_COUNT}
+ * counts. Recording a value finds its bucket with a few shifts and increments it, so recording
+ * never allocates, and costs the same no matter how many values were recorded.
+ * <p>
+ * A {@code LatencyHistogram} is thread safe, readers should take a {@code copy} to read a
+ * consistent state.
+ *
+ * @see FeelMetrics#histogram(String)
+ */
+public final class LatencyHistogram {
+    private static final String TAG = "LatencyHistogram";
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+    static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS + 1) * HALF_SUB_BUCKETS;
+
+    private final String name;
+    private final long[] counts = new long[BUCKET_COUNT];
+    private long count;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max;
+
+    LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Get the bucket of a value.
+     *
+     * @param value {@code long} non negative.
+     * @return {@code int}
+     */
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        // shifts the value into [SUB_BUCKETS / 2, SUB_BUCKETS)
+        int shift = Long.SIZE - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * HALF_SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    /**
+     * Get the lowest value within a bucket.
+     *
+     * @param bucket {@code int}
+     * @return {@code long}
+     */
+    static long lowestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / HALF_SUB_BUCKETS - 1;
+        return (long) (bucket - shift * HALF_SUB_BUCKETS) << shift;
+    }
+
+    /**
+     * Get the highest value within a bucket.
+     *
+     * @param bucket {@code int}
+     * @return {@code long}
+     */
+    static long highestValueOf(int bucket) {
+        return bucket + 1 == BUCKET_COUNT ? Long.MAX_VALUE : lowestValueOf(bucket + 1) - 1;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Record a latency, negative latencies are recorded as {@code 0}.
+     *
+     * @param nanos {@code long}
+     */
+    public synchronized void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts[bucketOf(value)]++;
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * @return {@code long} the lowest recorded latency, {@code 0} if none was recorded.
+     */
+    public synchronized long getMin() {
+        return count == 0 ? 0 : min;
+    }
+
+    public synchronized long getMax() {
+        return max;
+    }
+
+    /**
+     * @return {@code double} the exact mean of the recorded latencies, {@code 0} if none was
+     * recorded.
+     */
+    public synchronized double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Get the latency at or below which a percentage of the recorded latencies are.
+     *
+     * @param percentile {@code double} from {@code 0} to {@code 100}.
+     * @return {@code long} the highest value of the bucket holding that latency, but at most the
+     * highest recorded latency, {@code 0} if none was recorded.
+     */
+    public synchronized long getValueAtPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100, percentile) / 100 * count));
+        long seen = 0;
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return Math.min(max, highestValueOf(bucket));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * @return {@code LatencyHistogram} an independent copy of this {@code LatencyHistogram}.
+     */
+    public synchronized LatencyHistogram copy() {
+        LatencyHistogram copy = new LatencyHistogram(name);
+        System.arraycopy(counts, 0, copy.counts, 0, counts.length);
+        copy.count = count;
+        copy.sum = sum;
+        copy.min = min;
+        copy.max = max;
+        return copy;
+    }
+
+    synchronized void reset() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+}
@@ -0,0 +1,386 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+
+/**
+ * Sorted list of {@code Feel}s that only holds a bounded window of consecutive pages in memory.
+ * <p>
+ * Pages are read from a {@code FeelPageSource} on the {@code loadExecutor} and handed back on the
+ * {@code deliveryExecutor} (e.g. the main thread). {@code get} returns {@code null} for positions
+ * not yet loaded and requests their page, and pages next to the window are prefetched as
+ * {@code get} approaches its edges. Only one page is loaded at a time, while it is in flight
+ * further requested positions are gathered into one range loaded afterwards. Once the window
+ * holds more than {@code windowPages} pages the pages furthest from the newly loaded one are
+ * dropped.
+ * <p>
+ * Modifications are applied to the window right away through {@code insert} and {@code remove}.
+ * The {@code loadExecutor} must run loads after all writes of previous modifications reached the
+ * {@code FeelPageSource}, loads requested before a modification are discarded and requested again.
+ * <p>
+ * A {@code PagedFeelList} is not thread safe, it should only be used from the thread of the
+ * {@code deliveryExecutor}.
+ */
+final class PagedFeelList {
+    private static final String TAG = "PagedFeelList";
+
+    private final FeelPageSource source;
+    private final int pageSize;
+    private final int maxWindowSize;
+    private final Executor loadExecutor;
+    private final Executor deliveryExecutor;
+    private final Listener listener;
+
+    private final ArrayList<Feel> window = new ArrayList<>();
+    private int windowStart;
+    private int count;
+
+    /**
+     * Incremented by every modification, loads requested under an older generation are stale.
+     */
+    private int generation;
+    private boolean loading;
+    /**
+     * Range of positions requested through {@code get} that are not loaded yet, or {@code -1}.
+     */
+    private int missLow = -1;
+    private int missHigh = -1;
+
+    /**
+     * Construct a {@code PagedFeelList}.
+     *
+     * @param source           {@code FeelPageSource} to read pages from.
+     * @param pageSize         {@code int} the number of {@code Feel}s read at once.
+     * @param windowPages      {@code int} the maximum number of pages held in memory.
+     * @param loadExecutor     {@code Executor} reading pages from the {@code source}.
+     * @param deliveryExecutor {@code Executor} applying read pages to this list.
+     * @param listener         {@code Listener} notified on the {@code deliveryExecutor}.
+     */
+    PagedFeelList(FeelPageSource source, int pageSize, int windowPages, Executor loadExecutor,
+                  Executor deliveryExecutor, Listener listener) {
+        if (pageSize <= 0 || windowPages < 2) {
+            throw new IllegalArgumentException("Invalid page size " + pageSize + " or window pages " + windowPages);
+        }
+        this.source = source;
+        this.pageSize = pageSize;
+        this.maxWindowSize = pageSize * windowPages;
+        this.loadExecutor = loadExecutor;
+        this.deliveryExecutor = deliveryExecutor;
+        this.listener = listener;
+    }
+
+    /**
+     * Get the total number of {@code Feel}s, including those not loaded.
+     *
+     * @return {@code int}
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * Get the {@code Feel} at a position, requesting its page if it is not loaded.
+     *
+     * @param position {@code int}
+     * @return {@code Feel} or {@code null} if it is not loaded yet.
+     */
+    Feel get(int position) {
+        Feel feel = peek(position);
+        if (feel == null) {
+            if (position >= 0 && position < count) {
+                addMiss(position);
+                loadMisses();
+            }
+        } else if (!loading) {
+            // prefetch the next page once within half a page of the edge of the window
+            int windowEnd = windowStart + window.size();
+            if (position - windowStart < pageSize / 2 && windowStart > 0) {
+                load(windowStart - 1);
+            } else if (windowEnd - position <= pageSize / 2 && windowEnd < count) {
+                load(windowEnd);
+            }
+        }
+        return feel;
+    }
+
+    /**
+     * Get the {@code Feel} at a position without requesting any page.
+     *
+     * @param position {@code int}
+     * @return {@code Feel} or {@code null} if it is not loaded.
+     */
+    Feel peek(int position) {
+        int index = position - windowStart;
+        return index >= 0 && index < window.size() ? window.get(index) : null;
+    }
+
+    /**
+     * Check whether every {@code Feel} is within the window.
+     *
+     * @return {@code boolean}
+     */
+    boolean isComplete() {
+        return windowStart == 0 && window.size() == count;
+    }
+
+    /**
+     * Get a copy of the loaded {@code Feel}s, which is all {@code Feel}s if {@code isComplete}.
+     *
+     * @return {@code List<Feel>}
+     */
+    List<Feel> getLoadedFeels() {
+        return new ArrayList<>(window);
+    }
+
+    int getWindowStart() {
+        return windowStart;
+    }
+
+    int getWindowSize() {
+        return window.size();
+    }
+
+    /**
+     * Discard the window and load the first page again.
+     */
+    void refresh() {
+        generation++;
+        window.clear();
+        windowStart = 0;
+        missLow = 0;
+        missHigh = 0;
+        loadMisses();
+    }
+
+    /**
+     * Insert a {@code Feel} that was written to the {@code FeelPageSource}.
+     * <p>
+     * Outside of the window the exact position is not known, the {@code Feel} is then reported at
+     * the edge of the window, which is indistinguishable for the unloaded rows it is placed among.
+     * Inserting into a full window drops its last {@code Feel}.
+     *
+     * @param feel {@code Feel}
+     * @return {@code int} the position the {@code Feel} was inserted at, or {@code -1} if it is
+     * already within the window.
+     */
+    int insert(Feel feel) {
+        int index = Collections.binarySearch(window, feel);
+        if (index >= 0) {
+            return -1;
+        }
+        index = -index - 1;
+        generation++;
+        count++;
+        boolean knownBefore = index > 0 || (windowStart == 0 && !window.isEmpty());
+        boolean knownAfter = index < window.size() || windowStart + window.size() == count - 1;
+        if ((knownBefore && knownAfter) || (windowStart == 0 && count == 1)) {
+            window.add(index, feel);
+            if (window.size() > maxWindowSize) {
+                // keep the window bounded under a run of inserts, such as an import
+                window.remove(window.size() - 1);
+            }
+            return windowStart + index;
+        }
+        if (index == 0 && !window.isEmpty()) {
+            // somewhere before the window
+            windowStart++;
+            return windowStart - 1;
+        }
+        return windowStart + window.size();
+    }
+
+    /**
+     * Find the {@code Feel} of an id within the window.
+     * <p>
+     * The window is at most {@code windowPages} pages, so this is bounded no matter how large the
+     * {@code FeelPageSource} is.
+     *
+     * @param id {@code long}
+     * @return {@code Feel} or {@code null} if it is not within the window.
+     */
+    Feel findById(long id) {
+        for (int i = 0; i < window.size(); i++) {
+            if (window.get(i).getId() == id) {
+                return window.get(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Remove a {@code Feel} that was removed from the {@code FeelPageSource}.
+     * <p>
+     * The {@code Feel} must have been within the {@code FeelPageSource}, but need not be within the
+     * window. If it sorts before the window the window shifts down by one, and if it sorts after it
+     * only the count shrinks, as {@code insert} does.
+     *
+     * @param feel {@code Feel}
+     * @return {@code int} the position the {@code Feel} was removed from, or the position of the
+     * window edge it was removed beyond, or {@code -1} if it sorts within the window but is not
+     * within it.
+     */
+    int remove(Feel feel) {
+        int index = Collections.binarySearch(window, feel);
+        if (index >= 0) {
+            generation++;
+            count--;
+            window.remove(index);
+            return windowStart + index;
+        }
+        index = -index - 1;
+        if (index == 0 && windowStart > 0) {
+            // somewhere before the window
+            generation++;
+            count--;
+            windowStart--;
+            return windowStart;
+        }
+        if (index == window.size() && windowStart + window.size() < count) {
+            // somewhere after the window
+            generation++;
+            count--;
+            return windowStart + window.size();
+        }
+        return -1;
+    }
+
+    /**
+     * Add a position to the range of missed positions, the range is restarted at the position
+     * once it would no longer fit within the window.
+     */
+    private void addMiss(int position) {
+        if (missLow < 0 || Math.max(missHigh, position) - Math.min(missLow, position) >= maxWindowSize - pageSize) {
+            missLow = position;
+            missHigh = position;
+        } else {
+            missLow = Math.min(missLow, position);
+            missHigh = Math.max(missHigh, position);
+        }
+    }
+
+    /**
+     * Load the first missed position not within the window, if no load is in flight.
+     */
+    private void loadMisses() {
+        if (loading || missLow < 0) {
+            return;
+        }
+        int windowEnd = windowStart + window.size();
+        if (window.isEmpty() || missLow < windowStart) {
+            load(missLow);
+        } else if (missHigh >= windowEnd) {
+            load(Math.max(missLow, windowEnd));
+        } else {
+            missLow = -1;
+            missHigh = -1;
+        }
+    }
+
+    /**
+     * Load the page holding a position, extending the window if the position is next to it.
+     */
+    private void load(int position) {
+        final int start;
+        final int length;
+        final boolean append;
+        int windowEnd = windowStart + window.size();
+        if (!window.isEmpty() && position >= windowEnd && position < windowEnd + pageSize) {
+            start = windowEnd;
+            length = pageSize;
+            append = true;
+        } else if (!window.isEmpty() && position < windowStart && position >= windowStart - pageSize) {
+            start = Math.max(0, windowStart - pageSize);
+            length = windowStart - start;
+            append = false;
+        } else {
+            // not next to the window, start a new window at the page of the position
+            start = position - position % pageSize;
+            length = pageSize;
+            append = true;
+        }
+        final int requestGeneration = generation;
+        loading = true;
+        loadExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<Feel> feels = source.loadRange(start, length);
+                final int sourceCount = source.getCount();
+                deliveryExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        onPageLoaded(requestGeneration, start, append, feels, sourceCount);
+                    }
+                });
+            }
+        });
+    }
+
+    private void onPageLoaded(int requestGeneration, int start, boolean append, List<Feel> feels, int sourceCount) {
+        loading = false;
+        if (requestGeneration != generation) {
+            // a modification happened since the request, its positions may be off
+            loadMisses();
+            return;
+        }
+        int windowEnd = windowStart + window.size();
+        if (!window.isEmpty() && append && start == windowEnd) {
+            window.addAll(feels);
+            if (window.size() > maxWindowSize) {
+                int trimmed = window.size() - maxWindowSize;
+                window.subList(0, trimmed).clear();
+                windowStart += trimmed;
+            }
+        } else if (!window.isEmpty() && !append && start + feels.size() == windowStart) {
+            window.addAll(0, feels);
+            windowStart = start;
+            if (window.size() > maxWindowSize) {
+                window.subList(maxWindowSize, window.size()).clear();
+            }
+        } else {
+            window.clear();
+            window.addAll(feels);
+            windowStart = start;
+        }
+        if (sourceCount != count) {
+            count = sourceCount;
+            if (windowStart + window.size() > count) {
+                window.subList(Math.max(0, count - windowStart), window.size()).clear();
+            }
+            listener.onCountChanged(count);
+        } else if (!feels.isEmpty()) {
+            listener.onRangeLoaded(start, feels.size());
+        }
+        if (missHigh >= count) {
+            missHigh = count - 1;
+            if (missLow > missHigh) {
+                missLow = -1;
+                missHigh = -1;
+            }
+        }
+        loadMisses();
+    }
+
+    /**
+     * Interface for being notified of pages loaded into a {@code PagedFeelList}.
+     */
+    interface Listener {
+        /**
+         * Called after a range of {@code Feel}s was loaded.
+         *
+         * @param position {@code int} the position of the first loaded {@code Feel}.
+         * @param count    {@code int} the number of loaded {@code Feel}s.
+         */
+        void onRangeLoaded(int position, int count);
+
+        /**
+         * Called after the total number of {@code Feel}s was corrected from the
+         * {@code FeelPageSource}, any position may have changed.
+         *
+         * @param count {@code int} the new total number of {@code Feel}s.
+         */
+        void onCountChanged(int count);
+    }
+}
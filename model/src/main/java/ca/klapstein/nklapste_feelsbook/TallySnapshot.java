@@ -0,0 +1,75 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import java.util.Arrays;
+
+
+/**
+ * Immutable snapshot of the tally of each {@code Feeling} within a {@code FeelTreeSet}.
+ * <p>
+ * A {@code FeelTreeSet} caches its latest {@code TallySnapshot} until it is next modified, thus,
+ * reading the tallies repeatedly (e.g. when redrawing the {@code StatsTab}) does not allocate.
+ *
+ * @see FeelTreeSet#getTallySnapshot()
+ */
+public final class TallySnapshot {
+    private static final String TAG = "TallySnapshot";
+
+    private final int[] tallies;
+    private final int total;
+
+    /**
+     * Construct a {@code TallySnapshot}.
+     *
+     * @param tallies {@code int[]} tallies indexed by {@code Feeling.ordinal()}, this array is
+     *                copied.
+     */
+    TallySnapshot(int[] tallies) {
+        this.tallies = Arrays.copyOf(tallies, tallies.length);
+        int sum = 0;
+        for (int tally : tallies) {
+            sum += tally;
+        }
+        this.total = sum;
+    }
+
+    /**
+     * Get the tally of a {@code Feeling}.
+     *
+     * @param feeling {@code Feeling}
+     * @return {@code int}
+     */
+    public int get(Feeling feeling) {
+        return tallies[feeling.ordinal()];
+    }
+
+    /**
+     * Get the sum of the tallies of all {@code Feeling}s.
+     *
+     * @return {@code int}
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof TallySnapshot && Arrays.equals(tallies, ((TallySnapshot) obj).tallies);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(tallies);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder stringBuilder = new StringBuilder("TallySnapshot{");
+        for (Feeling feeling : Feeling.values()) {
+            if (feeling.ordinal() > 0) {
+                stringBuilder.append(", ");
+            }
+            stringBuilder.append(feeling).append('=').append(tallies[feeling.ordinal()]);
+        }
+        return stringBuilder.append('}').toString();
+    }
+}
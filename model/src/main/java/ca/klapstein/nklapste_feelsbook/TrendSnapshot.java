@@ -0,0 +1,93 @@
+package ca.klapstein.nklapste_feelsbook;
+
+
+/**
+ * Immutable snapshot of the {@code FeelTrends} of each {@code Feeling} as of one day.
+ * <p>
+ * The {@code FeelTrends} of a {@code FeelTreeSet} are computed off the main thread, as they may
+ * need to be rebuilt from all {@code Feel}s, thus, only this snapshot of the values displayed by
+ * the {@code StatsTab} is handed back to the main thread.
+ *
+ * @see FeelTrends#getSnapshot(long)
+ */
+public final class TrendSnapshot {
+    private static final String TAG = "TrendSnapshot";
+
+    /**
+     * The number of days of the shorter moving average.
+     */
+    public static final int WEEK_DAYS = 7;
+    /**
+     * The number of days of the longer moving average.
+     */
+    public static final int MONTH_DAYS = 30;
+
+    private final int[] currentStreaks;
+    private final int[] longestStreaks;
+    private final double[] weekAverages;
+    private final double[] monthAverages;
+    private final double[] weekOverWeekChanges;
+
+    /**
+     * Construct a {@code TrendSnapshot} by reading each value from a {@code FeelTrends}.
+     *
+     * @param feelTrends {@code FeelTrends}
+     * @param nowMillis  {@code long} epoch milliseconds of the day of the snapshot.
+     */
+    TrendSnapshot(FeelTrends feelTrends, long nowMillis) {
+        int feelings = Feeling.values().length;
+        currentStreaks = new int[feelings];
+        longestStreaks = new int[feelings];
+        weekAverages = new double[feelings];
+        monthAverages = new double[feelings];
+        weekOverWeekChanges = new double[feelings];
+        for (Feeling feeling : Feeling.values()) {
+            int i = feeling.ordinal();
+            currentStreaks[i] = feelTrends.getCurrentStreak(feeling, nowMillis);
+            longestStreaks[i] = feelTrends.getLongestStreak(feeling);
+            weekAverages[i] = feelTrends.getMovingAverage(feeling, nowMillis, WEEK_DAYS);
+            monthAverages[i] = feelTrends.getMovingAverage(feeling, nowMillis, MONTH_DAYS);
+            weekOverWeekChanges[i] = feelTrends.getWeekOverWeekChange(feeling, nowMillis);
+        }
+    }
+
+    /**
+     * @param feeling {@code Feeling}
+     * @return {@code int} see {@code FeelTrends.getCurrentStreak}.
+     */
+    public int getCurrentStreak(Feeling feeling) {
+        return currentStreaks[feeling.ordinal()];
+    }
+
+    /**
+     * @param feeling {@code Feeling}
+     * @return {@code int} see {@code FeelTrends.getLongestStreak}.
+     */
+    public int getLongestStreak(Feeling feeling) {
+        return longestStreaks[feeling.ordinal()];
+    }
+
+    /**
+     * @param feeling {@code Feeling}
+     * @return {@code double} the moving average over the last {@code WEEK_DAYS} days.
+     */
+    public double getWeekAverage(Feeling feeling) {
+        return weekAverages[feeling.ordinal()];
+    }
+
+    /**
+     * @param feeling {@code Feeling}
+     * @return {@code double} the moving average over the last {@code MONTH_DAYS} days.
+     */
+    public double getMonthAverage(Feeling feeling) {
+        return monthAverages[feeling.ordinal()];
+    }
+
+    /**
+     * @param feeling {@code Feeling}
+     * @return {@code double} see {@code FeelTrends.getWeekOverWeekChange}.
+     */
+    public double getWeekOverWeekChange(Feeling feeling) {
+        return weekOverWeekChanges[feeling.ordinal()];
+    }
+}
@@ -0,0 +1,154 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.TreeSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Multi-threaded stress test checking the size and tally invariants of
+ * {@code ConcurrentFeelTreeSet} under concurrent writers and readers.
+ */
+public class ConcurrentFeelTreeSetTest {
+    private static final int WRITERS = 4;
+    private static final int OPERATIONS = 50000;
+    private static final int FEELS_PER_WRITER = 500;
+
+    private static Feel writerFeel(int writer, int i) {
+        Feeling feeling = Feeling.values()[(writer + i) % Feeling.values().length];
+        // interleave the dates of different writers so they contend on the same parts of the tree
+        return new Feel(feeling, "writer " + writer, new Date(1538000000000L + i * WRITERS + writer));
+    }
+
+    @Test
+    public void talliesStayConsistentWithMembership() throws InterruptedException {
+        final ConcurrentFeelTreeSet feelTreeSet = new ConcurrentFeelTreeSet();
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        // each writer owns a disjoint set of feels, so the final contents are known exactly, Feel
+        // only defines compareTo so the expected sets are TreeSets
+        final List<Set<Feel>> expected = new ArrayList<>();
+
+        List<Thread> writers = new ArrayList<>();
+        for (int w = 0; w < WRITERS; w++) {
+            final int writer = w;
+            final Set<Feel> owned = new TreeSet<>();
+            expected.add(owned);
+            writers.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Random random = new Random(writer);
+                    try {
+                        start.await();
+                        for (int i = 0; i < OPERATIONS; i++) {
+                            Feel feel = writerFeel(writer, random.nextInt(FEELS_PER_WRITER));
+                            switch (random.nextInt(3)) {
+                                case 0:
+                                    assertEquals(owned.add(feel), feelTreeSet.add(feel));
+                                    break;
+                                case 1:
+                                    assertEquals(owned.remove(feel), feelTreeSet.remove(feel));
+                                    break;
+                                default:
+                                    Feel newFeel = writerFeel(writer, random.nextInt(FEELS_PER_WRITER));
+                                    if (owned.remove(feel)) {
+                                        owned.add(newFeel);
+                                        assertTrue(feelTreeSet.replace(feel, newFeel));
+                                    } else {
+                                        assertFalse(feelTreeSet.replace(feel, newFeel));
+                                    }
+                            }
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            }));
+        }
+
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    start.await();
+                    while (writing.get()) {
+                        String violation = feelTreeSet.read(new ConcurrentFeelTreeSet.Reader<String>() {
+                            @Override
+                            public String read(FeelTreeSet feelTreeSet) {
+                                return checkInvariants(feelTreeSet);
+                            }
+                        });
+                        assertNull(violation, violation);
+                        Feel feel = feelTreeSet.get(0);
+                        if (feel != null) {
+                            feelTreeSet.indexOf(feel);
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }
+        });
+
+        for (Thread writer : writers) {
+            writer.start();
+        }
+        reader.start();
+        start.countDown();
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        writing.set(false);
+        reader.join();
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+
+        Set<Feel> all = new TreeSet<>();
+        for (Set<Feel> owned : expected) {
+            all.addAll(owned);
+        }
+        assertEquals(new ArrayList<>(all), feelTreeSet.toList());
+        assertEquals(all.size(), feelTreeSet.size());
+        assertNull(feelTreeSet.read(new ConcurrentFeelTreeSet.Reader<String>() {
+            @Override
+            public String read(FeelTreeSet feelTreeSet) {
+                return checkInvariants(feelTreeSet);
+            }
+        }));
+    }
+
+    /**
+     * Check that the tallies of a {@code FeelTreeSet} match its size and contents.
+     *
+     * @return {@code String} a description of the violated invariant or {@code null}.
+     */
+    private static String checkInvariants(FeelTreeSet feelTreeSet) {
+        int[] counts = new int[Feeling.values().length];
+        int size = 0;
+        for (Feel feel : feelTreeSet) {
+            counts[feel.getFeeling().ordinal()]++;
+            size++;
+        }
+        TallySnapshot tallySnapshot = feelTreeSet.getTallySnapshot();
+        if (size != feelTreeSet.size() || tallySnapshot.getTotal() != size) {
+            return "size " + feelTreeSet.size() + " iterated " + size + " tallied " + tallySnapshot.getTotal();
+        }
+        for (Feeling feeling : Feeling.values()) {
+            if (tallySnapshot.get(feeling) != counts[feeling.ordinal()]) {
+                return feeling + " tallied " + tallySnapshot.get(feeling) + " counted " + counts[feeling.ordinal()];
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,127 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM unit tests comparing {@code FeelCommentIndex} searches against brute force matching over
+ * the {@code FeelTreeSet}.
+ */
+public class FeelCommentIndexTest {
+    private static final String[] WORDS = {"happy", "happier", "Sad", "sadder", "été", "Étoile", "12", "123", "x"};
+    private static final String[] QUERIES = {"hap", "happ sad", "HAPPIER", "été", "ét 12", "1", "123 x", "sa!x", "zzz", "  ", "happy happy"};
+
+    private static Feel randomFeel(Random random) {
+        StringBuilder comment = new StringBuilder();
+        int wordCount = random.nextInt(4);
+        for (int i = 0; i < wordCount; i++) {
+            comment.append(WORDS[random.nextInt(WORDS.length)]).append(i % 2 == 0 ? " " : ", ");
+        }
+        // few distinct dates so ties are broken by the feeling and comment
+        return new Feel(Feeling.values()[random.nextInt(Feeling.values().length)], comment.toString(),
+                new Date(random.nextInt(50) * 1000L));
+    }
+
+    private static List<Feel> bruteForceSearch(FeelTreeSet feelTreeSet, String query, int limit) {
+        String[] queryWords = FeelCommentIndex.uniqueWords(query);
+        List<Feel> found = new ArrayList<>();
+        if (queryWords.length == 0) {
+            return found;
+        }
+        for (Feel feel : feelTreeSet) {
+            String[] commentWords = FeelCommentIndex.uniqueWords(feel.getComment());
+            boolean matches = true;
+            for (String queryWord : queryWords) {
+                boolean prefixed = false;
+                for (String commentWord : commentWords) {
+                    prefixed |= commentWord.startsWith(queryWord);
+                }
+                matches &= prefixed;
+            }
+            if (matches && found.size() < limit) {
+                found.add(feel);
+            }
+        }
+        return found;
+    }
+
+    private static void assertSearchesMatch(FeelTreeSet feelTreeSet) {
+        for (String query : QUERIES) {
+            for (int limit : new int[]{1, 7, Integer.MAX_VALUE}) {
+                List<Feel> expected = bruteForceSearch(feelTreeSet, query, limit);
+                List<Feel> found = feelTreeSet.getCommentIndex().search(query, limit);
+                assertEquals(query, expected.size(), found.size());
+                for (int i = 0; i < expected.size(); i++) {
+                    assertEquals(query, expected.get(i), found.get(i));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void uniqueWordsAreLowerCaseAndDistinct() {
+        assertArrayEquals(new String[]{"1st", "a", "the", "été"},
+                FeelCommentIndex.uniqueWords("The 1st été, a THE!"));
+        assertEquals(0, FeelCommentIndex.uniqueWords(" ,.! ").length);
+    }
+
+    /**
+     * The index is kept up to date through adds, removes, renumbering, and clearing of the
+     * {@code FeelTreeSet}.
+     */
+    @Test
+    public void searchesMatchBruteForce() {
+        Random random = new Random(14);
+        FeelTreeSet feelTreeSet = new FeelTreeSet();
+        for (int i = 0; i < 300; i++) {
+            feelTreeSet.add(randomFeel(random));
+        }
+        // built from the existing Feels on first use
+        assertSearchesMatch(feelTreeSet);
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 400; i++) {
+                if (feelTreeSet.isEmpty() || random.nextInt(3) == 0) {
+                    feelTreeSet.add(randomFeel(random));
+                } else {
+                    // an equal but not identical Feel, as the FeelRepository removes
+                    Feel feel = feelTreeSet.get(random.nextInt(feelTreeSet.size()));
+                    assertTrue(feelTreeSet.remove(new Feel(feel.getId(), feel.getFeeling(), feel.getComment(), feel.getDate())));
+                }
+            }
+            assertSearchesMatch(feelTreeSet);
+        }
+        feelTreeSet.clear();
+        assertEquals(0, feelTreeSet.getCommentIndex().size());
+        assertSearchesMatch(feelTreeSet);
+    }
+
+    /**
+     * An index built from a copy of the comments is only installed if the {@code FeelTreeSet}
+     * was not modified while it was built.
+     */
+    @Test
+    public void buildFromCopyIsDroppedAfterModification() {
+        Random random = new Random(16);
+        FeelTreeSet feelTreeSet = new FeelTreeSet();
+        for (int i = 0; i < 300; i++) {
+            feelTreeSet.add(randomFeel(random));
+        }
+        FeelTreeSet.CommentIndexBuild build = feelTreeSet.copyForCommentIndex();
+        feelTreeSet.add(new Feel(Feeling.Joy, "added while building", new Date(0)));
+        build.run();
+        assertFalse(feelTreeSet.finishCommentIndex(build));
+
+        build = feelTreeSet.copyForCommentIndex();
+        build.run();
+        assertTrue(feelTreeSet.finishCommentIndex(build));
+        assertNull(feelTreeSet.copyForCommentIndex());
+        assertEquals(1, feelTreeSet.getCommentIndex().search("building", 10).size());
+        assertSearchesMatch(feelTreeSet);
+    }
+}
@@ -0,0 +1,119 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import org.junit.Test;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM unit tests comparing {@code FeelDateFormat} against {@code SimpleDateFormat}.
+ */
+public class FeelDateFormatTest {
+    private static final TimeZone TIME_ZONE = TimeZone.getTimeZone("America/Edmonton");
+    private static final long SPAN = 200L * 365 * 24 * 60 * 60 * 1000;
+
+    private static SimpleDateFormat simpleDateFormat() {
+        SimpleDateFormat simpleDateFormat = new SimpleDateFormat(FeelDateFormat.PATTERN, Locale.US);
+        simpleDateFormat.setTimeZone(TIME_ZONE);
+        return simpleDateFormat;
+    }
+
+    private static long randomMillis(Random random) {
+        // 1900 to 2100
+        return (long) (random.nextDouble() * SPAN) - SPAN / 3;
+    }
+
+    @Test
+    public void formatMatchesSimpleDateFormat() {
+        Random random = new Random(5);
+        SimpleDateFormat simpleDateFormat = simpleDateFormat();
+        FeelDateFormat feelDateFormat = new FeelDateFormat(TIME_ZONE);
+        for (int i = 0; i < 100000; i++) {
+            long timeMillis = randomMillis(random);
+            assertEquals(simpleDateFormat.format(new Date(timeMillis)), feelDateFormat.format(timeMillis));
+        }
+    }
+
+    @Test
+    public void parseMatchesSimpleDateFormat() throws ParseException {
+        Random random = new Random(6);
+        SimpleDateFormat simpleDateFormat = simpleDateFormat();
+        FeelDateFormat feelDateFormat = new FeelDateFormat(TIME_ZONE);
+        List<String> labels = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) {
+            labels.add(simpleDateFormat.format(new Date(randomMillis(random))));
+        }
+        // skipped and repeated local times around daylight saving transitions
+        labels.add("2018-03-11T02:30:00");
+        labels.add("2018-11-04T01:30:00");
+        for (String label : labels) {
+            assertEquals(label, simpleDateFormat.parse(label).getTime(), feelDateFormat.parse(label));
+        }
+    }
+
+    @Test
+    public void cachedLabelsAreReused() {
+        FeelDateFormat feelDateFormat = new FeelDateFormat(TIME_ZONE);
+        String label = feelDateFormat.format(1538000000123L);
+        assertSame(label, feelDateFormat.format(1538000000999L));
+        assertEquals("2018-09-26T16:13:21", feelDateFormat.format(1538000001000L));
+    }
+
+    @Test
+    public void malformedTextIsInvalid() {
+        FeelDateFormat feelDateFormat = new FeelDateFormat(TIME_ZONE);
+        String[] malformed = {
+                null, "", "2018-09-26", "2018-09-26 16:13:20", "2018-09-26T16:13:2x",
+                "2018-13-01T00:00:00", "2018-02-29T00:00:00", "2018-09-26T24:00:00", "2018-09-26T16:13:20Z",
+        };
+        for (String text : malformed) {
+            assertEquals(text, FeelDateFormat.INVALID, feelDateFormat.parse(text));
+            assertNull(text, feelDateFormat.parseDate(text));
+        }
+        assertNotEquals(FeelDateFormat.INVALID, feelDateFormat.parse("2016-02-29T00:00:00"));
+    }
+
+    @Test
+    public void concurrentUseIsSafe() throws Exception {
+        final FeelDateFormat feelDateFormat = new FeelDateFormat(TIME_ZONE);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                final int seed = t;
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws ParseException {
+                        Random random = new Random(seed);
+                        SimpleDateFormat simpleDateFormat = simpleDateFormat();
+                        for (int i = 0; i < 50000; i++) {
+                            // a narrow range so that the threads contend on the same cache entries
+                            long timeMillis = 1538000000000L + random.nextInt(5000) * 1000L;
+                            String label = feelDateFormat.format(timeMillis);
+                            assertEquals(simpleDateFormat.format(new Date(timeMillis)), label);
+                            assertEquals(timeMillis, feelDateFormat.parse(label));
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
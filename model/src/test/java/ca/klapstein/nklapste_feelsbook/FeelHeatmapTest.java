@@ -0,0 +1,83 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM unit tests comparing the {@code FeelHeatmap} of a {@code FeelTreeSet} against brute force
+ * counting with {@code Calendar}.
+ */
+public class FeelHeatmapTest {
+    private static final long SPAN = 6L * 365 * 24 * 60 * 60 * 1000;
+
+    private static Feel randomFeel(Random random, long id) {
+        Feeling feeling = Feeling.values()[random.nextInt(Feeling.values().length)];
+        // on both sides of the epoch and across daylight saving time changes
+        return new Feel(id, feeling, "", new Date((long) (random.nextDouble() * SPAN) - SPAN / 2));
+    }
+
+    private static void assertMatchesBruteForce(FeelTreeSet feelTreeSet) {
+        int[][][] expected = new int[Feeling.values().length][FeelHeatmap.DAYS][FeelHeatmap.HOURS];
+        Calendar calendar = Calendar.getInstance(TimeZone.getDefault());
+        for (Feel feel : feelTreeSet) {
+            calendar.setTimeInMillis(feel.getDate().getTime());
+            int day = (calendar.get(Calendar.DAY_OF_WEEK) + 5) % 7;
+            expected[feel.getFeeling().ordinal()][day][calendar.get(Calendar.HOUR_OF_DAY)]++;
+        }
+        FeelHeatmap feelHeatmap = feelTreeSet.getFeelHeatmap();
+        for (Feeling feeling : Feeling.values()) {
+            int max = 0;
+            for (int day = 0; day < FeelHeatmap.DAYS; day++) {
+                for (int hour = 0; hour < FeelHeatmap.HOURS; hour++) {
+                    int count = expected[feeling.ordinal()][day][hour];
+                    assertEquals(feeling + " " + day + " " + hour, count, feelHeatmap.getCount(feeling, day, hour));
+                    max = Math.max(max, count);
+                }
+            }
+            assertEquals(max, feelHeatmap.getMaxCount(feeling));
+        }
+    }
+
+    @Test
+    public void feelTreeSetKeepsHeatmap() {
+        TimeZone defaultTimeZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("America/Edmonton"));
+        try {
+            Random random = new Random(13);
+            FeelTreeSet feelTreeSet = new FeelTreeSet();
+            for (int i = 0; i < 2000; i++) {
+                feelTreeSet.add(randomFeel(random, i));
+            }
+            // edits are a remove and an add
+            for (int i = 0; i < 500; i++) {
+                Feel oldFeel = feelTreeSet.get(random.nextInt(feelTreeSet.size()));
+                feelTreeSet.remove(oldFeel);
+                feelTreeSet.add(randomFeel(random, oldFeel.getId()));
+            }
+            assertMatchesBruteForce(feelTreeSet);
+
+            List<Feel> batch = new ArrayList<>();
+            for (int i = 0; i < 3000; i++) {
+                batch.add(randomFeel(random, 10000 + i));
+            }
+            feelTreeSet.addAll(batch);
+            feelTreeSet.removeAll(batch.subList(0, 1000));
+            assertMatchesBruteForce(feelTreeSet);
+
+            FeelHeatmap copy = feelTreeSet.getFeelHeatmap().copy();
+            feelTreeSet.clear();
+            assertEquals(0, feelTreeSet.getFeelHeatmap().getMaxCount(Feeling.Joy));
+            assertNotEquals(0, copy.getMaxCount(Feeling.Joy));
+        } finally {
+            TimeZone.setDefault(defaultTimeZone);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM unit tests streaming generated CSV and JSON files through {@code FeelExporter} and
+ * {@code FeelImporter}.
+ */
+public class FeelImporterTest {
+    private static final String[] COMMENTS = {"", "plain", "with, comma", "with \"quotes\"", "\"", "line\nbreak",
+            "crlf\r\nbreak", "lone\rreturn", " padded ", "été ☃ 😀", "id,date,feeling,comment"};
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static FeelTreeSet randomFeels(int count) {
+        Random random = new Random(count);
+        List<Feel> feels = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            feels.add(new Feel(i, Feeling.values()[random.nextInt(Feeling.values().length)],
+                    COMMENTS[random.nextInt(COMMENTS.length)] + (random.nextBoolean() ? i : ""),
+                    new Date(1538000000000L + random.nextInt(1000000) * 1000L)));
+        }
+        FeelTreeSet feelTreeSet = new FeelTreeSet();
+        feelTreeSet.addAll(feels);
+        return feelTreeSet;
+    }
+
+    private static List<Feel> importFeels(InputStream in, final long totalBytes) throws IOException {
+        final List<Feel> imported = new ArrayList<>();
+        final long[] lastBytesRead = {0};
+        int count = FeelImporter.importFeels(in, totalBytes, 1000, new FeelImporter.Listener() {
+            @Override
+            public void onBatch(List<Feel> feels) {
+                assertTrue(feels.size() <= 1000);
+                imported.addAll(feels);
+            }
+
+            @Override
+            public void onProgress(long bytesRead, long total) {
+                assertTrue(bytesRead >= lastBytesRead[0]);
+                assertEquals(totalBytes, total);
+                lastBytesRead[0] = bytesRead;
+            }
+        });
+        assertEquals(imported.size(), count);
+        if (totalBytes >= 0) {
+            assertEquals(totalBytes, lastBytesRead[0]);
+        }
+        return imported;
+    }
+
+    private static List<Feel> importString(String text) throws IOException {
+        byte[] bytes = text.getBytes(FeelImporter.CHARSET);
+        return importFeels(new ByteArrayInputStream(bytes), bytes.length);
+    }
+
+    private static void assertSameFields(Feel expected, Feel actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getDate(), actual.getDate());
+        assertEquals(expected.getFeeling(), actual.getFeeling());
+        assertEquals(expected.getComment(), actual.getComment());
+    }
+
+    private void assertRoundTrips(FeelFileFormat format) throws IOException {
+        FeelTreeSet feelTreeSet = randomFeels(20000);
+        File file = temporaryFolder.newFile("feels." + format.name());
+        final int[] lastWritten = {0};
+        try (OutputStream out = new FileOutputStream(file)) {
+            assertEquals(feelTreeSet.size(), FeelExporter.exportFeels(feelTreeSet, format, out,
+                    new FeelExporter.Listener() {
+                        @Override
+                        public void onProgress(int written, int total) {
+                            assertTrue(written > lastWritten[0]);
+                            lastWritten[0] = written;
+                        }
+                    }));
+        }
+        assertEquals(feelTreeSet.size(), lastWritten[0]);
+
+        List<Feel> imported;
+        try (InputStream in = new FileInputStream(file)) {
+            imported = importFeels(in, file.length());
+        }
+        List<Feel> expected = new ArrayList<>(feelTreeSet);
+        assertEquals(expected.size(), imported.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSameFields(expected.get(i), imported.get(i));
+        }
+    }
+
+    @Test
+    public void csvRoundTrips() throws IOException {
+        assertRoundTrips(FeelFileFormat.CSV);
+    }
+
+    @Test
+    public void jsonRoundTrips() throws IOException {
+        assertRoundTrips(FeelFileFormat.JSON);
+    }
+
+    /**
+     * Hand written CSV may have a byte order mark, CRLF line ends, blank lines, reordered or
+     * extra columns, feelings in any case or as ordinals, date labels and no ids.
+     */
+    @Test
+    public void readsHandWrittenCsv() throws IOException {
+        List<Feel> feels = importString("\uFEFFFeeling, Date ,Note,Comment\r\n"
+                + "joy,1538000000000,x,\"quoted\r\nline\"\r\n"
+                + "\r\n"
+                + "3," + Feel.dateFormat.format(new Date(1538000000000L)) + ",,\"a \"\"b\"\"\"\r\n"
+                + "SADNESS,-5,,");
+        assertEquals(3, feels.size());
+        assertEquals(Feeling.Joy, feels.get(0).getFeeling());
+        assertEquals(1538000000000L, feels.get(0).getDate().getTime());
+        assertEquals("quoted\r\nline", feels.get(0).getComment());
+        assertEquals(Feeling.values()[3], feels.get(1).getFeeling());
+        assertEquals(1538000000000L, feels.get(1).getDate().getTime());
+        assertEquals("a \"b\"", feels.get(1).getComment());
+        assertEquals(Feeling.Sadness, feels.get(2).getFeeling());
+        assertEquals(-5, feels.get(2).getDate().getTime());
+        assertEquals("", feels.get(2).getComment());
+        assertNotEquals(feels.get(0).getId(), feels.get(1).getId());
+    }
+
+    @Test
+    public void readsHeaderlessCsv() throws IOException {
+        List<Feel> feels = importString("7,1538000000000,Fear,no header\n8,1538000001000,Love,");
+        assertEquals(2, feels.size());
+        assertSameFields(new Feel(7, Feeling.Fear, "no header", new Date(1538000000000L)), feels.get(0));
+        assertSameFields(new Feel(8, Feeling.Love, "", new Date(1538000001000L)), feels.get(1));
+    }
+
+    @Test
+    public void malformedCsvReportsLine() {
+        String[] malformed = {
+                "id,date,feeling,comment\n1,1538000000000,Joy,ok\n2,yesterday,Joy,bad date\n",
+                "id,date,feeling,comment\n1,1538000000000,Joy,ok\n2,1538000000000,Glee,bad feeling\n",
+                "id,date,feeling,comment\n1,1538000000000,Joy,ok\n2,1538000000000,Joy,\"unterminated\n",
+                "id,date,feeling,comment\n1,1538000000000,Joy,ok\n2,1538000000000,\"Joy\"x,after quote\n",
+        };
+        for (String text : malformed) {
+            try {
+                importString(text);
+                fail("Expected an IOException for " + text);
+            } catch (IOException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("line 3"));
+            }
+        }
+        try {
+            importString("id,date,feeling,comment\n1,1538000000000,Joy,\"multi\nline\"\n2,0,Glee,\n");
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("line 4"));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void malformedJsonThrowsIOException() throws IOException {
+        importString("[{\"i\":1,\"d\":1538000000000,\"f\":\"Glee\"}]");
+    }
+
+    @Test
+    public void emptyFilesImportNothing() throws IOException {
+        assertTrue(importString("").isEmpty());
+        assertTrue(importString("id,date,feeling,comment\r\n").isEmpty());
+        assertTrue(importString(" [ ] ").isEmpty());
+    }
+}
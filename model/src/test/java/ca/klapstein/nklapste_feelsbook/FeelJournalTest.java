@@ -0,0 +1,513 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM unit tests for the append-only {@code FeelJournal}.
+ */
+public class FeelJournalTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * @return {@code Feel} identified by {@code i}, so it can be recreated to be removed.
+     */
+    private static Feel feel(int i) {
+        return new Feel(i, Feeling.values()[i % Feeling.values().length], "comment é " + i, new Date(i * 60000L));
+    }
+
+    @Test
+    public void replayMatchesRecordedModifications() throws IOException {
+        File file = new File(temporaryFolder.getRoot(), "feels.journal");
+        FeelJournal feelJournal = new FeelJournal(file);
+        FeelTreeSet expected = feelJournal.load();
+        for (int i = 0; i < 100; i++) {
+            expected.add(feel(i));
+            feelJournal.add(feel(i));
+        }
+        for (int i = 0; i < 100; i += 3) {
+            expected.remove(feel(i));
+            feelJournal.remove(feel(i));
+        }
+        expected.remove(feel(1));
+        expected.add(feel(1000));
+        feelJournal.edit(feel(1), feel(1000));
+        feelJournal.close();
+
+        FeelTreeSet loaded = new FeelJournal(file).load();
+        assertEquals(new ArrayList<>(expected), canonicalize(loaded, expected));
+    }
+
+    @Test
+    public void tornRecordIsDiscarded() throws IOException {
+        File file = new File(temporaryFolder.getRoot(), "feels.journal");
+        FeelJournal feelJournal = new FeelJournal(file);
+        feelJournal.load();
+        feelJournal.add(feel(1));
+        feelJournal.add(feel(2));
+        feelJournal.close();
+
+        // chop the last record in half as if the process died while writing it
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        randomAccessFile.setLength(randomAccessFile.length() - 5);
+        randomAccessFile.close();
+
+        FeelJournal reopened = new FeelJournal(file);
+        FeelTreeSet loaded = reopened.load();
+        assertEquals(1, loaded.size());
+        assertEquals(0, loaded.first().compareTo(feel(1)));
+
+        // appending after the truncated record must still produce a valid journal
+        reopened.add(feel(3));
+        reopened.close();
+        assertEquals(2, new FeelJournal(file).load().size());
+    }
+
+    @Test
+    public void compactsOnceDeadRecordsDominate() {
+        File file = new File(temporaryFolder.getRoot(), "feels.journal");
+        FeelJournal feelJournal = new FeelJournal(file);
+        feelJournal.load();
+        for (int i = 0; i < FeelJournal.COMPACTION_MIN_RECORDS; i++) {
+            feelJournal.add(feel(i));
+        }
+        long uncompactedLength = file.length();
+        for (int i = 0; i < FeelJournal.COMPACTION_MIN_RECORDS - 10; i++) {
+            feelJournal.remove(feel(i));
+        }
+        assertTrue(feelJournal.needsCompaction());
+        // flushing only syncs, the compaction is a task of its own
+        feelJournal.flush();
+        assertTrue(feelJournal.needsCompaction());
+        feelJournal.compactIfNeeded();
+        assertFalse(feelJournal.needsCompaction());
+        assertTrue(file.length() < uncompactedLength);
+        assertTrue(feelJournal.getDeadRecordCount() < FeelJournal.COMPACTION_MIN_RECORDS);
+        feelJournal.close();
+
+        assertEquals(10, new FeelJournal(file).load().size());
+    }
+
+    /**
+     * Paged reads merge the sorted base with the modifications after it, they must match the
+     * replayed contents whether the journal is fresh, reopened, or compacted.
+     */
+    @Test
+    public void pagedReadsMatchReplay() {
+        File file = new File(temporaryFolder.getRoot(), "feels.journal");
+        FeelJournal feelJournal = new FeelJournal(file);
+        FeelTreeSet expected = new FeelTreeSet();
+        Random random = new Random(11);
+        for (int i = 0; i < 3000; i++) {
+            Feel feel = feel(random.nextInt(5000));
+            expected.add(feel);
+            feelJournal.add(feel);
+        }
+        assertPagesMatch(expected, feelJournal);
+        feelJournal.close();
+
+        // reopened, the base is empty and all the adds are within the tail
+        feelJournal = new FeelJournal(file);
+        assertPagesMatch(expected, feelJournal);
+        feelJournal.compact();
+        assertPagesMatch(expected, feelJournal);
+
+        for (int i = 0; i < 2000; i++) {
+            Feel feel = feel(random.nextInt(6000));
+            switch (random.nextInt(3)) {
+                case 0:
+                    expected.add(feel);
+                    feelJournal.add(feel);
+                    break;
+                case 1:
+                    expected.remove(feel);
+                    feelJournal.remove(feel);
+                    break;
+                default:
+                    Feel newFeel = feel(random.nextInt(6000));
+                    if (expected.remove(feel) && expected.add(newFeel)) {
+                        feelJournal.edit(feel, newFeel);
+                    } else {
+                        expected.remove(feel);
+                        feelJournal.remove(feel);
+                    }
+                    break;
+            }
+        }
+        assertPagesMatch(expected, feelJournal);
+        feelJournal.close();
+
+        feelJournal = new FeelJournal(file);
+        assertPagesMatch(expected, feelJournal);
+        feelJournal.compact();
+        assertPagesMatch(expected, feelJournal);
+        assertEquals(expected.size(), feelJournal.load().size());
+        feelJournal.close();
+    }
+
+    private static void writeLegacyFeel(DataOutputStream out, Feel feel) throws IOException {
+        byte[] comment = feel.getComment().getBytes("UTF-8");
+        out.writeLong(feel.getDate().getTime());
+        out.writeByte(feel.getFeeling().ordinal());
+        out.writeInt(comment.length);
+        out.write(comment);
+    }
+
+    /**
+     * Journals written before {@code Feel}s had ids are replayed as they were, then rewritten
+     * with newly handed out ids.
+     */
+    @Test
+    public void migratesJournalWithoutIds() throws IOException {
+        File file = new File(temporaryFolder.getRoot(), "feels.journal");
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+        out.writeInt(0x46424A31);
+        // add 1, 2, and 3, remove 1, then edit 2 into 4
+        for (int i = 1; i <= 3; i++) {
+            out.writeByte(1);
+            writeLegacyFeel(out, feel(i));
+        }
+        out.writeByte(2);
+        writeLegacyFeel(out, feel(1));
+        out.writeByte(3);
+        writeLegacyFeel(out, feel(2));
+        writeLegacyFeel(out, feel(4));
+        out.close();
+
+        FeelJournal feelJournal = new FeelJournal(file);
+        assertEquals(2, feelJournal.getCount());
+        FeelTreeSet loaded = feelJournal.load();
+        assertEquals(2, loaded.size());
+        assertEquals("comment é 4", loaded.get(0).getComment());
+        assertEquals("comment é 3", loaded.get(1).getComment());
+        assertNotEquals(loaded.get(0).getId(), loaded.get(1).getId());
+        assertNotEquals(0, loaded.get(0).getId());
+
+        // the migrated journal keeps the ids and takes new records
+        feelJournal.remove(loaded.get(0));
+        feelJournal.close();
+        FeelTreeSet reloaded = new FeelJournal(file).load();
+        assertEquals(1, reloaded.size());
+        assertEquals(loaded.get(1).getId(), reloaded.first().getId());
+    }
+
+    /**
+     * Write a journal of a base of 2000 {@code Feel}s and a tail of removes and adds.
+     *
+     * @return {@code FeelTreeSet} the {@code Feel}s of the journal.
+     */
+    private static FeelTreeSet writeJournalWithTail(File file) {
+        FeelJournal feelJournal = new FeelJournal(file);
+        FeelTreeSet expected = new FeelTreeSet();
+        for (int i = 0; i < 2000; i++) {
+            expected.add(feel(i));
+        }
+        feelJournal.rewrite(expected);
+        for (int i = 0; i < 2000; i += 7) {
+            expected.remove(feel(i));
+            feelJournal.remove(feel(i));
+        }
+        for (int i = 2000; i < 2100; i++) {
+            expected.add(feel(i));
+            feelJournal.add(feel(i));
+        }
+        feelJournal.close();
+        return expected;
+    }
+
+    private static void overwrite(File file, long offset, byte[] bytes) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.seek(offset);
+            randomAccessFile.write(bytes);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    @Test
+    public void reopenedJournalReadsBaseFromSnapshot() throws IOException {
+        File file = new File(temporaryFolder.getRoot(), "feels.journal");
+        FeelTreeSet expected = writeJournalWithTail(file);
+        assertEquals(2000, FeelSnapshot.open(new File(file.getPath() + ".snapshot")).getCount());
+
+        // garble the first records of the base within the journal file, which the snapshot
+        // makes unnecessary to read
+        overwrite(file, 10, new byte[200]);
+        FeelJournal reopened = new FeelJournal(file);
+        assertEquals(expected.getTallySnapshot(), reopened.loadTallySnapshot());
+        assertEquals(expected.getFeelHeatmap(), reopened.loadFeelHeatmap());
+        assertPagesMatch(expected, reopened);
+        reopened.close();
+    }
+
+    /**
+     * The heatmap of a snapshot counted in another {@code TimeZone} is not used.
+     */
+    @Test
+    public void heatmapFollowsTimeZone() {
+        TimeZone defaultTimeZone = TimeZone.getDefault();
+        try {
+            File file = new File(temporaryFolder.getRoot(), "feels.journal");
+            TimeZone.setDefault(TimeZone.getTimeZone("America/Edmonton"));
+            FeelTreeSet written = writeJournalWithTail(file);
+            TimeZone.setDefault(TimeZone.getTimeZone("Asia/Tokyo"));
+            FeelTreeSet expected = copy(written);
+            assertNotEquals(written.getFeelHeatmap(), expected.getFeelHeatmap());
+            FeelJournal reopened = new FeelJournal(file);
+            assertEquals(expected.getFeelHeatmap(), reopened.loadFeelHeatmap());
+            reopened.close();
+        } finally {
+            TimeZone.setDefault(defaultTimeZone);
+        }
+    }
+
+    /**
+     * A snapshot with a corrupt header, a corrupt block, a truncated end, or of a different base
+     * is not used, the journal file is read instead and a new snapshot is written.
+     */
+    @Test
+    public void corruptSnapshotFallsBackToJournal() throws IOException {
+        for (int corruption = 0; corruption < 4; corruption++) {
+            File file = new File(temporaryFolder.getRoot(), "feels" + corruption + ".journal");
+            File snapshotFile = new File(file.getPath() + ".snapshot");
+            FeelTreeSet expected = writeJournalWithTail(file);
+            switch (corruption) {
+                case 0:
+                    overwrite(snapshotFile, 5, new byte[]{42});
+                    break;
+                case 1:
+                    overwrite(snapshotFile, 200, new byte[]{42});
+                    break;
+                case 2:
+                    RandomAccessFile randomAccessFile = new RandomAccessFile(snapshotFile, "rw");
+                    randomAccessFile.setLength(randomAccessFile.length() - 3);
+                    randomAccessFile.close();
+                    break;
+                default:
+                    // the snapshot of another base, as if the process died between replacing
+                    // the journal and its snapshot
+                    File otherFile = new File(temporaryFolder.getRoot(), "other.journal");
+                    FeelJournal otherJournal = new FeelJournal(otherFile);
+                    FeelTreeSet other = new FeelTreeSet();
+                    for (int i = 1; i < 3000; i += 2) {
+                        other.add(feel(i));
+                    }
+                    otherJournal.rewrite(other);
+                    otherJournal.close();
+                    assertTrue(new File(otherFile.getPath() + ".snapshot").renameTo(snapshotFile));
+                    break;
+            }
+            FeelJournal reopened = new FeelJournal(file);
+            assertPagesMatch(expected, reopened);
+            assertEquals(expected.getTallySnapshot(), reopened.loadTallySnapshot());
+            assertEquals(expected.getFeelHeatmap(), reopened.loadFeelHeatmap());
+            reopened.close();
+
+            FeelJournal healed = new FeelJournal(file);
+            assertPagesMatch(expected, healed);
+            assertEquals(2000, FeelSnapshot.open(snapshotFile).getCount());
+            healed.close();
+        }
+    }
+
+    /**
+     * Cut a copy of a journal at every kind of offset, as if the process or device died mid
+     * write, optionally followed by garbage, and check it recovers exactly the modifications
+     * written entirely before the cut.
+     */
+    @Test
+    public void recoversLastCompleteModificationAfterCrash() throws IOException {
+        File file = new File(temporaryFolder.getRoot(), "feels.journal");
+        FeelJournal feelJournal = new FeelJournal(file);
+        feelJournal.rewrite(new FeelTreeSet());
+        FeelTreeSet expected = new FeelTreeSet();
+        for (int i = 0; i < 600; i++) {
+            expected.add(feel(i));
+        }
+        feelJournal.addAll(new ArrayList<>(expected));
+        feelJournal.compact();
+        List<Long> lengths = new ArrayList<>();
+        List<FeelTreeSet> states = new ArrayList<>();
+        lengths.add(file.length());
+        states.add(copy(expected));
+        Random random = new Random(21);
+        for (int op = 0; op < 60; op++) {
+            switch (random.nextInt(4)) {
+                case 0:
+                    Feel added = feel(1000 + op);
+                    expected.add(added);
+                    feelJournal.add(added);
+                    break;
+                case 1:
+                    Feel removed = expected.get(random.nextInt(expected.size()));
+                    expected.remove(removed);
+                    feelJournal.remove(removed);
+                    break;
+                case 2:
+                    Feel oldFeel = expected.get(random.nextInt(expected.size()));
+                    Feel newFeel = feel(2000 + op);
+                    expected.remove(oldFeel);
+                    expected.add(newFeel);
+                    feelJournal.edit(oldFeel, newFeel);
+                    break;
+                default:
+                    List<Feel> batch = new ArrayList<>();
+                    for (int i = 0; i < 1 + random.nextInt(FeelJournal.INDEX_BLOCK_SIZE); i++) {
+                        batch.add(feel(3000 + op * 1000 + i));
+                    }
+                    expected.addAll(batch);
+                    feelJournal.addAll(batch);
+                    break;
+            }
+            lengths.add(file.length());
+            states.add(copy(expected));
+        }
+        feelJournal.close();
+        byte[] journal = readBytes(file);
+        assertEquals(journal.length, (long) lengths.get(lengths.size() - 1));
+
+        for (int trial = 0; trial < 200; trial++) {
+            int cut = (int) lengths.get(0).longValue()
+                    + random.nextInt(journal.length - (int) lengths.get(0).longValue() + 1);
+            byte[] garbage = new byte[random.nextInt(3) == 0 ? 0 : 1 + random.nextInt(100)];
+            if (random.nextBoolean()) {
+                random.nextBytes(garbage);
+            }
+            File crashed = new File(temporaryFolder.getRoot(), "crashed" + trial + ".journal");
+            FileOutputStream out = new FileOutputStream(crashed);
+            out.write(journal, 0, cut);
+            out.write(garbage);
+            out.close();
+            int last = 0;
+            while (last + 1 < lengths.size() && lengths.get(last + 1) <= cut) {
+                last++;
+            }
+            FeelTreeSet state = states.get(last);
+
+            FeelJournal recovered = new FeelJournal(crashed);
+            if (trial % 2 == 0) {
+                assertPagesMatch(state, recovered);
+            } else {
+                assertEquals(new ArrayList<>(state), canonicalize(recovered.load(), state));
+            }
+            // the recovered journal takes new records
+            recovered.add(feel(100000));
+            recovered.close();
+            FeelTreeSet reloaded = new FeelJournal(crashed).load();
+            assertEquals(state.size() + 1, reloaded.size());
+            assertTrue(reloaded.contains(feel(100000)));
+        }
+    }
+
+    /**
+     * A compaction interrupted before its temporary file was renamed over the journal leaves the
+     * journal as it was, and a lost snapshot is written anew.
+     */
+    @Test
+    public void interruptedCompactionKeepsJournal() throws IOException {
+        File file = new File(temporaryFolder.getRoot(), "feels.journal");
+        File snapshotFile = new File(file.getPath() + ".snapshot");
+        FeelTreeSet expected = writeJournalWithTail(file);
+        FileOutputStream out = new FileOutputStream(new File(file.getPath() + ".tmp"));
+        out.write(readBytes(file), 0, 1000);
+        out.close();
+        assertTrue(snapshotFile.delete());
+
+        FeelJournal reopened = new FeelJournal(file);
+        assertPagesMatch(expected, reopened);
+        reopened.compact();
+        reopened.close();
+        assertEquals(expected.size(), FeelSnapshot.open(snapshotFile).getCount());
+        assertEquals(expected.size(), new FeelJournal(file).load().size());
+    }
+
+    /**
+     * Opening a journal with a snapshot only reads the tail and the last block of the base, and
+     * the tail is bounded by compaction, so recovery does not grow with the history.
+     */
+    @Test
+    public void recoveryReadsBoundedTail() throws IOException {
+        File file = new File(temporaryFolder.getRoot(), "feels.journal");
+        FeelJournal feelJournal = new FeelJournal(file);
+        FeelTreeSet base = new FeelTreeSet();
+        for (int i = 0; i < 50000; i++) {
+            base.add(feel(i));
+        }
+        feelJournal.rewrite(base);
+        for (int i = 0; i < 3 * FeelJournal.MAX_TAIL_RECORDS; i++) {
+            feelJournal.edit(feel(i), feel(i + 100000));
+            feelJournal.edit(feel(i + 100000), feel(i));
+            if (i % 100 == 0) {
+                feelJournal.flush();
+                feelJournal.compactIfNeeded();
+            }
+        }
+        feelJournal.close();
+        long baseLength = FeelSnapshot.open(new File(file.getPath() + ".snapshot")).getJournalLength();
+
+        FeelJournal reopened = new FeelJournal(file);
+        assertEquals(base.size(), reopened.getCount());
+        assertTrue(reopened.getRecoveryReadLength() < file.length() - baseLength + baseLength / 50);
+        assertTrue(reopened.getRecoveryReadLength() < baseLength / 2);
+        reopened.close();
+    }
+
+    private static FeelTreeSet copy(FeelTreeSet feelTreeSet) {
+        FeelTreeSet copy = new FeelTreeSet();
+        copy.addAll(new ArrayList<>(feelTreeSet));
+        return copy;
+    }
+
+    private static byte[] readBytes(File file) throws IOException {
+        byte[] bytes = new byte[(int) file.length()];
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            in.readFully(bytes);
+        } finally {
+            in.close();
+        }
+        return bytes;
+    }
+
+    private static void assertPagesMatch(FeelTreeSet expected, FeelJournal feelJournal) {
+        assertEquals(expected.size(), feelJournal.getCount());
+        for (int position = 0; position <= expected.size(); position += 97) {
+            List<Feel> expectedPage = expected.loadRange(position, 40);
+            List<Feel> page = feelJournal.loadRange(position, 40);
+            assertEquals(expectedPage.size(), page.size());
+            for (int i = 0; i < page.size(); i++) {
+                assertEquals(0, expectedPage.get(i).compareTo(page.get(i)));
+            }
+        }
+    }
+
+    /**
+     * Map the loaded {@code Feel}s onto the equal expected instances so the lists can be compared.
+     */
+    private static ArrayList<Feel> canonicalize(FeelTreeSet loaded, FeelTreeSet expected) {
+        ArrayList<Feel> feels = new ArrayList<>();
+        for (Feel feel : loaded) {
+            int index = expected.indexOf(feel);
+            feels.add(index >= 0 ? expected.get(index) : feel);
+        }
+        return feels;
+    }
+}
@@ -0,0 +1,130 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM unit tests comparing {@code FeelRollups} against brute force counting with {@code Calendar}.
+ */
+public class FeelRollupsTest {
+    private static final TimeZone TIME_ZONE = TimeZone.getTimeZone("America/Edmonton");
+
+    private static boolean sameBucket(FeelRollups.Granularity granularity, Calendar a, Calendar b) {
+        switch (granularity) {
+            case DAY:
+                return a.get(Calendar.YEAR) == b.get(Calendar.YEAR)
+                        && a.get(Calendar.DAY_OF_YEAR) == b.get(Calendar.DAY_OF_YEAR);
+            case WEEK:
+                // compare the Monday starting each week
+                Calendar mondayA = mondayOf(a);
+                Calendar mondayB = mondayOf(b);
+                return sameBucket(FeelRollups.Granularity.DAY, mondayA, mondayB);
+            default:
+                return a.get(Calendar.YEAR) == b.get(Calendar.YEAR)
+                        && a.get(Calendar.MONTH) == b.get(Calendar.MONTH);
+        }
+    }
+
+    private static Calendar mondayOf(Calendar calendar) {
+        Calendar monday = (Calendar) calendar.clone();
+        monday.set(Calendar.HOUR_OF_DAY, 12);
+        int daysSinceMonday = (monday.get(Calendar.DAY_OF_WEEK) + 5) % 7;
+        monday.add(Calendar.DAY_OF_YEAR, -daysSinceMonday);
+        return monday;
+    }
+
+    private static Calendar calendar(long timeMillis) {
+        Calendar calendar = Calendar.getInstance(TIME_ZONE);
+        calendar.setTimeInMillis(timeMillis);
+        return calendar;
+    }
+
+    @Test
+    public void countsMatchBruteForce() {
+        Random random = new Random(7);
+        FeelRollups feelRollups = new FeelRollups(TIME_ZONE);
+        List<Feel> feels = new ArrayList<>();
+        // spread over ~6 years on both sides of the epoch so buckets grow in both directions
+        long span = 6L * 365 * 24 * 60 * 60 * 1000;
+        for (int i = 0; i < 3000; i++) {
+            Feeling feeling = Feeling.values()[random.nextInt(Feeling.values().length)];
+            long timeMillis = (long) (random.nextDouble() * span) - span / 2;
+            Feel feel = new Feel(feeling, new Date(timeMillis));
+            feels.add(feel);
+            feelRollups.add(feel);
+        }
+        for (int i = 0; i < 1000; i++) {
+            feelRollups.remove(feels.remove(random.nextInt(feels.size())));
+        }
+
+        for (int probe = 0; probe < 200; probe++) {
+            long probeMillis = (long) (random.nextDouble() * span) - span / 2;
+            Calendar probeCalendar = calendar(probeMillis);
+            for (FeelRollups.Granularity granularity : FeelRollups.Granularity.values()) {
+                long bucket = feelRollups.getBucket(granularity, probeMillis);
+                for (Feeling feeling : Feeling.values()) {
+                    int expected = 0;
+                    for (Feel feel : feels) {
+                        if (feel.getFeeling() == feeling
+                                && sameBucket(granularity, probeCalendar, calendar(feel.getDate().getTime()))) {
+                            expected++;
+                        }
+                    }
+                    assertEquals(granularity + " " + feeling, expected, feelRollups.getCount(granularity, feeling, bucket));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void rangeQueryMatchesSingleBuckets() {
+        Random random = new Random(11);
+        FeelRollups feelRollups = new FeelRollups(TIME_ZONE);
+        long start = 1538000000000L;
+        for (int i = 0; i < 2000; i++) {
+            feelRollups.add(new Feel(Feeling.Joy, new Date(start + random.nextInt(400) * 24L * 60 * 60 * 1000)));
+        }
+        // a far away feel must not disturb the dense range
+        feelRollups.add(new Feel(Feeling.Joy, new Date(-60000000000000L)));
+
+        long now = start + 400L * 24 * 60 * 60 * 1000;
+        int[] weekly = feelRollups.getRecentCounts(FeelRollups.Granularity.WEEK, Feeling.Joy, now, 200);
+        long lastWeek = feelRollups.getBucket(FeelRollups.Granularity.WEEK, now);
+        int total = 0;
+        for (int i = 0; i < weekly.length; i++) {
+            assertEquals(feelRollups.getCount(FeelRollups.Granularity.WEEK, Feeling.Joy, lastWeek - weekly.length + 1 + i), weekly[i]);
+            total += weekly[i];
+        }
+        assertEquals(2000, total);
+    }
+
+    @Test
+    public void monthBucketsMatchCivilCalendar() {
+        assertEquals(1970 * 12, FeelRollups.epochDayToMonthBucket(0));
+        assertEquals(1970 * 12 - 1, FeelRollups.epochDayToMonthBucket(-1));
+        // 2000-02-29 and 2000-03-01
+        assertEquals(2000 * 12 + 1, FeelRollups.epochDayToMonthBucket(11016));
+        assertEquals(2000 * 12 + 2, FeelRollups.epochDayToMonthBucket(11017));
+    }
+
+    @Test
+    public void feelTreeSetKeepsRollups() {
+        FeelTreeSet feelTreeSet = new FeelTreeSet();
+        Feel feel = new Feel(Feeling.Fear, "", new Date(1538000000000L));
+        feelTreeSet.add(feel);
+        FeelRollups feelRollups = feelTreeSet.getFeelRollups();
+        long day = feelRollups.getBucket(FeelRollups.Granularity.DAY, feel.getDate().getTime());
+        assertEquals(1, feelRollups.getCount(FeelRollups.Granularity.DAY, Feeling.Fear, day));
+        feelTreeSet.clear();
+        assertEquals(0, feelRollups.getCount(FeelRollups.Granularity.DAY, Feeling.Fear, day));
+        assertEquals(0, feelTreeSet.getFeelingTally(Feeling.Fear));
+    }
+}
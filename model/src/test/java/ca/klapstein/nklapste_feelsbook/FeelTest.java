@@ -0,0 +1,69 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM unit tests comparing the packed sort keys of {@code Feel.compareTo} against comparing the
+ * date, feeling, comment, and id in turn.
+ */
+public class FeelTest {
+    private static final String[] COMMENTS = {"", "a", "a\u0000", "ab", "abcd", "abcde", "abcdf", "abc",
+            "￿", "😀 grin", "☃", "été"};
+    private static final long[] DATES = {Long.MIN_VALUE, Long.MIN_VALUE + 1, -(Long.MAX_VALUE >> 3),
+            -1, 0, 1, 1538000000000L, Long.MAX_VALUE >> 3, Long.MAX_VALUE - 1, Long.MAX_VALUE};
+
+    private static Feel randomFeel(Random random) {
+        return new Feel(random.nextInt(3), Feeling.values()[random.nextInt(Feeling.values().length)],
+                COMMENTS[random.nextInt(COMMENTS.length)], new Date(DATES[random.nextInt(DATES.length)]));
+    }
+
+    private static int fieldComparison(Feel a, Feel b) {
+        int comparison = -a.getDate().compareTo(b.getDate());
+        if (comparison == 0) {
+            comparison = a.getFeeling().compareTo(b.getFeeling());
+        }
+        if (comparison == 0) {
+            comparison = a.getComment().compareTo(b.getComment());
+        }
+        if (comparison == 0) {
+            comparison = Long.compare(a.getId(), b.getId());
+        }
+        return comparison;
+    }
+
+    private static void assertComparesLikeFields(Feel a, Feel b) {
+        assertEquals(Integer.signum(fieldComparison(a, b)), Integer.signum(a.compareTo(b)));
+        assertEquals(Integer.signum(fieldComparison(b, a)), Integer.signum(b.compareTo(a)));
+    }
+
+    /**
+     * The keys should order {@code Feel}s the same way as their fields, including at clamped
+     * dates and comments sharing their packed prefix, and should follow the setters.
+     */
+    @Test
+    public void compareToMatchesFieldComparison() {
+        Random random = new Random(18);
+        for (int i = 0; i < 20000; i++) {
+            Feel a = randomFeel(random);
+            Feel b = randomFeel(random);
+            assertComparesLikeFields(a, b);
+            switch (random.nextInt(3)) {
+                case 0:
+                    a.setDate(new Date(DATES[random.nextInt(DATES.length)]));
+                    break;
+                case 1:
+                    a.setFeeling(Feeling.values()[random.nextInt(Feeling.values().length)]);
+                    break;
+                default:
+                    a.setComment(COMMENTS[random.nextInt(COMMENTS.length)]);
+                    break;
+            }
+            assertComparesLikeFields(a, b);
+        }
+    }
+}
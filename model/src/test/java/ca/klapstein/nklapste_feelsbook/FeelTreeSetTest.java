@@ -0,0 +1,304 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM unit tests for the positional access and tallies of {@code FeelTreeSet}.
+ */
+public class FeelTreeSetTest {
+    private static Feel randomFeel(Random random) {
+        Feeling feeling = Feeling.values()[random.nextInt(Feeling.values().length)];
+        // a small date range so that feels collide on date and are ordered by feeling/comment
+        Date date = new Date(1538000000000L + random.nextInt(5000) * 1000L);
+        return new Feel(feeling, "comment " + random.nextInt(3), date);
+    }
+
+    @Test
+    public void positionalAccessMatchesTreeSetOrder() {
+        Random random = new Random(301);
+        FeelTreeSet feelTreeSet = new FeelTreeSet();
+        TreeSet<Feel> expected = new TreeSet<>();
+        for (int i = 0; i < 20000; i++) {
+            Feel feel = randomFeel(random);
+            assertEquals(expected.add(feel), feelTreeSet.add(feel));
+            if (random.nextInt(3) == 0) {
+                Feel removed = randomFeel(random);
+                assertEquals(expected.remove(removed), feelTreeSet.remove(removed));
+            }
+        }
+        assertEquals(expected.size(), feelTreeSet.size());
+
+        int position = 0;
+        for (Feel feel : expected) {
+            assertEquals(feel, feelTreeSet.get(position));
+            assertEquals(position, feelTreeSet.indexOf(feel));
+            position++;
+        }
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(feelTreeSet));
+        assertEquals(-1, feelTreeSet.indexOf(new Feel(Feeling.Joy, "absent", new Date(0))));
+    }
+
+    /**
+     * Unpaired surrogates cannot be encoded as UTF-8, yet should still round-trip through the
+     * {@code FeelColumns} and sort as {@code String.compareTo} does.
+     */
+    @Test
+    public void unpairedSurrogatesRoundTrip() {
+        String[] comments = {"\uD83D", "\uDE00", "a\uD83D", "\uDE00\uD83D", "\uD83D\uDE00", "\uFFFD", "?", "\uD7FF"};
+        FeelTreeSet feelTreeSet = new FeelTreeSet();
+        TreeSet<Feel> expected = new TreeSet<>();
+        for (String comment : comments) {
+            Feel feel = new Feel(Feeling.Joy, comment, new Date(0));
+            expected.add(feel);
+            feelTreeSet.add(feel);
+            assertEquals(comment, feelTreeSet.getById(feel.getId()).getComment());
+            byte[] encoded = FeelColumns.encodeComment(comment);
+            assertEquals(comment, FeelColumns.decodeComment(encoded, 0, encoded.length));
+        }
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(feelTreeSet));
+        for (Feel feel : expected) {
+            assertEquals(feel, feelTreeSet.get(feelTreeSet.indexOf(feel)));
+        }
+    }
+
+    /**
+     * Growing, shrinking, and draining the set splits and merges the chunks of its
+     * {@code FeelColumns}, which should keep the order, positions, ids, and UTF-8 comments.
+     */
+    @Test
+    public void columnsMatchTreeSetThroughChurn() {
+        // characters above the surrogates sort after supplementary ones in String.compareTo order
+        String[] comments = {"", "plain", "été à l'école", "\u2603 snow", "\uD83D\uDE00 grin", "\uD83D\uDE00",
+                "\uFF21 wide", "\uFF21", "\uD83D lone", "\uD83D", "\uDE00\uD83D", "x\uDE00"};
+        Random random = new Random(16);
+        FeelTreeSet feelTreeSet = new FeelTreeSet();
+        TreeSet<Feel> expected = new TreeSet<>();
+        for (int round = 0; round < 6; round++) {
+            // grow in even rounds and shrink in odd rounds
+            int adds = round % 2 == 0 ? 3 : 1;
+            for (int i = 0; i < 6000; i++) {
+                if (expected.isEmpty() || random.nextInt(4) < adds) {
+                    Feel feel = new Feel(Feeling.values()[random.nextInt(Feeling.values().length)],
+                            comments[random.nextInt(comments.length)], new Date(random.nextInt(2000) * 1000L));
+                    assertTrue(expected.add(feel));
+                    assertTrue(feelTreeSet.add(feel));
+                } else {
+                    Feel feel = feelTreeSet.get(random.nextInt(feelTreeSet.size()));
+                    assertTrue(expected.remove(feel));
+                    assertEquals(feel, feelTreeSet.removeById(feel.getId()));
+                }
+            }
+            assertEquals(new ArrayList<>(expected), new ArrayList<>(feelTreeSet));
+            assertArrayEquals(expected.toArray(), feelTreeSet.toArray(new Feel[0]));
+            int position = 0;
+            for (Feel feel : expected) {
+                assertEquals(position++, feelTreeSet.indexOf(feel));
+                assertEquals(feel, feelTreeSet.getById(feel.getId()));
+            }
+        }
+        for (Iterator<Feel> iterator = feelTreeSet.iterator(); iterator.hasNext(); ) {
+            assertTrue(expected.remove(iterator.next()));
+            iterator.remove();
+        }
+        assertTrue(expected.isEmpty());
+        assertEquals(0, feelTreeSet.size());
+        assertTrue(feelTreeSet.add(new Feel(Feeling.Joy, "again", new Date(0))));
+        assertEquals("again", feelTreeSet.first().getComment());
+    }
+
+    /**
+     * Batches of every size, sorted or not, with held, repeated, and absent {@code Feel}s, either
+     * merged or applied one at a time, should match a {@code TreeSet}.
+     */
+    @Test
+    public void batchesMatchTreeSet() {
+        String[] comments = {"", "plain", "été", "\uD83D\uDE00 grin"};
+        Random random = new Random(19);
+        FeelTreeSet feelTreeSet = new FeelTreeSet();
+        TreeSet<Feel> expected = new TreeSet<>();
+        for (int round = 0; round < 40; round++) {
+            int batchSize = random.nextInt(4) == 0 ? random.nextInt(8) : random.nextInt(4000);
+            List<Feel> batch = new ArrayList<>();
+            if (round % 3 != 2) {
+                for (int i = 0; i < batchSize; i++) {
+                    batch.add(new Feel(Feeling.values()[random.nextInt(Feeling.values().length)],
+                            comments[random.nextInt(comments.length)], new Date(random.nextInt(3000) * 1000L)));
+                }
+                if (!expected.isEmpty()) {
+                    batch.add(expected.first());
+                    batch.add(batch.get(0));
+                }
+                if (round % 2 == 0) {
+                    // already sorted, as when copied from another set
+                    batch = new ArrayList<>(new TreeSet<>(batch));
+                }
+                boolean changed = expected.addAll(batch);
+                assertEquals(changed, feelTreeSet.addAll(batch));
+            } else {
+                for (Feel feel : feelTreeSet) {
+                    if (random.nextInt(3) == 0) {
+                        batch.add(feel);
+                    }
+                }
+                batch.add(new Feel(Feeling.Joy, "absent", new Date(0)));
+                if (!batch.isEmpty()) {
+                    batch.add(batch.get(0));
+                }
+                boolean changed = expected.removeAll(batch);
+                assertEquals(changed, feelTreeSet.removeAll(batch));
+            }
+            assertEquals(new ArrayList<>(expected), new ArrayList<>(feelTreeSet));
+            int[] counts = new int[Feeling.values().length];
+            for (Feel feel : expected) {
+                counts[feel.getFeeling().ordinal()]++;
+                assertEquals(feel, feelTreeSet.getById(feel.getId()));
+            }
+            for (Feeling feeling : Feeling.values()) {
+                assertEquals(counts[feeling.ordinal()], feelTreeSet.getFeelingTally(feeling));
+            }
+        }
+    }
+
+    /**
+     * The statistics rebuilt in parallel, after single modifications or by merging a large batch,
+     * equal those updated once per {@code Feel}.
+     */
+    @Test
+    public void rebuiltStatisticsMatchIncremental() {
+        Random random = new Random(23);
+        List<Feel> feels = new ArrayList<>();
+        for (int i = 0; i < 3 * FeelAggregates.LEAF_SIZE + 123; i++) {
+            Feeling feeling = Feeling.values()[random.nextInt(Feeling.values().length)];
+            String comment = random.nextInt(4) == 0 ? "" : "word" + random.nextInt(50) + " and " + random.nextInt(5);
+            feels.add(new Feel(feeling, comment, new Date(1538000000000L + random.nextInt(365 * 24 * 60) * 60000L)));
+        }
+        FeelTreeSet incremental = new FeelTreeSet();
+        for (Feel feel : feels) {
+            incremental.add(feel);
+        }
+        incremental.getCommentIndex();
+        FeelTreeSet rebuilt = new FeelTreeSet();
+        rebuilt.getCommentIndex();
+        rebuilt.addAll(feels);
+        for (int i = 0; i < 100; i++) {
+            rebuilt.remove(feels.get(i));
+            incremental.remove(feels.get(i));
+        }
+        rebuilt.rebuildStatistics(new ForkJoinPool(4));
+
+        assertEquals(incremental.getTallySnapshot().getTotal(), rebuilt.getTallySnapshot().getTotal());
+        assertEquals(incremental.getFeelHeatmap(), rebuilt.getFeelHeatmap());
+        for (FeelRollups.Granularity granularity : FeelRollups.Granularity.values()) {
+            long first = incremental.getFeelRollups().getBucket(granularity, incremental.last().getDate().getTime());
+            int buckets = (int) (incremental.getFeelRollups().getBucket(granularity,
+                    incremental.first().getDate().getTime()) - first + 1);
+            for (Feeling feeling : Feeling.values()) {
+                assertEquals(incremental.getFeelingTally(feeling), rebuilt.getFeelingTally(feeling));
+                assertArrayEquals(incremental.getFeelRollups().getCounts(granularity, feeling, first, buckets),
+                        rebuilt.getFeelRollups().getCounts(granularity, feeling, first, buckets));
+            }
+        }
+        FeelCommentIndex expectedIndex = incremental.getCommentIndex();
+        FeelCommentIndex commentIndex = rebuilt.getCommentIndex();
+        assertEquals(expectedIndex.size(), commentIndex.size());
+        for (int word = 0; word < 50; word++) {
+            assertEquals(expectedIndex.getWordCount("word" + word), commentIndex.getWordCount("word" + word));
+            assertEquals(expectedIndex.search("word" + word, 20), commentIndex.search("word" + word, 20));
+        }
+    }
+
+    @Test
+    public void talliesFollowMembership() {
+        Random random = new Random(42);
+        FeelTreeSet feelTreeSet = new FeelTreeSet();
+        for (int i = 0; i < 5000; i++) {
+            feelTreeSet.add(randomFeel(random));
+        }
+        // remove every other feel through the iterator
+        Iterator<Feel> iterator = feelTreeSet.iterator();
+        boolean remove = false;
+        while (iterator.hasNext()) {
+            iterator.next();
+            if (remove) {
+                iterator.remove();
+            }
+            remove = !remove;
+        }
+
+        int[] counts = new int[Feeling.values().length];
+        for (Feel feel : feelTreeSet) {
+            counts[feel.getFeeling().ordinal()]++;
+        }
+        int total = 0;
+        for (Feeling feeling : Feeling.values()) {
+            assertEquals(counts[feeling.ordinal()], feelTreeSet.getFeelingTally(feeling));
+            total += counts[feeling.ordinal()];
+        }
+        assertEquals(feelTreeSet.size(), total);
+
+        TallySnapshot tallySnapshot = feelTreeSet.getTallySnapshot();
+        assertSame(tallySnapshot, feelTreeSet.getTallySnapshot());
+        assertEquals(total, tallySnapshot.getTotal());
+        feelTreeSet.remove(feelTreeSet.first());
+        assertNotSame(tallySnapshot, feelTreeSet.getTallySnapshot());
+        assertEquals(total, tallySnapshot.getTotal());
+        assertEquals(total - 1, feelTreeSet.getTallySnapshot().getTotal());
+    }
+
+    /**
+     * {@code Feel}s with the exact same date, feeling, and comment are all held as their ids
+     * differ, and each is found by its id.
+     */
+    @Test
+    public void identicalFeelsAreHeldByTheirIds() {
+        FeelTreeSet feelTreeSet = new FeelTreeSet();
+        Date date = new Date(1538000000000L);
+        List<Feel> feels = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            Feel feel = new Feel(Feeling.Joy, "same", date);
+            feels.add(feel);
+            assertTrue(feelTreeSet.add(feel));
+        }
+        assertEquals(1000, feelTreeSet.size());
+        assertEquals(1000, feelTreeSet.getFeelingTally(Feeling.Joy));
+        // a second Feel of a held id is not added
+        assertFalse(feelTreeSet.add(new Feel(feels.get(0).getId(), Feeling.Anger, "other", date)));
+
+        for (int i = 0; i < feels.size(); i += 2) {
+            assertEquals(feels.get(i), feelTreeSet.removeById(feels.get(i).getId()));
+        }
+        assertNull(feelTreeSet.removeById(feels.get(0).getId()));
+        assertEquals(500, feelTreeSet.size());
+        for (int i = 0; i < feels.size(); i++) {
+            assertEquals(i % 2 == 0 ? null : feels.get(i), feelTreeSet.getById(feels.get(i).getId()));
+        }
+    }
+
+    /**
+     * Bind every row of a 100k entry set the same way {@code FeelAdapter.onBindViewHolder} does.
+     */
+    @Test
+    public void bindEveryRowOfLargeSet() {
+        FeelTreeSet feelTreeSet = new FeelTreeSet();
+        for (int i = 0; i < 100000; i++) {
+            feelTreeSet.add(new Feel(Feeling.values()[i % Feeling.values().length], "", new Date(i * 1000L)));
+        }
+        List<Feel> bound = new ArrayList<>(feelTreeSet.size());
+        for (int position = 0; position < feelTreeSet.size(); position++) {
+            bound.add(feelTreeSet.get(position));
+        }
+        for (int position = 1; position < bound.size(); position++) {
+            assertTrue(bound.get(position - 1).compareTo(bound.get(position)) < 0);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import com.google.gson.Gson;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Date;
+import java.util.Iterator;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM unit tests for the streaming {@code FeelTreeSetTypeAdapter} and {@code FeelTypeAdapter}.
+ */
+public class FeelTreeSetTypeAdapterTest {
+    private static FeelTreeSet createFeelTreeSet() {
+        FeelTreeSet feelTreeSet = new FeelTreeSet();
+        for (int i = 0; i < 60; i++) {
+            // whole seconds, as the legacy reflective date format does not keep milliseconds
+            Date date = new Date(1538712131000L + i * 3600000L);
+            feelTreeSet.add(new Feel(Feeling.values()[i % Feeling.values().length], i % 2 == 0 ? "" : "\"quoted\" é " + i, date));
+        }
+        return feelTreeSet;
+    }
+
+    private static void assertSameFeels(FeelTreeSet expected, FeelTreeSet actual) {
+        assertEquals(expected.size(), actual.size());
+        Iterator<Feel> actualIterator = actual.iterator();
+        for (Feel feel : expected) {
+            Feel actualFeel = actualIterator.next();
+            assertEquals(feel.getDate(), actualFeel.getDate());
+            assertEquals(feel.getFeeling(), actualFeel.getFeeling());
+            assertEquals(feel.getComment(), actualFeel.getComment());
+        }
+        for (Feeling feeling : Feeling.values()) {
+            assertEquals(expected.getFeelingTally(feeling), actual.getFeelingTally(feeling));
+        }
+    }
+
+    @Test
+    public void roundTripsCompactFormat() {
+        FeelTreeSet feelTreeSet = createFeelTreeSet();
+        StringWriter json = new StringWriter();
+        FeelTreeSetJson.writeFeelTreeSet(json, feelTreeSet);
+
+        assertTrue(json.toString().startsWith("[{\"i\":"));
+        assertFalse(json.toString().contains("feelingTallies"));
+        FeelTreeSet read = FeelTreeSetJson.readFeelTreeSet(new StringReader(json.toString()));
+        assertSameFeels(feelTreeSet, read);
+        // the ids survive the round trip
+        for (Feel feel : feelTreeSet) {
+            assertNotNull(read.getById(feel.getId()));
+        }
+    }
+
+    @Test
+    public void readsLegacyReflectiveFormat() {
+        FeelTreeSet feelTreeSet = createFeelTreeSet();
+        // the format FeelsBookPreferencesManager used to save with
+        String legacyJson = new Gson().toJson(feelTreeSet);
+
+        assertTrue(legacyJson.contains("\"feeling\":\"Anger\""));
+        assertSameFeels(feelTreeSet, FeelTreeSetJson.readFeelTreeSet(new StringReader(legacyJson)));
+    }
+}
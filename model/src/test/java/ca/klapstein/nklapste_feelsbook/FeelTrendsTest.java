@@ -0,0 +1,214 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM unit tests comparing the incrementally maintained and the rebuilt {@code FeelTrends} of a
+ * {@code FeelTreeSet} against a brute force oracle.
+ */
+public class FeelTrendsTest {
+    private static final TimeZone TIME_ZONE = TimeZone.getTimeZone("America/Edmonton");
+    private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+    private static final long NOW = 1538000000000L;
+
+    private TimeZone defaultTimeZone;
+    private long nextId;
+
+    @Before
+    public void setUp() {
+        defaultTimeZone = TimeZone.getDefault();
+        TimeZone.setDefault(TIME_ZONE);
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(defaultTimeZone);
+    }
+
+    private static long epochDay(long timeMillis) {
+        return Instant.ofEpochMilli(timeMillis).atZone(ZoneId.of(TIME_ZONE.getID())).toLocalDate().toEpochDay();
+    }
+
+    /**
+     * @return {@code Feel} within the given number of days before {@code NOW}.
+     */
+    private Feel randomFeel(Random random, int days) {
+        Feeling feeling = Feeling.values()[random.nextInt(3)];
+        return new Feel(nextId++, feeling, "", new Date(NOW - (long) (random.nextDouble() * days * MILLIS_PER_DAY)));
+    }
+
+    private static void assertMatchesOracle(FeelTreeSet feelTreeSet) {
+        long today = epochDay(NOW);
+        FeelTrends feelTrends = feelTreeSet.getFeelTrends();
+        TrendSnapshot snapshot = feelTrends.getSnapshot(NOW);
+        for (Feeling feeling : Feeling.values()) {
+            TreeSet<Long> days = new TreeSet<>();
+            int[] recent = new int[30];
+            for (Feel feel : feelTreeSet) {
+                if (feel.getFeeling() == feeling) {
+                    long day = epochDay(feel.getDate().getTime());
+                    days.add(day);
+                    if (day <= today && day > today - recent.length) {
+                        recent[(int) (today - day)]++;
+                    }
+                }
+            }
+            int longest = 0;
+            int run = 0;
+            Long previous = null;
+            for (long day : days) {
+                run = previous != null && previous == day - 1 ? run + 1 : 1;
+                longest = Math.max(longest, run);
+                previous = day;
+            }
+            long streakEnd = days.contains(today) ? today : today - 1;
+            int current = 0;
+            while (days.contains(streakEnd - current)) {
+                current++;
+            }
+            int lastWeek = 0;
+            int previousWeek = 0;
+            int month = 0;
+            for (int i = 0; i < recent.length; i++) {
+                lastWeek += i < 7 ? recent[i] : 0;
+                previousWeek += i >= 7 && i < 14 ? recent[i] : 0;
+                month += recent[i];
+            }
+
+            assertEquals(feeling.toString(), longest, feelTrends.getLongestStreak(feeling));
+            assertEquals(longest, snapshot.getLongestStreak(feeling));
+            assertEquals(current, snapshot.getCurrentStreak(feeling));
+            assertEquals(lastWeek / 7.0, snapshot.getWeekAverage(feeling), 1e-9);
+            assertEquals(month / 30.0, snapshot.getMonthAverage(feeling), 1e-9);
+            assertEquals(feeling.toString(), current, feelTrends.getCurrentStreak(feeling, NOW));
+            assertEquals(lastWeek / 7.0, feelTrends.getMovingAverage(feeling, NOW, 7), 1e-9);
+            assertEquals(month / 30.0, feelTrends.getMovingAverage(feeling, NOW, 30), 1e-9);
+            if (previousWeek == 0) {
+                assertTrue(Double.isNaN(feelTrends.getWeekOverWeekChange(feeling, NOW)));
+            } else {
+                assertEquals((double) (lastWeek - previousWeek) / previousWeek,
+                        feelTrends.getWeekOverWeekChange(feeling, NOW), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void incrementalUpdatesMatchOracle() {
+        Random random = new Random(3);
+        FeelTreeSet feelTreeSet = new FeelTreeSet();
+        for (int step = 0; step < 400; step++) {
+            switch (random.nextInt(4)) {
+                case 0:
+                case 1:
+                    feelTreeSet.add(randomFeel(random, 60));
+                    break;
+                case 2:
+                    if (!feelTreeSet.isEmpty()) {
+                        feelTreeSet.remove(feelTreeSet.get(random.nextInt(feelTreeSet.size())));
+                    }
+                    break;
+                default:
+                    if (!feelTreeSet.isEmpty()) {
+                        Feel oldFeel = feelTreeSet.get(random.nextInt(feelTreeSet.size()));
+                        feelTreeSet.remove(oldFeel);
+                        feelTreeSet.add(new Feel(oldFeel.getId(), oldFeel.getFeeling(), "",
+                                new Date(NOW - (long) (random.nextDouble() * 60 * MILLIS_PER_DAY))));
+                    }
+                    break;
+            }
+            if (step % 20 == 0) {
+                assertMatchesOracle(feelTreeSet);
+            }
+        }
+        assertMatchesOracle(feelTreeSet);
+    }
+
+    /**
+     * Batches merged into the set mark the trends stale, single modifications after them must
+     * apply on top of the rebuilt runs.
+     */
+    @Test
+    public void bulkBatchesRebuildMatchOracle() {
+        Random random = new Random(5);
+        FeelTreeSet feelTreeSet = new FeelTreeSet();
+        for (int round = 0; round < 4; round++) {
+            List<Feel> batch = new ArrayList<>();
+            for (int i = 0; i < 300; i++) {
+                batch.add(randomFeel(random, 120));
+            }
+            feelTreeSet.addAll(batch);
+            assertMatchesOracle(feelTreeSet);
+            for (int i = 0; i < 20; i++) {
+                feelTreeSet.add(randomFeel(random, 120));
+                feelTreeSet.remove(feelTreeSet.get(random.nextInt(feelTreeSet.size())));
+            }
+            assertMatchesOracle(feelTreeSet);
+            feelTreeSet.removeAll(batch.subList(0, 150));
+            assertMatchesOracle(feelTreeSet);
+        }
+    }
+
+    /**
+     * Runs rebuilt from a copy are only installed if the set was not modified while they were
+     * rebuilt, as single modifications do not update stale runs.
+     */
+    @Test
+    public void rebuildFromCopyIsDroppedAfterModification() {
+        Random random = new Random(9);
+        List<Feel> batch = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            batch.add(randomFeel(random, 120));
+        }
+        FeelTreeSet feelTreeSet = new FeelTreeSet();
+        feelTreeSet.addAll(batch);
+        FeelTrends feelTrends = feelTreeSet.getFeelTrends();
+        FeelTrends.Rebuild rebuild = feelTrends.copyForRebuild();
+        feelTreeSet.add(new Feel(Feeling.Joy, "", new Date(NOW)));
+        rebuild.run(ForkJoinPool.commonPool());
+        assertFalse(feelTrends.finishRebuild(rebuild));
+
+        rebuild = feelTrends.copyForRebuild();
+        rebuild.run(ForkJoinPool.commonPool());
+        assertTrue(feelTrends.finishRebuild(rebuild));
+        assertNull(feelTrends.copyForRebuild());
+        assertMatchesOracle(feelTreeSet);
+    }
+
+    /**
+     * A set large enough to be rebuilt by many {@code ForkJoinPool} tasks, whose runs cross the
+     * boundaries of the tasks.
+     */
+    @Test
+    public void parallelRebuildMatchesOracle() {
+        Random random = new Random(7);
+        List<Feel> feels = new ArrayList<>();
+        for (int i = 0; i < 10 * FeelTrends.REBUILD_LEAF_SIZE; i++) {
+            feels.add(randomFeel(random, 3 * 365));
+        }
+        FeelTreeSet feelTreeSet = new FeelTreeSet();
+        feelTreeSet.addAll(feels);
+        assertMatchesOracle(feelTreeSet);
+    }
+
+    @Test
+    public void unionJoinsTouchingRuns() {
+        assertArrayEquals(new long[]{1, 9, 12, 12},
+                FeelTrends.unionRuns(new long[]{1, 3, 7, 9}, new long[]{2, 6, 12, 12}));
+        assertArrayEquals(new long[]{1, 3}, FeelTrends.unionRuns(new long[]{1, 3}, new long[0]));
+        assertArrayEquals(new long[]{1, 5}, FeelTrends.unionRuns(new long[]{4, 5}, new long[]{1, 3}));
+    }
+}
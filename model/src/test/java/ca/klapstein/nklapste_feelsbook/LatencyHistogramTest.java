@@ -0,0 +1,81 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM unit tests for the buckets and percentiles of {@code LatencyHistogram}, and the reports of
+ * {@code FeelMetrics}.
+ */
+public class LatencyHistogramTest {
+    @Test
+    public void bucketsCoverEveryValueContiguously() {
+        assertEquals(0, LatencyHistogram.lowestValueOf(0));
+        for (int bucket = 0; bucket + 1 < LatencyHistogram.BUCKET_COUNT; bucket++) {
+            long lowest = LatencyHistogram.lowestValueOf(bucket);
+            long highest = LatencyHistogram.highestValueOf(bucket);
+            assertEquals(highest + 1, LatencyHistogram.lowestValueOf(bucket + 1));
+            assertEquals(bucket, LatencyHistogram.bucketOf(lowest));
+            assertEquals(bucket, LatencyHistogram.bucketOf(highest));
+            // buckets are at most about 3% wide
+            assertTrue(highest - lowest <= lowest / 32);
+        }
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void percentilesAreWithinBucketPrecision() {
+        Random random = new Random(11);
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        long[] values = new long[10000];
+        long sum = 0;
+        for (int i = 0; i < values.length; i++) {
+            // log-normal like latencies from microseconds to seconds
+            values[i] = (long) Math.exp(7 + random.nextDouble() * 14);
+            histogram.record(values[i]);
+            sum += values[i];
+        }
+        Arrays.sort(values);
+        assertEquals(values.length, histogram.getCount());
+        assertEquals(values[0], histogram.getMin());
+        assertEquals(values[values.length - 1], histogram.getMax());
+        assertEquals((double) sum / values.length, histogram.getMean(), 1e-6);
+        for (double percentile : new double[]{1, 50, 90, 99, 99.9, 100}) {
+            long expected = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            long actual = histogram.getValueAtPercentile(percentile);
+            assertTrue(percentile + ": " + actual + " < " + expected, actual >= expected);
+            assertTrue(percentile + ": " + actual + " > " + expected, actual <= expected + expected / 32);
+        }
+
+        LatencyHistogram copy = histogram.copy();
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        assertEquals(values.length, copy.getCount());
+    }
+
+    @Test
+    public void reportsListHistogramsAndCounters() {
+        LatencyHistogram histogram = FeelMetrics.histogram("LatencyHistogramTest.histogram");
+        assertSame(histogram, FeelMetrics.histogram("LatencyHistogramTest.histogram"));
+        histogram.record(2000000);
+        FeelMetrics.Counter counter = FeelMetrics.counter("LatencyHistogramTest.counter");
+        counter.add(3);
+        counter.increment();
+
+        String text = FeelMetrics.toText();
+        assertTrue(text, text.contains("LatencyHistogramTest.histogram\n  count=1 mean=2.000ms"));
+        assertTrue(text, text.contains("LatencyHistogramTest.counter = 4"));
+        JsonObject json = new JsonParser().parse(FeelMetrics.toJson()).getAsJsonObject();
+        JsonObject histogramJson = json.getAsJsonObject("histograms").getAsJsonObject("LatencyHistogramTest.histogram");
+        assertEquals(1, histogramJson.get("count").getAsLong());
+        assertEquals(2000000, histogramJson.get("p99").getAsLong());
+        assertEquals(4, json.getAsJsonObject("counters").get("LatencyHistogramTest.counter").getAsLong());
+    }
+}
@@ -0,0 +1,138 @@
+package ca.klapstein.nklapste_feelsbook;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM unit tests for the windowed {@code PagedFeelList}.
+ */
+public class PagedFeelListTest {
+    private static final int PAGE_SIZE = 16;
+    private static final int WINDOW_PAGES = 4;
+
+    private static final Executor directExecutor = new Executor() {
+        @Override
+        public void execute(Runnable runnable) {
+            runnable.run();
+        }
+    };
+
+    private static final PagedFeelList.Listener ignoringListener = new PagedFeelList.Listener() {
+        @Override
+        public void onRangeLoaded(int position, int count) {
+        }
+
+        @Override
+        public void onCountChanged(int count) {
+        }
+    };
+
+    private static FeelTreeSet source(int size) {
+        FeelTreeSet feelTreeSet = new FeelTreeSet();
+        for (int i = 0; i < size; i++) {
+            feelTreeSet.add(new Feel(Feeling.values()[i % Feeling.values().length], "", new Date(i * 2000L)));
+        }
+        return feelTreeSet;
+    }
+
+    private static void assertWindowMatches(FeelTreeSet source, PagedFeelList pagedFeels) {
+        assertEquals(source.size(), pagedFeels.size());
+        assertTrue(pagedFeels.getWindowSize() <= PAGE_SIZE * WINDOW_PAGES + PAGE_SIZE);
+        for (int i = 0; i < pagedFeels.getWindowSize(); i++) {
+            int position = pagedFeels.getWindowStart() + i;
+            assertEquals(source.get(position), pagedFeels.peek(position));
+        }
+    }
+
+    @Test
+    public void scrollingLoadsPagesWithinBoundedWindow() {
+        FeelTreeSet source = source(1000);
+        PagedFeelList pagedFeels = new PagedFeelList(source, PAGE_SIZE, WINDOW_PAGES, directExecutor, directExecutor, ignoringListener);
+        pagedFeels.refresh();
+        assertEquals(1000, pagedFeels.size());
+        assertEquals(PAGE_SIZE, pagedFeels.getWindowSize());
+        for (int position = 0; position < 1000; position++) {
+            pagedFeels.get(position);
+            assertEquals(source.get(position), pagedFeels.peek(position));
+            assertTrue(pagedFeels.getWindowSize() <= PAGE_SIZE * WINDOW_PAGES);
+        }
+        for (int position = 999; position >= 0; position--) {
+            pagedFeels.get(position);
+            assertEquals(source.get(position), pagedFeels.peek(position));
+            assertTrue(pagedFeels.getWindowSize() <= PAGE_SIZE * WINDOW_PAGES);
+        }
+        // jumping far away replaces the window
+        assertNull(pagedFeels.get(500));
+        assertEquals(source.get(500), pagedFeels.peek(500));
+        assertNull(pagedFeels.peek(0));
+    }
+
+    @Test
+    public void modificationsKeepWindowPositionsExact() {
+        FeelTreeSet source = source(300);
+        PagedFeelList pagedFeels = new PagedFeelList(source, PAGE_SIZE, WINDOW_PAGES, directExecutor, directExecutor, ignoringListener);
+        pagedFeels.refresh();
+        pagedFeels.get(150);
+        Random random = new Random(3);
+        for (int i = 0; i < 500; i++) {
+            if (random.nextBoolean()) {
+                // odd seconds never collide with the existing feels
+                Feel feel = new Feel(Feeling.Joy, "", new Date(random.nextInt(300) * 2000L + 1000));
+                if (source.add(feel)) {
+                    int position = pagedFeels.insert(feel);
+                    if (pagedFeels.peek(position) == feel) {
+                        assertEquals(source.indexOf(feel), position);
+                    }
+                }
+            } else if (pagedFeels.getWindowSize() > 0) {
+                Feel feel = pagedFeels.peek(pagedFeels.getWindowStart() + random.nextInt(pagedFeels.getWindowSize()));
+                int index = source.indexOf(feel);
+                source.remove(feel);
+                assertEquals(index, pagedFeels.remove(feel));
+            }
+            assertWindowMatches(source, pagedFeels);
+            // scroll around so pages are loaded in between the modifications
+            pagedFeels.get(random.nextInt(pagedFeels.size()));
+            assertWindowMatches(source, pagedFeels);
+        }
+    }
+
+    @Test
+    public void loadsRequestedBeforeModificationsAreDiscarded() {
+        FeelTreeSet source = source(100);
+        final ArrayDeque<Runnable> loads = new ArrayDeque<>();
+        PagedFeelList pagedFeels = new PagedFeelList(source, PAGE_SIZE, WINDOW_PAGES, new Executor() {
+            @Override
+            public void execute(Runnable runnable) {
+                loads.add(runnable);
+            }
+        }, directExecutor, ignoringListener);
+        pagedFeels.refresh();
+        loads.poll().run();
+        assertEquals(100, pagedFeels.size());
+
+        // request a page, then modify the FeelPageSource before the load runs
+        assertNull(pagedFeels.get(40));
+        assertNull(pagedFeels.get(50));
+        assertEquals(1, loads.size());
+        Feel newest = new Feel(Feeling.Love, "", new Date(1000000));
+        source.add(newest);
+        assertEquals(0, pagedFeels.insert(newest));
+        loads.poll().run();
+        // the stale page was dropped and requested again
+        assertNull(pagedFeels.peek(40));
+        assertEquals(1, loads.size());
+        while (!loads.isEmpty()) {
+            loads.poll().run();
+        }
+        assertEquals(source.get(40), pagedFeels.peek(40));
+        assertEquals(source.get(50), pagedFeels.peek(50));
+        assertWindowMatches(source, pagedFeels);
+    }
+}